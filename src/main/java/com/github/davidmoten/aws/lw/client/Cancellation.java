@@ -0,0 +1,116 @@
+package com.github.davidmoten.aws.lw.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import com.github.davidmoten.aws.lw.client.internal.util.Preconditions;
+
+/**
+ * Handle to cancel a request from another thread. Cancelling stops pending
+ * retries and aborts any attempt in flight (closing its connection when the
+ * {@link HttpClient} supports it), after which the request throws
+ * {@link CancellationException}.
+ *
+ * <p>
+ * A handle is for one request at a time and stays cancelled once cancelled.
+ */
+public final class Cancellation {
+
+    private boolean cancelled;
+
+    // abort the attempts in flight (more than one when hedging)
+    private final List<Runnable> aborts = new ArrayList<>();
+
+    // the thread waiting on the request, interrupted to wake it from back-off
+    private Thread thread;
+    private boolean interrupted;
+
+    private Cancellation() {
+    }
+
+    public static Cancellation create() {
+        return new Cancellation();
+    }
+
+    /**
+     * Cancels the request. Has no effect if already cancelled.
+     */
+    public void cancel() {
+        List<Runnable> list;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            list = new ArrayList<>(aborts);
+            if (thread != null) {
+                interrupted = true;
+                thread.interrupt();
+            }
+        }
+        list.forEach(Cancellation::runQuietly);
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Registers an action that aborts an attempt in flight (for example by
+     * closing its connection). For use by {@link HttpClient} implementations. If
+     * already cancelled the action is run immediately.
+     *
+     * @param abort action to run on cancel
+     */
+    public void addAbort(Runnable abort) {
+        Preconditions.checkNotNull(abort, "abort cannot be null");
+        synchronized (this) {
+            if (!cancelled) {
+                aborts.add(abort);
+                return;
+            }
+        }
+        runQuietly(abort);
+    }
+
+    /**
+     * Removes an action added with {@link #addAbort(Runnable)} once its attempt
+     * has completed.
+     *
+     * @param abort action to remove
+     */
+    public synchronized void removeAbort(Runnable abort) {
+        aborts.remove(abort);
+    }
+
+    void throwIfCancelled() {
+        if (isCancelled()) {
+            throw new CancellationException("request cancelled");
+        }
+    }
+
+    // called by the thread making the request before it starts
+    synchronized void enter() {
+        thread = Thread.currentThread();
+    }
+
+    // called by the thread making the request when it finishes
+    synchronized void exit() {
+        thread = null;
+        if (interrupted) {
+            // the interrupt was ours, don't leak it to the caller
+            Thread.interrupted();
+            interrupted = false;
+        }
+    }
+
+    private static void runQuietly(Runnable action) {
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            // ignore
+        }
+    }
+
+}
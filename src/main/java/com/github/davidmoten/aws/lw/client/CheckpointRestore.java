@@ -0,0 +1,113 @@
+package com.github.davidmoten.aws.lw.client;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import com.github.davidmoten.aws.lw.client.internal.Checkpoints;
+
+/**
+ * Checkpoint and restore support for CRaC and AWS Lambda SnapStart (which uses
+ * the same {@code org.crac} API). Call {@link #register()} once at startup (for
+ * example from a static initializer of the Lambda handler) and clients built
+ * before the checkpoint can be used after a restore without being rebuilt.
+ *
+ * <ul>
+ * <li>before a checkpoint, the shared default credentials and all lazily
+ * resolved credentials are discarded so that the snapshot holds no secrets</li>
+ * <li>after a restore, they are discarded again and resolution starts on
+ * background threads so that the first requests don't wait on it one after
+ * another</li>
+ * </ul>
+ *
+ * <p>
+ * {@code org.crac} is not a dependency of this library. If it is on the
+ * classpath the hooks are registered with it by reflection, otherwise
+ * {@link #register()} does nothing. The hooks can also be called directly from
+ * other runtime hooks.
+ */
+public final class CheckpointRestore {
+
+    private static final String CORE_CLASS_NAME = "org.crac.Core";
+    private static final String RESOURCE_CLASS_NAME = "org.crac.Resource";
+
+    // org.crac holds resources weakly so keep a strong reference
+    private static Object resource;
+
+    private CheckpointRestore() {
+        // prevent instantiation
+    }
+
+    /**
+     * Registers the hooks with {@code org.crac} if it is on the classpath. Has no
+     * effect if already registered.
+     *
+     * @return true if the hooks are registered
+     */
+    public static boolean register() {
+        return register(CORE_CLASS_NAME, RESOURCE_CLASS_NAME);
+    }
+
+    // VisibleForTesting
+    static synchronized boolean register(String coreClassName, String resourceClassName) {
+        if (resource != null) {
+            return true;
+        }
+        final Class<?> core;
+        final Class<?> resourceClass;
+        try {
+            core = Class.forName(coreClassName);
+            resourceClass = Class.forName(resourceClassName);
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+        try {
+            Method getGlobalContext = core.getMethod("getGlobalContext");
+            // use the declared type, the runtime class of the context may not be public
+            Method register = getGlobalContext.getReturnType().getMethod("register", resourceClass);
+            Object r = Proxy.newProxyInstance(resourceClass.getClassLoader(), new Class<?>[] { resourceClass },
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                        case "beforeCheckpoint":
+                            beforeCheckpoint();
+                            return null;
+                        case "afterRestore":
+                            afterRestore();
+                            return null;
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return CheckpointRestore.class.getName();
+                        default:
+                            return null;
+                        }
+                    });
+            register.invoke(getGlobalContext.invoke(null), r);
+            resource = r;
+            return true;
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalStateException("unexpected " + coreClassName + " api", e);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("could not register with " + coreClassName, e.getCause());
+        }
+    }
+
+    /**
+     * Discards cached credentials so that they are not saved in the checkpoint.
+     */
+    public static void beforeCheckpoint() {
+        Checkpoints.clearCredentials();
+    }
+
+    /**
+     * Discards any credentials resolved since the checkpoint and starts resolving
+     * fresh ones in the background.
+     */
+    public static void afterRestore() {
+        Checkpoints.clearCredentials();
+        Checkpoints.prewarmCredentials();
+    }
+
+}
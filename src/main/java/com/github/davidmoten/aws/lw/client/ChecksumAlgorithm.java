@@ -0,0 +1,89 @@
+package com.github.davidmoten.aws.lw.client;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+import com.github.davidmoten.aws.lw.client.internal.util.Crc32c;
+import com.github.davidmoten.aws.lw.client.internal.util.Util;
+
+/**
+ * Additional checksum algorithms supported by S3 for end-to-end integrity
+ * checking of uploaded data (independent of request signing).
+ */
+public enum ChecksumAlgorithm {
+
+    CRC32, CRC32C, SHA256;
+
+    /**
+     * Returns the name of the request header that carries a checksum of this type
+     * (for example {@code x-amz-checksum-crc32c}).
+     * 
+     * @return header name
+     */
+    public String headerName() {
+        return "x-amz-checksum-" + name().toLowerCase(Locale.ENGLISH);
+    }
+
+    // length of a base64 encoded checksum
+    int encodedLength() {
+        int digestLength = this == SHA256 ? 32 : 4;
+        return 4 * ((digestLength + 2) / 3);
+    }
+
+    String xmlElementName() {
+        return "Checksum" + name();
+    }
+
+    /**
+     * Returns the base64 encoded checksum of the given bytes as expected in the
+     * {@link #headerName()} header.
+     * 
+     * @param bytes  data
+     * @param offset start position in bytes
+     * @param length number of bytes
+     * @return base64 encoded checksum
+     */
+    public String checksum(byte[] bytes, int offset, int length) {
+        return Base64.getEncoder().encodeToString(digest(bytes, offset, length));
+    }
+
+    public String checksum(byte[] bytes) {
+        return checksum(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Returns the checksum that S3 reports for a completed multipart upload: the
+     * checksum of the concatenated (decoded) part checksums followed by a hyphen
+     * and the number of parts.
+     * 
+     * @param partChecksums base64 encoded checksums of each part in order
+     * @return composite checksum
+     */
+    String composite(List<String> partChecksums) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (String c : partChecksums) {
+            byte[] b = Base64.getDecoder().decode(c);
+            bytes.write(b, 0, b.length);
+        }
+        return checksum(bytes.toByteArray()) + "-" + partChecksums.size();
+    }
+
+    private byte[] digest(byte[] bytes, int offset, int length) {
+        if (this == SHA256) {
+            byte[] b = bytes;
+            if (offset != 0 || length != bytes.length) {
+                b = new byte[length];
+                System.arraycopy(bytes, offset, b, 0, length);
+            }
+            return Util.sha256(b);
+        }
+        Checksum c = this == CRC32 ? new CRC32() : new Crc32c();
+        c.update(bytes, offset, length);
+        long v = c.getValue();
+        return new byte[] { (byte) (v >>> 24), (byte) (v >>> 16), (byte) (v >>> 8), (byte) v };
+    }
+}
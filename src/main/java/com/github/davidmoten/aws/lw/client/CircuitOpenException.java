@@ -0,0 +1,28 @@
+package com.github.davidmoten.aws.lw.client;
+
+/**
+ * Thrown without making a call when the circuit breaker for the endpoint host
+ * is open after repeated failures.
+ */
+public final class CircuitOpenException extends RuntimeException {
+
+    private static final long serialVersionUID = 2290380923046627813L;
+
+    private final String host;
+
+    public CircuitOpenException(String host) {
+        super("circuit open for " + host);
+        this.host = host;
+    }
+
+    /**
+     * Returns the endpoint authority (host and port if specified) of the open
+     * circuit.
+     *
+     * @return host
+     */
+    public String host() {
+        return host;
+    }
+
+}
@@ -12,10 +12,14 @@ import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
+import com.github.davidmoten.aws.lw.client.internal.AdaptiveRateLimiter;
+import com.github.davidmoten.aws.lw.client.internal.CircuitBreakers;
 import com.github.davidmoten.aws.lw.client.internal.Clock;
 import com.github.davidmoten.aws.lw.client.internal.Environment;
 import com.github.davidmoten.aws.lw.client.internal.ExceptionFactoryExtended;
+import com.github.davidmoten.aws.lw.client.internal.LazyCredentials;
 import com.github.davidmoten.aws.lw.client.internal.Retries;
+import com.github.davidmoten.aws.lw.client.internal.RetryQuota;
 import com.github.davidmoten.aws.lw.client.internal.util.Preconditions;
 
 public final class Client {
@@ -30,10 +34,15 @@ public final class Client {
     private final ExceptionFactory exceptionFactory;
     private final BaseUrlFactory baseUrlFactory;
     private final Retries<ResponseInputStream> retries;
+    private final CircuitBreakers circuitBreakers; // nullable
+    private final RetryClassifier retryClassifier;
+    private final long deadlineMs;
+    private final HedgingPolicy hedging; // nullable
 
     private Client(Clock clock, String serviceName, Optional<String> region, Credentials credentials,
             HttpClient httpClient, int connectTimeoutMs, int readTimeoutMs, ExceptionFactory exceptionFactory,
-            BaseUrlFactory baseUrlFactory, Retries<ResponseInputStream> retries) {
+            BaseUrlFactory baseUrlFactory, Retries<ResponseInputStream> retries, CircuitBreakers circuitBreakers,
+            RetryClassifier retryClassifier, long deadlineMs, HedgingPolicy hedging) {
         this.clock = clock;
         this.serviceName = serviceName;
         this.region = region;
@@ -44,6 +53,10 @@ public final class Client {
         this.exceptionFactory = exceptionFactory;
         this.baseUrlFactory = baseUrlFactory;
         this.retries = retries;
+        this.circuitBreakers = circuitBreakers;
+        this.retryClassifier = retryClassifier;
+        this.deadlineMs = deadlineMs;
+        this.hedging = hedging;
     }
 
     public static Builder service(String serviceName) {
@@ -120,10 +133,28 @@ public final class Client {
         return readTimeoutMs;
     }
 
+    long deadlineMs() {
+        return deadlineMs;
+    }
+
+    // nullable
+    HedgingPolicy hedging() {
+        return hedging;
+    }
+
     Retries<ResponseInputStream> retries() {
         return retries;
     }
 
+    // nullable
+    CircuitBreakers circuitBreakers() {
+        return circuitBreakers;
+    }
+
+    RetryClassifier retryClassifier() {
+        return retryClassifier;
+    }
+
     public Request url(String url) {
         Preconditions.checkNotNull(url);
         return new Request(this, url);
@@ -197,21 +228,6 @@ public final class Client {
 
     public static final class Builder {
 
-        // from
-        // https://docs.aws.amazon.com/sdkref/latest/guide/feature-retry-behavior.html
-        private static final Set<Integer> RETRY_STATUS_CODES = new HashSet<>( //
-                Arrays.asList( //
-                        400, // BAD_REQUEST
-                        403, // FORBIDDEN
-                        408, // REQUEST_TIMEOUT
-                        429, // TOO_MANY_REQUESTS
-                        500, // INTERNAL_SERVER_ERROR
-                        502, // BAD_GATEWAY
-                        503, // SERVICE_UNAVAILABLE
-                        509 // BANDWIDTH_LIMIT_EXCEEDED
-                ));
-        
-
         private final String serviceName;
         private Optional<String> region = Optional.empty();
         private String accessKey;
@@ -219,16 +235,30 @@ public final class Client {
         private HttpClient httpClient = HttpClient.defaultClient();
         private int connectTimeoutMs = 30000;
         private int readTimeoutMs = 300000;
+        private long deadlineMs;
+        private HedgingPolicy hedging;
         private ExceptionFactory exceptionFactory = ExceptionFactory.DEFAULT;
         private Clock clock = Clock.DEFAULT;
         private Environment environment = Environment.instance();
         private BaseUrlFactory baseUrlFactory = BaseUrlFactory.DEFAULT;
-        private Retries<ResponseInputStream> retries = Retries.create(
-                ris -> RETRY_STATUS_CODES.contains(ris.statusCode()), //
-        t -> t instanceof IOException || t instanceof UncheckedIOException);
+        private RetryClassifier retryClassifier;
+        private Retries<ResponseInputStream> retries;
+        private boolean retryAdaptive;
+        private int retryQuotaCapacity = RetryQuota.DEFAULT_CAPACITY;
+        private boolean circuitBreaker;
+        private int circuitBreakerConsecutiveFailures = 5;
+        private double circuitBreakerFailureRate = 0.5;
+        private int circuitBreakerWindowSize = 20;
+        private long circuitBreakerOpenDurationMs = 30000;
+        private boolean prewarmCredentials;
 
         private Builder(String serviceName) {
             this.serviceName = serviceName;
+            this.retryClassifier = RetryClassifier.forService(serviceName);
+            this.retries = Retries.<ResponseInputStream>create( //
+                    ris -> retryClassifier.apply(ris).shouldRetry(), //
+                    t -> t instanceof IOException || t instanceof UncheckedIOException) //
+                    .withValueAdvice(retryClassifier);
         }
 
         // VisibleForTesting
@@ -249,6 +279,8 @@ public final class Client {
             this.httpClient = client.httpClient;
             this.connectTimeoutMs = client.connectTimeoutMs;
             this.readTimeoutMs = client.readTimeoutMs;
+            this.deadlineMs = client.deadlineMs;
+            this.hedging = client.hedging;
             this.exceptionFactory = client.exceptionFactory;
             return new Builder4(this);
         }
@@ -280,8 +312,17 @@ public final class Client {
             this.b = b;
         }
 
+        /**
+         * Uses the default credentials chain. The chain is run when the first request
+         * is signed, not now, so that any network calls it makes are kept off the init
+         * path (see {@link Builder4#prewarmCredentials()} to start it early in the
+         * background).
+         * 
+         * @return builder
+         */
         public Builder4 credentialsFromEnvironment() {
-            b.credentials = b.environment.credentials();
+            Environment environment = b.environment;
+            b.credentials = Credentials.lazy(environment::credentials);
             return new Builder4(b);
         }
 
@@ -374,6 +415,138 @@ public final class Client {
             return this;
         }
         
+        /**
+         * Sets the initial interval between retries of throttled responses (for
+         * example {@code SlowDown} or {@code ThrottlingException}). Throttling backs
+         * off independently of other failures using the same backoff factor, jitter
+         * and maximum interval. Default is 1s.
+         * 
+         * @param duration initial throttled retry interval
+         * @param unit     time unit
+         * @return this
+         */
+        public Builder4 retryThrottledInitialInterval(long duration, TimeUnit unit) {
+            Preconditions.checkArgument(duration >= 0, "duration cannot be negative");
+            Preconditions.checkNotNull(unit, "unit cannot be null");
+            b.retries = b.retries.withThrottledInitialIntervalMs(unit.toMillis(duration));
+            return this;
+        }
+
+        /**
+         * Adds AWS error codes to be retried in addition to the defaults for the
+         * service. By default 400 and 403 responses are only retried when their error
+         * code is known to be transient or throttling. Replaces any condition set by
+         * {@link #retryCondition(Predicate)} or {@link #retryStatusCodes(Collection)}.
+         * 
+         * @param transientErrorCodes  error codes to retry with the normal backoff
+         * @param throttlingErrorCodes error codes to retry with the throttled backoff
+         * @return this
+         */
+        public Builder4 retryErrorCodes(Collection<String> transientErrorCodes,
+                Collection<String> throttlingErrorCodes) {
+            Preconditions.checkNotNull(transientErrorCodes, "transientErrorCodes cannot be null");
+            Preconditions.checkNotNull(throttlingErrorCodes, "throttlingErrorCodes cannot be null");
+            b.retryClassifier = b.retryClassifier.withErrorCodes(transientErrorCodes, throttlingErrorCodes);
+            b.retries = b.retries.withValueAdvice(b.retryClassifier);
+            return this;
+        }
+
+        /**
+         * Enables client side rate limiting shared by all requests of the built
+         * client (like the AWS SDK "adaptive" retry mode). After the first throttling
+         * response every attempt waits for a token from a bucket whose rate is cut on
+         * throttling and recovers on success. Throttling is detected by the default
+         * retry classification so has no effect if {@link #retryCondition(Predicate)}
+         * or {@link #retryStatusCodes(Collection)} is used. Default is false.
+         * 
+         * @param enabled whether to rate limit adaptively
+         * @return this
+         */
+        public Builder4 retryAdaptive(boolean enabled) {
+            b.retryAdaptive = enabled;
+            return this;
+        }
+
+        /**
+         * Sets the capacity of the retry token bucket shared by all requests
+         * (including multipart parts) of the built client. A retry of an error
+         * response costs 5 tokens, a retry of an exception costs 10 and attempts that
+         * need no retry return tokens. When the bucket is empty calls fail fast with
+         * the last error so retries can't multiply the load on a failing endpoint.
+         * A multipart part is charged once, not again by the retries around it.
+         * 
+         * <p>
+         * The quota is enabled by default (capacity 500), so a client whose
+         * endpoint fails broadly now stops retrying once the bucket is empty rather
+         * than always making up to the max attempts as earlier versions did. Use 0
+         * to disable the quota and restore that behaviour.
+         * 
+         * @param capacity maximum tokens, 0 for no quota
+         * @return this
+         */
+        public Builder4 retryQuota(int capacity) {
+            Preconditions.checkArgument(capacity >= 0, "capacity cannot be negative");
+            b.retryQuotaCapacity = capacity;
+            return this;
+        }
+
+        /**
+         * Enables a circuit breaker per endpoint host shared by all requests of the
+         * built client. An exception from the http client or a 5xx response counts as
+         * a failure. The circuit opens after 5 consecutive failures or when at least
+         * half of the last 20 calls failed. While open, calls to the host fail fast
+         * with {@link CircuitOpenException} (which is not retried) until the open
+         * duration (default 30s) has passed, then a single probe call is let through
+         * that closes the circuit on success. Default is disabled.
+         * 
+         * @param enabled whether to use circuit breakers
+         * @return this
+         */
+        public Builder4 circuitBreaker(boolean enabled) {
+            b.circuitBreaker = enabled;
+            return this;
+        }
+
+        /**
+         * Enables circuit breakers (see {@link #circuitBreaker(boolean)}) with the
+         * given thresholds.
+         * 
+         * @param consecutiveFailures number of consecutive failures that open the
+         *                            circuit, 0 to disable
+         * @param failureRate         failure rate over the last {@code windowSize}
+         *                            calls that opens the circuit, 0 to disable
+         * @param windowSize          number of recent calls the failure rate is
+         *                            measured over
+         * @return this
+         */
+        public Builder4 circuitBreakerThresholds(int consecutiveFailures, double failureRate, int windowSize) {
+            Preconditions.checkArgument(consecutiveFailures >= 0, "consecutiveFailures cannot be negative");
+            Preconditions.checkArgument(failureRate >= 0 && failureRate <= 1,
+                    "failureRate must be between 0 and 1 inclusive");
+            Preconditions.checkArgument(windowSize > 0, "windowSize must be positive");
+            b.circuitBreaker = true;
+            b.circuitBreakerConsecutiveFailures = consecutiveFailures;
+            b.circuitBreakerFailureRate = failureRate;
+            b.circuitBreakerWindowSize = windowSize;
+            return this;
+        }
+
+        /**
+         * Enables circuit breakers (see {@link #circuitBreaker(boolean)}) that stay
+         * open for the given duration before letting a probe call through.
+         * 
+         * @param duration open duration
+         * @param unit     time unit
+         * @return this
+         */
+        public Builder4 circuitBreakerOpenDuration(long duration, TimeUnit unit) {
+            Preconditions.checkArgument(duration >= 0, "duration cannot be negative");
+            Preconditions.checkNotNull(unit, "unit cannot be null");
+            b.circuitBreaker = true;
+            b.circuitBreakerOpenDurationMs = unit.toMillis(duration);
+            return this;
+        }
+
         public Builder4 retryCondition(Predicate<? super ResponseInputStream> shouldRetry) {
             Preconditions.checkNotNull(shouldRetry, "shouldRetry cannot be null");
             b.retries = b.retries.withValueShouldRetry(shouldRetry);
@@ -416,6 +589,35 @@ public final class Client {
             return this;
         }
 
+        /**
+         * Sets the default overall time allowed for each request including all
+         * retries and back-off sleeps (see {@link Request#deadline(long, TimeUnit)}).
+         * Default is no deadline.
+         * 
+         * @param duration overall time allowed, 0 for no deadline
+         * @param unit     time unit
+         * @return this
+         */
+        public Builder4 defaultDeadline(long duration, TimeUnit unit) {
+            Preconditions.checkArgument(duration >= 0, "duration cannot be negative");
+            Preconditions.checkNotNull(unit, "unit cannot be null");
+            b.deadlineMs = unit.toMillis(duration);
+            return this;
+        }
+
+        /**
+         * Hedges GET and HEAD attempts of requests made by the built client using the
+         * given policy (see {@link HedgingPolicy}). Default is no hedging.
+         * 
+         * @param hedging hedging policy
+         * @return this
+         */
+        public Builder4 hedging(HedgingPolicy hedging) {
+            Preconditions.checkNotNull(hedging, "hedging cannot be null");
+            b.hedging = hedging;
+            return this;
+        }
+
         public Builder4 exceptionFactory(ExceptionFactory exceptionFactory) {
             b.exceptionFactory = exceptionFactory;
             return this;
@@ -432,9 +634,38 @@ public final class Client {
             return this;
         }
 
+        /**
+         * Starts resolving lazy credentials (for example from
+         * {@link Builder2#credentialsFromEnvironment()}) on a background thread when
+         * the client is built, so that they are likely ready by the first request. A
+         * failure surfaces on the first request.
+         * 
+         * @return this
+         */
+        public Builder4 prewarmCredentials() {
+            b.prewarmCredentials = true;
+            return this;
+        }
+
         public Client build() {
+            // each client gets its own send rate and retry budget
+            Retries<ResponseInputStream> retries = b.retries;
+            if (b.retryAdaptive) {
+                retries = retries.withRateLimiter(AdaptiveRateLimiter.create());
+            }
+            if (b.retryQuotaCapacity > 0) {
+                retries = retries.withRetryQuota(new RetryQuota(b.retryQuotaCapacity));
+            }
+            CircuitBreakers circuitBreakers = b.circuitBreaker
+                    ? new CircuitBreakers(b.circuitBreakerConsecutiveFailures, b.circuitBreakerFailureRate,
+                            b.circuitBreakerWindowSize, b.circuitBreakerOpenDurationMs, b.clock)
+                    : null;
+            if (b.prewarmCredentials && b.credentials instanceof LazyCredentials) {
+                ((LazyCredentials) b.credentials).prewarm();
+            }
             return new Client(b.clock, b.serviceName, b.region, b.credentials, b.httpClient, b.connectTimeoutMs,
-                    b.readTimeoutMs, b.exceptionFactory, b.baseUrlFactory, b.retries);
+                    b.readTimeoutMs, b.exceptionFactory, b.baseUrlFactory, retries, circuitBreakers,
+                    b.retryClassifier, b.deadlineMs, b.hedging);
         }
     }
 
@@ -2,9 +2,11 @@ package com.github.davidmoten.aws.lw.client;
 
 import java.time.Instant;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import com.github.davidmoten.aws.lw.client.internal.CredentialsImpl;
 import com.github.davidmoten.aws.lw.client.internal.Environment;
+import com.github.davidmoten.aws.lw.client.internal.LazyCredentials;
 
 public interface Credentials {
 
@@ -18,6 +20,17 @@ public interface Credentials {
         return Optional.empty();
     }
 
+    /**
+     * Returns an immutable copy of these credentials. Signing uses one snapshot per
+     * request so that a refresh between reading the access key, secret key and
+     * session token can't mix old and new values.
+     * 
+     * @return immutable credentials
+     */
+    default Credentials snapshot() {
+        return new CredentialsImpl(accessKey(), secretKey(), sessionToken(), expiration());
+    }
+
     static Credentials of(String accessKey, String secretKey) {
         return new CredentialsImpl(accessKey, secretKey, Optional.empty());
     }
@@ -26,6 +39,17 @@ public interface Credentials {
         return new CredentialsImpl(accessKey, secretKey, Optional.of(sessionToken));
     }
 
+    /**
+     * Returns credentials that are obtained from {@code resolver} on first use and
+     * then reused. A failed resolution is tried again on the next use.
+     * 
+     * @param resolver provides the credentials
+     * @return lazily resolved credentials
+     */
+    static Credentials lazy(Supplier<Credentials> resolver) {
+        return new LazyCredentials(resolver);
+    }
+
     static Credentials fromEnvironment() {
         return Environment.instance().credentials();
     }
@@ -0,0 +1,19 @@
+package com.github.davidmoten.aws.lw.client;
+
+/**
+ * Thrown when a request could not complete within its deadline (see
+ * {@link Request#deadline(long, java.util.concurrent.TimeUnit)}).
+ */
+public final class DeadlineExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 8195542960117062544L;
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+
+    public DeadlineExceededException(String message, Throwable e) {
+        super(message, e);
+    }
+
+}
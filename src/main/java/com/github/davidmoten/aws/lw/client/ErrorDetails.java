@@ -0,0 +1,146 @@
+package com.github.davidmoten.aws.lw.client;
+
+import java.util.Optional;
+
+import com.github.davidmoten.aws.lw.client.json.JsonParseException;
+import com.github.davidmoten.aws.lw.client.json.JsonReader;
+import com.github.davidmoten.aws.lw.client.json.JsonReader.Token;
+import com.github.davidmoten.aws.lw.client.xml.XmlEventReader;
+import com.github.davidmoten.aws.lw.client.xml.XmlEventReader.Event;
+import com.github.davidmoten.aws.lw.client.xml.XmlParseException;
+
+/**
+ * The code, message and request id of an AWS error response body. Handles the
+ * XML envelopes of the REST (S3), query (SQS, SNS, IAM, STS) and EC2 protocols
+ * and the JSON envelope of the JSON protocols. Only as much of the body is read
+ * as is needed to find the fields.
+ */
+final class ErrorDetails {
+
+    static final ErrorDetails NONE = new ErrorDetails(null, null, null);
+
+    // error envelopes are small, don't scan a large unexpected body
+    // VisibleForTesting
+    static final int MAX_PARSE_LENGTH = 64 * 1024;
+
+    // nullable
+    final String code;
+    final String message;
+    final String requestId;
+
+    private ErrorDetails(String code, String message, String requestId) {
+        this.code = code;
+        this.message = message;
+        this.requestId = requestId;
+    }
+
+    static ErrorDetails parse(String body) {
+        if (body == null) {
+            return NONE;
+        }
+        String s = body.length() > MAX_PARSE_LENGTH ? body.substring(0, MAX_PARSE_LENGTH) : body;
+        int i = 0;
+        while (i < s.length() && Character.isWhitespace(s.charAt(i))) {
+            i++;
+        }
+        if (i == s.length()) {
+            return NONE;
+        } else if (s.charAt(i) == '<') {
+            return parseXml(s);
+        } else if (s.charAt(i) == '{') {
+            return parseJson(s);
+        } else {
+            return NONE;
+        }
+    }
+
+    private static ErrorDetails parseXml(String s) {
+        String code = null;
+        String message = null;
+        String requestId = null;
+        try (XmlEventReader r = XmlEventReader.create(s)) {
+            while (r.next() != Event.END_DOCUMENT) {
+                if (r.event() == Event.START_ELEMENT) {
+                    String name = r.name();
+                    if (code == null && name.equals("Code")) {
+                        code = r.elementText();
+                    } else if (message == null && name.equals("Message")) {
+                        message = r.elementText();
+                    } else if (requestId == null && (name.equals("RequestId") || name.equals("RequestID"))) {
+                        requestId = r.elementText();
+                    }
+                    if (code != null && message != null && requestId != null) {
+                        break;
+                    }
+                }
+            }
+        } catch (XmlParseException e) {
+            // malformed or truncated, use what was found
+        }
+        return create(code, message, requestId);
+    }
+
+    private static ErrorDetails parseJson(String s) {
+        String code = null;
+        String message = null;
+        try (JsonReader r = JsonReader.create(s)) {
+            r.next(); // BEGIN_OBJECT
+            while (r.next() == Token.NAME) {
+                String name = r.name();
+                if (r.next() != Token.STRING) {
+                    r.skipValue();
+                } else if (code == null && (name.equals("__type") || name.equalsIgnoreCase("code"))) {
+                    code = r.text();
+                } else if (message == null && (name.equalsIgnoreCase("message") || name.equals("errorMessage"))) {
+                    message = r.text();
+                }
+            }
+        } catch (JsonParseException e) {
+            // malformed or truncated, use what was found
+        }
+        return create(normalizeCode(code), message, null);
+    }
+
+    private static ErrorDetails create(String code, String message, String requestId) {
+        if (code == null && message == null && requestId == null) {
+            return NONE;
+        } else {
+            return new ErrorDetails(code, message, requestId);
+        }
+    }
+
+    /**
+     * Returns the bare error code from a JSON {@code __type} like
+     * {@code com.amazonaws.dynamodb.v20120810#ResourceNotFoundException} or an
+     * {@code x-amzn-ErrorType} header like
+     * {@code ThrottlingException:http://internal.amazon.com/coral/}.
+     */
+    // VisibleForTesting
+    static String normalizeCode(String code) {
+        if (code == null) {
+            return null;
+        }
+        int colon = code.indexOf(':');
+        if (colon >= 0) {
+            code = code.substring(0, colon);
+        }
+        int hash = code.lastIndexOf('#');
+        if (hash >= 0) {
+            code = code.substring(hash + 1);
+        }
+        code = code.trim();
+        return code.isEmpty() ? null : code;
+    }
+
+    Optional<String> code() {
+        return Optional.ofNullable(code);
+    }
+
+    Optional<String> message() {
+        return Optional.ofNullable(message);
+    }
+
+    Optional<String> requestId() {
+        return Optional.ofNullable(requestId);
+    }
+}
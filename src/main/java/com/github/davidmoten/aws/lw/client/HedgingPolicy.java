@@ -0,0 +1,276 @@
+package com.github.davidmoten.aws.lw.client;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.davidmoten.aws.lw.client.internal.util.Preconditions;
+
+/**
+ * Hedging of idempotent requests (GET and HEAD) to cut tail latency. If an
+ * attempt has not received its response headers after the hedging delay a
+ * duplicate is sent and whichever responds first is used. The delay is either
+ * fixed or learned as a percentile of recent response times.
+ *
+ * <p>
+ * The losing attempt is aborted (its connection closed if the
+ * {@link HttpClient} supports cancellation, otherwise as soon as its response
+ * arrives).
+ *
+ * <p>
+ * A policy can be shared by clients and requests and counts the hedges sent and
+ * won across all of them.
+ */
+public final class HedgingPolicy {
+
+    // response times to learn a percentile from
+    private static final int WINDOW_SIZE = 256;
+    private static final int MIN_SAMPLES = 20;
+
+    private final long delayMs;
+    // negative for a fixed delay
+    private final double percentile;
+
+    private final long[] latenciesMs = new long[WINDOW_SIZE];
+    private int latencyCount;
+    private int latencyIndex;
+    // the learned delay, recalculated after a latency is recorded (negative if stale)
+    private long percentileDelayMs = -1;
+
+    private final AtomicLong hedgesSent = new AtomicLong();
+    private final AtomicLong hedgesWon = new AtomicLong();
+
+    private volatile ExecutorService executor;
+
+    private HedgingPolicy(long delayMs, double percentile) {
+        this.delayMs = delayMs;
+        this.percentile = percentile;
+    }
+
+    /**
+     * Hedges an attempt that has not responded after a fixed delay.
+     *
+     * @param delay delay before hedging
+     * @param unit  time unit
+     * @return policy
+     */
+    public static HedgingPolicy delay(long delay, TimeUnit unit) {
+        Preconditions.checkArgument(delay >= 0, "delay cannot be negative");
+        Preconditions.checkNotNull(unit, "unit cannot be null");
+        return new HedgingPolicy(unit.toMillis(delay), -1);
+    }
+
+    /**
+     * Hedges an attempt that has not responded within the given percentile of
+     * recent response times (for example 0.95). Until enough response times have
+     * been seen {@code initialDelay} is used.
+     *
+     * @param percentile   percentile of response times, between 0 and 1
+     * @param initialDelay delay before hedging until a percentile is known
+     * @param unit         time unit
+     * @return policy
+     */
+    public static HedgingPolicy percentile(double percentile, long initialDelay, TimeUnit unit) {
+        Preconditions.checkArgument(percentile > 0 && percentile < 1, "percentile must be between 0 and 1");
+        Preconditions.checkArgument(initialDelay >= 0, "initialDelay cannot be negative");
+        Preconditions.checkNotNull(unit, "unit cannot be null");
+        return new HedgingPolicy(unit.toMillis(initialDelay), percentile);
+    }
+
+    /**
+     * Returns the number of duplicate requests sent.
+     *
+     * @return hedges sent
+     */
+    public long hedgesSent() {
+        return hedgesSent.get();
+    }
+
+    /**
+     * Returns the number of duplicate requests whose response was used.
+     *
+     * @return hedges won
+     */
+    public long hedgesWon() {
+        return hedgesWon.get();
+    }
+
+    // VisibleForTesting
+    synchronized long delayMs() {
+        if (percentile < 0 || latencyCount < MIN_SAMPLES) {
+            return delayMs;
+        }
+        if (percentileDelayMs < 0) {
+            long[] sorted = Arrays.copyOf(latenciesMs, latencyCount);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * latencyCount) - 1;
+            percentileDelayMs = sorted[Math.max(0, index)];
+        }
+        return percentileDelayMs;
+    }
+
+    // VisibleForTesting
+    synchronized void recordLatency(long ms) {
+        latenciesMs[latencyIndex] = ms;
+        latencyIndex = (latencyIndex + 1) % WINDOW_SIZE;
+        if (latencyCount < WINDOW_SIZE) {
+            latencyCount++;
+        }
+        percentileDelayMs = -1;
+    }
+
+    // VisibleForTesting
+    synchronized int latencyCount() {
+        return latencyCount;
+    }
+
+    /**
+     * Makes the call, hedging it if it has not returned after the hedging delay.
+     * If one attempt fails the other is waited for, if both fail the last failure
+     * is thrown. Each attempt gets its own cancellation so that the loser can be
+     * aborted, and cancelling {@code cancellation} aborts both.
+     */
+    ResponseInputStream call(Attempt attempt, Cancellation cancellation) throws Exception {
+        Race race = new Race();
+        Cancellation[] attempts = { Cancellation.create(), Cancellation.create() };
+        Runnable abort = () -> {
+            attempts[0].cancel();
+            attempts[1].cancel();
+        };
+        cancellation.addAbort(abort);
+        try {
+            executor().execute(() -> race.run(0, () -> attempt.call(attempts[0])));
+            Outcome outcome = race.outcomes.poll(delayMs(), TimeUnit.MILLISECONDS);
+            if (outcome != null) {
+                // answered (or failed) before the hedging delay
+                race.finish();
+                return outcome.get();
+            }
+            hedgesSent.incrementAndGet();
+            executor().execute(() -> race.run(1, () -> attempt.call(attempts[1])));
+            outcome = race.outcomes.take();
+            if (outcome.error != null) {
+                outcome = race.outcomes.take();
+            }
+            race.finish();
+            // abort the loser (a no-op if it has finished)
+            attempts[1 - outcome.index].cancel();
+            if (outcome.index == 1 && outcome.error == null) {
+                hedgesWon.incrementAndGet();
+            }
+            return outcome.get();
+        } catch (InterruptedException e) {
+            race.finish();
+            abort.run();
+            // preserve the interrupt for the caller
+            Thread.currentThread().interrupt();
+            CancellationException x = new CancellationException("interrupted while hedging");
+            x.initCause(e);
+            throw x;
+        } finally {
+            cancellation.removeAbort(abort);
+        }
+    }
+
+    private ExecutorService executor() {
+        ExecutorService x = executor;
+        if (x == null) {
+            synchronized (this) {
+                x = executor;
+                if (x == null) {
+                    AtomicInteger count = new AtomicInteger();
+                    x = Executors.newCachedThreadPool(r -> {
+                        Thread t = new Thread(r, "aws-lw-hedging-" + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+                    executor = x;
+                }
+            }
+        }
+        return x;
+    }
+
+    interface Attempt {
+        ResponseInputStream call(Cancellation cancellation) throws Exception;
+    }
+
+    private static final class Outcome {
+        final int index;
+        final ResponseInputStream response; // nullable
+        final Throwable error; // nullable
+
+        Outcome(int index, ResponseInputStream response, Throwable error) {
+            this.index = index;
+            this.response = response;
+            this.error = error;
+        }
+
+        ResponseInputStream get() throws Exception {
+            if (error == null) {
+                return response;
+            } else if (error instanceof Exception) {
+                throw (Exception) error;
+            } else {
+                throw (Error) error;
+            }
+        }
+    }
+
+    private final class Race {
+        final BlockingQueue<Outcome> outcomes = new LinkedBlockingQueue<>();
+        private boolean finished;
+
+        void run(int index, Callable<ResponseInputStream> callable) {
+            long start = System.nanoTime();
+            Outcome outcome;
+            try {
+                outcome = new Outcome(index, callable.call(), null);
+            } catch (Throwable e) {
+                outcome = new Outcome(index, null, e);
+            }
+            // failed and aborted attempts are recorded too (an aborted loser for as long
+            // as it ran) otherwise only the fast responses would be learned from and
+            // the delay would keep falling
+            recordLatency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            offer(outcome);
+        }
+
+        private synchronized void offer(Outcome outcome) {
+            if (finished) {
+                // lost the race
+                closeQuietly(outcome.response);
+            } else {
+                outcomes.add(outcome);
+            }
+        }
+
+        // closes any responses not taken by the caller
+        synchronized void finish() {
+            finished = true;
+            Outcome o;
+            while ((o = outcomes.poll()) != null) {
+                closeQuietly(o.response);
+            }
+        }
+    }
+
+    private static void closeQuietly(ResponseInputStream r) {
+        if (r != null) {
+            try {
+                r.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+}
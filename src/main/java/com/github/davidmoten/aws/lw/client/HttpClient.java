@@ -11,6 +11,18 @@ public interface HttpClient {
     ResponseInputStream request(URL endpointUrl, String httpMethod, Map<String, String> headers,
             byte[] requestBody, int connectTimeoutMs, int readTimeoutMs) throws IOException;
 
+    /**
+     * Makes the request, aborting it if {@code cancellation} is cancelled while it
+     * is in flight (see {@link Cancellation#addAbort(Runnable)}), which includes
+     * reading the response body until the response is closed. The default
+     * implementation can't abort and ignores {@code cancellation}.
+     */
+    default ResponseInputStream request(URL endpointUrl, String httpMethod, Map<String, String> headers,
+            byte[] requestBody, int connectTimeoutMs, int readTimeoutMs, Cancellation cancellation)
+            throws IOException {
+        return request(endpointUrl, httpMethod, headers, requestBody, connectTimeoutMs, readTimeoutMs);
+    }
+
     static HttpClient defaultClient() {
         return HttpClientDefault.INSTANCE;
     }
@@ -7,6 +7,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UncheckedIOException;
+import java.util.Optional;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -37,10 +38,22 @@ public final class Multipart {
         public Function<? super Request, ? extends Request> transform = x -> x;
         public int partSize = 5 * 1024 * 1024;
         public Retries<Void> retries;
+        private Optional<File> checkpoint = Optional.empty();
+        private boolean resume;
+        private boolean adaptive;
+        private int adaptiveMaxConcurrency = 8;
+        private int adaptiveMaxPartSize = 64 * 1024 * 1024;
+        private long sizeHint = -1;
+        private Optional<ChecksumAlgorithm> checksumAlgorithm = Optional.empty();
 
         Builder(Client s3) {
             this.s3 = s3;
-            this.retries = s3.retries().withValueShouldRetry(values -> false);
+            // each part request is already rate limited and charged to the retry
+            // quota by the client's own retries
+            this.retries = s3.retries() //
+                    .<Void>withValueShouldRetry(values -> false) //
+                    .withoutRateLimiter() //
+                    .withoutRetryQuota();
         }
 
         public Builder2 bucket(String bucket) {
@@ -138,6 +151,120 @@ public final class Multipart {
         }
 
 
+        /**
+         * Enables adaptive tuning of part size and the number of parts in flight. Part
+         * and throughput timings are measured as the upload proceeds: the part size
+         * (starting at {@link #partSize(int)}) grows while parts complete quickly and
+         * shrinks while they are slow, and the number of concurrent part uploads is
+         * moved up or down to maximize throughput. Writes to the stream block while
+         * the current concurrency limit is reached, so memory use is bounded by about
+         * {@code maxConcurrency * maxPartSize}. Defaults to at most 8 parts in flight
+         * and a maximum part size of 64MB. Cannot be combined with
+         * {@link #resume(File)} because part boundaries vary between attempts.
+         * 
+         * @return this
+         */
+        public Builder3 adaptive() {
+            b.adaptive = true;
+            return this;
+        }
+
+        /**
+         * As for {@link #adaptive()} with the given limits.
+         * 
+         * @param maxConcurrency maximum number of parts uploading at once
+         * @param maxPartSizeMb  maximum part size in MB
+         * @return this
+         */
+        public Builder3 adaptive(int maxConcurrency, int maxPartSizeMb) {
+            Preconditions.checkArgument(maxConcurrency >= 1, "maxConcurrency must be at least one");
+            Preconditions.checkArgument(maxPartSizeMb >= 5, "maxPartSizeMb must be at least 5");
+            b.adaptiveMaxConcurrency = maxConcurrency;
+            b.adaptiveMaxPartSize = maxPartSizeMb * 1024 * 1024;
+            return adaptive();
+        }
+
+        /**
+         * Sets the known or estimated total size of the upload. The part size is
+         * increased if necessary so that the upload fits within the S3 limit of 10,000
+         * parts. Set automatically when uploading a byte array or a file. Without a
+         * hint adaptive mode assumes the stream is at least as long again as what has
+         * been written so far.
+         * 
+         * @param bytes total size of the upload in bytes
+         * @return this
+         */
+        public Builder3 sizeHint(long bytes) {
+            Preconditions.checkArgument(bytes >= 0, "bytes cannot be negative");
+            b.sizeHint = bytes;
+            return this;
+        }
+
+        /**
+         * Requests end-to-end integrity checking with the given algorithm. The
+         * algorithm is declared with {@code x-amz-checksum-algorithm} when the upload
+         * is created, each part is sent with its checksum (calculated on the executor,
+         * not the thread writing to the stream) and S3 rejects a part whose bytes
+         * don't match. On completion the composite checksum returned by S3 is compared
+         * with the one calculated from the parts. This check is independent of request
+         * signing so also applies to {@link Request#unsignedPayload()} requests. A
+         * single {@code PUT} (small uploads) and {@link #copyFrom(String, String)} use
+         * the algorithm too.
+         * 
+         * @param algorithm checksum algorithm
+         * @return this
+         */
+        public Builder3 checksumAlgorithm(ChecksumAlgorithm algorithm) {
+            Preconditions.checkNotNull(algorithm, "algorithm cannot be null");
+            b.checksumAlgorithm = Optional.of(algorithm);
+            return this;
+        }
+
+        /**
+         * Records the uploadId and the completed parts of the upload in {@code file}
+         * so that the upload can be resumed with {@link #resume(File)} if this process
+         * fails part way through. The file is deleted when the upload completes or is
+         * aborted.
+         * 
+         * @param file checkpoint file
+         * @return this
+         */
+        public Builder3 checkpoint(File file) {
+            Preconditions.checkNotNull(file, "file cannot be null");
+            b.checkpoint = Optional.of(file);
+            return this;
+        }
+
+        /**
+         * As for {@link #checkpoint(File)} but if {@code file} was written by an
+         * earlier upload to the same bucket and key then that upload is resumed. The
+         * checkpoint is reconciled with the parts that S3 reports via ListParts and
+         * only the parts that are missing are uploaded before completion. The same
+         * bytes as the earlier attempt must be written to the stream (parts already
+         * uploaded are read but not sent, and sent again if their size or recorded
+         * checksum doesn't match). The part size must be the same as the earlier
+         * attempt's, otherwise the upload fails with {@link IllegalStateException}.
+         * If the earlier upload no longer exists then a new upload is started.
+         * 
+         * @param file checkpoint file
+         * @return this
+         */
+        public Builder3 resume(File file) {
+            checkpoint(file);
+            b.resume = true;
+            return this;
+        }
+
+        /**
+         * Sets a transform applied to the request that creates the multipart upload
+         * (for example to add {@code Content-Type} or metadata headers). If the
+         * whole upload is smaller than the part size then a single {@code PUT} of the
+         * object is made instead of a multipart upload and the transform is applied to
+         * that request.
+         * 
+         * @param transform transform applied to the create request
+         * @return this
+         */
         public Builder3 transformCreateRequest(Function<? super Request, ? extends Request> transform) {
             Preconditions.checkNotNull(transform, "transform cannot be null");
             b.transform = transform;
@@ -146,7 +273,7 @@ public final class Multipart {
 
         public void upload(byte[] bytes, int offset, int length) {
             Preconditions.checkNotNull(bytes, "bytes cannot be null");
-            try (OutputStream out = outputStream()) {
+            try (OutputStream out = outputStream(b.sizeHint >= 0 ? b.sizeHint : length)) {
                 out.write(bytes, offset, length);
             } catch (IOException e) {
                 throw new UncheckedIOException(e);
@@ -159,12 +286,17 @@ public final class Multipart {
 
         public void upload(File file) {
             Preconditions.checkNotNull(file, "file cannot be null");
-            upload(() -> new BufferedInputStream(new FileInputStream(file)));
+            upload(() -> new BufferedInputStream(new FileInputStream(file)),
+                    b.sizeHint >= 0 ? b.sizeHint : file.length());
         }
 
         public void upload(Callable<? extends InputStream> factory) {
+            upload(factory, b.sizeHint);
+        }
+
+        private void upload(Callable<? extends InputStream> factory, long sizeHint) {
             Preconditions.checkNotNull(factory, "factory cannot be null");
-            try (InputStream in = factory.call(); MultipartOutputStream out = outputStream()) {
+            try (InputStream in = factory.call(); MultipartOutputStream out = outputStream(sizeHint)) {
                 copy(in, out);
             } catch (IOException e) {
                 throw new UncheckedIOException(e);
@@ -173,12 +305,50 @@ public final class Multipart {
             }
         }
 
+        /**
+         * Copies the object {@code sourceKey} in {@code sourceBucket} to the bucket and
+         * key of this builder without the object bytes passing through this JVM. If
+         * the object is no bigger than 5GB (the S3 limit for CopyObject) then a single
+         * CopyObject request is made, otherwise a multipart upload is created (with
+         * the content type, other standard headers and user metadata of the source
+         * object) and the parts are copied on the executor with UploadPartCopy using
+         * {@code x-amz-copy-source-range}, at most 8 at a time. Parts are at least
+         * 100MB (or the part size if bigger) and are increased if necessary to stay
+         * within the S3 limit of 10,000 parts. An error document returned with a 200
+         * status code is retried like a 5xx. Retry settings, part timeout and the
+         * create request transform are used as for uploads.
+         * 
+         * @param sourceBucket bucket of the object to copy
+         * @param sourceKey    key of the object to copy
+         */
+        public void copyFrom(String sourceBucket, String sourceKey) {
+            Preconditions.checkNotNull(sourceBucket, "sourceBucket cannot be null");
+            Preconditions.checkNotNull(sourceKey, "sourceKey cannot be null");
+            MultipartCopy.copy(b.s3, sourceBucket, sourceKey, b.bucket, b.key, b.transform, executor(),
+                    b.timeoutMs, b.retries, b.partSize, b.checksumAlgorithm);
+        }
+
         public MultipartOutputStream outputStream() {
+            return outputStream(b.sizeHint);
+        }
+
+        private MultipartOutputStream outputStream(long sizeHint) {
+            Optional<MultipartTuner> tuner = b.adaptive //
+                    ? Optional.of(new MultipartTuner(b.partSize, Math.max(b.partSize, b.adaptiveMaxPartSize),
+                            b.adaptiveMaxConcurrency, sizeHint)) //
+                    : Optional.empty();
+            // stay within the maximum number of parts
+            int partSize = (int) Math.max(b.partSize, MultipartTuner.minimumPartSize(0, 0, sizeHint));
+            return new MultipartOutputStream(b.s3, b.bucket, b.key, b.transform, executor(), b.timeoutMs, b.retries,
+                    partSize, b.checkpoint.map(file -> new MultipartCheckpoint(file, b.bucket, b.key)), b.resume,
+                    tuner, b.checksumAlgorithm);
+        }
+
+        private ExecutorService executor() {
             if (b.executor == null) {
                 b.executor = Executors.newCachedThreadPool();
             }
-            return new MultipartOutputStream(b.s3, b.bucket, b.key, b.transform, b.executor, b.timeoutMs, b.retries,
-                    b.partSize);
+            return b.executor;
         }
     }
 
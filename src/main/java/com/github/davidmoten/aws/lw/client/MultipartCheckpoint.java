@@ -0,0 +1,165 @@
+package com.github.davidmoten.aws.lw.client;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import com.github.davidmoten.aws.lw.client.internal.util.Preconditions;
+import com.github.davidmoten.aws.lw.client.internal.util.Util;
+
+/**
+ * Records the progress of a multipart upload in a local file so that an upload
+ * interrupted by a process failure can be resumed. The file is append-only: a
+ * header naming the bucket, key, uploadId and part size followed by one line per
+ * completed part (its ETag and, if used, its checksum). A partially written
+ * last line (from a crash mid-write) is ignored when the file is read.
+ */
+final class MultipartCheckpoint {
+
+    private static final String HEADER = "aws-lw-multipart-checkpoint 2";
+
+    private final File file;
+    private final String bucket;
+    private final String key;
+
+    MultipartCheckpoint(File file, String bucket, String key) {
+        Preconditions.checkNotNull(file);
+        Preconditions.checkNotNull(bucket);
+        Preconditions.checkNotNull(key);
+        this.file = file;
+        this.bucket = bucket;
+        this.key = key;
+    }
+
+    /**
+     * Returns the uploadId, part size and the completed parts recorded in the
+     * checkpoint file if the file exists and refers to the same bucket and key.
+     *
+     * @param checksumAlgorithm algorithm of the recorded checksums, used to detect
+     *                          a checksum truncated by a torn write
+     * @return checkpoint state if present and matching
+     */
+    Optional<State> read(Optional<ChecksumAlgorithm> checksumAlgorithm) {
+        if (!file.exists()) {
+            return Optional.empty();
+        }
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (lines.size() < 5 || !HEADER.equals(lines.get(0))) {
+            return Optional.empty();
+        }
+        String b = value(lines.get(1), "bucket");
+        String k = value(lines.get(2), "key");
+        String uploadId = value(lines.get(3), "uploadId");
+        String ps = value(lines.get(4), "partSize");
+        if (!bucket.equals(b) || !key.equals(k) || uploadId == null || ps == null) {
+            return Optional.empty();
+        }
+        int partSize;
+        try {
+            partSize = Integer.parseInt(ps);
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+        Map<Integer, String> etags = new TreeMap<>();
+        Map<Integer, String> checksums = new TreeMap<>();
+        for (int i = 5; i < lines.size(); i++) {
+            String[] items = lines.get(i).split(" ");
+            // ignore a torn final line
+            if ((items.length == 3 || items.length == 4) && items[0].equals("part")) {
+                try {
+                    int partNumber = Integer.parseInt(items[1]);
+                    if (items.length == 4) {
+                        String checksum = decode(items[3]);
+                        if (checksumAlgorithm.isPresent()
+                                && checksum.length() < checksumAlgorithm.get().encodedLength()) {
+                            // torn, the part will be uploaded again
+                            continue;
+                        }
+                        checksums.put(partNumber, checksum);
+                    }
+                    etags.put(partNumber, decode(items[2]));
+                } catch (NumberFormatException e) {
+                    // ignore
+                }
+            }
+        }
+        return Optional.of(new State(uploadId, partSize, etags, checksums));
+    }
+
+    synchronized void start(String uploadId, int partSize) {
+        Preconditions.checkNotNull(uploadId);
+        write(HEADER + "\n" //
+                + "bucket " + encode(bucket) + "\n" //
+                + "key " + encode(key) + "\n" //
+                + "uploadId " + encode(uploadId) + "\n" //
+                + "partSize " + partSize + "\n", false);
+    }
+
+    synchronized void partCompleted(int partNumber, String etag, Optional<String> checksum) {
+        write("part " + partNumber + " " + encode(etag) + checksum.map(c -> " " + encode(c)).orElse("") + "\n",
+                true);
+    }
+
+    void delete() {
+        file.delete();
+    }
+
+    private void write(String s, boolean append) {
+        try (OutputStream out = new FileOutputStream(file, append)) {
+            out.write(s.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String value(String line, String name) {
+        if (line.startsWith(name + " ")) {
+            return decode(line.substring(name.length() + 1));
+        } else {
+            return null;
+        }
+    }
+
+    private static String encode(String s) {
+        return Util.urlEncode(s, false);
+    }
+
+    private static String decode(String s) {
+        try {
+            return URLDecoder.decode(s, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    static final class State {
+        final String uploadId;
+        // parts other than the last are this size, resuming needs the same boundaries
+        final int partSize;
+        final Map<Integer, String> etags;
+        final Map<Integer, String> checksums;
+
+        State(String uploadId, int partSize, Map<Integer, String> etags, Map<Integer, String> checksums) {
+            this.uploadId = uploadId;
+            this.partSize = partSize;
+            this.etags = Collections.unmodifiableMap(etags);
+            this.checksums = Collections.unmodifiableMap(checksums);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.github.davidmoten.aws.lw.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.github.davidmoten.aws.lw.client.MultipartHelper.Part;
+import com.github.davidmoten.aws.lw.client.internal.Retries;
+import com.github.davidmoten.aws.lw.client.internal.util.Util;
+import com.github.davidmoten.aws.lw.client.xml.XmlElement;
+
+/**
+ * Server-side copy of an S3 object using UploadPartCopy so that no object bytes
+ * pass through this JVM. Parts are copied concurrently on the given executor
+ * with a bounded number in flight.
+ */
+final class MultipartCopy {
+
+    // S3 limit
+    private static final int MAX_PARTS = 10000;
+
+    // S3 limit for CopyObject (and for an UploadPartCopy part)
+    private static final long MAX_COPY_OBJECT_SIZE = 5L * 1024 * 1024 * 1024;
+
+    // no bytes are buffered locally so parts can be much bigger than for uploads
+    private static final int MIN_PART_SIZE = 100 * 1024 * 1024;
+
+    private static final int MAX_PARTS_IN_FLIGHT = 8;
+
+    // object headers that CopyObject keeps but a new multipart upload must be given
+    private static final List<String> COPIED_HEADERS = Arrays.asList( //
+            "Cache-Control", //
+            "Content-Disposition", //
+            "Content-Encoding", //
+            "Content-Language", //
+            "Content-Type", //
+            "Expires");
+
+    private MultipartCopy() {
+        // prevent instantiation
+    }
+
+    static void copy(Client s3, String sourceBucket, String sourceKey, String bucket, String key,
+            Function<? super Request, ? extends Request> transformCreate, ExecutorService executor,
+            long partTimeoutMs, Retries<Void> retries, int partSize, Optional<ChecksumAlgorithm> checksumAlgorithm) {
+        copy(s3, sourceBucket, sourceKey, bucket, key, transformCreate, executor, partTimeoutMs, retries,
+                Math.max(partSize, MIN_PART_SIZE), checksumAlgorithm, MAX_COPY_OBJECT_SIZE, MAX_PARTS_IN_FLIGHT);
+    }
+
+    // VisibleForTesting
+    static void copy(Client s3, String sourceBucket, String sourceKey, String bucket, String key,
+            Function<? super Request, ? extends Request> transformCreate, ExecutorService executor,
+            long partTimeoutMs, Retries<Void> retries, int partSize, Optional<ChecksumAlgorithm> checksumAlgorithm,
+            long maxCopyObjectSize, int maxPartsInFlight) {
+        Response head = retries.call(() -> s3 //
+                .path(sourceBucket, sourceKey) //
+                .method(HttpMethod.HEAD) //
+                .responseExpectStatusCode(200), //
+                x -> false);
+        long size = head //
+                .firstHeader("Content-Length") //
+                .map(Long::parseLong) //
+                .orElseThrow(() -> new IllegalStateException("Content-Length not returned for source object"));
+        String copySource = copySource(sourceBucket, sourceKey);
+        if (size <= maxCopyObjectSize) {
+            // a single CopyObject request (which also copies the metadata)
+            checkNotError(retries.call(() -> {
+                Request request = s3 //
+                        .path(bucket, key) //
+                        .method(HttpMethod.PUT) //
+                        .header("x-amz-copy-source", copySource);
+                if (checksumAlgorithm.isPresent()) {
+                    request = request.header("x-amz-checksum-algorithm", checksumAlgorithm.get().name());
+                }
+                return transformCreate.apply(request) //
+                        .readTimeout(partTimeoutMs, TimeUnit.MILLISECONDS) //
+                        .responseAsXml();
+            }, MultipartCopy::isError));
+            return;
+        }
+        long ps = partSize(size, partSize);
+        String uploadId = MultipartHelper.startUpload(s3, bucket, key,
+                request -> transformCreate.apply(withObjectHeaders(request, head)), checksumAlgorithm);
+        List<Future<Part>> futures = new ArrayList<>();
+        List<Part> parts = new ArrayList<>();
+        try {
+            int part = 1;
+            for (long start = 0; start < size; start += ps) {
+                if (futures.size() - parts.size() >= maxPartsInFlight) {
+                    // sliding window, wait for the oldest part before starting another
+                    parts.add(futures.get(parts.size()).get(partTimeoutMs, TimeUnit.MILLISECONDS));
+                }
+                int partNumber = part;
+                String range = "bytes=" + start + "-" + (Math.min(size, start + ps) - 1);
+                futures.add(executor.submit(() -> copyPart(s3, bucket, key, uploadId, partNumber, copySource, range,
+                        partTimeoutMs, retries, checksumAlgorithm)));
+                part++;
+            }
+            while (parts.size() < futures.size()) {
+                parts.add(futures.get(parts.size()).get(partTimeoutMs, TimeUnit.MILLISECONDS));
+            }
+        } catch (Throwable e) {
+            futures.forEach(f -> f.cancel(true));
+            MultipartHelper.abortUpload(s3, bucket, key, uploadId);
+            throw new RuntimeException(e);
+        }
+        MultipartHelper.completeUpload(s3, bucket, key, uploadId, parts, checksumAlgorithm, retries);
+    }
+
+    private static Part copyPart(Client s3, String bucket, String key, String uploadId, int partNumber,
+            String copySource, String range, long partTimeoutMs, Retries<Void> retries,
+            Optional<ChecksumAlgorithm> checksumAlgorithm) {
+        XmlElement x = checkNotError(retries.call(() -> s3 //
+                .path(bucket, key) //
+                .method(HttpMethod.PUT) //
+                .query("partNumber", "" + partNumber) //
+                .query("uploadId", uploadId) //
+                .header("x-amz-copy-source", copySource) //
+                .header("x-amz-copy-source-range", range) //
+                .readTimeout(partTimeoutMs, TimeUnit.MILLISECONDS) //
+                .responseAsXml(), //
+                MultipartCopy::isError));
+        // S3 includes the part checksum if an algorithm was given at creation
+        Optional<String> checksum = checksumAlgorithm //
+                .map(alg -> alg.xmlElementName()) //
+                .filter(name -> !x.childrenWithName(name).isEmpty()) //
+                .map(name -> x.content(name));
+        return new Part(x.content("ETag").replace("\"", ""), checksum);
+    }
+
+    // VisibleForTesting
+    static Request withObjectHeaders(Request request, Response head) {
+        for (String name : COPIED_HEADERS) {
+            Optional<String> value = head.firstHeader(name);
+            if (value.isPresent()) {
+                request = request.header(name, value.get());
+            }
+        }
+        for (Entry<String, String> entry : head.metadata().entrySet()) {
+            request = request.metadata(entry.getKey(), entry.getValue());
+        }
+        return request;
+    }
+
+    // VisibleForTesting
+    static long partSize(long size, int partSize) {
+        // ensure we don't exceed the maximum number of parts
+        return Math.max(partSize, (size + MAX_PARTS - 1) / MAX_PARTS);
+    }
+
+    // VisibleForTesting
+    static String copySource(String bucket, String key) {
+        return "/" + Util.urlEncode(bucket, false) + "/" + Util.urlEncode(key, true);
+    }
+
+    // CopyObject and UploadPartCopy can return an error document with a 200 status
+    // code, it is a server side failure (for example InternalError or SlowDown)
+    // so is retried like a 5xx
+    private static boolean isError(XmlElement x) {
+        return "Error".equals(x.name());
+    }
+
+    private static XmlElement checkNotError(XmlElement x) {
+        if (isError(x)) {
+            throw new ServiceException(200, x.toString());
+        }
+        return x;
+    }
+}
@@ -0,0 +1,108 @@
+package com.github.davidmoten.aws.lw.client;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import com.github.davidmoten.aws.lw.client.internal.Retries;
+import com.github.davidmoten.aws.lw.client.xml.XmlElement;
+import com.github.davidmoten.aws.lw.client.xml.builder.Xml;
+
+final class MultipartHelper {
+
+    private MultipartHelper() {
+        // prevent instantiation
+    }
+
+    static String startUpload(Client s3, String bucket, String key,
+            Function<? super Request, ? extends Request> transformCreate,
+            Optional<ChecksumAlgorithm> checksumAlgorithm) {
+        Request request = s3 //
+                .path(bucket, key) //
+                .query("uploads") //
+                .method(HttpMethod.POST);
+        if (checksumAlgorithm.isPresent()) {
+            request = request.header("x-amz-checksum-algorithm", checksumAlgorithm.get().name());
+        }
+        return transformCreate.apply(request) //
+                .responseAsXml() //
+                .content("UploadId");
+    }
+
+    static void completeUpload(Client s3, String bucket, String key, String uploadId, List<Part> parts,
+            Optional<ChecksumAlgorithm> checksumAlgorithm, Retries<Void> retries) {
+        Xml xml = Xml //
+                .create("CompleteMultipartUpload") //
+                .attribute("xmlns", "http:s3.amazonaws.com/doc/2006-03-01/");
+        for (int i = 0; i < parts.size(); i++) {
+            Part part = parts.get(i);
+            xml = xml //
+                    .element("Part") //
+                    .element("ETag").content(part.etag) //
+                    .up();
+            if (checksumAlgorithm.isPresent() && part.checksum.isPresent()) {
+                xml = xml //
+                        .element(checksumAlgorithm.get().xmlElementName()).content(part.checksum.get()) //
+                        .up();
+            }
+            xml = xml //
+                    .element("PartNumber").content(String.valueOf(i + 1)) //
+                    .up().up();
+        }
+        Xml xmlFinal = xml.compact();
+        retries.call(() -> {
+            Request request = s3.path(bucket, key) //
+                    .method(HttpMethod.POST) //
+                    .query("uploadId", uploadId) //
+                    .header("Content-Type", "application/xml") //
+                    .unsignedPayload() //
+                    .requestBody(xmlFinal);
+            if (checksumAlgorithm.isPresent()) {
+                checkCompositeChecksum(request.responseAsXml(), checksumAlgorithm.get(), parts);
+            } else {
+                request.execute();
+            }
+            return null;
+        }, x -> false);
+    }
+
+    private static void checkCompositeChecksum(XmlElement x, ChecksumAlgorithm algorithm, List<Part> parts) {
+        // CompleteMultipartUpload can return an error document with a 200 status
+        // code
+        if ("Error".equals(x.name())) {
+            throw new ServiceException(200, x.toString());
+        }
+        if (!x.childrenWithName(algorithm.xmlElementName()).isEmpty()
+                && parts.stream().allMatch(p -> p.checksum.isPresent())) {
+            String expected = algorithm.composite(parts //
+                    .stream() //
+                    .map(p -> p.checksum.get()) //
+                    .collect(Collectors.toList()));
+            String actual = x.content(algorithm.xmlElementName());
+            if (!expected.equals(actual)) {
+                throw new IllegalStateException(
+                        "composite checksum mismatch, expected " + expected + " but S3 returned " + actual);
+            }
+        }
+    }
+
+    static void abortUpload(Client s3, String bucket, String key, String uploadId) {
+        s3 //
+                .path(bucket, key) //
+                .query("uploadId", uploadId) //
+                .method(HttpMethod.DELETE) //
+                .execute();
+    }
+
+    static final class Part {
+        final String etag;
+        // base64 encoded, present if a checksum algorithm was specified
+        final Optional<String> checksum;
+
+        Part(String etag, Optional<String> checksum) {
+            this.etag = etag;
+            this.checksum = checksum;
+        }
+    }
+}
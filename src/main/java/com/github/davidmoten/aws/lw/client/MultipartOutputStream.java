@@ -2,19 +2,27 @@ package com.github.davidmoten.aws.lw.client;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import com.github.davidmoten.aws.lw.client.MultipartHelper.Part;
 import com.github.davidmoten.aws.lw.client.internal.Retries;
 import com.github.davidmoten.aws.lw.client.internal.util.Preconditions;
-import com.github.davidmoten.aws.lw.client.xml.builder.Xml;
+import com.github.davidmoten.aws.lw.client.xml.XmlElement;
 
 // NotThreadSafe
 public final class MultipartOutputStream extends OutputStream {
@@ -22,19 +30,39 @@ public final class MultipartOutputStream extends OutputStream {
     private final Client s3;
     private final String bucket;
     private final String key;
-    private final String uploadId;
+    private final Function<? super Request, ? extends Request> transformCreate;
+    // null until the multipart upload is started (lazily, when the first part is submitted)
+    private String uploadId;
     private final ExecutorService executor;
     private final ByteArrayOutputStream bytes;
     private final byte[] singleByte = new byte[1]; // for reuse in write(int) method
     private final long partTimeoutMs;
     private final Retries<Void> retries;
-    private final int partSize;
-    private final List<Future<String>> futures = new CopyOnWriteArrayList<>();
+    // size of the part being accumulated (varies if a tuner is present)
+    private int partSize;
+    private final List<Future<Part>> futures = new CopyOnWriteArrayList<>();
+    private final Optional<MultipartCheckpoint> checkpoint;
+    // parts already uploaded (by a previous process) that don't need to be sent again
+    private final Map<Integer, ResumedPart> resumedParts;
     private int nextPart = 1;
+    private final Optional<MultipartTuner> tuner;
+    private long bytesSubmitted;
+    // guards inFlight, parts submitted to the executor that have not yet finished
+    private final Object inFlightLock = new Object();
+    private int inFlight;
+    private final Optional<ChecksumAlgorithm> checksumAlgorithm;
 
     MultipartOutputStream(Client s3, String bucket, String key,
             Function<? super Request, ? extends Request> transformCreate, ExecutorService executor,
             long partTimeoutMs, Retries<Void> retries, int partSize) {
+        this(s3, bucket, key, transformCreate, executor, partTimeoutMs, retries, partSize, Optional.empty(),
+                false, Optional.empty(), Optional.empty());
+    }
+
+    MultipartOutputStream(Client s3, String bucket, String key,
+            Function<? super Request, ? extends Request> transformCreate, ExecutorService executor,
+            long partTimeoutMs, Retries<Void> retries, int partSize, Optional<MultipartCheckpoint> checkpoint,
+            boolean resume, Optional<MultipartTuner> tuner, Optional<ChecksumAlgorithm> checksumAlgorithm) {
         Preconditions.checkNotNull(s3);
         Preconditions.checkNotNull(bucket);
         Preconditions.checkNotNull(key);
@@ -43,29 +71,134 @@ public final class MultipartOutputStream extends OutputStream {
         Preconditions.checkArgument(partTimeoutMs > 0);
         Preconditions.checkNotNull(retries);
         Preconditions.checkArgument(partSize >= 5 * 1024 * 1024);
+        Preconditions.checkNotNull(checkpoint);
+        Preconditions.checkNotNull(tuner);
+        Preconditions.checkNotNull(checksumAlgorithm);
+        Preconditions.checkArgument(!(resume && tuner.isPresent()),
+                "cannot resume with adaptive part sizes because part boundaries must be the same as the earlier attempt");
         this.s3 = s3;
         this.bucket = bucket;
         this.key = key;
+        this.transformCreate = transformCreate;
         this.executor = executor;
         this.partTimeoutMs = partTimeoutMs;
         this.retries = retries;
         this.partSize = partSize;
         this.bytes = new ByteArrayOutputStream();
-        this.uploadId = transformCreate.apply(s3 //
-                .path(bucket, key) //
-                .query("uploads") //
-                .method(HttpMethod.POST)) //
-                .responseAsXml() //
-                .content("UploadId");
+        this.checkpoint = checkpoint;
+        this.tuner = tuner;
+        this.checksumAlgorithm = checksumAlgorithm;
+        this.partSize = tuner.map(t -> t.nextPartSize(0, 0)).orElse(partSize);
+        Optional<MultipartCheckpoint.State> state = resume //
+                ? checkpoint.flatMap(c -> c.read(checksumAlgorithm)) //
+                : Optional.empty();
+        Optional<Map<Integer, UploadedPart>> uploaded = state
+                .flatMap(st -> listParts(s3, bucket, key, st.uploadId));
+        if (uploaded.isPresent()) {
+            if (state.get().partSize != this.partSize) {
+                // part N would cover a different byte range and corrupt the object
+                throw new IllegalStateException("cannot resume upload " + state.get().uploadId
+                        + " because its part size " + state.get().partSize + " is not the part size "
+                        + this.partSize);
+            }
+            this.uploadId = state.get().uploadId;
+            Map<Integer, ResumedPart> parts = new HashMap<>();
+            Map<Integer, String> checksums = state.get().checksums;
+            reconcile(state.get().etags, uploaded.get(), this.partSize).forEach((part, p) -> {
+                // a part without a recorded checksum is sent again if one is needed
+                if (!checksumAlgorithm.isPresent() || checksums.containsKey(part)) {
+                    parts.put(part, new ResumedPart(
+                            new Part(p.etag, checksumAlgorithm.map(alg -> checksums.get(part))), p.size));
+                }
+            });
+            this.resumedParts = parts;
+        } else {
+            this.resumedParts = Collections.emptyMap();
+        }
     }
 
+    private void startUploadIfRequired() {
+        if (uploadId == null) {
+            uploadId = MultipartHelper.startUpload(s3, bucket, key, transformCreate, checksumAlgorithm);
+            checkpoint.ifPresent(c -> c.start(uploadId, partSize));
+        }
+    }
+
+    /**
+     * Cancels the parts in flight, aborts the multipart upload on S3 and deletes
+     * the checkpoint file (if any). A failed part only aborts the upload by itself
+     * when no checkpoint is configured, otherwise the upload and the checkpoint are
+     * kept so that the upload can be resumed and this method must be called to
+     * discard them.
+     */
     public void abort() {
+        cancelParts();
+        if (uploadId != null) {
+            MultipartHelper.abortUpload(s3, bucket, key, uploadId);
+        }
+        checkpoint.ifPresent(c -> c.delete());
+    }
+
+    private void cancelParts() {
         futures.forEach(f -> f.cancel(true));
-        s3 //
-                .path(bucket, key) //
-                .query("uploadId", uploadId) //
-                .method(HttpMethod.DELETE) //
-                .execute();
+    }
+
+    /**
+     * Returns the parts (partNumber to ETag and size) that S3 holds for the given
+     * upload or empty if the upload no longer exists.
+     */
+    // VisibleForTesting
+    static Optional<Map<Integer, UploadedPart>> listParts(Client s3, String bucket, String key,
+            String uploadId) {
+        Map<Integer, UploadedPart> parts = new HashMap<>();
+        Optional<String> marker = Optional.empty();
+        while (true) {
+            Request request = s3 //
+                    .path(bucket, key) //
+                    .query("uploadId", uploadId);
+            if (marker.isPresent()) {
+                request = request.query("part-number-marker", marker.get());
+            }
+            XmlElement x;
+            try {
+                x = request.responseAsXml();
+            } catch (ServiceException e) {
+                if (e.statusCode() == 404) {
+                    // NoSuchUpload
+                    return Optional.empty();
+                } else {
+                    throw e;
+                }
+            }
+            for (XmlElement part : x.childrenWithName("Part")) {
+                parts.put(Integer.parseInt(part.content("PartNumber")), new UploadedPart(
+                        part.content("ETag").replace("\"", ""), Long.parseLong(part.content("Size"))));
+            }
+            if (x.childrenWithName("IsTruncated").stream().anyMatch(y -> "true".equals(y.content()))) {
+                marker = Optional.of(x.content("NextPartNumberMarker"));
+            } else {
+                return Optional.of(parts);
+            }
+        }
+    }
+
+    /**
+     * Returns those parts recorded in the checkpoint that S3 also holds with the
+     * same ETag and a size of {@code partSize} (or less for the last part).
+     */
+    // VisibleForTesting
+    static Map<Integer, UploadedPart> reconcile(Map<Integer, String> checkpointed,
+            Map<Integer, UploadedPart> uploaded, int partSize) {
+        int lastPart = uploaded.keySet().stream().mapToInt(x -> x).max().orElse(0);
+        Map<Integer, UploadedPart> m = new HashMap<>();
+        checkpointed.forEach((part, etag) -> {
+            UploadedPart p = uploaded.get(part);
+            if (p != null && etag.equals(p.etag)
+                    && (p.size == partSize || (part == lastPart && p.size < partSize))) {
+                m.put(part, p);
+            }
+        });
+        return m;
     }
 
     @Override
@@ -87,24 +220,106 @@ public final class MultipartOutputStream extends OutputStream {
         write(b, 0, b.length);
     }
 
-    private void submitPart() {
+    private void submitPart() throws IOException {
+        startUploadIfRequired();
         int part = nextPart;
         nextPart++;
         byte[] body = bytes.toByteArray();
         bytes.reset();
-        Future<String> future = executor.submit(() -> retry(() -> s3 //
+        bytesSubmitted += body.length;
+        if (tuner.isPresent()) {
+            partSize = tuner.get().nextPartSize(bytesSubmitted, part);
+        }
+        ResumedPart resumed = resumedParts.get(part);
+        if (resumed != null && isSameAs(resumed, body)) {
+            futures.add(CompletableFuture.completedFuture(resumed.part));
+            return;
+        }
+        if (tuner.isPresent()) {
+            awaitCapacity();
+        }
+        Future<Part> future;
+        try {
+            future = executor.submit(() -> {
+                if (!tuner.isPresent()) {
+                    return uploadPart(part, body);
+                }
+                long start = s3.clock().time();
+                try {
+                    Part p = uploadPart(part, body);
+                    long now = s3.clock().time();
+                    tuner.get().partCompleted(body.length, now - start, now);
+                    return p;
+                } finally {
+                    releaseCapacity();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            if (tuner.isPresent()) {
+                // the task will never run to release its slot
+                releaseCapacity();
+            }
+            throw e;
+        }
+        futures.add(future);
+    }
+
+    // a resumed part is only trusted if it holds the bytes just written
+    private boolean isSameAs(ResumedPart resumed, byte[] body) {
+        if (resumed.size != body.length) {
+            return false;
+        }
+        return !checksumAlgorithm.isPresent()
+                || checksumAlgorithm.get().checksum(body).equals(resumed.part.checksum.get());
+    }
+
+    // blocks the writer while the tuner's limit of parts are in flight so that
+    // memory use is bounded by roughly concurrency * partSize
+    private void awaitCapacity() throws IOException {
+        synchronized (inFlightLock) {
+            while (inFlight >= tuner.get().concurrency()) {
+                try {
+                    inFlightLock.wait();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException("interrupted while waiting for a part upload to complete");
+                }
+            }
+            inFlight++;
+        }
+    }
+
+    private void releaseCapacity() {
+        synchronized (inFlightLock) {
+            inFlight--;
+            inFlightLock.notifyAll();
+        }
+    }
+
+    // runs on the executor so checksum calculation doesn't hold up the writer
+    private Part uploadPart(int part, byte[] body) {
+        Optional<String> checksum = checksumAlgorithm.map(alg -> alg.checksum(body));
+        String etag = retry(() -> withChecksum(s3 //
                 .path(bucket, key) //
                 .method(HttpMethod.PUT) //
                 .query("partNumber", "" + part) //
                 .query("uploadId", uploadId) //
-                .requestBody(body) //
+                .requestBody(body), checksum) //
                 .readTimeout(partTimeoutMs, TimeUnit.MILLISECONDS) //
                 .responseExpectStatusCode(200) //
                 .firstHeader("ETag") //
                 .get() //
                 .replace("\"", ""), //
-                "on part " + part));
-        futures.add(future);
+                "on part " + part);
+        checkpoint.ifPresent(c -> c.partCompleted(part, etag, checksum));
+        return new Part(etag, checksum);
+    }
+
+    private Request withChecksum(Request request, Optional<String> checksum) {
+        if (checksum.isPresent()) {
+            return request.header(checksumAlgorithm.get().headerName(), checksum.get());
+        } else {
+            return request;
+        }
     }
 
     private <T> T retry(Callable<T> callable, String description) {
@@ -114,44 +329,49 @@ public final class MultipartOutputStream extends OutputStream {
 
     @Override
     public void close() throws IOException {
+        if (uploadId == null) {
+            // no part has been submitted so everything fits in one request and we can
+            // avoid the multipart create and complete round trips
+            putObject(bytes.toByteArray());
+            checkpoint.ifPresent(c -> c.delete());
+            return;
+        }
         // submit whatever's left
         if (bytes.size() > 0) {
             submitPart();
         }
-        List<String> etags = futures //
+        List<Part> parts = futures //
                 .stream() //
                 .map(future -> getResult(future)) //
                 .collect(Collectors.toList());
 
-        Xml xml = Xml //
-                .create("CompleteMultipartUpload") //
-                .attribute("xmlns", "http:s3.amazonaws.com/doc/2006-03-01/");
-        for (int i = 0; i < etags.size(); i++) {
-            xml = xml //
-                    .element("Part") //
-                    .element("ETag").content(etags.get(i)) //
-                    .up() //
-                    .element("PartNumber").content(String.valueOf(i + 1)) //
-                    .up().up();
-        }
-        String xmlFinal = xml.toString();
+        MultipartHelper.completeUpload(s3, bucket, key, uploadId, parts, checksumAlgorithm, retries);
+        checkpoint.ifPresent(c -> c.delete());
+    }
+
+    private void putObject(byte[] body) {
+        Optional<String> checksum = checksumAlgorithm.map(alg -> alg.checksum(body));
         retry(() -> {
-            s3.path(bucket, key) //
-                    .method(HttpMethod.POST) //
-                    .query("uploadId", uploadId) //
-                    .header("Content-Type", "application/xml") //
-                    .unsignedPayload() //
-                    .requestBody(xmlFinal) //
+            transformCreate.apply(withChecksum(s3 //
+                    .path(bucket, key) //
+                    .method(HttpMethod.PUT) //
+                    .requestBody(body), checksum)) //
+                    .readTimeout(partTimeoutMs, TimeUnit.MILLISECONDS) //
                     .execute();
             return null;
-        }, "while completing multipart upload");
+        }, "while putting object");
     }
 
-    private String getResult(Future<String> future) {
+    private Part getResult(Future<Part> future) {
         try {
             return future.get(partTimeoutMs, TimeUnit.MILLISECONDS);
         } catch (Throwable e) {
-            abort();
+            if (checkpoint.isPresent()) {
+                // keep the upload and the checkpoint for a resume
+                cancelParts();
+            } else {
+                abort();
+            }
             throw new RuntimeException(e);
         }
     }
@@ -161,4 +381,25 @@ public final class MultipartOutputStream extends OutputStream {
         singleByte[0] = (byte) b;
         write(singleByte, 0, 1);
     }
+
+    // VisibleForTesting
+    static final class UploadedPart {
+        final String etag;
+        final long size;
+
+        UploadedPart(String etag, long size) {
+            this.etag = etag;
+            this.size = size;
+        }
+    }
+
+    private static final class ResumedPart {
+        final Part part;
+        final long size;
+
+        ResumedPart(Part part, long size) {
+            this.part = part;
+            this.size = size;
+        }
+    }
 }
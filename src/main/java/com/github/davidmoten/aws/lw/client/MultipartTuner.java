@@ -0,0 +1,119 @@
+package com.github.davidmoten.aws.lw.client;
+
+import com.github.davidmoten.aws.lw.client.internal.util.Preconditions;
+
+/**
+ * Chooses the size of the next part and the number of parts allowed in flight
+ * for a multipart upload based on measurements of completed parts.
+ *
+ * <p>
+ * Part size is doubled while parts complete faster than
+ * {@link #TARGET_MIN_PART_DURATION_MS} (request overhead dominates) and halved
+ * while they take longer than {@link #TARGET_MAX_PART_DURATION_MS} (a retry
+ * would be expensive). Concurrency is tuned by hill-climbing: after each window
+ * of completed parts the aggregate throughput is compared with the previous
+ * window and concurrency keeps moving in the same direction while throughput
+ * improves and reverses when it degrades. The part size never drops below what
+ * is needed to fit the (known or estimated) total size in S3's 10,000 part
+ * limit.
+ */
+final class MultipartTuner {
+
+    static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+    static final int MAX_PARTS = 10000;
+    static final long TARGET_MIN_PART_DURATION_MS = 2000;
+    static final long TARGET_MAX_PART_DURATION_MS = 10000;
+    private static final double SMOOTHING = 0.5;
+    private static final double THROUGHPUT_TOLERANCE = 0.05;
+
+    private final int maxPartSize;
+    private final int maxConcurrency;
+    private final long sizeHint; // negative if unknown
+
+    private int partSize;
+    private int concurrency;
+
+    // smoothed duration of a part upload
+    private double partDurationMs = -1;
+
+    // throughput measurement window
+    private long windowStartMs = -1;
+    private long windowBytes;
+    private int windowParts;
+    private double lastThroughput = -1;
+    private int direction = 1;
+
+    MultipartTuner(int initialPartSize, int maxPartSize, int maxConcurrency, long sizeHint) {
+        Preconditions.checkArgument(initialPartSize >= MIN_PART_SIZE, "initialPartSize too small");
+        Preconditions.checkArgument(maxPartSize >= initialPartSize, "maxPartSize must be >= initialPartSize");
+        Preconditions.checkArgument(maxConcurrency >= 1, "maxConcurrency must be at least 1");
+        this.maxPartSize = maxPartSize;
+        this.maxConcurrency = maxConcurrency;
+        this.sizeHint = sizeHint;
+        this.partSize = initialPartSize;
+        this.concurrency = Math.min(2, maxConcurrency);
+    }
+
+    synchronized int concurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Returns the size to use for the next part.
+     *
+     * @param bytesSubmitted total bytes of the parts submitted so far
+     * @param partsSubmitted number of parts submitted so far
+     * @return next part size in bytes
+     */
+    synchronized int nextPartSize(long bytesSubmitted, int partsSubmitted) {
+        long size = partSize;
+        if (partDurationMs >= 0) {
+            if (partDurationMs < TARGET_MIN_PART_DURATION_MS) {
+                size = size * 2;
+            } else if (partDurationMs > TARGET_MAX_PART_DURATION_MS) {
+                size = size / 2;
+            }
+        }
+        size = Math.max(MIN_PART_SIZE, Math.min(maxPartSize, size));
+        size = Math.max(size, minimumPartSize(bytesSubmitted, partsSubmitted, sizeHint));
+        partSize = (int) Math.min(Integer.MAX_VALUE, size);
+        return partSize;
+    }
+
+    // VisibleForTesting
+    static long minimumPartSize(long bytesSubmitted, int partsSubmitted, long sizeHint) {
+        // if the total size is unknown assume the stream will be at least as big again
+        long total = sizeHint >= 0 ? Math.max(sizeHint, bytesSubmitted) : 2 * bytesSubmitted;
+        long remainingBytes = total - bytesSubmitted;
+        long remainingParts = Math.max(1, MAX_PARTS - partsSubmitted);
+        return (remainingBytes + remainingParts - 1) / remainingParts;
+    }
+
+    synchronized void partCompleted(long bytes, long durationMs, long nowMs) {
+        if (partDurationMs < 0) {
+            partDurationMs = durationMs;
+        } else {
+            partDurationMs = SMOOTHING * durationMs + (1 - SMOOTHING) * partDurationMs;
+        }
+        if (windowStartMs < 0) {
+            // the window starts when the first part started
+            windowStartMs = nowMs - durationMs;
+        }
+        windowBytes += bytes;
+        windowParts++;
+        if (windowParts >= concurrency) {
+            long elapsedMs = Math.max(1, nowMs - windowStartMs);
+            double throughput = (double) windowBytes / elapsedMs;
+            if (lastThroughput >= 0 && throughput < lastThroughput * (1 - THROUGHPUT_TOLERANCE)) {
+                direction = -direction;
+            }
+            if (lastThroughput < 0 || Math.abs(throughput - lastThroughput) > lastThroughput * THROUGHPUT_TOLERANCE) {
+                concurrency = Math.max(1, Math.min(maxConcurrency, concurrency + direction));
+            }
+            lastThroughput = throughput;
+            windowStartMs = nowMs;
+            windowBytes = 0;
+            windowParts = 0;
+        }
+    }
+}
@@ -1,5 +1,12 @@
 package com.github.davidmoten.aws.lw.client;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -7,13 +14,21 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import com.github.davidmoten.aws.lw.client.internal.CircuitBreaker;
+import com.github.davidmoten.aws.lw.client.internal.CircuitBreakers;
 import com.github.davidmoten.aws.lw.client.internal.Retries;
 import com.github.davidmoten.aws.lw.client.internal.util.Preconditions;
 import com.github.davidmoten.aws.lw.client.internal.util.Util;
+import com.github.davidmoten.aws.lw.client.json.JsonReader;
 import com.github.davidmoten.aws.lw.client.xml.XmlElement;
+import com.github.davidmoten.aws.lw.client.xml.XmlEventReader;
+import com.github.davidmoten.aws.lw.client.xml.builder.Xml;
 
 public final class Request {
 
@@ -25,6 +40,9 @@ public final class Request {
     private byte[] requestBody;
     private int connectTimeoutMs;
     private int readTimeoutMs;
+    private long deadlineMs;
+    private HedgingPolicy hedging; // nullable
+    private Cancellation cancellation; // nullable
     private int attributeNumber = 1;
     private Retries<ResponseInputStream> retries;
     private String attributePrefix = "Attribute";
@@ -39,6 +57,8 @@ public final class Request {
         this.region = client.region();
         this.connectTimeoutMs = client.connectTimeoutMs();
         this.readTimeoutMs = client.readTimeoutMs();
+        this.deadlineMs = client.deadlineMs();
+        this.hedging = client.hedging();
         this.retries = client.retries().copy();
     }
 
@@ -113,6 +133,25 @@ public final class Request {
         return requestBody(requestBody.getBytes(StandardCharsets.UTF_8));
     }
 
+    /**
+     * Sets the request body to the UTF-8 encoded document. The document is
+     * written straight to bytes so no String of the whole document is created.
+     *
+     * @param xml document
+     * @return this
+     */
+    public Request requestBody(Xml xml) {
+        Preconditions.checkNotNull(xml);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            xml.writeTo(bytes);
+        } catch (IOException e) {
+            // cannot happen
+            throw new UncheckedIOException(e);
+        }
+        return requestBody(bytes.toByteArray());
+    }
+
     public Request region(String region) {
         Preconditions.checkNotNull(region);
         this.region = Optional.of(region);
@@ -133,6 +172,64 @@ public final class Request {
         return this;
     }
 
+    /**
+     * Sets the overall time allowed for the request including all retries and
+     * back-off sleeps. Each attempt's connect and read timeouts are clipped to the
+     * time remaining and no retry is made whose back-off would pass the deadline.
+     * When the deadline stops a retry of an error response that response is
+     * returned, otherwise {@link DeadlineExceededException} is thrown. A duration
+     * of zero means no deadline (the default unless set on the client).
+     * 
+     * @param duration overall time allowed
+     * @param unit     time unit
+     * @return this
+     */
+    public Request deadline(long duration, TimeUnit unit) {
+        Preconditions.checkArgument(duration >= 0, "duration cannot be negative");
+        Preconditions.checkNotNull(unit, "unit cannot be null");
+        this.deadlineMs = unit.toMillis(duration);
+        return this;
+    }
+
+    /**
+     * Hedges GET and HEAD attempts of this request using the given policy (see
+     * {@link HedgingPolicy}). Other methods are never hedged.
+     * 
+     * @param hedging hedging policy
+     * @return this
+     */
+    public Request hedging(HedgingPolicy hedging) {
+        Preconditions.checkNotNull(hedging, "hedging cannot be null");
+        this.hedging = hedging;
+        return this;
+    }
+
+    /**
+     * Disables hedging for this request (if set on the client).
+     * 
+     * @return this
+     */
+    public Request noHedging() {
+        this.hedging = null;
+        return this;
+    }
+
+    /**
+     * Sets the handle that can cancel this request from another thread. With an
+     * {@link HttpClient} that supports cancellation (like the default) a cancel
+     * aborts the wait for the response and a read of the response body (until the
+     * response is closed). A hedged request can only be aborted until its response
+     * headers have arrived.
+     * 
+     * @param cancellation cancellation handle
+     * @return this
+     */
+    public Request cancellation(Cancellation cancellation) {
+        Preconditions.checkNotNull(cancellation, "cancellation cannot be null");
+        this.cancellation = cancellation;
+        return this;
+    }
+
     public Request retryInitialInterval(long duration, TimeUnit unit) {
         Preconditions.checkArgument(duration >= 0, "duration cannot be negative");
         Preconditions.checkNotNull(unit, "unit cannot be null");
@@ -186,12 +283,178 @@ public final class Request {
      *         finished with it
      */
     public ResponseInputStream responseInputStream() {
+        return responseInputStream(cancellation == null ? Cancellation.create() : cancellation);
+    }
+
+    /**
+     * Makes the request on the given executor. Cancelling the returned future
+     * cancels the request (see {@link #cancellation(Cancellation)}). The request
+     * should not be modified after this call. The caller <b>must close</b> the
+     * InputStream of the response when finished with it.
+     * 
+     * @param executor executor to make the request on
+     * @return future response
+     */
+    public CompletableFuture<ResponseInputStream> responseAsync(Executor executor) {
+        Preconditions.checkNotNull(executor, "executor cannot be null");
+        Cancellation c = cancellation == null ? Cancellation.create() : cancellation;
+        CompletableFuture<ResponseInputStream> future = new CompletableFuture<>();
+        future.whenComplete((r, e) -> {
+            if (future.isCancelled()) {
+                c.cancel();
+            }
+        });
+        executor.execute(() -> {
+            try {
+                ResponseInputStream r = responseInputStream(c);
+                if (!future.complete(r)) {
+                    // cancelled just as the response arrived
+                    closeQuietly(r);
+                }
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    private ResponseInputStream responseInputStream(Cancellation c) {
+        c.throwIfCancelled();
         String u = calculateUrl(url, client.serviceName(), region, queries, Arrays.asList(pathSegments),
                 client.baseUrlFactory());
+        CircuitBreaker breaker = circuitBreaker(u);
+        final Retries<ResponseInputStream> retries;
+        final long deadlineNanos;
+        if (deadlineMs > 0) {
+            deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMs);
+            retries = this.retries.withDeadlineNanos(deadlineNanos);
+        } else {
+            deadlineNanos = 0;
+            retries = this.retries;
+        }
+        ResponseInputStream response;
+        c.enter();
+        try {
+            response = call(retries, u, breaker, deadlineNanos, c);
+        } finally {
+            c.exit();
+        }
+        if (c.isCancelled()) {
+            // cancelled just as the response arrived
+            closeQuietly(response);
+            throw new CancellationException("request cancelled");
+        }
+        return response;
+    }
+
+    private ResponseInputStream call(Retries<ResponseInputStream> retries, String u, CircuitBreaker breaker,
+            long deadlineNanos, Cancellation c) {
         return retries //
-                .call(() -> RequestHelper.request(client.clock(), client.httpClient(), u, method,
-                        RequestHelper.combineHeaders(headers), requestBody, client.serviceName(), region,
-                        client.credentials(), connectTimeoutMs, readTimeoutMs, signPayload));
+                .call(() -> {
+                    c.throwIfCancelled();
+                    int connectTimeoutMs = this.connectTimeoutMs;
+                    int readTimeoutMs = this.readTimeoutMs;
+                    if (deadlineMs > 0) {
+                        long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+                        if (remainingMs <= 0) {
+                            throw new DeadlineExceededException("deadline of " + deadlineMs + "ms exceeded");
+                        }
+                        connectTimeoutMs = clipTimeout(connectTimeoutMs, remainingMs);
+                        readTimeoutMs = clipTimeout(readTimeoutMs, remainingMs);
+                    }
+                    if (breaker == null) {
+                        return send(u, connectTimeoutMs, readTimeoutMs, c);
+                    }
+                    if (!breaker.tryAcquire()) {
+                        throw new CircuitOpenException(host(u));
+                    }
+                    final ResponseInputStream r;
+                    try {
+                        r = send(u, connectTimeoutMs, readTimeoutMs, c);
+                    } catch (IOException | UncheckedIOException e) {
+                        // a cancelled attempt has already become a CancellationException
+                        breaker.onFailure();
+                        throw e;
+                    } catch (Throwable e) {
+                        // not about the endpoint (for example cancelled, deadline exceeded or
+                        // credentials that could not be resolved)
+                        breaker.onIgnored();
+                        throw e;
+                    }
+                    if (r.statusCode() < 500) {
+                        breaker.onSuccess();
+                    } else if (client.retryClassifier().apply(r).throttled()) {
+                        // the endpoint is up but asking us to slow down (left to the rate limiter)
+                        breaker.onIgnored();
+                    } else {
+                        breaker.onFailure();
+                    }
+                    return r;
+                });
+    }
+
+    private ResponseInputStream send(String u, int connectTimeoutMs, int readTimeoutMs, Cancellation c)
+            throws Exception {
+        // only idempotent requests can be safely duplicated
+        if (hedging != null && (method == HttpMethod.GET || method == HttpMethod.HEAD)) {
+            return hedging.call(attempt -> request(u, connectTimeoutMs, readTimeoutMs, attempt), c);
+        } else {
+            return request(u, connectTimeoutMs, readTimeoutMs, c);
+        }
+    }
+
+    private ResponseInputStream request(String u, int connectTimeoutMs, int readTimeoutMs, Cancellation c)
+            throws IOException {
+        try {
+            return RequestHelper.request(client.clock(), client.httpClient(), u, method,
+                    RequestHelper.combineHeaders(headers), requestBody, client.serviceName(), region,
+                    client.credentials(), connectTimeoutMs, readTimeoutMs, signPayload, c);
+        } catch (IOException | UncheckedIOException e) {
+            if (c.isCancelled()) {
+                // the connection was closed by the cancel, don't retry
+                CancellationException x = new CancellationException("request cancelled");
+                x.initCause(e);
+                throw x;
+            }
+            throw e;
+        }
+    }
+
+    private static void closeQuietly(ResponseInputStream r) {
+        try {
+            r.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    // a timeout of 0 is infinite
+    // VisibleForTesting
+    static int clipTimeout(int timeoutMs, long remainingMs) {
+        if (timeoutMs == 0 || timeoutMs > remainingMs) {
+            return (int) Math.min(remainingMs, Integer.MAX_VALUE);
+        } else {
+            return timeoutMs;
+        }
+    }
+
+    // returns null if the client has no circuit breakers
+    private CircuitBreaker circuitBreaker(String u) {
+        CircuitBreakers breakers = client.circuitBreakers();
+        if (breakers == null) {
+            return null;
+        } else {
+            return breakers.get(host(u));
+        }
+    }
+
+    // VisibleForTesting
+    static String host(String url) {
+        try {
+            return new URL(url).getAuthority();
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException(e);
+        }
     }
 
     /**
@@ -227,7 +490,7 @@ public final class Request {
         if (r.statusCode() == expectedStatusCode) {
             return r;
         } else {
-            throw new ServiceException(r.statusCode(), r.contentUtf8());
+            throw new ServiceException(r);
         }
     }
 
@@ -308,7 +571,57 @@ public final class Request {
     }
 
     public XmlElement responseAsXml() {
-        return XmlElement.parse(responseAsUtf8());
+        return XmlElement.parse(responseAsBytes());
+    }
+
+    /**
+     * Makes the request and returns a streaming pull parser over the response body
+     * so that large responses can be processed as they arrive without holding the
+     * whole document in memory. The caller <b>must close</b> the returned reader.
+     * 
+     * <p>
+     * If the status code is not 2xx then the body is read in full and passed to
+     * the client's {@link ExceptionFactory}; if that produces an exception it is
+     * thrown, otherwise the buffered body is parsed.
+     * 
+     * @return pull parser over the response body, must be closed by the caller
+     */
+    public XmlEventReader responseAsXmlEventReader() {
+        return XmlEventReader.create(responseBodyStream());
+    }
+
+    /**
+     * Returns a streaming reader over the JSON response body (for JSON-protocol
+     * services like DynamoDB, Lambda, Kinesis and CloudWatch Logs). As for
+     * {@link #responseAsXmlEventReader()} a 2xx response is parsed as it arrives
+     * and other responses are passed to the client's exception factory.
+     * 
+     * @return pull parser over the response body, must be closed by the caller
+     */
+    public JsonReader responseAsJson() {
+        return JsonReader.create(responseBodyStream());
+    }
+
+    // 2xx bodies are returned unread, others are buffered for the exception
+    // factory
+    private InputStream responseBodyStream() {
+        ResponseInputStream r = responseInputStream();
+        if (r.statusCode() >= 200 && r.statusCode() <= 299) {
+            return r;
+        }
+        final byte[] bytes;
+        if (hasBody(r)) {
+            bytes = Util.readBytesAndClose(r);
+        } else {
+            bytes = new byte[0];
+        }
+        Response response = new Response(r.headers(), bytes, r.statusCode());
+        Optional<? extends RuntimeException> exception = client.exceptionFactory().create(response);
+        if (exception.isPresent()) {
+            throw exception.get();
+        } else {
+            return new ByteArrayInputStream(bytes);
+        }
     }
 
     public String presignedUrl(long expiryDuration, TimeUnit unit) {
@@ -45,6 +45,9 @@ final class RequestHelper {
             byte[] requestBody, String serviceName, Optional<String> regionName, Credentials credentials,
             int connectTimeoutMs, int readTimeoutMs, long expirySeconds, boolean signPayload) {
 
+        // read the keys and token together
+        Credentials snapshot = credentials.snapshot();
+
         // the region-specific endpoint to the target object expressed in path style
         URL endpointUrl = Util.toUrl(url);
 
@@ -77,7 +80,7 @@ final class RequestHelper {
 
         String authorizationQueryParameters = AwsSignatureVersion4.computeSignatureForQueryAuth(
                 endpointUrl, method, serviceName, regionName, clock, h, q, contentHashString,
-                credentials.accessKey(), credentials.secretKey(), credentials.sessionToken());
+                snapshot.accessKey(), snapshot.secretKey(), snapshot.sessionToken());
 
         // build the presigned url to incorporate the authorization elements as query
         // parameters
@@ -100,7 +103,10 @@ final class RequestHelper {
     static ResponseInputStream request(Clock clock, HttpClient httpClient, String url,
             HttpMethod method, Map<String, String> headers, byte[] requestBody, String serviceName,
             Optional<String> regionName, Credentials credentials, int connectTimeoutMs, int readTimeoutMs, //
-            boolean signPayload) throws IOException {
+            boolean signPayload, Cancellation cancellation) throws IOException {
+
+        // read the keys and token together
+        Credentials snapshot = credentials.snapshot();
 
         // the region-specific endpoint to the target object expressed in path style
         URL endpointUrl = Util.toUrl(url);
@@ -121,7 +127,7 @@ final class RequestHelper {
         }
         h.put("x-amz-content-sha256", contentHashString);
 
-        includeTokenIfPresent(credentials, h);
+        includeTokenIfPresent(snapshot, h);
 
         List<Parameter> parameters = extractQueryParameters(endpointUrl);
         // don't use Collectors.toMap because it doesn't accept null values in map
@@ -129,13 +135,13 @@ final class RequestHelper {
         parameters.forEach(p -> q.put(p.name, p.value));
         String authorization = AwsSignatureVersion4.computeSignatureForAuthorizationHeader(
                 endpointUrl, method.toString(), serviceName, regionName.orElse("us-east-1"), clock, h, q,
-                contentHashString, credentials.accessKey(), credentials.secretKey());
+                contentHashString, snapshot.accessKey(), snapshot.secretKey());
 
         // place the computed signature into a formatted 'Authorization' header
         // and call S3
         h.put("Authorization", authorization);
         return httpClient.request(endpointUrl, method.toString(), h, requestBody, connectTimeoutMs,
-                readTimeoutMs);
+                readTimeoutMs, cancellation);
     }
 
     private static List<Parameter> extractQueryParameters(URL endpointUrl) {
@@ -1,8 +1,11 @@
 package com.github.davidmoten.aws.lw.client;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.net.HttpURLConnection;
 import java.util.List;
 import java.util.Map;
@@ -14,7 +17,10 @@ public final class ResponseInputStream extends InputStream {
     private final Closeable closeable; // nullable
     private final int statusCode;
     private final Map<String, List<String>> headers;
-    private final InputStream content;
+    private InputStream content;
+
+    // nullable, the start of the body read by peek
+    private byte[] peeked;
 
     public ResponseInputStream(HttpURLConnection connection, int statusCode,
             Map<String, List<String>> headers, InputStream content) {
@@ -39,6 +45,26 @@ public final class ResponseInputStream extends InputStream {
         return content.read();
     }
 
+    /**
+     * Returns up to {@code maxBytes} from the start of the body without consuming
+     * them (subsequent reads still return the whole body). Only the first call
+     * reads from the underlying stream.
+     */
+    byte[] peek(int maxBytes) throws IOException {
+        if (peeked == null) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[Math.min(maxBytes, 8192)];
+            int n;
+            while (bytes.size() < maxBytes
+                    && (n = content.read(buffer, 0, Math.min(buffer.length, maxBytes - bytes.size()))) != -1) {
+                bytes.write(buffer, 0, n);
+            }
+            peeked = bytes.toByteArray();
+            content = new SequenceInputStream(new ByteArrayInputStream(peeked), content);
+        }
+        return peeked;
+    }
+
     @Override
     public void close() throws IOException {
         try {
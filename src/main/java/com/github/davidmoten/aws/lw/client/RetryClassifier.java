@@ -0,0 +1,179 @@
+package com.github.davidmoten.aws.lw.client;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.github.davidmoten.aws.lw.client.internal.RetryAdvice;
+import com.github.davidmoten.aws.lw.client.internal.util.Preconditions;
+
+/**
+ * Decides whether a response should be retried using its status code and AWS
+ * error code. Most 400 and 403 responses are permanent (for example
+ * {@code AccessDenied} or {@code SignatureDoesNotMatch}) and are only retried
+ * when the error code is known to be transient or throttling. Throttling is
+ * reported separately so it can back off for longer, and a {@code Retry-After}
+ * header is passed on as the minimum delay.
+ */
+final class RetryClassifier implements Function<ResponseInputStream, RetryAdvice> {
+
+    // from
+    // https://docs.aws.amazon.com/sdkref/latest/guide/feature-retry-behavior.html
+    private static final Set<Integer> CANDIDATE_STATUS_CODES = new HashSet<>( //
+            Arrays.asList( //
+                    400, // BAD_REQUEST
+                    403, // FORBIDDEN
+                    408, // REQUEST_TIMEOUT
+                    429, // TOO_MANY_REQUESTS
+                    500, // INTERNAL_SERVER_ERROR
+                    502, // BAD_GATEWAY
+                    503, // SERVICE_UNAVAILABLE
+                    504, // GATEWAY_TIMEOUT
+                    509 // BANDWIDTH_LIMIT_EXCEEDED
+            ));
+
+    private static final Set<String> THROTTLING_ERROR_CODES = new HashSet<>( //
+            Arrays.asList( //
+                    "Throttling", //
+                    "ThrottlingException", //
+                    "ThrottledException", //
+                    "RequestThrottledException", //
+                    "TooManyRequestsException", //
+                    "ProvisionedThroughputExceededException", //
+                    "TransactionInProgressException", //
+                    "RequestLimitExceeded", //
+                    "BandwidthLimitExceeded", //
+                    "LimitExceededException", //
+                    "RequestThrottled", //
+                    "SlowDown", //
+                    "PriorRequestNotComplete", //
+                    "EC2ThrottledException"));
+
+    private static final Set<String> TRANSIENT_ERROR_CODES = new HashSet<>( //
+            Arrays.asList( //
+                    "RequestTimeout", //
+                    "RequestTimeoutException", //
+                    "InternalError", //
+                    "InternalFailure", //
+                    "InternalServerError", //
+                    "ServiceUnavailable", //
+                    "ServiceUnavailableException"));
+
+    private final Set<String> transientErrorCodes;
+    private final Set<String> throttlingErrorCodes;
+
+    RetryClassifier(Collection<String> transientErrorCodes, Collection<String> throttlingErrorCodes) {
+        this.transientErrorCodes = new HashSet<>(transientErrorCodes);
+        this.throttlingErrorCodes = new HashSet<>(throttlingErrorCodes);
+    }
+
+    /**
+     * Returns the classifier with the common error codes plus those specific to
+     * the given service.
+     *
+     * @param serviceName for example {@code s3} or {@code sqs}
+     * @return classifier
+     */
+    static RetryClassifier forService(String serviceName) {
+        Preconditions.checkNotNull(serviceName);
+        Set<String> transientCodes = new HashSet<>(TRANSIENT_ERROR_CODES);
+        Set<String> throttlingCodes = new HashSet<>(THROTTLING_ERROR_CODES);
+        switch (serviceName.toLowerCase(Locale.ENGLISH)) {
+        case "sts":
+            transientCodes.add("IDPCommunicationError");
+            break;
+        case "kinesis":
+            throttlingCodes.add("KMSThrottlingException");
+            break;
+        case "ec2":
+            transientCodes.add("Unavailable");
+            break;
+        case "sqs":
+            throttlingCodes.add("KmsThrottled");
+            break;
+        default:
+            break;
+        }
+        return new RetryClassifier(transientCodes, throttlingCodes);
+    }
+
+    /**
+     * Returns a classifier that also recognizes the given error codes.
+     */
+    RetryClassifier withErrorCodes(Collection<String> transientErrorCodes, Collection<String> throttlingErrorCodes) {
+        Set<String> transientCodes = new HashSet<>(this.transientErrorCodes);
+        transientCodes.addAll(transientErrorCodes);
+        Set<String> throttlingCodes = new HashSet<>(this.throttlingErrorCodes);
+        throttlingCodes.addAll(throttlingErrorCodes);
+        return new RetryClassifier(transientCodes, throttlingCodes);
+    }
+
+    @Override
+    public RetryAdvice apply(ResponseInputStream r) {
+        int statusCode = r.statusCode();
+        if (!CANDIDATE_STATUS_CODES.contains(statusCode)) {
+            return RetryAdvice.NO_RETRY;
+        }
+        final RetryAdvice advice;
+        if (statusCode == 429 || statusCode == 509) {
+            advice = RetryAdvice.THROTTLED;
+        } else if (statusCode == 408) {
+            advice = RetryAdvice.RETRY;
+        } else {
+            // only read the body when the status code alone doesn't decide
+            String code = errorCode(r);
+            if (code != null && throttlingErrorCodes.contains(code)) {
+                advice = RetryAdvice.THROTTLED;
+            } else if (code != null && transientErrorCodes.contains(code)) {
+                advice = RetryAdvice.RETRY;
+            } else if (statusCode >= 500) {
+                advice = RetryAdvice.RETRY;
+            } else {
+                // 400 and 403 without a transient error code are permanent
+                return RetryAdvice.NO_RETRY;
+            }
+        }
+        return advice.withRetryAfterMs(retryAfterMs(r.header("Retry-After")));
+    }
+
+    private static String errorCode(ResponseInputStream r) {
+        Optional<String> errorType = r.header("x-amzn-ErrorType");
+        if (errorType.isPresent()) {
+            String code = ErrorDetails.normalizeCode(errorType.get());
+            if (code != null) {
+                return code;
+            }
+        }
+        try {
+            byte[] bytes = r.peek(ErrorDetails.MAX_PARSE_LENGTH);
+            return ErrorDetails.parse(new String(bytes, StandardCharsets.UTF_8)).code;
+        } catch (IOException e) {
+            // body unreadable, classify by status code alone
+            return null;
+        }
+    }
+
+    /**
+     * Returns the delay in ms from a {@code Retry-After} header in delay-seconds
+     * form (the HTTP-date form is not used by AWS and is ignored).
+     */
+    // VisibleForTesting
+    static long retryAfterMs(Optional<String> retryAfter) {
+        if (!retryAfter.isPresent()) {
+            return -1;
+        }
+        try {
+            long seconds = Long.parseLong(retryAfter.get().trim());
+            return seconds < 0 ? -1 : TimeUnit.SECONDS.toMillis(seconds);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
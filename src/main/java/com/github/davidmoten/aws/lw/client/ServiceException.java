@@ -1,23 +1,109 @@
 package com.github.davidmoten.aws.lw.client;
 
+import java.util.Optional;
+
+import com.github.davidmoten.aws.lw.client.internal.util.Preconditions;
+
 public final class ServiceException extends RuntimeException {
 
     private static final long serialVersionUID = -6963816822115090962L;
     private final int statusCode;
     private final String message;
 
+    // nullable, from the x-amz-request-id or x-amzn-RequestId header
+    private final String requestIdHeader;
+
+    // nullable, from the x-amzn-ErrorType header (JSON protocols)
+    private final String errorTypeHeader;
+
+    // parsed from the message on first use
+    private transient volatile ErrorDetails details;
+
     public ServiceException(int statusCode, String message) {
+        this(statusCode, message, null, null);
+    }
+
+    /**
+     * Creates an exception from an error response. The body is kept as the
+     * {@link #message()} and the AWS error fields are parsed from it only if
+     * asked for.
+     *
+     * @param response error response
+     */
+    public ServiceException(Response response) {
+        this(Preconditions.checkNotNull(response).statusCode(), response.contentUtf8(), //
+                response.firstHeader("x-amz-request-id") //
+                        .orElse(response.firstHeader("x-amzn-RequestId").orElse(null)), //
+                response.firstHeader("x-amzn-ErrorType").orElse(null));
+    }
+
+    private ServiceException(int statusCode, String message, String requestIdHeader, String errorTypeHeader) {
         super("statusCode=" + statusCode + ": " + message);
         this.statusCode = statusCode;
         this.message = message;
+        this.requestIdHeader = requestIdHeader;
+        this.errorTypeHeader = errorTypeHeader;
     }
 
     public int statusCode() {
         return statusCode;
     }
 
+    /**
+     * Returns the response body (or a description of the failure).
+     *
+     * @return response body
+     */
     public String message() {
         return message;
     }
 
+    /**
+     * Returns the AWS error code (for example {@code NoSuchKey},
+     * {@code SlowDown} or {@code ThrottlingException}) from the error body or the
+     * {@code x-amzn-ErrorType} header.
+     *
+     * @return error code if present
+     */
+    public Optional<String> errorCode() {
+        if (errorTypeHeader != null) {
+            String code = ErrorDetails.normalizeCode(errorTypeHeader);
+            if (code != null) {
+                return Optional.of(code);
+            }
+        }
+        return details().code();
+    }
+
+    /**
+     * Returns the human readable message from the AWS error body.
+     *
+     * @return error message if present
+     */
+    public Optional<String> errorMessage() {
+        return details().message();
+    }
+
+    /**
+     * Returns the AWS request id of the failed call from the response headers or
+     * the error body.
+     *
+     * @return request id if present
+     */
+    public Optional<String> requestId() {
+        if (requestIdHeader != null) {
+            return Optional.of(requestIdHeader);
+        }
+        return details().requestId();
+    }
+
+    private ErrorDetails details() {
+        ErrorDetails d = details;
+        if (d == null) {
+            d = ErrorDetails.parse(message);
+            details = d;
+        }
+        return d;
+    }
+
 }
@@ -0,0 +1,153 @@
+package com.github.davidmoten.aws.lw.client.internal;
+
+/**
+ * Client side rate limiter shared by all requests of a client (the AWS SDK
+ * "adaptive" retry mode). Sending is unrestricted until the first throttling
+ * response. From then on every attempt takes a token from a bucket whose fill
+ * rate is cut multiplicatively on throttling and grows back along a cubic curve
+ * (as in CUBIC congestion control) on success, so throughput settles near the
+ * service limit instead of oscillating around it.
+ *
+ * <p>
+ * Thread-safe. Callers that must wait reserve their token first and sleep
+ * outside the lock.
+ */
+public final class AdaptiveRateLimiter {
+
+    private static final double MIN_FILL_RATE = 0.5;
+    private static final double MIN_CAPACITY = 1;
+    private static final double SMOOTH = 0.8;
+    private static final double BETA = 0.7;
+    private static final double SCALE_CONSTANT = 0.4;
+
+    private final Clock clock;
+
+    // all rates are per second and times are in seconds
+    private double fillRate;
+    private double maxCapacity;
+    private double currentCapacity;
+    private double lastTimestamp = -1;
+    private boolean enabled;
+    private double measuredTxRate;
+    private double lastTxRateBucket;
+    private long requestCount;
+    private double lastMaxRate;
+    private double lastThrottleTime;
+    private double timeWindow;
+
+    public AdaptiveRateLimiter(Clock clock) {
+        this.clock = clock;
+        this.lastTxRateBucket = Math.floor(now());
+        this.lastThrottleTime = now();
+    }
+
+    public static AdaptiveRateLimiter create() {
+        return new AdaptiveRateLimiter(Clock.DEFAULT);
+    }
+
+    /**
+     * Blocks until the next attempt may be sent.
+     */
+    public void acquire() {
+        long delayMs = reserve();
+        if (delayMs > 0) {
+            Retries.sleep(delayMs);
+        }
+    }
+
+    /**
+     * Takes a token and returns how long the caller must wait before sending.
+     *
+     * @return wait in ms
+     */
+    // VisibleForTesting
+    synchronized long reserve() {
+        if (!enabled) {
+            return 0;
+        }
+        refill();
+        currentCapacity -= 1;
+        if (currentCapacity >= 0) {
+            return 0;
+        } else {
+            // the deficit is made up by the refill before the caller sends
+            return (long) Math.ceil(-currentCapacity / fillRate * 1000);
+        }
+    }
+
+    /**
+     * Records the outcome of an attempt.
+     *
+     * @param throttled true if the service throttled the attempt
+     */
+    public synchronized void update(boolean throttled) {
+        updateMeasuredRate();
+        double t = now();
+        double calculatedRate;
+        if (throttled) {
+            double rateToUse = enabled ? Math.min(measuredTxRate, fillRate) : measuredTxRate;
+            lastMaxRate = rateToUse;
+            calculateTimeWindow();
+            lastThrottleTime = t;
+            calculatedRate = rateToUse * BETA;
+            enabled = true;
+        } else {
+            calculateTimeWindow();
+            calculatedRate = SCALE_CONSTANT * Math.pow(t - lastThrottleTime - timeWindow, 3) + lastMaxRate;
+        }
+        updateBucketRate(Math.min(calculatedRate, 2 * measuredTxRate));
+    }
+
+    private void refill() {
+        double t = now();
+        if (lastTimestamp < 0) {
+            lastTimestamp = t;
+            return;
+        }
+        currentCapacity = Math.min(maxCapacity, currentCapacity + (t - lastTimestamp) * fillRate);
+        lastTimestamp = t;
+    }
+
+    private void calculateTimeWindow() {
+        timeWindow = Math.cbrt(lastMaxRate * (1 - BETA) / SCALE_CONSTANT);
+    }
+
+    private void updateMeasuredRate() {
+        double t = now();
+        double timeBucket = Math.floor(t * 2) / 2;
+        requestCount++;
+        if (timeBucket > lastTxRateBucket) {
+            double currentRate = requestCount / (timeBucket - lastTxRateBucket);
+            measuredTxRate = currentRate * SMOOTH + measuredTxRate * (1 - SMOOTH);
+            requestCount = 0;
+            lastTxRateBucket = timeBucket;
+        }
+    }
+
+    private void updateBucketRate(double newRate) {
+        refill();
+        fillRate = Math.max(newRate, MIN_FILL_RATE);
+        maxCapacity = Math.max(newRate, MIN_CAPACITY);
+        currentCapacity = Math.min(currentCapacity, maxCapacity);
+    }
+
+    private double now() {
+        return clock.time() / 1000.0;
+    }
+
+    // VisibleForTesting
+    synchronized boolean enabled() {
+        return enabled;
+    }
+
+    // VisibleForTesting
+    synchronized double fillRate() {
+        return fillRate;
+    }
+
+    // VisibleForTesting
+    synchronized long requestCount() {
+        return requestCount;
+    }
+
+}
@@ -0,0 +1,35 @@
+package com.github.davidmoten.aws.lw.client.internal;
+
+/**
+ * Clears state that goes stale across a checkpoint and restore (CRaC or Lambda
+ * SnapStart). Credentials are the main concern: a snapshot shouldn't hold
+ * secrets, and restored instances must not share or reuse credentials that were
+ * resolved before the checkpoint.
+ */
+public final class Checkpoints {
+
+    private Checkpoints() {
+        // prevent instantiation
+    }
+
+    /**
+     * Discards the shared default credentials and the resolved values of all lazy
+     * credentials.
+     */
+    public static void clearCredentials() {
+        Environment env = EnvironmentDefault.INSTANCE;
+        if (env instanceof EnvironmentDefault) {
+            ((EnvironmentDefault) env).reset();
+        }
+        LazyCredentials.instances().forEach(LazyCredentials::clear);
+    }
+
+    /**
+     * Starts resolving all lazy credentials again on background threads so that
+     * the first requests after a restore don't wait on them one after another.
+     */
+    public static void prewarmCredentials() {
+        LazyCredentials.instances().forEach(LazyCredentials::prewarm);
+    }
+
+}
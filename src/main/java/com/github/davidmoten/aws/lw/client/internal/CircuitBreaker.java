@@ -0,0 +1,156 @@
+package com.github.davidmoten.aws.lw.client.internal;
+
+import com.github.davidmoten.aws.lw.client.internal.util.Preconditions;
+
+/**
+ * Circuit breaker for one endpoint. Trips open after a number of consecutive
+ * failures or when the failure rate over the last calls reaches a threshold.
+ * While open, calls are refused until the open duration has passed, then a
+ * single probe call is let through (half-open): success closes the circuit and
+ * failure opens it again.
+ *
+ * <p>
+ * Thread-safe. Every permitted call must report its outcome with
+ * {@link #onSuccess()}, {@link #onFailure()} or {@link #onIgnored()}.
+ */
+public final class CircuitBreaker {
+
+    private enum State {
+        CLOSED, OPEN, HALF_OPEN;
+    }
+
+    private final int consecutiveFailureThreshold;
+    private final double failureRateThreshold;
+    private final long openDurationMs;
+    private final Clock clock;
+
+    // outcomes of the last calls, true for failure
+    private final boolean[] window;
+    private int windowCount;
+    private int windowIndex;
+    private int windowFailures;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+
+    /**
+     * Constructor.
+     *
+     * @param consecutiveFailureThreshold consecutive failures that open the
+     *                                    circuit, 0 to disable
+     * @param failureRateThreshold        failure rate over the window that opens
+     *                                    the circuit, 0 to disable
+     * @param windowSize                  number of recent calls the failure rate is
+     *                                    measured over (only once full)
+     * @param openDurationMs              time refused before a probe call
+     * @param clock                       clock
+     */
+    public CircuitBreaker(int consecutiveFailureThreshold, double failureRateThreshold, int windowSize,
+            long openDurationMs, Clock clock) {
+        Preconditions.checkArgument(consecutiveFailureThreshold >= 0,
+                "consecutiveFailureThreshold cannot be negative");
+        Preconditions.checkArgument(failureRateThreshold >= 0 && failureRateThreshold <= 1,
+                "failureRateThreshold must be between 0 and 1 inclusive");
+        Preconditions.checkArgument(windowSize > 0, "windowSize must be positive");
+        Preconditions.checkArgument(openDurationMs >= 0, "openDurationMs cannot be negative");
+        this.consecutiveFailureThreshold = consecutiveFailureThreshold;
+        this.failureRateThreshold = failureRateThreshold;
+        this.window = new boolean[windowSize];
+        this.openDurationMs = openDurationMs;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns true if a call may be made now.
+     *
+     * @return true if permitted
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+        case CLOSED:
+            return true;
+        case OPEN:
+            if (clock.time() - openedAt >= openDurationMs) {
+                // let one probe through
+                state = State.HALF_OPEN;
+                return true;
+            } else {
+                return false;
+            }
+        default:
+            // a probe is in flight
+            return false;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            close();
+        } else if (state == State.CLOSED) {
+            consecutiveFailures = 0;
+            record(false);
+        }
+        // else a call permitted before the circuit opened, ignore
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+        } else if (state == State.CLOSED) {
+            consecutiveFailures++;
+            record(true);
+            if (consecutiveFailureThreshold > 0 && consecutiveFailures >= consecutiveFailureThreshold
+                    || failureRateThreshold > 0 && windowCount == window.length
+                            && windowFailures >= failureRateThreshold * windowCount) {
+                open();
+            }
+        }
+    }
+
+    /**
+     * Records a permitted call whose outcome says nothing about the endpoint's
+     * health (for example it was cancelled or throttled). An ignored probe lets
+     * the next call probe instead.
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            // openedAt is unchanged so the next call is let through
+            state = State.OPEN;
+        }
+    }
+
+    // VisibleForTesting
+    synchronized boolean isOpen() {
+        return state != State.CLOSED;
+    }
+
+    private void record(boolean failure) {
+        if (windowCount == window.length) {
+            if (window[windowIndex]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowIndex] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowIndex = (windowIndex + 1) % window.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = clock.time();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        windowCount = 0;
+        windowIndex = 0;
+        windowFailures = 0;
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.github.davidmoten.aws.lw.client.internal;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The circuit breakers of a client, one per endpoint host created on first use.
+ */
+public final class CircuitBreakers {
+
+    private final int consecutiveFailureThreshold;
+    private final double failureRateThreshold;
+    private final int windowSize;
+    private final long openDurationMs;
+    private final Clock clock;
+    private final ConcurrentMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    public CircuitBreakers(int consecutiveFailureThreshold, double failureRateThreshold, int windowSize,
+            long openDurationMs, Clock clock) {
+        this.consecutiveFailureThreshold = consecutiveFailureThreshold;
+        this.failureRateThreshold = failureRateThreshold;
+        this.windowSize = windowSize;
+        this.openDurationMs = openDurationMs;
+        this.clock = clock;
+    }
+
+    public CircuitBreaker get(String host) {
+        return breakers.computeIfAbsent(host, h -> new CircuitBreaker(consecutiveFailureThreshold,
+                failureRateThreshold, windowSize, openDurationMs, clock));
+    }
+
+}
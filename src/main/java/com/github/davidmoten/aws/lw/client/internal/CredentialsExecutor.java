@@ -0,0 +1,22 @@
+package com.github.davidmoten.aws.lw.client.internal;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * One daemon thread shared by all credentials for background refreshes and
+ * prewarming (both are rare).
+ */
+final class CredentialsExecutor {
+
+    static final ExecutorService INSTANCE = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "aws-lw-credentials");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private CredentialsExecutor() {
+        // prevent instantiation
+    }
+
+}
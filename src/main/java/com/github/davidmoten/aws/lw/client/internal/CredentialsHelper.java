@@ -11,9 +11,11 @@ import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.time.Instant;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 final class CredentialsHelper {
 
@@ -66,30 +68,14 @@ final class CredentialsHelper {
             containerCredentialsUri = env.get("AWS_CONTAINER_CREDENTIALS_RELATIVE_URI");
         }
         if (containerCredentialsUri != null) {
-            String containerToken = env.get("AWS_CONTAINER_AUTHORIZATION_TOKEN");
-            String containerTokenFile = env.get("AWS_CONTAINER_AUTHORIZATION_TOKEN_FILE");
-            containerToken = resolveContainerToken(containerToken, containerTokenFile);
-            try {
-                // Create a connection to the credentials URI
-                URL url = URI.create(containerCredentialsUri).toURL();
-                Map<String, String> headers = new HashMap<>();
-                headers.put("Authorization", containerToken);
-                ResponseInputStream response = client.request(url, "GET", headers, null, CONNECT_TIMEOUT_MS,
-                        READ_TIMEOUT_MS);
-
-                if (response.statusCode() != 200) {
-                    throw new RuntimeException("Failed to retrieve credentials: HTTP " + response.statusCode());
-                }
-
-                String json = new String(Util.readBytesAndClose(response), StandardCharsets.UTF_8);
-
-                // Parse the JSON response
-                String accessKeyId = Util.jsonFieldText(json, "AccessKeyId").get();
-                String secretAccessKey = Util.jsonFieldText(json, "SecretAccessKey").get();
-                String sessionToken = Util.jsonFieldText(json, "Token").get();
-                return new CredentialsImpl(accessKeyId, secretAccessKey, Optional.of(sessionToken));
-            } catch (IOException e) {
-                throw new UncheckedIOException(e);
+            String uri = containerCredentialsUri;
+            // the token is read again for each refresh as a token file may be rotated
+            Supplier<Credentials> refresher = () -> containerCredentials(uri, env, client);
+            Credentials initial = refresher.get();
+            if (initial.expiration().isPresent()) {
+                return new ExpiringCredentialsImpl(initial, refresher, clock);
+            } else {
+                return initial;
             }
         }
 
@@ -105,6 +91,36 @@ final class CredentialsHelper {
                         + "or instance profile credentials were found");
     }
 
+    private static Credentials containerCredentials(String containerCredentialsUri, Environment env,
+            HttpClient client) {
+        String containerToken = env.get("AWS_CONTAINER_AUTHORIZATION_TOKEN");
+        String containerTokenFile = env.get("AWS_CONTAINER_AUTHORIZATION_TOKEN_FILE");
+        containerToken = resolveContainerToken(containerToken, containerTokenFile);
+        try {
+            // Create a connection to the credentials URI
+            URL url = URI.create(containerCredentialsUri).toURL();
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Authorization", containerToken);
+            ResponseInputStream response = client.request(url, "GET", headers, null, CONNECT_TIMEOUT_MS,
+                    READ_TIMEOUT_MS);
+
+            if (response.statusCode() != 200) {
+                throw new RuntimeException("Failed to retrieve credentials: HTTP " + response.statusCode());
+            }
+
+            String json = new String(Util.readBytesAndClose(response), StandardCharsets.UTF_8);
+
+            // Parse the JSON response
+            String accessKeyId = Util.jsonFieldText(json, "AccessKeyId").get();
+            String secretAccessKey = Util.jsonFieldText(json, "SecretAccessKey").get();
+            String sessionToken = Util.jsonFieldText(json, "Token").get();
+            Optional<Instant> expiration = Util.jsonFieldText(json, "Expiration").map(Instant::parse);
+            return new CredentialsImpl(accessKeyId, secretAccessKey, Optional.of(sessionToken), expiration);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     // VisibleForTesting
     static String resolveContainerToken(String containerToken, String containerTokenFile) {
         if (containerToken == null && containerTokenFile != null) {
@@ -48,4 +48,10 @@ public final class CredentialsImpl implements Credentials {
         return expiration;
     }
 
+    @Override
+    public Credentials snapshot() {
+        // already immutable
+        return this;
+    }
+
 }
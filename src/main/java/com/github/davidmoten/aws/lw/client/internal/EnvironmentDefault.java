@@ -1,10 +1,16 @@
 package com.github.davidmoten.aws.lw.client.internal;
 
+import com.github.davidmoten.aws.lw.client.Credentials;
+import com.github.davidmoten.aws.lw.client.HttpClient;
+
 public final class EnvironmentDefault implements Environment {
 
     // mutable for testing
     public static Environment INSTANCE = new EnvironmentDefault();
 
+    // resolved once and shared by all clients, expiring credentials refresh themselves
+    private volatile Credentials credentials;
+
     private EnvironmentDefault() {
         // prevent instantiation
     }
@@ -14,4 +20,32 @@ public final class EnvironmentDefault implements Environment {
         return System.getenv(name);
     }
 
+    /**
+     * Returns the credentials found by the default chain. The chain (which may
+     * call STS, a container endpoint or the instance metadata service) is run on
+     * first use only, and the result is shared by every client built with the
+     * default environment. A failure is not cached.
+     */
+    @Override
+    public Credentials credentials() {
+        Credentials c = credentials;
+        if (c == null) {
+            synchronized (this) {
+                c = credentials;
+                if (c == null) {
+                    c = CredentialsHelper.credentialsFromEnvironment(this, HttpClient.defaultClient());
+                    credentials = c;
+                }
+            }
+        }
+        return c;
+    }
+
+    /**
+     * Discards the shared credentials so that the next use runs the chain again.
+     */
+    void reset() {
+        credentials = null;
+    }
+
 }
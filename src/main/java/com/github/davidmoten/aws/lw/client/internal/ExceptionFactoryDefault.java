@@ -1,6 +1,5 @@
 package com.github.davidmoten.aws.lw.client.internal;
 
-import java.nio.charset.StandardCharsets;
 import java.util.Optional;
 
 import com.github.davidmoten.aws.lw.client.ExceptionFactory;
@@ -14,8 +13,7 @@ public class ExceptionFactoryDefault implements ExceptionFactory{
         if (r.isOk()) {
             return Optional.empty();
         } else {
-            return Optional.of(new ServiceException(r.statusCode(),
-                    new String(r.content(), StandardCharsets.UTF_8)));
+            return Optional.of(new ServiceException(r));
         }
     }
 
@@ -4,70 +4,160 @@ import com.github.davidmoten.aws.lw.client.Credentials;
 import com.github.davidmoten.aws.lw.client.internal.util.Preconditions;
 import java.time.Instant;
 import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
 
+/**
+ * Credentials that are refreshed before they expire. Reads never block on a
+ * refresh unless the credentials have actually expired: once inside the
+ * refresh window (5 minutes before expiry, brought forward by a random jitter
+ * of up to a minute so that many clients don't refresh together) the first
+ * read starts a refresh in the background and keeps returning the current
+ * credentials until it completes.
+ */
 final class ExpiringCredentialsImpl implements Credentials {
 
     private static final long REFRESH_BEFORE_MS = 300_000; // 5 minutes
+    private static final long REFRESH_JITTER_MS = 60_000;
+    // wait before another background refresh after one fails
+    private static final long RETRY_INTERVAL_MS = 10_000;
 
-    private volatile Credentials current;
+    private volatile State state;
     private final Supplier<Credentials> refresher;
     private final Clock clock;
+    private final Executor executor;
+    private final Random random;
 
     private final Object lock = new Object();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
 
     ExpiringCredentialsImpl(Credentials initial, Supplier<Credentials> refresher, Clock clock) {
+        this(initial, refresher, clock, CredentialsExecutor.INSTANCE, new Random());
+    }
+
+    // VisibleForTesting
+    ExpiringCredentialsImpl(Credentials initial, Supplier<Credentials> refresher, Clock clock,
+            Executor executor, Random random) {
         Preconditions.checkNotNull(initial);
         Preconditions.checkNotNull(refresher);
         Preconditions.checkNotNull(clock);
-        this.current = initial;
+        Preconditions.checkNotNull(executor);
+        Preconditions.checkNotNull(random);
         this.refresher = refresher;
         this.clock = clock;
+        this.executor = executor;
+        this.random = random;
+        this.state = newState(initial);
     }
 
     @Override
     public String accessKey() {
-        refreshIfNeeded();
-        return current.accessKey();
+        return current().accessKey();
     }
 
     @Override
     public String secretKey() {
-        refreshIfNeeded();
-        return current.secretKey();
+        return current().secretKey();
     }
 
     @Override
     public Optional<String> sessionToken() {
-        refreshIfNeeded();
-        return current.sessionToken();
+        return current().sessionToken();
     }
 
     @Override
     public Optional<Instant> expiration() {
-        refreshIfNeeded();
-        return current.expiration();
+        return current().expiration();
+    }
+
+    @Override
+    public Credentials snapshot() {
+        // one expiry check for all the values (state holds snapshots)
+        return current();
+    }
+
+    private Credentials current() {
+        State s = state;
+        long now = clock.time();
+        if (now < s.refreshAtMs) {
+            return s.credentials;
+        } else if (now <= s.expiresAtMs) {
+            refreshInBackground(s);
+            return s.credentials;
+        } else {
+            return refreshBlocking();
+        }
     }
 
-    private void refreshIfNeeded() {
-        if (current.expiration().isPresent()) {
-            Instant expiry = current.expiration().get();
-            if (Instant.ofEpochMilli(clock.time()).isAfter(expiry.minusMillis(REFRESH_BEFORE_MS))) {
-                synchronized (lock) {
-                    if (current.expiration().isPresent()) {
-                        Instant currentExpiry = current.expiration().get();
-                        if (Instant.ofEpochMilli(clock.time()).isAfter(currentExpiry.minusMillis(REFRESH_BEFORE_MS))) {
-                            try {
-                                current = refresher.get();
-                            } catch (RuntimeException e) {
-                                if (Instant.ofEpochMilli(clock.time()).isAfter(currentExpiry)) {
-                                    throw e;
-                                }
-                            }
-                        }
-                    }
+    private void refreshInBackground(State s) {
+        if (!refreshing.compareAndSet(false, true)) {
+            // already in progress
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    refresh(s);
+                } finally {
+                    refreshing.set(false);
                 }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.set(false);
+        }
+    }
+
+    private void refresh(State s) {
+        synchronized (lock) {
+            if (state != s) {
+                // refreshed by an expired read meanwhile
+                return;
             }
+            try {
+                state = newState(refresher.get());
+            } catch (RuntimeException e) {
+                // keep the current credentials until they expire and try again later
+                state = new State(s.credentials, clock.time() + RETRY_INTERVAL_MS, s.expiresAtMs);
+            }
+        }
+    }
+
+    private Credentials refreshBlocking() {
+        synchronized (lock) {
+            State s = state;
+            if (clock.time() <= s.expiresAtMs) {
+                return s.credentials;
+            }
+            State refreshed = newState(refresher.get());
+            state = refreshed;
+            return refreshed.credentials;
+        }
+    }
+
+    private State newState(Credentials c) {
+        Credentials credentials = c.snapshot();
+        if (!credentials.expiration().isPresent()) {
+            return new State(credentials, Long.MAX_VALUE, Long.MAX_VALUE);
+        }
+        long expiresAtMs = credentials.expiration().get().toEpochMilli();
+        long jitterMs = (long) (random.nextDouble() * REFRESH_JITTER_MS);
+        // short-lived credentials would otherwise be refreshed on every read
+        long refreshAtMs = Math.max(expiresAtMs - REFRESH_BEFORE_MS - jitterMs, clock.time() + RETRY_INTERVAL_MS);
+        return new State(credentials, refreshAtMs, expiresAtMs);
+    }
+
+    private static final class State {
+        final Credentials credentials;
+        final long refreshAtMs;
+        final long expiresAtMs;
+
+        State(Credentials credentials, long refreshAtMs, long expiresAtMs) {
+            this.credentials = credentials;
+            this.refreshAtMs = refreshAtMs;
+            this.expiresAtMs = expiresAtMs;
         }
     }
 }
@@ -1,5 +1,6 @@
 package com.github.davidmoten.aws.lw.client.internal;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -8,7 +9,9 @@ import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
 
+import com.github.davidmoten.aws.lw.client.Cancellation;
 import com.github.davidmoten.aws.lw.client.HttpClient;
 import com.github.davidmoten.aws.lw.client.ResponseInputStream;
 import com.github.davidmoten.aws.lw.client.internal.util.Util;
@@ -29,8 +32,52 @@ public final class HttpClientDefault implements HttpClient {
         return request(connection, requestBody);
     }
 
+    @Override
+    public ResponseInputStream request(URL endpointUrl, String httpMethod,
+            Map<String, String> headers, byte[] requestBody, int connectTimeoutMs,
+            int readTimeoutMs, Cancellation cancellation) throws IOException {
+        HttpURLConnection connection = Util.createHttpConnection(endpointUrl, httpMethod, headers,
+                connectTimeoutMs, readTimeoutMs);
+        return request(connection, requestBody, cancellation);
+    }
+
+    // VisibleForTesting
+    static ResponseInputStream request(HttpURLConnection connection, byte[] requestBody,
+            Cancellation cancellation) throws IOException {
+        if (cancellation.isCancelled()) {
+            throw new CancellationException("request cancelled");
+        }
+        // disconnect is a no-op while connecting so connect first (bounded by the
+        // connect timeout), then disconnect closes the socket and unblocks a thread
+        // waiting on the response or reading the response body
+        connection.connect();
+        if (cancellation.isCancelled()) {
+            // cancelled while connecting
+            connection.disconnect();
+            throw new CancellationException("request cancelled");
+        }
+        Runnable abort = connection::disconnect;
+        cancellation.addAbort(abort);
+        try {
+            // the abort stays registered until the response is closed so that reading
+            // the body can be aborted too
+            return request(connection, requestBody, () -> {
+                cancellation.removeAbort(abort);
+                connection.disconnect();
+            });
+        } catch (RuntimeException e) {
+            cancellation.removeAbort(abort);
+            throw e;
+        }
+    }
+
     // VisibleForTesting
     static ResponseInputStream request(HttpURLConnection connection, byte[] requestBody) {
+        return request(connection, requestBody, () -> connection.disconnect());
+    }
+
+    private static ResponseInputStream request(HttpURLConnection connection, byte[] requestBody,
+            Closeable onClose) {
         int responseCode;
         Map<String, List<String>> responseHeaders;
         InputStream is;
@@ -58,7 +105,7 @@ public final class HttpClientDefault implements HttpClient {
             }
             throw new UncheckedIOException(e);
         }
-        return new ResponseInputStream(connection, responseCode, responseHeaders, is);
+        return new ResponseInputStream(onClose, responseCode, responseHeaders, is);
     }
 
     private static boolean isOk(int responseCode) {
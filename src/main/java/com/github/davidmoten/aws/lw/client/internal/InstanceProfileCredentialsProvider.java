@@ -20,6 +20,8 @@ final class InstanceProfileCredentialsProvider {
     private static final String TOKEN_PATH = "/latest/api/token";
     private static final String SECURITY_CREDENTIALS_PATH = "/latest/meta-data/iam/security-credentials/";
     private static final int TOKEN_TTL_SECONDS = 21600;
+    // stop using a token this long before it expires
+    private static final long TOKEN_EXPIRY_MARGIN_MS = 60_000;
     private static final int CONNECT_TIMEOUT_MS = 1000;
     private static final int READ_TIMEOUT_MS = 1000;
 
@@ -32,7 +34,8 @@ final class InstanceProfileCredentialsProvider {
             return Optional.empty();
         }
         String endpoint = endpoint(env);
-        Supplier<Credentials> refresher = () -> fetchCredentials(endpoint, httpClient);
+        TokenCache tokens = new TokenCache(endpoint, httpClient, clock);
+        Supplier<Credentials> refresher = () -> fetchCredentials(endpoint, httpClient, tokens);
         try {
             Credentials initial = refresher.get();
             return Optional.of(new ExpiringCredentialsImpl(initial, refresher, clock));
@@ -61,12 +64,61 @@ final class InstanceProfileCredentialsProvider {
         return IMDS_DEFAULT_ENDPOINT;
     }
 
-    private static Credentials fetchCredentials(String endpoint, HttpClient httpClient) {
-        String token = fetchToken(endpoint, httpClient);
+    private static Credentials fetchCredentials(String endpoint, HttpClient httpClient, TokenCache tokens) {
+        String token = tokens.cached();
+        if (token != null) {
+            try {
+                return fetchCredentials(endpoint, httpClient, token);
+            } catch (RuntimeException e) {
+                // the token may have been revoked, try again with a new one
+            }
+        }
+        return fetchCredentials(endpoint, httpClient, tokens.fetch());
+    }
+
+    private static Credentials fetchCredentials(String endpoint, HttpClient httpClient, String token) {
         String roleName = fetchRoleName(endpoint, httpClient, token);
         return fetchCredentialsForRole(endpoint, httpClient, token, roleName);
     }
 
+    /**
+     * Holds the IMDSv2 session token so that a credentials refresh doesn't need a
+     * new one until it nears the end of its TTL.
+     */
+    private static final class TokenCache {
+
+        private final String endpoint;
+        private final HttpClient httpClient;
+        private final Clock clock;
+
+        private String token; // nullable
+        private long expiresAtMs;
+
+        TokenCache(String endpoint, HttpClient httpClient, Clock clock) {
+            this.endpoint = endpoint;
+            this.httpClient = httpClient;
+            this.clock = clock;
+        }
+
+        // returns null if there is no usable token
+        synchronized String cached() {
+            if (token != null && clock.time() < expiresAtMs) {
+                return token;
+            } else {
+                return null;
+            }
+        }
+
+        synchronized String fetch() {
+            token = null;
+            long now = clock.time();
+            String t = fetchToken(endpoint, httpClient);
+            token = t;
+            expiresAtMs = now + TOKEN_TTL_SECONDS * 1000L - TOKEN_EXPIRY_MARGIN_MS;
+            return t;
+        }
+    }
+
     private static String fetchToken(String endpoint, HttpClient httpClient) {
         String tokenUrl = endpoint + TOKEN_PATH;
         Map<String, String> headers = new HashMap<>();
@@ -0,0 +1,124 @@
+package com.github.davidmoten.aws.lw.client.internal;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import com.github.davidmoten.aws.lw.client.Credentials;
+import com.github.davidmoten.aws.lw.client.internal.util.Preconditions;
+
+/**
+ * Credentials resolved on first use (normally the first request signed) rather
+ * than when the client is built, so that calls to STS, a container endpoint or
+ * the instance metadata service are kept off the init path. Resolution can be
+ * started early on a background thread with {@link #prewarm()}. A failed
+ * resolution is not cached, the next use tries again.
+ */
+public final class LazyCredentials implements Credentials {
+
+    // live instances, cleared on checkpoint and restore (see Checkpoints)
+    private static final Set<LazyCredentials> INSTANCES = Collections.newSetFromMap(new WeakHashMap<>());
+
+    private final Supplier<Credentials> resolver;
+    private volatile Credentials credentials;
+    // true while a prewarm is queued or running
+    private final AtomicBoolean prewarming = new AtomicBoolean();
+
+    public LazyCredentials(Supplier<Credentials> resolver) {
+        Preconditions.checkNotNull(resolver, "resolver cannot be null");
+        this.resolver = resolver;
+        synchronized (INSTANCES) {
+            INSTANCES.add(this);
+        }
+    }
+
+    @Override
+    public String accessKey() {
+        return resolved().accessKey();
+    }
+
+    @Override
+    public String secretKey() {
+        return resolved().secretKey();
+    }
+
+    @Override
+    public Optional<String> sessionToken() {
+        return resolved().sessionToken();
+    }
+
+    @Override
+    public Optional<Instant> expiration() {
+        return resolved().expiration();
+    }
+
+    @Override
+    public Credentials snapshot() {
+        return resolved().snapshot();
+    }
+
+    /**
+     * Starts resolving the credentials on a shared background thread (if not
+     * already resolved or being prewarmed). A failure is ignored here and
+     * surfaces on first use.
+     */
+    public void prewarm() {
+        if (credentials != null || !prewarming.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            CredentialsExecutor.INSTANCE.execute(() -> {
+                try {
+                    resolved();
+                } catch (RuntimeException e) {
+                    // thrown again on first use
+                } finally {
+                    prewarming.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            prewarming.set(false);
+        }
+    }
+
+    /**
+     * Discards the resolved credentials so that the next use resolves them again.
+     */
+    synchronized void clear() {
+        credentials = null;
+    }
+
+    static List<LazyCredentials> instances() {
+        synchronized (INSTANCES) {
+            return new ArrayList<>(INSTANCES);
+        }
+    }
+
+    // VisibleForTesting
+    boolean isResolved() {
+        return credentials != null;
+    }
+
+    private Credentials resolved() {
+        Credentials c = credentials;
+        if (c == null) {
+            synchronized (this) {
+                c = credentials;
+                if (c == null) {
+                    c = resolver.get();
+                    Preconditions.checkNotNull(c, "resolver returned null");
+                    credentials = c;
+                }
+            }
+        }
+        return c;
+    }
+
+}
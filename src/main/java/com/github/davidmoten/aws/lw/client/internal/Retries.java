@@ -3,8 +3,12 @@ package com.github.davidmoten.aws.lw.client.internal;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.function.Predicate;
 
+import com.github.davidmoten.aws.lw.client.DeadlineExceededException;
 import com.github.davidmoten.aws.lw.client.MaxAttemptsExceededException;
 import com.github.davidmoten.aws.lw.client.internal.util.Preconditions;
 
@@ -17,9 +21,26 @@ public final class Retries<T> {
     private final double jitter;
     private final Predicate<? super T> valueShouldRetry;
     private final Predicate<? super Throwable> throwableShouldRetry;
+    // nullable, if present takes precedence over valueShouldRetry
+    private final Function<? super T, RetryAdvice> valueAdvice;
+    private final long throttledInitialIntervalMs;
+    // nullable, shared by all copies
+    private final AdaptiveRateLimiter rateLimiter;
+    // nullable, shared by all copies
+    private final RetryQuota retryQuota;
+    // nullable, System.nanoTime() by which the last attempt must start
+    private final Long deadlineNanos;
 
     public Retries(long initialIntervalMs, int maxAttempts, double backoffFactor, double jitter, long maxIntervalMs,
             Predicate<? super T> valueShouldRetry, Predicate<? super Throwable> throwableShouldRetry) {
+        this(initialIntervalMs, maxAttempts, backoffFactor, jitter, maxIntervalMs, valueShouldRetry,
+                throwableShouldRetry, null, DEFAULT_THROTTLED_INITIAL_INTERVAL_MS, null, null, null);
+    }
+
+    private Retries(long initialIntervalMs, int maxAttempts, double backoffFactor, double jitter, long maxIntervalMs,
+            Predicate<? super T> valueShouldRetry, Predicate<? super Throwable> throwableShouldRetry,
+            Function<? super T, RetryAdvice> valueAdvice, long throttledInitialIntervalMs,
+            AdaptiveRateLimiter rateLimiter, RetryQuota retryQuota, Long deadlineNanos) {
         Preconditions.checkArgument(jitter >= 0 && jitter <= 1, "jitter must be between 0 and 1 inclusive");
         this.initialIntervalMs = initialIntervalMs;
         this.maxAttempts = maxAttempts;
@@ -28,8 +49,15 @@ public final class Retries<T> {
         this.maxIntervalMs = maxIntervalMs;
         this.valueShouldRetry = valueShouldRetry;
         this.throwableShouldRetry = throwableShouldRetry;
+        this.valueAdvice = valueAdvice;
+        this.throttledInitialIntervalMs = throttledInitialIntervalMs;
+        this.rateLimiter = rateLimiter;
+        this.retryQuota = retryQuota;
+        this.deadlineNanos = deadlineNanos;
     }
 
+    private static final long DEFAULT_THROTTLED_INITIAL_INTERVAL_MS = 1000;
+
     public static <T> Retries<T> create(Predicate<? super T> valueShouldRetry,
             Predicate<? super Throwable> throwableShouldRetry) {
         return new Retries<T>( //
@@ -43,41 +71,115 @@ public final class Retries<T> {
     }
 
     public T call(Callable<T> callable) {
-        return call(callable, valueShouldRetry);
+        if (valueAdvice != null) {
+            return callWithAdvice(callable, valueAdvice);
+        } else {
+            return call(callable, valueShouldRetry);
+        }
     }
 
     public <S> S call(Callable<S> callable, Predicate<? super S> valueShouldRetry) {
+        return callWithAdvice(callable, value -> valueShouldRetry.test(value) ? RetryAdvice.RETRY : RetryAdvice.NO_RETRY);
+    }
+
+    private <S> S callWithAdvice(Callable<S> callable, Function<? super S, RetryAdvice> valueAdvice) {
         long intervalMs = initialIntervalMs;
+        long throttledIntervalMs = throttledInitialIntervalMs;
         int attempt = 0;
+        // tokens taken from the retry quota for the last retry
+        int retryCost = 0;
         while (true) {
-            S value;
+            // only one of value and error is set after the attempt
+            S value = null;
+            Throwable error = null;
+            RetryAdvice advice;
             try {
                 attempt++;
+                if (rateLimiter != null) {
+                    rateLimiter.acquire();
+                }
                 value = callable.call();
-                if (!valueShouldRetry.test(value)) {
-                    return value;
+                advice = valueAdvice.apply(value);
+                if (rateLimiter != null) {
+                    rateLimiter.update(advice.throttled());
                 }
-                if (reachedMaxAttempts(attempt, maxAttempts)) {
-                    // note that caller is not aware that maxAttempts were reached, the caller just
-                    // receives the last error response
+                if (!advice.shouldRetry()) {
+                    if (retryQuota != null) {
+                        retryQuota.release(retryCost > 0 ? retryCost : RetryQuota.NO_RETRY_INCREMENT);
+                    }
                     return value;
                 }
             } catch (Throwable t) {
-                if (!throwableShouldRetry.test(t)) {
+                if (t instanceof CancellationException || !throwableShouldRetry.test(t)) {
                     rethrow(t);
                 }
-                if (reachedMaxAttempts(attempt, maxAttempts)) {
-                    throw new MaxAttemptsExceededException("exceeded max attempts " + maxAttempts, t);
+                error = t;
+                advice = RetryAdvice.RETRY;
+            }
+            // note that when giving up on an error response the caller is not aware why, the
+            // caller just receives the last error response
+            if (reachedMaxAttempts(attempt, maxAttempts)) {
+                if (error == null) {
+                    return value;
+                }
+                throw new MaxAttemptsExceededException("exceeded max attempts " + maxAttempts, error);
+            }
+            // throttling and other failures back off independently
+            long sleepMs = advice.throttled() //
+                    ? sleepMs(throttledIntervalMs, advice.retryAfterMs(), maxIntervalMs) //
+                    : sleepMs(intervalMs, advice.retryAfterMs(), maxIntervalMs);
+            if (deadlineNanos != null
+                    && System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sleepMs) - deadlineNanos >= 0) {
+                // the next attempt can't start before the deadline
+                if (error == null) {
+                    return value;
+                }
+                throw new DeadlineExceededException("deadline exceeded", error);
+            }
+            if (retryQuota != null) {
+                int cost = error == null ? RetryQuota.RETRY_COST : RetryQuota.EXCEPTION_RETRY_COST;
+                if (!retryQuota.tryAcquire(cost)) {
+                    // the client's retry budget is spent, fail fast
+                    if (error == null) {
+                        return value;
+                    }
+                    rethrow(error);
                 }
+                retryCost = cost;
             }
-            sleep(intervalMs);
-            //calculate the interval for the next retry
-            intervalMs = Math.round(backoffFactor * intervalMs);
-            if (maxIntervalMs > 0) {
-                intervalMs = Math.min(maxIntervalMs, intervalMs);
+            sleep(sleepMs);
+            if (advice.throttled()) {
+                throttledIntervalMs = nextIntervalMs(throttledIntervalMs, backoffFactor, maxIntervalMs, jitter);
+            } else {
+                intervalMs = nextIntervalMs(intervalMs, backoffFactor, maxIntervalMs, jitter);
             }
-            // apply jitter (if 0 then no change)
-            intervalMs = Math.round((1 - jitter * Math.random()) * intervalMs);
+        }
+    }
+
+    // VisibleForTesting
+    static long nextIntervalMs(long intervalMs, double backoffFactor, long maxIntervalMs, double jitter) {
+        //calculate the interval for the next retry
+        intervalMs = Math.round(backoffFactor * intervalMs);
+        if (maxIntervalMs > 0) {
+            intervalMs = Math.min(maxIntervalMs, intervalMs);
+        }
+        // apply jitter (if 0 then no change)
+        return Math.round((1 - jitter * Math.random()) * intervalMs);
+    }
+
+    /**
+     * Returns the back-off interval raised to the server requested delay (if any),
+     * capped at {@code maxIntervalMs} (if positive) so that a large
+     * {@code Retry-After} can't stall the caller indefinitely.
+     */
+    // VisibleForTesting
+    static long sleepMs(long intervalMs, long retryAfterMs, long maxIntervalMs) {
+        if (retryAfterMs <= intervalMs) {
+            return intervalMs;
+        } else if (maxIntervalMs > 0) {
+            return Math.max(intervalMs, Math.min(retryAfterMs, maxIntervalMs));
+        } else {
+            return retryAfterMs;
         }
     }
 
@@ -90,48 +192,122 @@ public final class Retries<T> {
         try {
             Thread.sleep(intervalMs);
         } catch (InterruptedException e) {
-            throw new RuntimeException(e);
+            // preserve the interrupt for the caller
+            Thread.currentThread().interrupt();
+            CancellationException x = new CancellationException("interrupted while waiting to retry");
+            x.initCause(e);
+            throw x;
         }
     }
 
+    /**
+     * Returns a copy that retries values according to the given predicate (any
+     * value advice is discarded).
+     */
     public <S> Retries<S> withValueShouldRetry(Predicate<? super S> valueShouldRetry) {
         return new Retries<S>(initialIntervalMs, maxAttempts, backoffFactor, jitter, maxIntervalMs, valueShouldRetry,
-                throwableShouldRetry);
+                throwableShouldRetry, null, throttledInitialIntervalMs, rateLimiter, retryQuota, deadlineNanos);
+    }
+
+    /**
+     * Returns a copy that classifies values with {@code valueAdvice} (instead of
+     * the value predicate) so that throttling can back off separately and server
+     * requested delays are honoured.
+     */
+    public Retries<T> withValueAdvice(Function<? super T, RetryAdvice> valueAdvice) {
+        Preconditions.checkNotNull(valueAdvice);
+        return new Retries<T>(initialIntervalMs, maxAttempts, backoffFactor, jitter, maxIntervalMs,
+                value -> valueAdvice.apply(value).shouldRetry(), throwableShouldRetry, valueAdvice,
+                throttledInitialIntervalMs, rateLimiter, retryQuota, deadlineNanos);
+    }
+
+    /**
+     * Returns a copy that waits for {@code rateLimiter} before every attempt and
+     * reports whether each attempt was throttled to it. Pass the same limiter to
+     * all retries that should share a send rate.
+     */
+    public Retries<T> withRateLimiter(AdaptiveRateLimiter rateLimiter) {
+        return new Retries<T>(initialIntervalMs, maxAttempts, backoffFactor, jitter, maxIntervalMs, valueShouldRetry,
+                throwableShouldRetry, valueAdvice, throttledInitialIntervalMs, rateLimiter, retryQuota, deadlineNanos);
+    }
+
+    /**
+     * Returns a copy without a rate limiter, for retries that wrap calls that are
+     * already rate limited (so that each attempt waits for one token, not two).
+     */
+    public Retries<T> withoutRateLimiter() {
+        return withRateLimiter(null);
+    }
+
+    /**
+     * Returns a copy that spends tokens from {@code retryQuota} for every retry
+     * and stops retrying when it is empty. Pass the same quota to all retries that
+     * should share a retry budget.
+     */
+    public Retries<T> withRetryQuota(RetryQuota retryQuota) {
+        return new Retries<T>(initialIntervalMs, maxAttempts, backoffFactor, jitter, maxIntervalMs, valueShouldRetry,
+                throwableShouldRetry, valueAdvice, throttledInitialIntervalMs, rateLimiter, retryQuota, deadlineNanos);
+    }
+
+    /**
+     * Returns a copy without a retry quota, for retries that wrap calls that
+     * already spend from (and refund) the quota, so that each logical call is
+     * counted once.
+     */
+    public Retries<T> withoutRetryQuota() {
+        return withRetryQuota(null);
+    }
+
+    /**
+     * Returns a copy that doesn't retry if the next attempt would start after
+     * {@code deadlineNanos} (compared with {@link System#nanoTime()}). When
+     * retrying an exception is abandoned, {@link DeadlineExceededException} is
+     * thrown with the exception as its cause.
+     */
+    public Retries<T> withDeadlineNanos(long deadlineNanos) {
+        return new Retries<T>(initialIntervalMs, maxAttempts, backoffFactor, jitter, maxIntervalMs, valueShouldRetry,
+                throwableShouldRetry, valueAdvice, throttledInitialIntervalMs, rateLimiter, retryQuota,
+                deadlineNanos);
     }
 
     public Retries<T> withInitialIntervalMs(long initialIntervalMs) {
         return new Retries<T>(initialIntervalMs, maxAttempts, backoffFactor, jitter, maxIntervalMs, valueShouldRetry,
-                throwableShouldRetry);
+                throwableShouldRetry, valueAdvice, throttledInitialIntervalMs, rateLimiter, retryQuota, deadlineNanos);
+    }
+
+    public Retries<T> withThrottledInitialIntervalMs(long throttledInitialIntervalMs) {
+        return new Retries<T>(initialIntervalMs, maxAttempts, backoffFactor, jitter, maxIntervalMs, valueShouldRetry,
+                throwableShouldRetry, valueAdvice, throttledInitialIntervalMs, rateLimiter, retryQuota, deadlineNanos);
     }
 
     public Retries<T> withMaxAttempts(int maxAttempts) {
         return new Retries<T>(initialIntervalMs, maxAttempts, backoffFactor, jitter, maxIntervalMs, valueShouldRetry,
-                throwableShouldRetry);
+                throwableShouldRetry, valueAdvice, throttledInitialIntervalMs, rateLimiter, retryQuota, deadlineNanos);
     }
 
     public Retries<T> withBackoffFactor(double backoffFactor) {
         return new Retries<T>(initialIntervalMs, maxAttempts, backoffFactor, jitter, maxIntervalMs, valueShouldRetry,
-                throwableShouldRetry);
+                throwableShouldRetry, valueAdvice, throttledInitialIntervalMs, rateLimiter, retryQuota, deadlineNanos);
     }
 
     public Retries<T> withMaxIntervalMs(long maxIntervalMs) {
         return new Retries<T>(initialIntervalMs, maxAttempts, backoffFactor, jitter, maxIntervalMs, valueShouldRetry,
-                throwableShouldRetry);
+                throwableShouldRetry, valueAdvice, throttledInitialIntervalMs, rateLimiter, retryQuota, deadlineNanos);
     }
     
     public Retries<T> withJitter(double jitter) {
         return new Retries<T>(initialIntervalMs, maxAttempts, backoffFactor, jitter, maxIntervalMs, valueShouldRetry,
-                throwableShouldRetry);
+                throwableShouldRetry, valueAdvice, throttledInitialIntervalMs, rateLimiter, retryQuota, deadlineNanos);
     }
 
     public Retries<T> withThrowableShouldRetry(Predicate<? super Throwable> throwableShouldRetry) {
         return new Retries<T>(initialIntervalMs, maxAttempts, backoffFactor, jitter, maxIntervalMs, valueShouldRetry,
-                throwableShouldRetry);
+                throwableShouldRetry, valueAdvice, throttledInitialIntervalMs, rateLimiter, retryQuota, deadlineNanos);
     }
 
     public Retries<T> copy() {
         return new Retries<>(initialIntervalMs, maxAttempts, backoffFactor, jitter, maxIntervalMs, valueShouldRetry,
-                throwableShouldRetry);
+                throwableShouldRetry, valueAdvice, throttledInitialIntervalMs, rateLimiter, retryQuota, deadlineNanos);
     }
 
     // VisibleForTesting
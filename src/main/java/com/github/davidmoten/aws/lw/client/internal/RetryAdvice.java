@@ -0,0 +1,53 @@
+package com.github.davidmoten.aws.lw.client.internal;
+
+/**
+ * The outcome of classifying an attempt for {@link Retries}: whether to retry,
+ * whether the failure was throttling (which uses a separate, longer back-off)
+ * and any delay requested by the server (the {@code Retry-After} header).
+ */
+public final class RetryAdvice {
+
+    public static final RetryAdvice NO_RETRY = new RetryAdvice(false, false, -1);
+    public static final RetryAdvice RETRY = new RetryAdvice(true, false, -1);
+    public static final RetryAdvice THROTTLED = new RetryAdvice(true, true, -1);
+
+    private final boolean shouldRetry;
+    private final boolean throttled;
+    private final long retryAfterMs;
+
+    private RetryAdvice(boolean shouldRetry, boolean throttled, long retryAfterMs) {
+        this.shouldRetry = shouldRetry;
+        this.throttled = throttled;
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    /**
+     * Returns this advice with the server requested delay, ignored if negative.
+     *
+     * @param retryAfterMs minimum delay before the next attempt, -1 if none
+     * @return advice with the given delay
+     */
+    public RetryAdvice withRetryAfterMs(long retryAfterMs) {
+        if (!shouldRetry || retryAfterMs < 0) {
+            return this;
+        }
+        return new RetryAdvice(shouldRetry, throttled, retryAfterMs);
+    }
+
+    public boolean shouldRetry() {
+        return shouldRetry;
+    }
+
+    public boolean throttled() {
+        return throttled;
+    }
+
+    /**
+     * Returns the minimum delay requested by the server before the next attempt.
+     *
+     * @return delay in ms, -1 if none
+     */
+    public long retryAfterMs() {
+        return retryAfterMs;
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.davidmoten.aws.lw.client.internal;
+
+import com.github.davidmoten.aws.lw.client.internal.util.Preconditions;
+
+/**
+ * Retry token bucket shared by all requests of a client (the AWS SDK "standard"
+ * retry quota). Each retry spends tokens and attempts that need no retry put
+ * tokens back, so once an endpoint is failing broadly the bucket empties and
+ * calls fail fast instead of multiplying the load by the max attempts.
+ */
+public final class RetryQuota {
+
+    public static final int DEFAULT_CAPACITY = 500;
+
+    static final int RETRY_COST = 5;
+    static final int EXCEPTION_RETRY_COST = 10;
+    static final int NO_RETRY_INCREMENT = 1;
+
+    private final int capacity;
+    private int available;
+
+    public RetryQuota(int capacity) {
+        Preconditions.checkArgument(capacity > 0, "capacity must be positive");
+        this.capacity = capacity;
+        this.available = capacity;
+    }
+
+    public static RetryQuota create() {
+        return new RetryQuota(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Takes {@code amount} tokens if that many are available.
+     *
+     * @param amount tokens to take
+     * @return true if the tokens were taken and the retry may proceed
+     */
+    public synchronized boolean tryAcquire(int amount) {
+        if (amount > available) {
+            return false;
+        }
+        available -= amount;
+        return true;
+    }
+
+    public synchronized void release(int amount) {
+        available = Math.min(capacity, available + amount);
+    }
+
+    public synchronized int available() {
+        return available;
+    }
+
+}
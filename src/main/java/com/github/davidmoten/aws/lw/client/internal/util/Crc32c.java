@@ -0,0 +1,53 @@
+package com.github.davidmoten.aws.lw.client.internal.util;
+
+import java.util.zip.Checksum;
+
+/**
+ * CRC-32C (Castagnoli) checksum. {@code java.util.zip.CRC32C} is only available
+ * from Java 9.
+ */
+public final class Crc32c implements Checksum {
+
+    private static final int POLYNOMIAL = 0x82F63B78; // reflected
+
+    private static final int[] TABLE = createTable();
+
+    private int crc = 0xFFFFFFFF;
+
+    private static int[] createTable() {
+        int[] table = new int[256];
+        for (int i = 0; i < 256; i++) {
+            int c = i;
+            for (int j = 0; j < 8; j++) {
+                c = (c & 1) != 0 ? (c >>> 1) ^ POLYNOMIAL : c >>> 1;
+            }
+            table[i] = c;
+        }
+        return table;
+    }
+
+    @Override
+    public void update(int b) {
+        crc = (crc >>> 8) ^ TABLE[(crc ^ b) & 0xFF];
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        int c = crc;
+        int end = off + len;
+        for (int i = off; i < end; i++) {
+            c = (c >>> 8) ^ TABLE[(c ^ b[i]) & 0xFF];
+        }
+        crc = c;
+    }
+
+    @Override
+    public long getValue() {
+        return (~crc) & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public void reset() {
+        crc = 0xFFFFFFFF;
+    }
+}
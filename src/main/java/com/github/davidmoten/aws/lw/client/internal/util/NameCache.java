@@ -0,0 +1,74 @@
+package com.github.davidmoten.aws.lw.client.internal.util;
+
+/**
+ * Returns one shared String per distinct name so that the repeated element or
+ * field names of a document (Key, Size, ETag, ...) are only created once.
+ * Lookups hash the characters in place so no String is created for a name
+ * already seen. Not thread-safe, use one instance per document.
+ */
+public final class NameCache {
+
+    // names in AWS responses are few, stop caching if a document has many
+    private static final int MAX_SIZE = 1024;
+
+    private String[] table = new String[64];
+    private int size;
+
+    public String get(StringBuilder b) {
+        int length = b.length();
+        int h = 0;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + b.charAt(i);
+        }
+        int mask = table.length - 1;
+        int index = spread(h) & mask;
+        for (;;) {
+            String s = table[index];
+            if (s == null) {
+                s = b.toString();
+                if (size < MAX_SIZE) {
+                    table[index] = s;
+                    size++;
+                    if (2 * size > table.length) {
+                        resize();
+                    }
+                }
+                return s;
+            } else if (s.hashCode() == h && contentEquals(s, b)) {
+                return s;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean contentEquals(String s, StringBuilder b) {
+        if (s.length() != b.length()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) != b.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void resize() {
+        String[] old = table;
+        table = new String[old.length * 2];
+        int mask = table.length - 1;
+        for (String s : old) {
+            if (s != null) {
+                int index = spread(s.hashCode()) & mask;
+                while (table[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                table[index] = s;
+            }
+        }
+    }
+}
@@ -27,4 +27,9 @@ public final class Preconditions {
             throw new IllegalArgumentException();
     }
 
+    public static void checkState(boolean b, String message) {
+        if (!b)
+            throw new IllegalStateException(message);
+    }
+
 }
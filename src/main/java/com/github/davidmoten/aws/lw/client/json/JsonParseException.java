@@ -0,0 +1,25 @@
+package com.github.davidmoten.aws.lw.client.json;
+
+/**
+ * Thrown when a JSON document is malformed.
+ */
+public final class JsonParseException extends RuntimeException {
+
+    private static final long serialVersionUID = -5404717622744958412L;
+
+    private final int lineNumber;
+
+    public JsonParseException(int lineNumber, String message) {
+        super(message + " (line " + lineNumber + ")");
+        this.lineNumber = lineNumber;
+    }
+
+    /**
+     * Returns the line number (starting at 1) where the problem was found.
+     *
+     * @return line number
+     */
+    public int lineNumber() {
+        return lineNumber;
+    }
+}
@@ -0,0 +1,539 @@
+package com.github.davidmoten.aws.lw.client.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.github.davidmoten.aws.lw.client.internal.util.NameCache;
+import com.github.davidmoten.aws.lw.client.internal.util.Preconditions;
+
+/**
+ * Streaming pull parser for JSON documents (RFC 8259). No tree is built: memory
+ * use is bounded by the nesting depth and the longest single string, so large
+ * responses from JSON-protocol services (DynamoDB, Lambda, Kinesis, SQS, Logs)
+ * can be processed as they arrive.
+ *
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * try (JsonReader r = request.responseAsJson()) {
+ *     r.next(); // BEGIN_OBJECT
+ *     while (r.next() == Token.NAME) {
+ *         if (r.name().equals("TableNames")) {
+ *             r.next(); // BEGIN_ARRAY
+ *             while (r.next() == Token.STRING) {
+ *                 names.add(r.text());
+ *             }
+ *         } else {
+ *             r.skipValue();
+ *         }
+ *     }
+ * }
+ * </pre>
+ *
+ * <p>
+ * Parse problems are reported as {@link JsonParseException} and I/O problems as
+ * {@link UncheckedIOException}.
+ */
+// NotThreadSafe
+public final class JsonReader implements Closeable {
+
+    public enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT;
+    }
+
+    private static final int BUFFER_SIZE = 8192;
+
+    // scopes on the stack
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_OBJECT = 2;
+    // a name has been read, its value is next
+    private static final int DANGLING_NAME = 3;
+    private static final int NONEMPTY_OBJECT = 4;
+    private static final int EMPTY_ARRAY = 5;
+    private static final int NONEMPTY_ARRAY = 6;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    private int lineNumber = 1;
+
+    private int[] stack = new int[16];
+    private int stackSize = 1; // starts with EMPTY_DOCUMENT
+
+    private Token token;
+    private String name;
+    private final StringBuilder text = new StringBuilder();
+
+    // true while skipValue() is running, strings are then not accumulated
+    private boolean skipping;
+
+    private final NameCache names = new NameCache();
+    private final StringBuilder nameBuffer = new StringBuilder();
+
+    private JsonReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    public static JsonReader create(Reader reader) {
+        Preconditions.checkNotNull(reader);
+        return new JsonReader(reader);
+    }
+
+    /**
+     * Returns a reader of the UTF-8 encoded JSON in {@code in}. The stream is
+     * closed when the reader is closed.
+     *
+     * @param in UTF-8 encoded JSON
+     * @return json reader
+     */
+    public static JsonReader create(InputStream in) {
+        Preconditions.checkNotNull(in);
+        return new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    public static JsonReader create(String json) {
+        Preconditions.checkNotNull(json);
+        return new JsonReader(new StringReader(json));
+    }
+
+    /**
+     * Advances to the next token and returns it.
+     *
+     * @return the next token
+     * @throws JsonParseException if the JSON is malformed
+     */
+    public Token next() {
+        if (token == Token.END_DOCUMENT) {
+            return token;
+        }
+        int scope = stack[stackSize - 1];
+        char ch;
+        switch (scope) {
+        case EMPTY_DOCUMENT:
+            stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+            return value(readNonWhitespace());
+        case NONEMPTY_DOCUMENT:
+            int c = readNonWhitespaceOrEnd();
+            if (c != -1) {
+                throw unexpected((char) c, "end of document");
+            }
+            return token = Token.END_DOCUMENT;
+        case EMPTY_OBJECT:
+            ch = readNonWhitespace();
+            if (ch == '}') {
+                return pop(Token.END_OBJECT);
+            }
+            return name(ch);
+        case NONEMPTY_OBJECT:
+            ch = readNonWhitespace();
+            if (ch == '}') {
+                return pop(Token.END_OBJECT);
+            } else if (ch == ',') {
+                return name(readNonWhitespace());
+            } else {
+                throw unexpected(ch, ", or }");
+            }
+        case DANGLING_NAME:
+            stack[stackSize - 1] = NONEMPTY_OBJECT;
+            return value(readNonWhitespace());
+        case EMPTY_ARRAY:
+            stack[stackSize - 1] = NONEMPTY_ARRAY;
+            ch = readNonWhitespace();
+            if (ch == ']') {
+                return pop(Token.END_ARRAY);
+            }
+            return value(ch);
+        default: // NONEMPTY_ARRAY
+            ch = readNonWhitespace();
+            if (ch == ']') {
+                return pop(Token.END_ARRAY);
+            } else if (ch == ',') {
+                return value(readNonWhitespace());
+            } else {
+                throw unexpected(ch, ", or ]");
+            }
+        }
+    }
+
+    public Token token() {
+        return token;
+    }
+
+    /**
+     * Returns the field name when positioned on a {@link Token#NAME}.
+     *
+     * @return field name
+     * @throws IllegalStateException if not positioned on a NAME
+     */
+    public String name() {
+        checkToken(token == Token.NAME, "name");
+        return name;
+    }
+
+    /**
+     * Returns the text of a {@link Token#STRING} (unescaped),
+     * {@link Token#NUMBER} (as written) or {@link Token#BOOLEAN}.
+     *
+     * @return text of the current value
+     * @throws IllegalStateException if not positioned on one of those tokens
+     */
+    public String text() {
+        checkToken(token == Token.STRING || token == Token.NUMBER || token == Token.BOOLEAN, "text");
+        return text.toString();
+    }
+
+    public boolean booleanValue() {
+        checkToken(token == Token.BOOLEAN, "boolean");
+        return text.charAt(0) == 't';
+    }
+
+    /**
+     * Returns the current {@link Token#NUMBER} or numeric {@link Token#STRING} (as
+     * DynamoDB encodes numbers) as a long.
+     *
+     * @return value as a long
+     * @throws NumberFormatException if the value is not an integer in range
+     */
+    public long longValue() {
+        checkToken(token == Token.NUMBER || token == Token.STRING, "number");
+        return Long.parseLong(text.toString());
+    }
+
+    /**
+     * Returns the current {@link Token#NUMBER} or numeric {@link Token#STRING} as a
+     * double.
+     *
+     * @return value as a double
+     * @throws NumberFormatException if the value is not a number
+     */
+    public double doubleValue() {
+        checkToken(token == Token.NUMBER || token == Token.STRING, "number");
+        return Double.parseDouble(text.toString());
+    }
+
+    /**
+     * Returns the number of objects and arrays open at the current position. A
+     * container is counted from its begin token up to (not including) its end
+     * token.
+     *
+     * @return nesting depth
+     */
+    public int depth() {
+        return stackSize - 1;
+    }
+
+    public int lineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Skips a value without materializing its strings. When positioned on a
+     * {@link Token#NAME} the value of that field is skipped. When positioned on
+     * {@link Token#BEGIN_OBJECT} or {@link Token#BEGIN_ARRAY} the reader is moved
+     * to the matching end token. Otherwise does nothing.
+     */
+    public void skipValue() {
+        if (token == Token.NAME) {
+            skipping = true;
+            try {
+                next();
+            } finally {
+                skipping = false;
+            }
+        }
+        if (token == Token.BEGIN_OBJECT || token == Token.BEGIN_ARRAY) {
+            int target = stackSize - 1;
+            skipping = true;
+            try {
+                while (stackSize > target) {
+                    next();
+                }
+            } finally {
+                skipping = false;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Token name(char ch) {
+        if (ch != '"') {
+            throw unexpected(ch, "\"");
+        }
+        if (skipping) {
+            readString(null);
+        } else {
+            nameBuffer.setLength(0);
+            readString(nameBuffer);
+            name = names.get(nameBuffer);
+        }
+        char colon = readNonWhitespace();
+        if (colon != ':') {
+            throw unexpected(colon, ":");
+        }
+        stack[stackSize - 1] = DANGLING_NAME;
+        return token = Token.NAME;
+    }
+
+    private Token value(char ch) {
+        text.setLength(0);
+        switch (ch) {
+        case '{':
+            push(EMPTY_OBJECT);
+            return token = Token.BEGIN_OBJECT;
+        case '[':
+            push(EMPTY_ARRAY);
+            return token = Token.BEGIN_ARRAY;
+        case '"':
+            readString(skipping ? null : text);
+            return token = Token.STRING;
+        case 't':
+            literal("rue");
+            text.append("true");
+            return token = Token.BOOLEAN;
+        case 'f':
+            literal("alse");
+            text.append("false");
+            return token = Token.BOOLEAN;
+        case 'n':
+            literal("ull");
+            return token = Token.NULL;
+        default:
+            if (ch == '-' || (ch >= '0' && ch <= '9')) {
+                readNumber(ch);
+                return token = Token.NUMBER;
+            }
+            throw unexpected(ch, "value");
+        }
+    }
+
+    private void push(int scope) {
+        if (stackSize == stack.length) {
+            stack = Arrays.copyOf(stack, stack.length * 2);
+        }
+        stack[stackSize++] = scope;
+    }
+
+    private Token pop(Token t) {
+        stackSize--;
+        return token = t;
+    }
+
+    private void literal(String rest) {
+        for (int i = 0; i < rest.length(); i++) {
+            char ch = read();
+            if (ch != rest.charAt(i)) {
+                throw unexpected(ch, "literal true, false or null");
+            }
+        }
+    }
+
+    private void readNumber(char first) {
+        text.append(first);
+        for (;;) {
+            if (pos == limit && !fillOrEnd()) {
+                break;
+            }
+            char ch = buffer[pos];
+            if ((ch >= '0' && ch <= '9') || ch == '.' || ch == 'e' || ch == 'E' || ch == '+' || ch == '-') {
+                text.append(ch);
+                pos++;
+            } else {
+                break;
+            }
+        }
+        if (!isValidNumber(text)) {
+            throw new JsonParseException(lineNumber, "Invalid number: " + text);
+        }
+    }
+
+    // VisibleForTesting
+    static boolean isValidNumber(CharSequence s) {
+        int i = 0;
+        int n = s.length();
+        if (i < n && s.charAt(i) == '-') {
+            i++;
+        }
+        if (i == n) {
+            return false;
+        }
+        if (s.charAt(i) == '0') {
+            i++;
+        } else {
+            int start = i;
+            i = digits(s, i);
+            if (i == start) {
+                return false;
+            }
+        }
+        if (i < n && s.charAt(i) == '.') {
+            int start = ++i;
+            i = digits(s, i);
+            if (i == start) {
+                return false;
+            }
+        }
+        if (i < n && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            i++;
+            if (i < n && (s.charAt(i) == '+' || s.charAt(i) == '-')) {
+                i++;
+            }
+            int start = i;
+            i = digits(s, i);
+            if (i == start) {
+                return false;
+            }
+        }
+        return i == n;
+    }
+
+    private static int digits(CharSequence s, int i) {
+        while (i < s.length() && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+            i++;
+        }
+        return i;
+    }
+
+    // the opening quote has been read, b is null if the string is to be skipped
+    private void readString(StringBuilder b) {
+        for (;;) {
+            int start = pos;
+            while (pos < limit) {
+                char ch = buffer[pos];
+                if (ch == '"' || ch == '\\') {
+                    break;
+                } else if (ch < 0x20) {
+                    throw new JsonParseException(lineNumber, "Unescaped control character in string");
+                }
+                pos++;
+            }
+            if (b != null) {
+                b.append(buffer, start, pos - start);
+            }
+            if (pos == limit) {
+                fill();
+                continue;
+            }
+            char ch = buffer[pos++];
+            if (ch == '"') {
+                return;
+            }
+            // backslash
+            char escaped = readEscaped();
+            if (b != null) {
+                b.append(escaped);
+            }
+        }
+    }
+
+    private char readEscaped() {
+        char ch = read();
+        switch (ch) {
+        case '"':
+        case '\\':
+        case '/':
+            return ch;
+        case 'b':
+            return '\b';
+        case 'f':
+            return '\f';
+        case 'n':
+            return '\n';
+        case 'r':
+            return '\r';
+        case 't':
+            return '\t';
+        case 'u':
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                int digit = Character.digit(read(), 16);
+                if (digit < 0) {
+                    throw new JsonParseException(lineNumber, "Invalid \\u escape");
+                }
+                value = (value << 4) | digit;
+            }
+            return (char) value;
+        default:
+            throw unexpected(ch, "escape character");
+        }
+    }
+
+    private char readNonWhitespace() {
+        int c = readNonWhitespaceOrEnd();
+        if (c == -1) {
+            throw new JsonParseException(lineNumber, "Unexpected end of data reached");
+        }
+        return (char) c;
+    }
+
+    private int readNonWhitespaceOrEnd() {
+        for (;;) {
+            if (pos == limit && !fillOrEnd()) {
+                return -1;
+            }
+            char ch = buffer[pos++];
+            if (ch == '\n') {
+                lineNumber++;
+            } else if (ch != ' ' && ch != '\t' && ch != '\r') {
+                return ch;
+            }
+        }
+    }
+
+    private char read() {
+        if (pos == limit) {
+            fill();
+        }
+        return buffer[pos++];
+    }
+
+    private void fill() {
+        if (!fillOrEnd()) {
+            throw new JsonParseException(lineNumber, "Unexpected end of data reached");
+        }
+    }
+
+    private boolean fillOrEnd() {
+        try {
+            int n;
+            do {
+                n = reader.read(buffer, 0, buffer.length);
+            } while (n == 0);
+            if (n < 0) {
+                return false;
+            }
+            pos = 0;
+            limit = n;
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private JsonParseException unexpected(char ch, String expected) {
+        return new JsonParseException(lineNumber, "Unexpected character '" + ch + "', expected " + expected);
+    }
+
+    private void checkToken(boolean condition, String what) {
+        if (!condition) {
+            throw new IllegalStateException(what + " not available for token " + token);
+        }
+    }
+}
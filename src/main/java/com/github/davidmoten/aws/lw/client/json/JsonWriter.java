@@ -0,0 +1,266 @@
+package com.github.davidmoten.aws.lw.client.json;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.github.davidmoten.aws.lw.client.internal.util.Preconditions;
+
+/**
+ * Writes compact JSON directly to a {@link Writer} in one pass. Calls must
+ * describe a single well-formed value (an {@link IllegalStateException} is
+ * thrown otherwise).
+ *
+ * <pre>
+ * ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+ * try (JsonWriter w = JsonWriter.create(bytes)) {
+ *     w.beginObject() //
+ *             .name("TableName").value("orders") //
+ *             .name("Limit").value(100) //
+ *             .endObject();
+ * }
+ * request.requestBody(bytes.toByteArray());
+ * </pre>
+ *
+ * <p>
+ * I/O problems are reported as {@link UncheckedIOException}.
+ */
+// NotThreadSafe
+public final class JsonWriter implements Closeable {
+
+    // scopes on the stack
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_OBJECT = 2;
+    private static final int DANGLING_NAME = 3;
+    private static final int NONEMPTY_OBJECT = 4;
+    private static final int EMPTY_ARRAY = 5;
+    private static final int NONEMPTY_ARRAY = 6;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Writer writer;
+    private int[] stack = new int[16];
+    private int stackSize = 1; // starts with EMPTY_DOCUMENT
+
+    private JsonWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    public static JsonWriter create(Writer writer) {
+        Preconditions.checkNotNull(writer);
+        return new JsonWriter(writer);
+    }
+
+    /**
+     * Returns a writer of UTF-8 encoded JSON to {@code out}. The stream is closed
+     * when the writer is closed.
+     *
+     * @param out destination
+     * @return json writer
+     */
+    public static JsonWriter create(OutputStream out) {
+        Preconditions.checkNotNull(out);
+        return new JsonWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+    }
+
+    public JsonWriter beginObject() {
+        beforeValue();
+        push(EMPTY_OBJECT);
+        return write('{');
+    }
+
+    public JsonWriter endObject() {
+        int scope = stack[stackSize - 1];
+        Preconditions.checkState(scope == EMPTY_OBJECT || scope == NONEMPTY_OBJECT, "not in an object");
+        stackSize--;
+        return write('}');
+    }
+
+    public JsonWriter beginArray() {
+        beforeValue();
+        push(EMPTY_ARRAY);
+        return write('[');
+    }
+
+    public JsonWriter endArray() {
+        int scope = stack[stackSize - 1];
+        Preconditions.checkState(scope == EMPTY_ARRAY || scope == NONEMPTY_ARRAY, "not in an array");
+        stackSize--;
+        return write(']');
+    }
+
+    public JsonWriter name(String name) {
+        Preconditions.checkNotNull(name);
+        int scope = stack[stackSize - 1];
+        if (scope == NONEMPTY_OBJECT) {
+            write(',');
+        } else {
+            Preconditions.checkState(scope == EMPTY_OBJECT, "name not expected here");
+        }
+        stack[stackSize - 1] = DANGLING_NAME;
+        writeString(name);
+        return write(':');
+    }
+
+    /**
+     * Writes a string value or {@code null} if {@code value} is null.
+     *
+     * @param value string value
+     * @return this
+     */
+    public JsonWriter value(String value) {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        writeString(value);
+        return this;
+    }
+
+    public JsonWriter value(long value) {
+        beforeValue();
+        return write(Long.toString(value));
+    }
+
+    public JsonWriter value(double value) {
+        Preconditions.checkArgument(!Double.isNaN(value) && !Double.isInfinite(value),
+                "JSON numbers must be finite: " + value);
+        beforeValue();
+        return write(Double.toString(value));
+    }
+
+    public JsonWriter value(boolean value) {
+        beforeValue();
+        return write(value ? "true" : "false");
+    }
+
+    public JsonWriter nullValue() {
+        beforeValue();
+        return write("null");
+    }
+
+    public void flush() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Flushes and closes the underlying writer.
+     */
+    @Override
+    public void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void beforeValue() {
+        int scope = stack[stackSize - 1];
+        switch (scope) {
+        case EMPTY_DOCUMENT:
+            stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+            break;
+        case DANGLING_NAME:
+            stack[stackSize - 1] = NONEMPTY_OBJECT;
+            break;
+        case EMPTY_ARRAY:
+            stack[stackSize - 1] = NONEMPTY_ARRAY;
+            break;
+        case NONEMPTY_ARRAY:
+            write(',');
+            break;
+        case NONEMPTY_DOCUMENT:
+            throw new IllegalStateException("JSON must have only one top-level value");
+        default:
+            throw new IllegalStateException("name expected before value");
+        }
+    }
+
+    private void push(int scope) {
+        if (stackSize == stack.length) {
+            stack = Arrays.copyOf(stack, stack.length * 2);
+        }
+        stack[stackSize++] = scope;
+    }
+
+    private void writeString(String s) {
+        try {
+            writer.write('"');
+            int start = 0;
+            int length = s.length();
+            for (int i = 0; i < length; i++) {
+                char ch = s.charAt(i);
+                if (ch < 0x20 || ch == '"' || ch == '\\' || ch == '\u2028' || ch == '\u2029') {
+                    writer.write(s, start, i - start);
+                    writeEscaped(ch);
+                    start = i + 1;
+                }
+            }
+            writer.write(s, start, length - start);
+            writer.write('"');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeEscaped(char ch) throws IOException {
+        writer.write('\\');
+        switch (ch) {
+        case '"':
+        case '\\':
+            writer.write(ch);
+            break;
+        case '\n':
+            writer.write('n');
+            break;
+        case '\r':
+            writer.write('r');
+            break;
+        case '\t':
+            writer.write('t');
+            break;
+        case '\b':
+            writer.write('b');
+            break;
+        case '\f':
+            writer.write('f');
+            break;
+        default:
+            writer.write('u');
+            writer.write(HEX[(ch >> 12) & 0xF]);
+            writer.write(HEX[(ch >> 8) & 0xF]);
+            writer.write(HEX[(ch >> 4) & 0xF]);
+            writer.write(HEX[ch & 0xF]);
+        }
+    }
+
+    private JsonWriter write(char ch) {
+        try {
+            writer.write(ch);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return this;
+    }
+
+    private JsonWriter write(String s) {
+        try {
+            writer.write(s);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return this;
+    }
+}
@@ -32,28 +32,29 @@ package com.github.davidmoten.aws.lw.client.xml;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
-import java.io.StringReader;
 import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.RandomAccess;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import com.github.davidmoten.aws.lw.client.internal.util.Preconditions;
 
 /* 
  * The NanoXML 2 Lite licence blurb is included here. The class has been 
- * completely butchered but the core xml parsing routines are thanks to 
- * the NanoXML authors.
+ * completely butchered but the core xml parsing routines (now in XmlParser)
+ * are thanks to the NanoXML authors.
  *  
  **/
 
@@ -87,57 +88,63 @@ import com.github.davidmoten.aws.lw.client.internal.util.Preconditions;
 
 public final class XmlElement {
 
-    private List<XmlElement> children;
-    private Map<String, String> attributes;
-    private String name;
+    private static final String[] NO_ATTRIBUTES = new String[0];
+
+    private static final List<XmlElement> NO_CHILDREN = Collections.emptyList();
 
     /**
-     * The #PCDATA content of the object. null if no #PCDATA, can be empty string
+     * Below this many children a scan is cheaper than building the name index.
      */
-    private String content; // non-null
+    private static final int NAME_INDEX_MIN_CHILDREN = 8;
 
-    private static final Map<String, char[]> ENTITIES = createEntities();
+    // fields are assigned by XmlParser
 
-    /**
-     * The line number where the element starts.
-     *
-     */
-    private int lineNr;
+    String name;
 
     /**
-     * <code>true</code> if the leading and trailing whitespace of #PCDATA sections
-     * have to be ignored.
+     * The #PCDATA content of the object, can be empty string.
      */
-    private final boolean ignoreLeadingAndTrailingWhitespace;
+    String content; // non-null
 
     /**
-     * Character read too much. This character provides push-back functionality to
-     * the input reader without having to use a PushbackReader. If there is no such
-     * character, this field is '\0'.
+     * Attribute name/value pairs in document order. Shared empty array if none.
      */
-    private char charReadTooMuch;
+    String[] attributes;
 
     /**
-     * The reader provided by the caller of the parse method.
+     * Shared empty list until the first child is added.
      */
-    private Reader reader;
+    private List<XmlElement> children;
 
     /**
-     * The current line number in the source content.
+     * Children by name, built on the first lookup by name (for elements with
+     * many children) and discarded when a child is added.
      */
-    private int parserLineNr;
+    private volatile Map<String, List<XmlElement>> nameIndex;
 
-    private XmlElement(boolean ignoreLeadingAndTrailingWhitespace) {
-        this.ignoreLeadingAndTrailingWhitespace = ignoreLeadingAndTrailingWhitespace;
+    XmlElement() {
         this.name = null;
         this.content = "";
-        this.attributes = new HashMap<>();
-        this.children = new ArrayList<>();
-        this.lineNr = 0;
+        this.attributes = NO_ATTRIBUTES;
+        this.children = NO_CHILDREN;
     }
 
     public void addChild(XmlElement child) {
-        children.add(child);
+        mutableChildren().add(child);
+        nameIndex = null;
+    }
+
+    private List<XmlElement> mutableChildren() {
+        if (children == NO_CHILDREN) {
+            children = new ArrayList<>();
+        }
+        return children;
+    }
+
+    void trimChildren() {
+        if (children instanceof ArrayList) {
+            ((ArrayList<XmlElement>) children).trimToSize();
+        }
     }
 
     public int countChildren() {
@@ -149,15 +156,38 @@ public final class XmlElement {
     }
 
     public Set<String> attributeNames() {
-        return attributes.keySet();
+        if (attributes.length == 0) {
+            return Collections.emptySet();
+        }
+        Set<String> set = new LinkedHashSet<>();
+        for (int i = 0; i < attributes.length; i += 2) {
+            set.add(attributes[i]);
+        }
+        return set;
     }
 
+    /**
+     * Returns the children of this element. The list is live, changes to it
+     * change the children of this element.
+     *
+     * @return children
+     */
     public List<XmlElement> children() {
-        return children;
+        return new Children();
     }
 
     public List<XmlElement> childrenWithName(String name) {
-        return children.stream().filter(x -> name.equals(x.name())).collect(Collectors.toList());
+        if (children.size() < NAME_INDEX_MIN_CHILDREN) {
+            List<XmlElement> list = new ArrayList<>();
+            for (XmlElement child : children) {
+                if (name.equals(child.name)) {
+                    list.add(child);
+                }
+            }
+            return list;
+        } else {
+            return new ArrayList<>(nameIndex().getOrDefault(name, NO_CHILDREN));
+        }
     }
 
     public XmlElement firstChild() {
@@ -168,22 +198,52 @@ public final class XmlElement {
         return children.get(index);
     }
 
+    /**
+     * Returns the element found by following the given child names from this
+     * element. Where an element has more than one child with a name the last one
+     * is used.
+     *
+     * @param names child names
+     * @return the element at the end of the path
+     * @throws NoSuchElementException if a child is not found
+     */
     public XmlElement child(String... names) {
         XmlElement x = this;
-        XmlElement y = null;
         for (String name : names) {
-            for (XmlElement child : x.children) {
-                if (child.name().equals(name)) {
-                    y = child;
-                }
-            }
+            XmlElement y = x.lastChildWithName(name);
             if (y == null) {
                 throw new NoSuchElementException("child not found with name: " + name);
-            } else {
-                x = y;
             }
+            x = y;
         }
-        return y;
+        return x;
+    }
+
+    private XmlElement lastChildWithName(String name) {
+        if (children.size() < NAME_INDEX_MIN_CHILDREN) {
+            for (int i = children.size() - 1; i >= 0; i--) {
+                XmlElement child = children.get(i);
+                if (name.equals(child.name)) {
+                    return child;
+                }
+            }
+            return null;
+        } else {
+            List<XmlElement> list = nameIndex().get(name);
+            return list == null ? null : list.get(list.size() - 1);
+        }
+    }
+
+    private Map<String, List<XmlElement>> nameIndex() {
+        Map<String, List<XmlElement>> index = nameIndex;
+        if (index == null) {
+            index = new HashMap<>();
+            for (XmlElement child : children) {
+                index.computeIfAbsent(child.name, k -> new ArrayList<>(1)).add(child);
+            }
+            nameIndex = index;
+        }
+        return index;
     }
 
     public String content(String... names) {
@@ -199,11 +259,12 @@ public final class XmlElement {
     }
 
     /**
-     * Returns the line nr in the source data on which the element is found. This
-     * method returns <code>0</code> there is no associated source data.
+     * Returns the line nr in the source data on which the element is found. Line
+     * numbers are not retained by parsed elements so this method returns
+     * <code>0</code>.
      */
     public int lineNumber() {
-        return this.lineNr;
+        return 0;
     }
 
     /**
@@ -225,7 +286,12 @@ public final class XmlElement {
      */
     public String attribute(String name, String defaultValue) {
         Preconditions.checkNotNull(name);
-        return this.attributes.getOrDefault(name, defaultValue);
+        for (int i = 0; i < attributes.length; i += 2) {
+            if (name.equals(attributes[i])) {
+                return attributes[i + 1];
+            }
+        }
+        return defaultValue;
     }
 
     /**
@@ -242,38 +308,43 @@ public final class XmlElement {
     public static XmlElement parse(Reader reader, boolean ignoreLeadingAndTrailingWhitespace)
             throws IOException, XmlParseException {
         Preconditions.checkNotNull(reader);
-        XmlElement x = new XmlElement(ignoreLeadingAndTrailingWhitespace);
-        x.parseFromReader(reader);
-        return x;
+        return XmlParser.parse(reader, ignoreLeadingAndTrailingWhitespace);
     }
 
-    private void parseFromReader(Reader reader) throws IOException, XmlParseException {
-        Preconditions.checkNotNull(reader);
-        this.name = null;
-        this.content = "";
-        this.attributes = new HashMap<>();
-        this.children = new ArrayList<>();
-        this.charReadTooMuch = '\0';
-        this.reader = reader;
-        this.parserLineNr = 1;
-
-        for (;;) {
-            char ch = this.scanWhitespace();
+    /**
+     * Parses UTF-8 encoded XML. The bytes are decoded as they are scanned so no
+     * String copy of the whole document is made.
+     *
+     * @param bytes UTF-8 encoded XML
+     * @return parsed document
+     * @throws XmlParseException if the XML is malformed
+     */
+    public static XmlElement parse(byte[] bytes) throws XmlParseException {
+        return parse(bytes, true);
+    }
 
-            if (ch != '<') {
-                throw this.createUnexpectedInputException("<");
-            }
+    public static XmlElement parse(byte[] bytes, boolean ignoreLeadingAndTrailingWhitespace)
+            throws XmlParseException {
+        Preconditions.checkNotNull(bytes);
+        return XmlParser.parse(bytes, ignoreLeadingAndTrailingWhitespace);
+    }
 
-            ch = this.readChar();
+    /**
+     * Parses UTF-8 encoded XML from the stream (which is not closed).
+     *
+     * @param in UTF-8 encoded XML
+     * @return parsed document
+     * @throws XmlParseException if the XML is malformed
+     * @throws IOException       if reading from the stream fails
+     */
+    public static XmlElement parse(InputStream in) throws XmlParseException, IOException {
+        return parse(in, true);
+    }
 
-            if ((ch == '!') || (ch == '?')) {
-                this.skipSpecialTag(0);
-            } else {
-                this.unreadChar(ch);
-                this.scanElement(this);
-                return;
-            }
-        }
+    public static XmlElement parse(InputStream in, boolean ignoreLeadingAndTrailingWhitespace)
+            throws XmlParseException, IOException {
+        Preconditions.checkNotNull(in);
+        return XmlParser.parse(in, ignoreLeadingAndTrailingWhitespace);
     }
 
     public static XmlElement parse(String string) throws XmlParseException {
@@ -283,7 +354,21 @@ public final class XmlElement {
     public static XmlElement parse(String string, boolean ignoreLeadingAndTrailingWhitespace)
             throws XmlParseException {
         Preconditions.checkNotNull(string);
-        return parseUnchecked(new StringReader(string), ignoreLeadingAndTrailingWhitespace);
+        return XmlParser.parse(string.toCharArray(), ignoreLeadingAndTrailingWhitespace);
+    }
+
+    /**
+     * Returns the text of the elements at the given paths (relative to the root
+     * element, for example {@code Contents/Key}) without building the document.
+     * Other subtrees are skipped. Use {@link XmlProjection#compile(String...)}
+     * directly to reuse the compiled paths across documents.
+     *
+     * @param reader document
+     * @param paths  element paths relative to the root element
+     * @return values for each path in document order
+     */
+    public static Map<String, List<String>> select(Reader reader, String... paths) {
+        return XmlProjection.compile(paths).apply(reader);
     }
 
     // VisibleForTesting
@@ -296,10 +381,6 @@ public final class XmlElement {
         }
     }
 
-    private XmlElement createAnotherElement() {
-        return new XmlElement(this.ignoreLeadingAndTrailingWhitespace);
-    }
-
     public String toString() {
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         OutputStreamWriter writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
@@ -326,24 +407,15 @@ public final class XmlElement {
         Preconditions.checkNotNull(writer);
         Preconditions.checkNotNull(name);
         Preconditions.checkNotNull(content);
-//        if (this.name == null) {
-//            writeEncoded(writer, this.content);
-//            return;
-//        }
         writer.write('<');
         writer.write(this.name);
-        if (!this.attributes.isEmpty()) {
-            Enumeration<String> en = Collections.enumeration(this.attributes.keySet());
-            while (en.hasMoreElements()) {
-                writer.write(' ');
-                String key = (String) en.nextElement();
-                String value = (String) this.attributes.get(key);
-                writer.write(key);
-                writer.write('=');
-                writer.write('"');
-                writeEncoded(writer, value);
-                writer.write('"');
-            }
+        for (int i = 0; i < this.attributes.length; i += 2) {
+            writer.write(' ');
+            writer.write(this.attributes[i]);
+            writer.write('=');
+            writer.write('"');
+            writeEncoded(writer, this.attributes[i + 1]);
+            writer.write('"');
         }
         if (!content.isEmpty()) {
             writer.write('>');
@@ -421,23 +493,6 @@ public final class XmlElement {
         }
     }
 
-    /**
-     * Scans an identifier from the current reader. The scanned identifier is
-     * appended to <code>result</code>.
-     *
-     * @param result The buffer in which the scanned identifier will be put.
-     */
-    private void scanIdentifier(StringBuilder result) throws IOException {
-        for (;;) {
-            char ch = this.readChar();
-            if (!isValidIdentifierCharacter(ch)) {
-                this.unreadChar(ch);
-                return;
-            }
-            result.append(ch);
-        }
-    }
-
     // VisibleForTesting
     static boolean isValidIdentifierCharacter(char ch) {
         return ((ch >= 'A') && (ch <= 'Z')) || //
@@ -450,449 +505,41 @@ public final class XmlElement {
                 (ch > '\u007E');
     }
 
-    /**
-     * This method scans an identifier from the current reader.
-     *
-     * @return the next character following the whitespace.
-     */
-    private char scanWhitespace() throws IOException {
-        for (;;) {
-            char ch = this.readChar();
-            switch (ch) {
-            case ' ':
-            case '\t':
-            case '\n':
-            case '\r':
-                break;
-            default:
-                return ch;
-            }
-        }
-    }
+    // a view rather than the list itself so that leaves can share the empty list
+    // and so that the name index is discarded on any change
+    private final class Children extends AbstractList<XmlElement> implements RandomAccess {
 
-    /**
-     * This method scans an identifier from the current reader. The scanned
-     * whitespace is appended to <code>result</code>.
-     *
-     * @return the next character following the whitespace.
-     */
-    private char scanWhitespace(StringBuilder result) throws IOException {
-        for (;;) {
-            char ch = this.readChar();
-            switch (ch) {
-            case ' ':
-            case '\t':
-            case '\n':
-                result.append(ch);
-            case '\r':
-                break;
-            default:
-                return ch;
-            }
+        @Override
+        public XmlElement get(int index) {
+            return children.get(index);
         }
-    }
 
-    /**
-     * This method scans a delimited string from the current reader. The scanned
-     * string without delimiters is appended to <code>string</code>.
-     */
-    private void scanString(StringBuilder string) throws IOException {
-        char delimiter = this.readChar();
-        if ((delimiter != '\'') && (delimiter != '"')) {
-            throw this.createUnexpectedInputException("' or \"");
-        }
-        for (;;) {
-            char ch = this.readChar();
-            if (ch == delimiter) {
-                return;
-            } else if (ch == '&') {
-                this.resolveEntity(string);
-            } else {
-                string.append(ch);
-            }
+        @Override
+        public int size() {
+            return children.size();
         }
-    }
 
-    /**
-     * Scans a #PCDATA element. CDATA sections and entities are resolved. The next
-     * &lt; char is skipped. The scanned data is appended to <code>data</code>.
-     */
-    private void scanPCData(StringBuilder data) throws IOException {
-        for (;;) {
-            char ch = this.readChar();
-            if (ch == '<') {
-
-//              System.out.println("ch="+ ch + ", rest="+ readAll());
-//              if (true) throw new RuntimeException();
-                ch = this.readChar();
-                if (ch == '!') {
-                    this.checkCDATA(data);
-                } else {
-                    this.unreadChar(ch);
-                    return;
-                }
-            } else if (ch == '&') {
-                this.resolveEntity(data);
-            } else {
-                data.append(ch);
-            }
-        }
-    }
-
-    /**
-     * Scans a special tag and if the tag is a CDATA section, append its content to
-     * <code>buf</code>.
-     */
-    private boolean checkCDATA(StringBuilder buf) throws IOException {
-        char ch = this.readChar();
-        if (ch != '[') {
-            this.unreadChar(ch);
-            this.skipSpecialTag(0);
-            return false;
-        } else if (!this.checkLiteral("CDATA[")) {
-            this.skipSpecialTag(1); // one [ has already been read
-            return false;
-        } else {
-            int delimiterCharsSkipped = 0;
-            while (delimiterCharsSkipped < 3) {
-                ch = this.readChar();
-                switch (ch) {
-                case ']':
-                    if (delimiterCharsSkipped < 2) {
-                        delimiterCharsSkipped += 1;
-                    } else {
-                        buf.append(']');
-                        buf.append(']');
-                        delimiterCharsSkipped = 0;
-                    }
-                    break;
-                case '>':
-                    if (delimiterCharsSkipped < 2) {
-                        for (int i = 0; i < delimiterCharsSkipped; i++) {
-                            buf.append(']');
-                        }
-                        delimiterCharsSkipped = 0;
-                        buf.append('>');
-                    } else {
-                        delimiterCharsSkipped = 3;
-                    }
-                    break;
-                default:
-                    for (int i = 0; i < delimiterCharsSkipped; i += 1) {
-                        buf.append(']');
-                    }
-                    buf.append(ch);
-                    delimiterCharsSkipped = 0;
-                }
-            }
-            return true;
-        }
-    }
-
-    /**
-     * Skips a comment.
-     */
-    private void skipComment() throws IOException {
-        int dashesToRead = 2;
-        while (dashesToRead > 0) {
-            char ch = this.readChar();
-            if (ch == '-') {
-                dashesToRead -= 1;
-            } else {
-                dashesToRead = 2;
-            }
-        }
-        if (this.readChar() != '>') {
-            throw this.createUnexpectedInputException(">");
-        }
-    }
-
-    /**
-     * Skips a special tag or comment.
-     *
-     * @param bracketLevel The number of open square brackets ([) that have already
-     *                     been read.
-     */
-    private void skipSpecialTag(int bracketLevel) throws IOException {
-        int tagLevel = 1; // <
-        char stringDelimiter = '\0';
-        if (bracketLevel == 0) {
-            char ch = this.readChar();
-            if (ch == '[') {
-                bracketLevel += 1;
-            } else if (ch == '-') {
-                ch = this.readChar();
-                if (ch == '[') {
-                    bracketLevel += 1;
-                } else if (ch == ']') {
-                    bracketLevel -= 1;
-                } else if (ch == '-') {
-                    this.skipComment();
-                    return;
-                }
-            }
-        }
-        while (tagLevel > 0) {
-            char ch = this.readChar();
-            if (stringDelimiter == '\0') {
-                if ((ch == '"') || (ch == '\'')) {
-                    stringDelimiter = ch;
-                } else if (bracketLevel <= 0) {
-                    if (ch == '<') {
-                        tagLevel += 1;
-                    } else if (ch == '>') {
-                        tagLevel -= 1;
-                    }
-                }
-                if (ch == '[') {
-                    bracketLevel += 1;
-                } else if (ch == ']') {
-                    bracketLevel -= 1;
-                }
-            } else {
-                if (ch == stringDelimiter) {
-                    stringDelimiter = '\0';
-                }
-            }
-        }
-    }
-
-    /**
-     * Scans the data for literal text. Scanning stops when a character does not
-     * match or after the complete text has been checked, whichever comes first.
-     *
-     * @param literal the literal to check.
-     */
-    private boolean checkLiteral(String literal) throws IOException {
-        int length = literal.length();
-        for (int i = 0; i < length; i += 1) {
-            if (this.readChar() != literal.charAt(i)) {
-                return false;
-            }
-        }
-        return true;
-    }
-
-    /**
-     * Reads a character from a reader.
-     */
-    private char readChar() throws IOException {
-        if (this.charReadTooMuch != '\0') {
-            char ch = this.charReadTooMuch;
-            this.charReadTooMuch = '\0';
-            return ch;
-        } else {
-            int i = this.reader.read();
-            if (i < 0) {
-                throw this.createExceptionUnexpectedEndOfData();
-            } else if (i == 10) {
-                this.parserLineNr += 1;
-                return '\n';
-            } else {
-                return (char) i;
-            }
-        }
-    }
-
-    private void scanElement(XmlElement elt) throws IOException {
-        StringBuilder buf = new StringBuilder();
-        this.scanIdentifier(buf);
-        String name = buf.toString();
-        elt.name = name;
-        char ch = this.scanWhitespace();
-        while ((ch != '>') && (ch != '/')) {
-            buf.setLength(0);
-            this.unreadChar(ch);
-            this.scanIdentifier(buf);
-            String key = buf.toString();
-            ch = this.scanWhitespace();
-            if (ch != '=') {
-                throw this.createUnexpectedInputException("=");
-            }
-            this.unreadChar(this.scanWhitespace());
-            buf.setLength(0);
-            this.scanString(buf);
-            elt.attributes.put(key, buf.toString());
-            ch = this.scanWhitespace();
-        }
-        if (ch == '/') {
-            ch = this.readChar();
-            if (ch != '>') {
-                throw this.createUnexpectedInputException(">");
-            }
-            return;
+        @Override
+        public XmlElement set(int index, XmlElement element) {
+            XmlElement previous = mutableChildren().set(index, element);
+            nameIndex = null;
+            return previous;
         }
-        buf.setLength(0);
-        ch = this.scanWhitespace(buf);
-        if (ch != '<') {
-            this.unreadChar(ch);
-            this.scanPCData(buf);
-        } else {
-            for (;;) {
-                ch = this.readChar();
-                if (ch == '!') {
-                    if (this.checkCDATA(buf)) {
-                        this.scanPCData(buf);
-                        break;
-                    } else {
-                        ch = this.scanWhitespace(buf);
-                        if (ch != '<') {
-                            this.unreadChar(ch);
-                            this.scanPCData(buf);
-                            break;
-                        }
-                    }
-                } else {
-                    if ((ch != '/') || this.ignoreLeadingAndTrailingWhitespace) {
-                        buf.setLength(0);
-                    }
-                    if (ch == '/') {
-                        this.unreadChar(ch);
-                    }
-                    break;
-                }
-            }
-        }
-        if (buf.length() == 0) {
-            while (ch != '/') {
-                if (ch == '!') {
-                    ch = this.readChar();
-                    if (ch != '-') {
-                        throw this.createUnexpectedInputException("Comment or Element");
-                    }
-                    ch = this.readChar();
-                    if (ch != '-') {
-                        throw this.createUnexpectedInputException("Comment or Element");
-                    }
-                    this.skipComment();
-                } else {
-                    this.unreadChar(ch);
-                    XmlElement child = this.createAnotherElement();
-                    this.scanElement(child);
-                    elt.addChild(child);
-                }
-                ch = this.scanWhitespace();
-                if (ch != '<') {
-                    throw this.createUnexpectedInputException("<");
-                }
-                ch = this.readChar();
-            }
-            this.unreadChar(ch);
-        } else {
-            if (this.ignoreLeadingAndTrailingWhitespace) {
-                elt.content = buf.toString().trim();
-            } else {
-                elt.content = buf.toString();
-            }
-        }
-        ch = this.readChar();
-        if (ch != '/') {
-            throw this.createUnexpectedInputException("/");
-        }
-        this.unreadChar(this.scanWhitespace());
 
-        if (!this.checkLiteral(name)) {
-            throw this.createUnexpectedInputException(name);
+        @Override
+        public void add(int index, XmlElement element) {
+            mutableChildren().add(index, element);
+            nameIndex = null;
+            modCount++;
         }
-        if (this.scanWhitespace() != '>') {
-            throw this.createUnexpectedInputException(">");
-        }
-    }
-
-    // for debugging
-//    private String readAll() {
-//        StringBuilder b = new StringBuilder();
-//        int c;
-//        try {
-//            while ((c = reader.read()) != -1) {
-//                b.append((char) c);
-//            }
-//        } catch (IOException e) {
-//            throw new UncheckedIOException(e);
-//        }
-//        return b.toString();
-//    }
 
-    /**
-     * Resolves an entity. The name of the entity is read from the reader. The value
-     * of the entity is appended to <code>buf</code>.
-     *
-     * @param buf Where to put the entity value.
-     */
-    private void resolveEntity(StringBuilder buf) throws IOException {
-        char ch = '\0';
-        StringBuilder keyBuf = new StringBuilder();
-        for (;;) {
-            ch = this.readChar();
-            if (ch == ';') {
-                break;
-            }
-            keyBuf.append(ch);
+        @Override
+        public XmlElement remove(int index) {
+            XmlElement removed = mutableChildren().remove(index);
+            nameIndex = null;
+            modCount++;
+            return removed;
         }
-        String key = keyBuf.toString();
-        if (key.charAt(0) == '#') {
-            try {
-                if (key.charAt(1) == 'x') {
-                    ch = (char) Integer.parseInt(key.substring(2), 16);
-                } else {
-                    ch = (char) Integer.parseInt(key.substring(1), 10);
-                }
-            } catch (NumberFormatException e) {
-                throw this.createExceptionUnknownEntity(key);
-            }
-            buf.append(ch);
-        } else {
-            char[] value = (char[]) ENTITIES.get(key);
-            if (value == null) {
-                throw this.createExceptionUnknownEntity(key);
-            }
-            buf.append(value);
-        }
-    }
-
-    /**
-     * Pushes a character back to the read-back buffer.
-     *
-     * @param ch The character to push back.
-     */
-    private void unreadChar(char ch) {
-        this.charReadTooMuch = ch;
-    }
-
-    /**
-     * Creates a parse exception for when the end of the data input has been
-     * reached.
-     */
-    private XmlParseException createExceptionUnexpectedEndOfData() {
-        String msg = "Unexpected end of data reached";
-        return new XmlParseException(this.name(), this.parserLineNr, msg);
-    }
-
-    /**
-     * Creates a parse exception for when the next character read is not the
-     * character that was expected.
-     *
-     * @param charSet The set of characters (in human readable form) that was
-     *                expected.
-     */
-    private XmlParseException createUnexpectedInputException(String charSet) {
-        String msg = "Expected: " + charSet;
-        return new XmlParseException(this.name(), this.parserLineNr, msg);
-    }
-
-    private XmlParseException createExceptionUnknownEntity(String name) {
-        String msg = "Unknown or invalid entity: &" + name + ";";
-        return new XmlParseException(this.name(), this.parserLineNr, msg);
-    }
-
-    private static Map<String, char[]> createEntities() {
-        Map<String, char[]> map = new HashMap<>();
-        map.put("amp", new char[] {'&'});
-        map.put("quot", new char[] {'"'});
-        map.put("apos", new char[] {'\''});
-        map.put("lt", new char[] {'<'});
-        map.put("gt", new char[] {'>'});
-        return map;
     }
 
 }
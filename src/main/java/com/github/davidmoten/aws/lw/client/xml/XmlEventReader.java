@@ -0,0 +1,401 @@
+package com.github.davidmoten.aws.lw.client.xml;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import com.github.davidmoten.aws.lw.client.internal.util.Preconditions;
+
+/**
+ * Streaming pull parser for XML documents. Memory use is bounded by the nesting
+ * depth and the length of the longest single text run or tag, not the size of
+ * the document, so large responses can be processed record by record as they
+ * arrive.
+ *
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * try (XmlEventReader r = request.responseAsXmlEventReader()) {
+ *     while (r.next() != Event.END_DOCUMENT) {
+ *         if (r.event() == Event.START_ELEMENT &amp;&amp; r.name().equals("Key")) {
+ *             String key = r.elementText();
+ *             ...
+ *         }
+ *     }
+ * }
+ * </pre>
+ *
+ * <p>
+ * The XML declaration, processing instructions, comments and DOCTYPE are
+ * skipped. Whitespace-only text between elements is not reported. Entities and
+ * CDATA sections are resolved into {@link Event#TEXT} events. Like
+ * {@link XmlElement}, namespace prefixes are not resolved (they remain part of
+ * the element name).
+ *
+ * <p>
+ * Parse problems are reported as {@link XmlParseException} and I/O problems as
+ * {@link UncheckedIOException}. Characters are read and scanned by the same
+ * {@link XmlScanner} used to parse {@link XmlElement} trees.
+ */
+// NotThreadSafe
+public final class XmlEventReader implements Closeable {
+
+    public enum Event {
+        START_ELEMENT, TEXT, END_ELEMENT, END_DOCUMENT;
+    }
+
+    private static final char NONE = '\0';
+
+    private final XmlScanner scanner;
+
+    // names of the open elements
+    private String[] stack = new String[16];
+    private int depth;
+
+    private Event event;
+    private String name;
+    private final StringBuilder text = new StringBuilder();
+    // attribute names and values, flattened
+    private String[] attributes = new String[8];
+    private int attributeCount;
+
+    // true if the last START_ELEMENT was self-closing (<a/>)
+    private boolean pendingEnd;
+
+    // the character after a '<' already consumed while finishing a TEXT event
+    private char pendingTag = NONE;
+
+    // true while skipElement() is running, text is then not accumulated
+    private boolean skipping;
+
+    private XmlEventReader(XmlScanner scanner) {
+        this.scanner = scanner;
+    }
+
+    public static XmlEventReader create(Reader reader) {
+        Preconditions.checkNotNull(reader);
+        return new XmlEventReader(XmlScanner.of(reader));
+    }
+
+    /**
+     * Returns a reader of the UTF-8 encoded XML in {@code in}. The stream is closed
+     * when the reader is closed.
+     *
+     * @param in UTF-8 encoded XML
+     * @return event reader
+     */
+    public static XmlEventReader create(InputStream in) {
+        Preconditions.checkNotNull(in);
+        return new XmlEventReader(XmlScanner.of(in));
+    }
+
+    public static XmlEventReader create(String xml) {
+        Preconditions.checkNotNull(xml);
+        return new XmlEventReader(XmlScanner.of(xml.toCharArray()));
+    }
+
+    /**
+     * Advances to the next event and returns it.
+     *
+     * @return the next event
+     * @throws XmlParseException if the XML is malformed
+     */
+    public Event next() {
+        try {
+            return advance();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Event advance() throws IOException {
+        attributeCount = 0;
+        if (event == Event.END_DOCUMENT) {
+            return event;
+        }
+        if (pendingEnd) {
+            pendingEnd = false;
+            return endElement();
+        }
+        if (depth == 0) {
+            if (event == Event.END_ELEMENT) {
+                // root has closed, anything after it is ignored
+                return event = Event.END_DOCUMENT;
+            }
+            return prolog();
+        }
+        if (pendingTag != NONE) {
+            char ch = pendingTag;
+            pendingTag = NONE;
+            return tag(ch);
+        }
+        text.setLength(0);
+        boolean hasText = false;
+        for (;;) {
+            char ch = scanner.read();
+            if (ch == '<') {
+                ch = scanner.read();
+                if (ch == '!') {
+                    if (scanner.checkCDATA(text)) {
+                        // CDATA content is significant even if whitespace
+                        hasText = true;
+                    }
+                } else if (ch == '?') {
+                    scanner.skipProcessingInstruction();
+                } else if (hasText) {
+                    pendingTag = ch;
+                    name = null;
+                    return event = Event.TEXT;
+                } else {
+                    return tag(ch);
+                }
+            } else if (skipping) {
+                // text of skipped elements is never reported
+                if (ch == '&') {
+                    scanner.skipEntity();
+                }
+            } else if (ch == '&') {
+                scanner.resolveEntity(text);
+                hasText = true;
+            } else {
+                text.append(ch);
+                if (!XmlScanner.isWhitespace(ch)) {
+                    hasText = true;
+                }
+            }
+        }
+    }
+
+    private Event prolog() throws IOException {
+        if (event == null) {
+            scanner.skipByteOrderMark();
+        }
+        for (;;) {
+            char ch = scanner.skipWhitespace();
+            if (ch != '<') {
+                throw scanner.unexpected("<");
+            }
+            ch = scanner.read();
+            if (ch == '?') {
+                scanner.skipProcessingInstruction();
+            } else if (ch == '!') {
+                scanner.skipSpecialTag(0);
+            } else {
+                return tag(ch);
+            }
+        }
+    }
+
+    // the '<' has been read and ch is the following character
+    private Event tag(char ch) throws IOException {
+        if (ch == '/') {
+            // compare with the open element name in place rather than creating a String
+            if (!scanner.checkLiteral(stack[depth - 1])) {
+                throw scanner.unexpected(stack[depth - 1]);
+            }
+            if (scanner.skipWhitespace() != '>') {
+                throw scanner.unexpected(">");
+            }
+            return endElement();
+        }
+        scanner.unread(ch);
+        String n = scanner.scanIdentifier();
+        if (n.isEmpty()) {
+            throw scanner.unexpected("element name");
+        }
+        name = n;
+        push(n);
+        ch = scanner.skipWhitespace();
+        while (ch != '>' && ch != '/') {
+            scanner.unread(ch);
+            String attributeName = scanner.scanIdentifier();
+            if (attributeName.isEmpty()) {
+                throw scanner.unexpected("attribute name");
+            }
+            if (scanner.skipWhitespace() != '=') {
+                throw scanner.unexpected("=");
+            }
+            scanner.unread(scanner.skipWhitespace());
+            StringBuilder value = new StringBuilder();
+            scanner.scanString(value);
+            addAttribute(attributeName, value.toString());
+            ch = scanner.skipWhitespace();
+        }
+        if (ch == '/') {
+            if (scanner.read() != '>') {
+                throw scanner.unexpected(">");
+            }
+            pendingEnd = true;
+        }
+        return event = Event.START_ELEMENT;
+    }
+
+    private Event endElement() {
+        depth--;
+        name = stack[depth];
+        stack[depth] = null;
+        scanner.elementName = depth == 0 ? null : stack[depth - 1];
+        return event = Event.END_ELEMENT;
+    }
+
+    public Event event() {
+        return event;
+    }
+
+    /**
+     * Returns the name of the current element (for {@link Event#START_ELEMENT}
+     * and {@link Event#END_ELEMENT}).
+     *
+     * @return element name
+     */
+    public String name() {
+        checkEvent(event == Event.START_ELEMENT || event == Event.END_ELEMENT, "name");
+        return name;
+    }
+
+    /**
+     * Returns the text of the current {@link Event#TEXT} event with entities and
+     * CDATA resolved.
+     *
+     * @return text
+     */
+    public String text() {
+        checkEvent(event == Event.TEXT, "text");
+        return text.toString();
+    }
+
+    public int attributeCount() {
+        checkEvent(event == Event.START_ELEMENT, "attributes");
+        return attributeCount;
+    }
+
+    public String attributeName(int index) {
+        checkAttributeIndex(index);
+        return attributes[2 * index];
+    }
+
+    public String attributeValue(int index) {
+        checkAttributeIndex(index);
+        return attributes[2 * index + 1];
+    }
+
+    /**
+     * Returns the value of the named attribute of the current start element or
+     * null if not present.
+     *
+     * @param name attribute name
+     * @return attribute value or null
+     */
+    public String attribute(String name) {
+        checkEvent(event == Event.START_ELEMENT, "attributes");
+        for (int i = 0; i < attributeCount; i++) {
+            if (attributes[2 * i].equals(name)) {
+                return attributes[2 * i + 1];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of elements that are open. After a
+     * {@link Event#START_ELEMENT} the depth includes that element, after an
+     * {@link Event#END_ELEMENT} it does not.
+     *
+     * @return nesting depth
+     */
+    public int depth() {
+        return depth;
+    }
+
+    public int lineNumber() {
+        return scanner.lineNumber();
+    }
+
+    /**
+     * When positioned on a {@link Event#START_ELEMENT} reads the text content up to
+     * the matching end element (trimmed of leading and trailing whitespace) and
+     * leaves the reader positioned on that {@link Event#END_ELEMENT}.
+     *
+     * @return text content of the current element
+     * @throws XmlParseException if the element has child elements
+     */
+    public String elementText() {
+        checkEvent(event == Event.START_ELEMENT, "elementText");
+        String elementName = name;
+        Event e = next();
+        if (e == Event.END_ELEMENT) {
+            return "";
+        } else if (e == Event.TEXT) {
+            String s = XmlParser.trim(text);
+            if (next() != Event.END_ELEMENT) {
+                throw new XmlParseException(elementName, lineNumber(), "Expected text only");
+            }
+            return s;
+        } else {
+            throw new XmlParseException(elementName, lineNumber(), "Expected text only");
+        }
+    }
+
+    /**
+     * When positioned on a {@link Event#START_ELEMENT} skips the element and all
+     * its descendants leaving the reader positioned on the matching
+     * {@link Event#END_ELEMENT}. Text of the skipped content is not
+     * materialized.
+     */
+    public void skipElement() {
+        checkEvent(event == Event.START_ELEMENT, "skipElement");
+        int d = depth - 1;
+        skipping = true;
+        try {
+            while (depth > d) {
+                next();
+            }
+        } finally {
+            skipping = false;
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            scanner.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void checkEvent(boolean condition, String what) {
+        if (!condition) {
+            throw new IllegalStateException(what + " not available for event " + event);
+        }
+    }
+
+    private void checkAttributeIndex(int index) {
+        checkEvent(event == Event.START_ELEMENT, "attributes");
+        if (index < 0 || index >= attributeCount) {
+            throw new NoSuchElementException("no attribute at index " + index);
+        }
+    }
+
+    private void push(String n) {
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        stack[depth++] = n;
+        scanner.elementName = n;
+    }
+
+    private void addAttribute(String n, String value) {
+        if (2 * attributeCount + 2 > attributes.length) {
+            attributes = Arrays.copyOf(attributes, attributes.length * 2);
+        }
+        attributes[2 * attributeCount] = n;
+        attributes[2 * attributeCount + 1] = value;
+        attributeCount++;
+    }
+}
@@ -0,0 +1,276 @@
+/* XMLElement.java
+ *
+ * $Revision: 1.4 $
+ * $Date: 2002/03/24 10:27:59 $
+ * $Name: RELEASE_2_2_1 $
+ *
+ * This file is part of NanoXML 2 Lite.
+ * Copyright (C) 2000-2002 Marc De Scheemaecker, All Rights Reserved.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in
+ *     a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ *
+ *  3. This notice may not be removed or altered from any source distribution.
+ *****************************************************************************/
+
+// ALTERED greatly by Dave Moten May 2021
+
+package com.github.davidmoten.aws.lw.client.xml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * Builds an {@link XmlElement} tree from a document. The parsing routines are
+ * the NanoXML 2 Lite ones (see licence above) that used to live in
+ * {@link XmlElement}, the characters are read and scanned by {@link XmlScanner}
+ * (shared with {@link XmlEventReader}). Keeping the parser state here means the
+ * parsed nodes hold only their name, content, attributes and children. A parser
+ * is used for a single document.
+ */
+final class XmlParser {
+
+    /**
+     * <code>true</code> if the leading and trailing whitespace of #PCDATA sections
+     * have to be ignored.
+     */
+    private final boolean ignoreLeadingAndTrailingWhitespace;
+
+    private final XmlScanner scanner;
+
+    /**
+     * Name/value pairs of the attributes of the element being scanned.
+     */
+    private String[] attributes = new String[8];
+
+    private int attributesLength;
+
+    private XmlParser(XmlScanner scanner, boolean ignoreLeadingAndTrailingWhitespace) {
+        this.scanner = scanner;
+        this.ignoreLeadingAndTrailingWhitespace = ignoreLeadingAndTrailingWhitespace;
+    }
+
+    static XmlElement parse(Reader reader, boolean ignoreLeadingAndTrailingWhitespace)
+            throws IOException, XmlParseException {
+        return new XmlParser(XmlScanner.of(reader), ignoreLeadingAndTrailingWhitespace).parse();
+    }
+
+    static XmlElement parse(char[] chars, boolean ignoreLeadingAndTrailingWhitespace)
+            throws XmlParseException {
+        return new XmlParser(XmlScanner.of(chars), ignoreLeadingAndTrailingWhitespace).parseUnchecked();
+    }
+
+    static XmlElement parse(byte[] bytes, boolean ignoreLeadingAndTrailingWhitespace)
+            throws XmlParseException {
+        return new XmlParser(XmlScanner.of(bytes), ignoreLeadingAndTrailingWhitespace).parseUnchecked();
+    }
+
+    static XmlElement parse(InputStream in, boolean ignoreLeadingAndTrailingWhitespace)
+            throws IOException, XmlParseException {
+        return new XmlParser(XmlScanner.of(in), ignoreLeadingAndTrailingWhitespace).parse();
+    }
+
+    private XmlElement parseUnchecked() {
+        try {
+            return parse();
+        } catch (IOException e) {
+            // cannot happen
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private XmlElement parse() throws IOException, XmlParseException {
+        XmlElement root = new XmlElement();
+        scanner.skipByteOrderMark();
+        for (;;) {
+            char ch = scanner.skipWhitespace();
+
+            if (ch != '<') {
+                throw scanner.unexpected("<");
+            }
+
+            ch = scanner.read();
+
+            if ((ch == '!') || (ch == '?')) {
+                scanner.skipSpecialTag(0);
+            } else {
+                scanner.unread(ch);
+                this.scanElement(root);
+                return root;
+            }
+        }
+    }
+
+    /**
+     * Scans a #PCDATA element. CDATA sections and entities are resolved. The next
+     * &lt; char is skipped. The scanned data is appended to <code>data</code>.
+     */
+    private void scanPCData(StringBuilder data) throws IOException {
+        for (;;) {
+            char ch = scanner.read();
+            if (ch == '<') {
+                ch = scanner.read();
+                if (ch == '!') {
+                    scanner.checkCDATA(data);
+                } else {
+                    scanner.unread(ch);
+                    return;
+                }
+            } else if (ch == '&') {
+                scanner.resolveEntity(data);
+            } else {
+                data.append(ch);
+            }
+        }
+    }
+
+    private void scanElement(XmlElement elt) throws IOException {
+        String name = scanner.scanIdentifier();
+        elt.name = name;
+        if (scanner.elementName == null) {
+            // the root, named in parse exceptions
+            scanner.elementName = name;
+        }
+        this.attributesLength = 0;
+        char ch = scanner.skipWhitespace();
+        StringBuilder buf = new StringBuilder();
+        while ((ch != '>') && (ch != '/')) {
+            scanner.unread(ch);
+            String key = scanner.scanIdentifier();
+            ch = scanner.skipWhitespace();
+            if (ch != '=') {
+                throw scanner.unexpected("=");
+            }
+            scanner.unread(scanner.skipWhitespace());
+            buf.setLength(0);
+            scanner.scanString(buf);
+            addAttribute(key, buf.toString());
+            ch = scanner.skipWhitespace();
+        }
+        if (this.attributesLength > 0) {
+            // children are scanned after this so the scratch array can be reused
+            elt.attributes = Arrays.copyOf(this.attributes, this.attributesLength);
+        }
+        if (ch == '/') {
+            ch = scanner.read();
+            if (ch != '>') {
+                throw scanner.unexpected(">");
+            }
+            return;
+        }
+        buf.setLength(0);
+        ch = scanner.skipWhitespace(buf);
+        if (ch != '<') {
+            scanner.unread(ch);
+            this.scanPCData(buf);
+        } else {
+            for (;;) {
+                ch = scanner.read();
+                if (ch == '!') {
+                    if (scanner.checkCDATA(buf)) {
+                        this.scanPCData(buf);
+                        break;
+                    } else {
+                        ch = scanner.skipWhitespace(buf);
+                        if (ch != '<') {
+                            scanner.unread(ch);
+                            this.scanPCData(buf);
+                            break;
+                        }
+                    }
+                } else {
+                    if ((ch != '/') || this.ignoreLeadingAndTrailingWhitespace) {
+                        buf.setLength(0);
+                    }
+                    if (ch == '/') {
+                        scanner.unread(ch);
+                    }
+                    break;
+                }
+            }
+        }
+        if (buf.length() == 0) {
+            while (ch != '/') {
+                if (ch == '!') {
+                    ch = scanner.read();
+                    if (ch != '-') {
+                        throw scanner.unexpected("Comment or Element");
+                    }
+                    ch = scanner.read();
+                    if (ch != '-') {
+                        throw scanner.unexpected("Comment or Element");
+                    }
+                    scanner.skipComment();
+                } else {
+                    scanner.unread(ch);
+                    XmlElement child = new XmlElement();
+                    this.scanElement(child);
+                    elt.addChild(child);
+                }
+                ch = scanner.skipWhitespace();
+                if (ch != '<') {
+                    throw scanner.unexpected("<");
+                }
+                ch = scanner.read();
+            }
+            scanner.unread(ch);
+            elt.trimChildren();
+        } else {
+            if (this.ignoreLeadingAndTrailingWhitespace) {
+                elt.content = trim(buf);
+            } else {
+                elt.content = buf.toString();
+            }
+        }
+        ch = scanner.read();
+        if (ch != '/') {
+            throw scanner.unexpected("/");
+        }
+        scanner.unread(scanner.skipWhitespace());
+
+        if (!scanner.checkLiteral(name)) {
+            throw scanner.unexpected(name);
+        }
+        if (scanner.skipWhitespace() != '>') {
+            throw scanner.unexpected(">");
+        }
+    }
+
+    static String trim(StringBuilder b) {
+        // avoids the intermediate String of toString().trim()
+        int start = 0;
+        int end = b.length();
+        while (start < end && b.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && b.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return b.substring(start, end);
+    }
+
+    private void addAttribute(String name, String value) {
+        if (this.attributesLength == this.attributes.length) {
+            this.attributes = Arrays.copyOf(this.attributes, 2 * this.attributes.length);
+        }
+        this.attributes[this.attributesLength++] = name;
+        this.attributes[this.attributesLength++] = value;
+    }
+
+}
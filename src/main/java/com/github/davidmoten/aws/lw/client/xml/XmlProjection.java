@@ -0,0 +1,141 @@
+package com.github.davidmoten.aws.lw.client.xml;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.davidmoten.aws.lw.client.internal.util.Preconditions;
+import com.github.davidmoten.aws.lw.client.xml.XmlEventReader.Event;
+
+/**
+ * A compiled set of element paths that extracts just the text of those
+ * elements from a document. Subtrees that no path passes through are skipped
+ * without building {@link XmlElement} nodes or materializing their text, which
+ * makes selecting a few fields from a large listing much cheaper than a full
+ * parse.
+ *
+ * <p>
+ * Paths are relative to the root element, separated by {@code /}, for example
+ * {@code Contents/Key} for a ListObjectsV2 response or {@code Message/Body}
+ * under {@code ReceiveMessageResult} for SQS. A projection is immutable and can
+ * be reused across documents and threads.
+ *
+ * <pre>
+ * XmlProjection p = XmlProjection.compile("Contents/Key", "Contents/Size");
+ * try (XmlEventReader r = request.responseAsXmlEventReader()) {
+ *     Map&lt;String, List&lt;String&gt;&gt; values = p.apply(r);
+ *     List&lt;String&gt; keys = values.get("Contents/Key");
+ * }
+ * </pre>
+ */
+public final class XmlProjection {
+
+    private final List<String> paths;
+    private final Node root;
+
+    private XmlProjection(List<String> paths, Node root) {
+        this.paths = paths;
+        this.root = root;
+    }
+
+    public static XmlProjection compile(String... paths) {
+        Preconditions.checkNotNull(paths);
+        Preconditions.checkArgument(paths.length > 0, "at least one path must be specified");
+        Node root = new Node();
+        List<String> list = new ArrayList<>();
+        for (String path : paths) {
+            Preconditions.checkNotNull(path, "path cannot be null");
+            Node node = root;
+            for (String segment : path.split("/")) {
+                Preconditions.checkArgument(!segment.isEmpty(), "path has an empty segment: " + path);
+                node = node.children.computeIfAbsent(segment, k -> new Node());
+            }
+            node.path = path;
+            list.add(path);
+        }
+        checkSelectedNodesAreLeaves(root);
+        return new XmlProjection(Collections.unmodifiableList(list), root);
+    }
+
+    private static void checkSelectedNodesAreLeaves(Node node) {
+        for (Node child : node.children.values()) {
+            Preconditions.checkArgument(child.path == null || child.children.isEmpty(),
+                    "path cannot be a prefix of another path: " + child.path);
+            checkSelectedNodesAreLeaves(child);
+        }
+    }
+
+    public List<String> paths() {
+        return paths;
+    }
+
+    /**
+     * Reads the document from {@code reader} (positioned before the root element)
+     * and returns the text of the elements matching each path, in document order.
+     * The returned map has an entry for every path (possibly an empty list). The
+     * reader is not closed.
+     *
+     * @param reader document
+     * @return values for each path
+     * @throws XmlParseException if the document is malformed or a selected element
+     *                           has child elements
+     */
+    public Map<String, List<String>> apply(XmlEventReader reader) {
+        Map<String, List<String>> values = new LinkedHashMap<>();
+        for (String path : paths) {
+            values.put(path, new ArrayList<>());
+        }
+        if (reader.next() != Event.START_ELEMENT) {
+            return values;
+        }
+        List<Node> stack = new ArrayList<>();
+        Node node = root;
+        Event event;
+        while ((event = reader.next()) != Event.END_DOCUMENT) {
+            if (event == Event.START_ELEMENT) {
+                Node child = node.children.get(reader.name());
+                if (child == null) {
+                    reader.skipElement();
+                } else if (child.path != null) {
+                    values.get(child.path).add(reader.elementText());
+                } else {
+                    stack.add(node);
+                    node = child;
+                }
+            } else if (event == Event.END_ELEMENT && !stack.isEmpty()) {
+                node = stack.remove(stack.size() - 1);
+            }
+        }
+        return values;
+    }
+
+    public Map<String, List<String>> apply(Reader reader) {
+        return apply(XmlEventReader.create(reader));
+    }
+
+    /**
+     * As for {@link #apply(XmlEventReader)} with UTF-8 encoded input. The stream
+     * is not closed.
+     *
+     * @param in UTF-8 encoded document
+     * @return values for each path
+     */
+    public Map<String, List<String>> apply(InputStream in) {
+        return apply(XmlEventReader.create(in));
+    }
+
+    public Map<String, List<String>> apply(String xml) {
+        return apply(XmlEventReader.create(xml));
+    }
+
+    private static final class Node {
+        final Map<String, Node> children = new HashMap<>();
+        // non-null if this node is the end of a selected path
+        String path;
+    }
+}
@@ -0,0 +1,567 @@
+/* XMLElement.java
+ *
+ * $Revision: 1.4 $
+ * $Date: 2002/03/24 10:27:59 $
+ * $Name: RELEASE_2_2_1 $
+ *
+ * This file is part of NanoXML 2 Lite.
+ * Copyright (C) 2000-2002 Marc De Scheemaecker, All Rights Reserved.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in
+ *     a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ *
+ *  3. This notice may not be removed or altered from any source distribution.
+ *****************************************************************************/
+
+// ALTERED greatly by Dave Moten May 2021
+
+package com.github.davidmoten.aws.lw.client.xml;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+import com.github.davidmoten.aws.lw.client.internal.util.NameCache;
+
+/**
+ * Reads the characters of a document (decoding UTF-8 bytes itself rather than
+ * through an {@link java.io.InputStreamReader}) and scans the lexical pieces of
+ * XML: names, whitespace, attribute values, entities, CDATA sections, comments
+ * and other special tags. Used by both {@link XmlParser} (which builds a tree)
+ * and {@link XmlEventReader} (which reports events) so that there is one
+ * implementation of the scanning routines (the NanoXML 2 Lite ones, see licence
+ * above).
+ */
+final class XmlScanner implements Closeable {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final char NONE = '\0';
+
+    /**
+     * Character read too much. This character provides push-back functionality to
+     * the input reader without having to use a PushbackReader. If there is no such
+     * character, this field is '\0'.
+     */
+    private char charReadTooMuch;
+
+    /**
+     * The reader provided by the caller. null if scanning chars or bytes.
+     */
+    private Reader reader;
+
+    /**
+     * Window of characters read from the reader in bulk (avoids a call to
+     * Reader.read() per character). null when scanning bytes.
+     */
+    private char[] buffer;
+
+    private int bufferPos;
+
+    private int bufferLimit;
+
+    /**
+     * The stream provided by the caller, null otherwise.
+     */
+    private InputStream in;
+
+    /**
+     * Window of UTF-8 encoded bytes when scanning bytes (null when scanning chars).
+     */
+    private byte[] bytes;
+
+    private int bytesPos;
+
+    private int bytesLimit;
+
+    /**
+     * Low surrogate still to be returned after a 4-byte UTF-8 sequence was decoded
+     * into a surrogate pair. '\0' if none.
+     */
+    private char pendingLowSurrogate;
+
+    /**
+     * Shares one String instance for each distinct element or attribute name in
+     * the document.
+     */
+    private final NameCache names = new NameCache();
+
+    private final StringBuilder nameBuffer = new StringBuilder();
+
+    /**
+     * The current line number in the source content.
+     */
+    private int lineNumber = 1;
+
+    /**
+     * Name of the element reported in parse exceptions (set by the user of the
+     * scanner), null if none.
+     */
+    String elementName;
+
+    private XmlScanner() {
+    }
+
+    static XmlScanner of(Reader reader) {
+        XmlScanner s = new XmlScanner();
+        s.reader = reader;
+        s.buffer = new char[BUFFER_SIZE];
+        return s;
+    }
+
+    static XmlScanner of(char[] chars) {
+        XmlScanner s = new XmlScanner();
+        // no reader, the whole input is the buffer
+        s.buffer = chars;
+        s.bufferLimit = chars.length;
+        return s;
+    }
+
+    static XmlScanner of(byte[] bytes) {
+        XmlScanner s = new XmlScanner();
+        // no stream, the whole input is the byte buffer
+        s.bytes = bytes;
+        s.bytesLimit = bytes.length;
+        return s;
+    }
+
+    static XmlScanner of(InputStream in) {
+        XmlScanner s = new XmlScanner();
+        s.in = in;
+        s.bytes = new byte[BUFFER_SIZE];
+        return s;
+    }
+
+    int lineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Reads a character.
+     */
+    char read() throws IOException {
+        if (this.charReadTooMuch != NONE) {
+            char ch = this.charReadTooMuch;
+            this.charReadTooMuch = NONE;
+            return ch;
+        } else if (this.bytes != null) {
+            return readCharUtf8();
+        } else {
+            if (this.bufferPos == this.bufferLimit) {
+                fillBuffer();
+            }
+            char ch = this.buffer[this.bufferPos++];
+            if (ch == '\n') {
+                this.lineNumber += 1;
+            }
+            return ch;
+        }
+    }
+
+    /**
+     * Pushes a character back to the read-back buffer.
+     *
+     * @param ch The character to push back.
+     */
+    void unread(char ch) {
+        this.charReadTooMuch = ch;
+    }
+
+    void skipByteOrderMark() throws IOException {
+        char ch = read();
+        if (ch != '\uFEFF') {
+            unread(ch);
+        }
+    }
+
+    /**
+     * Scans an identifier.
+     *
+     * @return the identifier (empty if the next character can't start one)
+     */
+    String scanIdentifier() throws IOException {
+        StringBuilder b = this.nameBuffer;
+        b.setLength(0);
+        for (;;) {
+            char ch = read();
+            if (!XmlElement.isValidIdentifierCharacter(ch)) {
+                unread(ch);
+                return this.names.get(b);
+            }
+            b.append(ch);
+        }
+    }
+
+    /**
+     * Skips whitespace.
+     *
+     * @return the next character following the whitespace.
+     */
+    char skipWhitespace() throws IOException {
+        for (;;) {
+            char ch = read();
+            switch (ch) {
+            case ' ':
+            case '\t':
+            case '\n':
+            case '\r':
+                break;
+            default:
+                return ch;
+            }
+        }
+    }
+
+    /**
+     * Skips whitespace. The scanned whitespace is appended to
+     * <code>result</code>.
+     *
+     * @return the next character following the whitespace.
+     */
+    char skipWhitespace(StringBuilder result) throws IOException {
+        for (;;) {
+            char ch = read();
+            switch (ch) {
+            case ' ':
+            case '\t':
+            case '\n':
+                result.append(ch);
+            case '\r':
+                break;
+            default:
+                return ch;
+            }
+        }
+    }
+
+    static boolean isWhitespace(char ch) {
+        return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\r';
+    }
+
+    /**
+     * Scans a delimited string. The scanned string without delimiters is appended
+     * to <code>string</code>.
+     */
+    void scanString(StringBuilder string) throws IOException {
+        char delimiter = read();
+        if ((delimiter != '\'') && (delimiter != '"')) {
+            throw unexpected("' or \"");
+        }
+        for (;;) {
+            char ch = read();
+            if (ch == delimiter) {
+                return;
+            } else if (ch == '&') {
+                resolveEntity(string);
+            } else {
+                string.append(ch);
+            }
+        }
+    }
+
+    /**
+     * Scans the data for literal text. Scanning stops when a character does not
+     * match or after the complete text has been checked, whichever comes first.
+     *
+     * @param literal the literal to check.
+     */
+    boolean checkLiteral(String literal) throws IOException {
+        int length = literal.length();
+        for (int i = 0; i < length; i += 1) {
+            if (read() != literal.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Resolves an entity. The '&amp;' has been read, the name of the entity is
+     * read up to the ';'. The value of the entity is appended to <code>buf</code>.
+     *
+     * @param buf Where to put the entity value.
+     */
+    void resolveEntity(StringBuilder buf) throws IOException {
+        StringBuilder keyBuf = new StringBuilder();
+        for (;;) {
+            char ch = read();
+            if (ch == ';') {
+                break;
+            }
+            keyBuf.append(ch);
+        }
+        String key = keyBuf.toString();
+        if (key.startsWith("#")) {
+            try {
+                int codePoint = key.startsWith("#x") ? Integer.parseInt(key.substring(2), 16)
+                        : Integer.parseInt(key.substring(1), 10);
+                buf.appendCodePoint(codePoint);
+            } catch (IllegalArgumentException e) {
+                throw unknownEntity(key);
+            }
+        } else if (key.equals("amp")) {
+            buf.append('&');
+        } else if (key.equals("lt")) {
+            buf.append('<');
+        } else if (key.equals("gt")) {
+            buf.append('>');
+        } else if (key.equals("quot")) {
+            buf.append('"');
+        } else if (key.equals("apos")) {
+            buf.append('\'');
+        } else {
+            throw unknownEntity(key);
+        }
+    }
+
+    /**
+     * Skips an entity without resolving it (the '&amp;' has been read).
+     */
+    void skipEntity() throws IOException {
+        while (read() != ';') {
+            // keep reading
+        }
+    }
+
+    /**
+     * Scans a special tag ("&lt;!" has been read) and if the tag is a CDATA
+     * section, appends its content to <code>buf</code>. Other special tags and
+     * comments are skipped.
+     *
+     * @return true if a CDATA section was read
+     */
+    boolean checkCDATA(StringBuilder buf) throws IOException {
+        char ch = read();
+        if (ch != '[') {
+            unread(ch);
+            skipSpecialTag(0);
+            return false;
+        } else if (!checkLiteral("CDATA[")) {
+            skipSpecialTag(1); // one [ has already been read
+            return false;
+        } else {
+            int delimiterCharsSkipped = 0;
+            while (delimiterCharsSkipped < 3) {
+                ch = read();
+                switch (ch) {
+                case ']':
+                    if (delimiterCharsSkipped < 2) {
+                        delimiterCharsSkipped += 1;
+                    } else {
+                        // the first of three is content, the last two may end the section
+                        buf.append(']');
+                    }
+                    break;
+                case '>':
+                    if (delimiterCharsSkipped < 2) {
+                        for (int i = 0; i < delimiterCharsSkipped; i++) {
+                            buf.append(']');
+                        }
+                        delimiterCharsSkipped = 0;
+                        buf.append('>');
+                    } else {
+                        delimiterCharsSkipped = 3;
+                    }
+                    break;
+                default:
+                    for (int i = 0; i < delimiterCharsSkipped; i += 1) {
+                        buf.append(']');
+                    }
+                    buf.append(ch);
+                    delimiterCharsSkipped = 0;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Skips a comment ("&lt;!--" has been read).
+     */
+    void skipComment() throws IOException {
+        int dashes = 0;
+        for (;;) {
+            char ch = read();
+            if (ch == '-') {
+                dashes++;
+            } else if (ch == '>' && dashes >= 2) {
+                return;
+            } else {
+                dashes = 0;
+            }
+        }
+    }
+
+    /**
+     * Skips a processing instruction ("&lt;?" has been read).
+     */
+    void skipProcessingInstruction() throws IOException {
+        char previous = NONE;
+        for (;;) {
+            char ch = read();
+            if (ch == '>' && previous == '?') {
+                return;
+            }
+            previous = ch;
+        }
+    }
+
+    /**
+     * Skips a special tag or comment ("&lt;!" or "&lt;?" has been read).
+     *
+     * @param bracketLevel The number of open square brackets ([) that have already
+     *                     been read.
+     */
+    void skipSpecialTag(int bracketLevel) throws IOException {
+        int tagLevel = 1; // <
+        char stringDelimiter = NONE;
+        if (bracketLevel == 0) {
+            char ch = read();
+            if (ch == '[') {
+                bracketLevel += 1;
+            } else if (ch == '-') {
+                ch = read();
+                if (ch == '[') {
+                    bracketLevel += 1;
+                } else if (ch == ']') {
+                    bracketLevel -= 1;
+                } else if (ch == '-') {
+                    skipComment();
+                    return;
+                }
+            }
+        }
+        while (tagLevel > 0) {
+            char ch = read();
+            if (stringDelimiter == NONE) {
+                if ((ch == '"') || (ch == '\'')) {
+                    stringDelimiter = ch;
+                } else if (bracketLevel <= 0) {
+                    if (ch == '<') {
+                        tagLevel += 1;
+                    } else if (ch == '>') {
+                        tagLevel -= 1;
+                    }
+                }
+                if (ch == '[') {
+                    bracketLevel += 1;
+                } else if (ch == ']') {
+                    bracketLevel -= 1;
+                }
+            } else {
+                if (ch == stringDelimiter) {
+                    stringDelimiter = NONE;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.reader != null) {
+            this.reader.close();
+        } else if (this.in != null) {
+            this.in.close();
+        }
+    }
+
+    private char readCharUtf8() throws IOException {
+        if (this.pendingLowSurrogate != NONE) {
+            char ch = this.pendingLowSurrogate;
+            this.pendingLowSurrogate = NONE;
+            return ch;
+        }
+        int b = readByte();
+        if (b < 0x80) {
+            // ASCII, the usual case
+            if (b == '\n') {
+                this.lineNumber += 1;
+            }
+            return (char) b;
+        } else if ((b & 0xE0) == 0xC0) {
+            return (char) (((b & 0x1F) << 6) | readContinuationByte());
+        } else if ((b & 0xF0) == 0xE0) {
+            return (char) (((b & 0x0F) << 12) | (readContinuationByte() << 6) | readContinuationByte());
+        } else if ((b & 0xF8) == 0xF0) {
+            int codePoint = ((b & 0x07) << 18) | (readContinuationByte() << 12) | (readContinuationByte() << 6)
+                    | readContinuationByte();
+            this.pendingLowSurrogate = Character.lowSurrogate(codePoint);
+            return Character.highSurrogate(codePoint);
+        } else {
+            throw exception("Invalid UTF-8 byte sequence");
+        }
+    }
+
+    private int readContinuationByte() throws IOException {
+        int b = readByte();
+        if ((b & 0xC0) != 0x80) {
+            throw exception("Invalid UTF-8 byte sequence");
+        }
+        return b & 0x3F;
+    }
+
+    private int readByte() throws IOException {
+        if (this.bytesPos == this.bytesLimit) {
+            int n = -1;
+            if (this.in != null) {
+                do {
+                    n = this.in.read(this.bytes, 0, this.bytes.length);
+                } while (n == 0);
+            }
+            if (n < 0) {
+                throw exception("Unexpected end of data reached");
+            }
+            this.bytesPos = 0;
+            this.bytesLimit = n;
+        }
+        return this.bytes[this.bytesPos++] & 0xFF;
+    }
+
+    private void fillBuffer() throws IOException {
+        int n = -1;
+        if (this.reader != null) {
+            do {
+                n = this.reader.read(this.buffer, 0, this.buffer.length);
+            } while (n == 0);
+        }
+        if (n < 0) {
+            throw exception("Unexpected end of data reached");
+        }
+        this.bufferPos = 0;
+        this.bufferLimit = n;
+    }
+
+    /**
+     * Creates a parse exception for when the next character read is not the
+     * character that was expected.
+     *
+     * @param charSet The set of characters (in human readable form) that was
+     *                expected.
+     */
+    XmlParseException unexpected(String charSet) {
+        return exception("Expected: " + charSet);
+    }
+
+    XmlParseException exception(String message) {
+        return new XmlParseException(this.elementName, this.lineNumber, message);
+    }
+
+    private XmlParseException unknownEntity(String name) {
+        return exception("Unknown or invalid entity: &" + name + ";");
+    }
+
+}
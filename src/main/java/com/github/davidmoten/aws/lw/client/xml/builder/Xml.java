@@ -1,21 +1,32 @@
 package com.github.davidmoten.aws.lw.client.xml.builder;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Map.Entry;
 
 import com.github.davidmoten.aws.lw.client.internal.util.Preconditions;
 
 public final class Xml {
 
+    private static final String PRELUDE = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+
     private final String name;
     private final Xml parent;
     private Map<String, String> attributes = new HashMap<>();
     private List<Xml> children = new ArrayList<>();
     private String content;
     private boolean prelude = true;
+    private boolean compact;
 
     private Xml(String name) {
         this(name, null);
@@ -32,11 +43,7 @@ public final class Xml {
     }
 
     public Xml excludePrelude() {
-        Xml xml = this;
-        while (xml.parent != null) {
-            xml = xml.parent;
-        }
-        xml.prelude = false;
+        root().prelude = false;
         return this;
     }
 
@@ -80,63 +87,111 @@ public final class Xml {
         }
     }
 
-    private String toString(String indent) {
-        StringBuilder b = new StringBuilder();
-        if (indent.length() == 0 && prelude) {
-            b.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+    /**
+     * Renders the whole document (from the root element) without indentation or
+     * line breaks.
+     *
+     * @return this
+     */
+    public Xml compact() {
+        root().compact = true;
+        return this;
+    }
+
+    /**
+     * Writes the whole document (from the root element) to the writer in one
+     * pass. The writer is not flushed or closed.
+     *
+     * @param writer destination
+     * @throws IOException if the writer throws
+     */
+    public void writeTo(Writer writer) throws IOException {
+        Preconditions.checkNotNull(writer);
+        Xml root = root();
+        if (root.prelude) {
+            writer.write(PRELUDE);
+            if (!root.compact) {
+                writer.write('\n');
+            }
+        }
+        root.write(writer, 0, root.compact);
+    }
+
+    /**
+     * Writes the whole document (from the root element) UTF-8 encoded to the
+     * stream. The stream is flushed but not closed.
+     *
+     * @param out destination
+     * @throws IOException if the stream throws
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        Preconditions.checkNotNull(out);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writeTo(writer);
+        writer.flush();
+    }
+
+    private void write(Writer writer, int depth, boolean compact) throws IOException {
+        if (!compact) {
+            indent(writer, depth);
         }
-        // TODO encode attributes and content for xml
-        String atts = attributes.entrySet().stream().map(
-                entry -> " " + entry.getKey() + "=\"" + encodeXml(entry.getValue(), true) + "\"")
-                .collect(Collectors.joining());
-        b.append(String.format("%s<%s%s>", indent, name, atts));
+        writer.write('<');
+        writer.write(name);
+        for (Entry<String, String> entry : attributes.entrySet()) {
+            writer.write(' ');
+            writer.write(entry.getKey());
+            writer.write("=\"");
+            writeEncoded(writer, entry.getValue(), true);
+            writer.write('"');
+        }
+        writer.write('>');
         if (content != null) {
-            b.append(encodeXml(content, false));
-            b.append(String.format("</%s>", name));
-            if (parent != null) {
-                b.append("\n");
-            }
+            writeEncoded(writer, content, false);
         } else {
-            b.append("\n");
+            if (!compact) {
+                writer.write('\n');
+            }
             for (Xml xml : children) {
-                b.append(xml.toString(indent + "  "));
+                xml.write(writer, depth + 1, compact);
             }
-            b.append(String.format("%s</%s>", indent, name));
-            if (parent != null) {
-                b.append("\n");
+            if (!compact) {
+                indent(writer, depth);
             }
         }
-        return b.toString();
+        writer.write("</");
+        writer.write(name);
+        writer.write('>');
+        if (parent != null && !compact) {
+            writer.write('\n');
+        }
     }
 
-    public String toString() {
+    private static void indent(Writer writer, int depth) throws IOException {
+        for (int i = 0; i < depth; i++) {
+            writer.write("  ");
+        }
+    }
+
+    private Xml root() {
         Xml xml = this;
         while (xml.parent != null) {
             xml = xml.parent;
         }
-        return xml.toString("");
-    }
-
-    private static final Map<Integer, String> CONTENT_CHARACTER_MAP = createContentCharacterMap();
-    private static final Map<Integer, String> ATTRIBUTE_CHARACTER_MAP = createAttributeCharacterMap();
-
-    private static Map<Integer, String> createContentCharacterMap() {
-        Map<Integer, String> m = new HashMap<>();
-        m.put((int) '&', "&amp;");
-        m.put((int) '>', "&gt;");
-        m.put((int) '<', "&lt;");
-        return m;
+        return xml;
     }
 
-    private static Map<Integer, String> createAttributeCharacterMap() {
-        Map<Integer, String> m = new HashMap<>();
-        m.put((int) '\'', "&apos;");
-        m.put((int) '\"', "&quot;");
-        return m;
+    public String toString() {
+        StringWriter writer = new StringWriter();
+        try {
+            writeTo(writer);
+        } catch (IOException e) {
+            // cannot happen
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
     }
 
-    private static String encodeXml(CharSequence s, boolean isAttribute) {
-        StringBuilder b = new StringBuilder();
+    private static void writeEncoded(Writer writer, String s, boolean isAttribute) throws IOException {
         int len = s.length();
         for (int i = 0; i < len; i++) {
             int c = s.charAt(i);
@@ -146,33 +201,29 @@ public final class Xml {
             if (c < 0x80) { // ASCII range: test most common case first
                 if (c < 0x20 && (c != '\t' && c != '\r' && c != '\n')) {
                     // Illegal XML character, even encoded. Skip or substitute
-                    b.append("&#xfffd;"); // Unicode replacement character
+                    writer.write("&#xfffd;"); // Unicode replacement character
+                } else if (c == '&') {
+                    writer.write("&amp;");
+                } else if (c == '>') {
+                    writer.write("&gt;");
+                } else if (c == '<') {
+                    writer.write("&lt;");
+                } else if (isAttribute && c == '\'') {
+                    writer.write("&apos;");
+                } else if (isAttribute && c == '"') {
+                    writer.write("&quot;");
                 } else {
-                    String r = CONTENT_CHARACTER_MAP.get(c);
-                    if (r != null) {
-                        b.append(r);
-                    } else if (isAttribute) {
-                        String r2 = ATTRIBUTE_CHARACTER_MAP.get(c);
-                        if (r2 != null) {
-                            b.append(r2);
-                        } else {
-                            b.append((char) c);
-                        }
-                    } else {
-                        b.append((char) c);
-                    }
-
+                    writer.write(c);
                 }
             } else if ((c >= 0xd800 && c <= 0xdfff) || c == 0xfffe || c == 0xffff) {
                 // Illegal XML character, even encoded. Skip or substitute
-                b.append("&#xfffd;"); // Unicode replacement character
+                writer.write("&#xfffd;"); // Unicode replacement character
             } else {
-                b.append("&#x");
-                b.append(Integer.toHexString(c));
-                b.append(';');
+                writer.write("&#x");
+                writer.write(Integer.toHexString(c));
+                writer.write(';');
             }
         }
-        return b.toString();
     }
 
 }
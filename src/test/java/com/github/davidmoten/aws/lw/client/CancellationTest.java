@@ -0,0 +1,65 @@
+package com.github.davidmoten.aws.lw.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class CancellationTest {
+
+    @Test
+    public void testCancelRunsAborts() {
+        Cancellation c = Cancellation.create();
+        AtomicInteger count = new AtomicInteger();
+        Runnable abort = count::incrementAndGet;
+        c.addAbort(abort);
+        c.addAbort(() -> {
+            throw new RuntimeException("boo");
+        });
+        c.addAbort(count::incrementAndGet);
+        c.removeAbort(abort);
+        assertFalse(c.isCancelled());
+        c.cancel();
+        assertTrue(c.isCancelled());
+        assertEquals(1, count.get());
+        // only once
+        c.cancel();
+        assertEquals(1, count.get());
+    }
+
+    @Test
+    public void testAbortAddedAfterCancelRunsImmediately() {
+        Cancellation c = Cancellation.create();
+        c.cancel();
+        AtomicInteger count = new AtomicInteger();
+        c.addAbort(count::incrementAndGet);
+        assertEquals(1, count.get());
+    }
+
+    @Test
+    public void testCancelInterruptsEnteredThreadOnly() {
+        Cancellation c = Cancellation.create();
+        c.enter();
+        c.cancel();
+        assertTrue(Thread.currentThread().isInterrupted());
+        c.exit();
+        // our interrupt is cleared on exit
+        assertFalse(Thread.currentThread().isInterrupted());
+        Cancellation c2 = Cancellation.create();
+        c2.cancel();
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    @Test(expected = CancellationException.class)
+    public void testThrowIfCancelled() {
+        Cancellation c = Cancellation.create();
+        c.throwIfCancelled();
+        c.cancel();
+        c.throwIfCancelled();
+    }
+
+}
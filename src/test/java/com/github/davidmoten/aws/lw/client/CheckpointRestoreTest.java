@@ -0,0 +1,89 @@
+package com.github.davidmoten.aws.lw.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class CheckpointRestoreTest {
+
+    @Test
+    public void testRegister() throws Exception {
+        // org.crac is not on the test classpath
+        assertFalse(CheckpointRestore.register());
+        try {
+            CheckpointRestore.register(FakeCore.class.getName(), Runnable.class.getName());
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertTrue(CheckpointRestore.register(FakeCore.class.getName(), FakeResource.class.getName()));
+        // only once
+        assertTrue(CheckpointRestore.register(FakeCore.class.getName(), FakeResource.class.getName()));
+        assertEquals(1, FakeCore.CONTEXT.resources.size());
+        FakeResource r = FakeCore.CONTEXT.resources.get(0);
+        assertEquals(CheckpointRestore.class.getName(), r.toString());
+        assertTrue(r.equals(r));
+        assertNotEquals(0, r.hashCode());
+
+        AtomicInteger count = new AtomicInteger();
+        CountDownLatch resolved = new CountDownLatch(2);
+        Credentials c = Credentials.lazy(() -> {
+            count.incrementAndGet();
+            resolved.countDown();
+            return Credentials.of("ak", "sk");
+        });
+        assertEquals("ak", c.accessKey());
+        r.beforeCheckpoint(FakeCore.CONTEXT);
+        r.afterRestore(FakeCore.CONTEXT);
+        // resolved again in the background
+        assertTrue(resolved.await(10, TimeUnit.SECONDS));
+        assertEquals("ak", c.accessKey());
+        assertEquals(2, count.get());
+    }
+
+    @Test
+    public void testBeforeCheckpointClearsLazyCredentials() {
+        AtomicInteger count = new AtomicInteger();
+        Credentials c = Credentials.lazy(() -> Credentials.of("ak" + count.incrementAndGet(), "sk"));
+        assertEquals("ak1", c.accessKey());
+        assertEquals("ak1", c.accessKey());
+        CheckpointRestore.beforeCheckpoint();
+        assertEquals("ak2", c.accessKey());
+    }
+
+    public static final class FakeCore {
+
+        static final FakeContext CONTEXT = new FakeContext();
+
+        public static FakeContext getGlobalContext() {
+            return CONTEXT;
+        }
+    }
+
+    public static class FakeContext {
+
+        final List<FakeResource> resources = new ArrayList<>();
+
+        public void register(FakeResource resource) {
+            resources.add(resource);
+        }
+    }
+
+    public interface FakeResource {
+
+        void beforeCheckpoint(FakeContext context) throws Exception;
+
+        void afterRestore(FakeContext context) throws Exception;
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.github.davidmoten.aws.lw.client;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class ChecksumAlgorithmTest {
+
+    private static final byte[] CHECK = "123456789".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testCrc32() {
+        // 0xCBF43926
+        assertEquals("y/Q5Jg==", ChecksumAlgorithm.CRC32.checksum(CHECK));
+    }
+
+    @Test
+    public void testCrc32c() {
+        // 0xE3069283
+        assertEquals("4waSgw==", ChecksumAlgorithm.CRC32C.checksum(CHECK));
+    }
+
+    @Test
+    public void testSha256() {
+        assertEquals("47DEQpj8HBSa+/TImW+5JCeuQeRkm5NMpJWZG3hSuFU=", ChecksumAlgorithm.SHA256.checksum(new byte[0]));
+    }
+
+    @Test
+    public void testOffsetAndLength() {
+        byte[] b = "xx123456789yy".getBytes(StandardCharsets.UTF_8);
+        for (ChecksumAlgorithm alg : ChecksumAlgorithm.values()) {
+            assertEquals(alg.checksum(CHECK), alg.checksum(b, 2, 9));
+        }
+    }
+
+    @Test
+    public void testHeaderName() {
+        assertEquals("x-amz-checksum-crc32c", ChecksumAlgorithm.CRC32C.headerName());
+        assertEquals("x-amz-checksum-sha256", ChecksumAlgorithm.SHA256.headerName());
+    }
+
+    @Test
+    public void testComposite() {
+        ChecksumAlgorithm alg = ChecksumAlgorithm.CRC32;
+        // checksum of the concatenated raw part checksums
+        byte[] concatenated = new byte[] { (byte) 0xCB, (byte) 0xF4, 0x39, 0x26, (byte) 0xCB, (byte) 0xF4, 0x39,
+                0x26 };
+        assertEquals(alg.checksum(concatenated) + "-2",
+                alg.composite(Arrays.asList(alg.checksum(CHECK), alg.checksum(CHECK))));
+    }
+}
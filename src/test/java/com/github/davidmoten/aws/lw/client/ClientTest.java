@@ -6,19 +6,37 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.Socket;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.github.davidmoten.aws.lw.client.internal.LazyCredentials;
+import com.github.davidmoten.aws.lw.client.json.JsonReader;
+import com.github.davidmoten.aws.lw.client.json.JsonReader.Token;
+import com.github.davidmoten.aws.lw.client.xml.XmlEventReader;
+import com.github.davidmoten.aws.lw.client.xml.XmlEventReader.Event;
+import com.github.davidmoten.aws.lw.client.xml.builder.Xml;
 import com.github.davidmoten.http.test.server.Server;
 
 public class ClientTest {
@@ -82,6 +100,22 @@ public class ClientTest {
         assertEquals(6000, hc.readTimeoutMs);
     }
 
+    @Test
+    public void testRequestBodyXml() {
+        s3 //
+                .path("mybucket", "myobject") //
+                .query("delete") //
+                .method(HttpMethod.POST) //
+                .requestBody(Xml //
+                        .create("Delete") //
+                        .element("Object") //
+                        .element("Key").content("é&") //
+                        .compact()) //
+                .execute();
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?><Delete><Object><Key>&#xe9;&amp;</Key></Object></Delete>",
+                hc.requestBodyString());
+    }
+
     @Test
     public void testQueryParameterWithoutValue() {
         Client client = Client //
@@ -288,6 +322,44 @@ public class ClientTest {
         assertFalse(c.sessionToken().isPresent());
     }
 
+    @Test
+    public void testDefaultClientCredentialsResolvedLazily() {
+        AtomicInteger count = new AtomicInteger();
+        Map<String, String> map = new HashMap<>();
+        map.put("AWS_REGION", "ap-southeast-2");
+        Client client = Client.s3().environment(name -> {
+            if (name.equals("AWS_ACCESS_KEY_ID")) {
+                count.incrementAndGet();
+                return "123";
+            } else if (name.equals("AWS_SECRET_ACCESS_KEY")) {
+                return "abc";
+            } else {
+                return map.get(name);
+            }
+        }).defaultClient().httpClient(hc).build();
+        assertEquals(0, count.get());
+        client.path("myBucket").execute();
+        assertEquals(1, count.get());
+        assertTrue(hc.headers.get("Authorization").contains("Credential=123/"));
+        client.path("myBucket").execute();
+        assertEquals(1, count.get());
+    }
+
+    @Test
+    public void testDefaultClientMissingCredentialsThrowOnFirstRequest() {
+        Map<String, String> map = new HashMap<>();
+        map.put("AWS_REGION", "ap-southeast-2");
+        map.put("AWS_EC2_METADATA_DISABLED", "true");
+        Client client = Client.s3().environment(name -> map.get(name)).defaultClient().prewarmCredentials()
+                .httpClient(hc).build();
+        try {
+            client.path("myBucket").execute();
+            Assert.fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().startsWith("Unable to load AWS credentials"));
+        }
+    }
+
     @Test
     public void testDefaultClientFromSystemProperties() {
         System.setProperty("aws.accessKeyId", "123");
@@ -407,6 +479,113 @@ public class ClientTest {
         }
     }
 
+    @Test
+    public void testServerOkResponseXmlEventReader() {
+        Client client = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .clock(() -> 1622695846902L) //
+                .retryMaxAttempts(1) //
+                .build();
+        try (Server server = Server.start()) {
+            server.response().body("<a><b>hello</b><b>there</b></a>").add();
+            try (XmlEventReader r = client //
+                    .url(server.baseUrl()) //
+                    .responseAsXmlEventReader()) {
+                assertEquals(Event.START_ELEMENT, r.next());
+                assertEquals("a", r.name());
+                assertEquals(Event.START_ELEMENT, r.next());
+                assertEquals("hello", r.elementText());
+                assertEquals(Event.START_ELEMENT, r.next());
+                assertEquals("there", r.elementText());
+                assertEquals(Event.END_ELEMENT, r.next());
+                assertEquals(Event.END_DOCUMENT, r.next());
+            }
+        }
+    }
+
+    @Test
+    public void testServerErrorResponseXmlEventReader() {
+        Client client = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .clock(() -> 1622695846902L) //
+                .retryMaxAttempts(1) //
+                .build();
+        try (Server server = Server.start()) {
+            server.response().body("<Error><Code>NoSuchKey</Code></Error>").statusCode(404).add();
+            try {
+                client.url(server.baseUrl()).responseAsXmlEventReader();
+                Assert.fail();
+            } catch (ServiceException e) {
+                assertEquals(404, e.statusCode());
+                assertEquals("<Error><Code>NoSuchKey</Code></Error>", e.message());
+                assertEquals(Optional.of("NoSuchKey"), e.errorCode());
+            }
+        }
+    }
+
+    @Test
+    public void testServerOkResponseJson() {
+        Client client = Client //
+                .service("dynamodb") //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .clock(() -> 1622695846902L) //
+                .retryMaxAttempts(1) //
+                .build();
+        try (Server server = Server.start()) {
+            server.response().body("{\"TableNames\":[\"a\",\"b\"]}").add();
+            try (JsonReader r = client //
+                    .url(server.baseUrl()) //
+                    .method(HttpMethod.POST) //
+                    .header("X-Amz-Target", "DynamoDB_20120810.ListTables") //
+                    .requestBody("{}") //
+                    .responseAsJson()) {
+                assertEquals(Token.BEGIN_OBJECT, r.next());
+                assertEquals(Token.NAME, r.next());
+                assertEquals("TableNames", r.name());
+                assertEquals(Token.BEGIN_ARRAY, r.next());
+                assertEquals(Token.STRING, r.next());
+                assertEquals("a", r.text());
+                assertEquals(Token.STRING, r.next());
+                assertEquals("b", r.text());
+                assertEquals(Token.END_ARRAY, r.next());
+                assertEquals(Token.END_OBJECT, r.next());
+                assertEquals(Token.END_DOCUMENT, r.next());
+            }
+        }
+    }
+
+    @Test
+    public void testServerErrorResponseJson() {
+        Client client = Client //
+                .service("dynamodb") //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .clock(() -> 1622695846902L) //
+                .retryMaxAttempts(1) //
+                .build();
+        try (Server server = Server.start()) {
+            String body = "{\"__type\":\"com.amazonaws.dynamodb.v20120810#ResourceNotFoundException\"}";
+            server.response().body(body).statusCode(400).add();
+            try {
+                client.url(server.baseUrl()).responseAsJson();
+                Assert.fail();
+            } catch (ServiceException e) {
+                assertEquals(400, e.statusCode());
+                assertEquals(body, e.message());
+                assertEquals(Optional.of("ResourceNotFoundException"), e.errorCode());
+            }
+        }
+    }
+
     @Test
     public void testResponseExists() throws IOException {
         Client client = Client //
@@ -819,6 +998,465 @@ public class ClientTest {
         }
     }
 
+    @Test
+    public void testPermanentClientErrorNotRetried() {
+        HttpClientTestingWithQueue hc = new HttpClientTestingWithQueue();
+        hc.add(createResponseInputStream(403, "<Error><Code>AccessDenied</Code></Error>"));
+        hc.add(createResponseInputStream(200, "stuff"));
+        Client client = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .clock(() -> 1622695846902L) //
+                .retryInitialInterval(1, TimeUnit.MILLISECONDS) //
+                .httpClient(hc) //
+                .build();
+        try {
+            client.path("myBucket", "myObject.txt").responseAsUtf8();
+            Assert.fail();
+        } catch (ServiceException e) {
+            assertEquals(403, e.statusCode());
+            assertEquals(Optional.of("AccessDenied"), e.errorCode());
+        }
+        assertEquals(1, hc.urls().size());
+    }
+
+    @Test
+    public void testThrottledClientErrorRetried() {
+        HttpClientTestingWithQueue hc = new HttpClientTestingWithQueue();
+        hc.add(createResponseInputStream(400,
+                "<ErrorResponse><Error><Code>Throttling</Code></Error></ErrorResponse>"));
+        hc.add(createResponseInputStream(503, "<Error><Code>SlowDown</Code></Error>"));
+        hc.add(createResponseInputStream(200, "stuff"));
+        Client client = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .clock(() -> 1622695846902L) //
+                .retryInitialInterval(1, TimeUnit.MILLISECONDS) //
+                .retryThrottledInitialInterval(1, TimeUnit.MILLISECONDS) //
+                .httpClient(hc) //
+                .build();
+        assertEquals("stuff", client.path("myBucket", "myObject.txt").responseAsUtf8());
+        assertEquals(3, hc.urls().size());
+    }
+
+    @Test
+    public void testRetryErrorCodes() {
+        HttpClientTestingWithQueue hc = new HttpClientTestingWithQueue();
+        hc.add(createResponseInputStream(400, "<Error><Code>OperationAborted</Code></Error>"));
+        hc.add(createResponseInputStream(200, "stuff"));
+        Client client = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .clock(() -> 1622695846902L) //
+                .retryInitialInterval(1, TimeUnit.MILLISECONDS) //
+                .retryErrorCodes(Arrays.asList("OperationAborted"), Collections.emptyList()) //
+                .httpClient(hc) //
+                .build();
+        assertEquals("stuff", client.path("myBucket", "myObject.txt").responseAsUtf8());
+        assertEquals(2, hc.urls().size());
+    }
+
+    @Test
+    public void testRetryQuotaSharedAcrossRequests() {
+        HttpClientTestingWithQueue hc = new HttpClientTestingWithQueue();
+        for (int i = 0; i < 3; i++) {
+            hc.add(createResponseInputStream(500, "boo"));
+        }
+        Client client = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .clock(() -> 1622695846902L) //
+                .retryInitialInterval(1, TimeUnit.MILLISECONDS) //
+                .retryQuota(5) //
+                .httpClient(hc) //
+                .build();
+        try {
+            client.path("myBucket", "myObject.txt").responseAsUtf8();
+            Assert.fail();
+        } catch (ServiceException e) {
+            assertEquals(500, e.statusCode());
+        }
+        // the only retry the quota allowed was spent on the first request
+        assertEquals(2, hc.urls().size());
+        try {
+            client.path("myBucket", "myObject.txt").responseAsUtf8();
+            Assert.fail();
+        } catch (ServiceException e) {
+            assertEquals(500, e.statusCode());
+        }
+        assertEquals(3, hc.urls().size());
+    }
+
+    @Test
+    public void testCircuitBreakerFailsFast() {
+        HttpClientTestingWithQueue hc = new HttpClientTestingWithQueue();
+        hc.add(new IOException("boo"));
+        hc.add(createResponseInputStream(503, "unavailable"));
+        hc.add(createResponseInputStream(200, "stuff"));
+        Client client = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .clock(() -> 1622695846902L) //
+                .retryInitialInterval(1, TimeUnit.MILLISECONDS) //
+                .circuitBreakerThresholds(2, 0, 20) //
+                .httpClient(hc) //
+                .build();
+        try {
+            client.path("myBucket", "myObject.txt").responseAsUtf8();
+            Assert.fail();
+        } catch (CircuitOpenException e) {
+            assertEquals("s3.ap-southeast-2.amazonaws.com", e.host());
+        }
+        assertEquals(2, hc.urls().size());
+        // other requests to the host fail without a call too
+        try {
+            client.path("myBucket", "other.txt").responseAsUtf8();
+            Assert.fail();
+        } catch (CircuitOpenException e) {
+            // expected
+        }
+        assertEquals(2, hc.urls().size());
+    }
+
+    @Test
+    public void testCircuitBreakerUsesClientClock() {
+        HttpClientTestingWithQueue hc = new HttpClientTestingWithQueue();
+        hc.add(new IOException("boo"));
+        hc.add(createResponseInputStream(200, "stuff"));
+        AtomicLong time = new AtomicLong(1622695846902L);
+        Client client = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .clock(time::get) //
+                .retryMaxAttempts(1) //
+                .circuitBreakerThresholds(1, 0, 20) //
+                .circuitBreakerOpenDuration(1, TimeUnit.MINUTES) //
+                .httpClient(hc) //
+                .build();
+        try {
+            client.path("myBucket", "myObject.txt").responseAsUtf8();
+            Assert.fail();
+        } catch (MaxAttemptsExceededException e) {
+            // expected
+        }
+        try {
+            client.path("myBucket", "myObject.txt").responseAsUtf8();
+            Assert.fail();
+        } catch (CircuitOpenException e) {
+            // expected
+        }
+        time.addAndGet(TimeUnit.MINUTES.toMillis(1));
+        // the probe is let through
+        assertEquals("stuff", client.path("myBucket", "myObject.txt").responseAsUtf8());
+        assertEquals(2, hc.urls().size());
+    }
+
+    @Test
+    public void testCircuitBreakerIgnoresThrottling() {
+        HttpClientTestingWithQueue hc = new HttpClientTestingWithQueue();
+        hc.add(createResponseInputStream(503, "<Error><Code>SlowDown</Code></Error>"));
+        hc.add(createResponseInputStream(200, "stuff"));
+        Client client = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .retryMaxAttempts(1) //
+                .circuitBreakerThresholds(1, 0, 20) //
+                .httpClient(hc) //
+                .build();
+        try {
+            client.path("myBucket", "myObject.txt").responseAsUtf8();
+            Assert.fail();
+        } catch (MaxAttemptsExceededException | ServiceException e) {
+            // expected
+        }
+        assertEquals("stuff", client.path("myBucket", "myObject.txt").responseAsUtf8());
+    }
+
+    @Test
+    public void testCircuitBreakerIgnoresFailuresNotFromEndpoint() {
+        HttpClientTestingWithQueue hc = new HttpClientTestingWithQueue();
+        Client client = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .credentials(new LazyCredentials(() -> {
+                    throw new IllegalStateException("no credentials");
+                })) //
+                .retryMaxAttempts(1) //
+                .circuitBreakerThresholds(1, 0, 20) //
+                .httpClient(hc) //
+                .build();
+        for (int i = 0; i < 2; i++) {
+            try {
+                client.path("myBucket", "myObject.txt").responseAsUtf8();
+                Assert.fail();
+            } catch (IllegalStateException e) {
+                // not CircuitOpenException
+                assertEquals("no credentials", e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testRequestHost() {
+        assertEquals("localhost:8080", Request.host("http://localhost:8080/a/b?c=d"));
+        assertEquals("s3.amazonaws.com", Request.host("https://s3.amazonaws.com/"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRequestHostBadUrl() {
+        Request.host("boo");
+    }
+
+    @Test
+    public void testDeadlineStopsRetryOfException() {
+        HttpClientTestingWithQueue hc = new HttpClientTestingWithQueue();
+        hc.add(new IOException("boo"));
+        hc.add(createResponseInputStream(200, "stuff"));
+        Client client = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .clock(() -> 1622695846902L) //
+                .retryInitialInterval(10, TimeUnit.SECONDS) //
+                .defaultDeadline(5, TimeUnit.SECONDS) //
+                .httpClient(hc) //
+                .build();
+        try {
+            client.path("myBucket", "myObject.txt").responseAsUtf8();
+            Assert.fail();
+        } catch (DeadlineExceededException e) {
+            assertEquals("boo", e.getCause().getMessage());
+        }
+        assertEquals(1, hc.urls().size());
+        // read timeout clipped to the time remaining
+        int readTimeout = hc.readTimeouts().get(0);
+        assertTrue(readTimeout > 4000 && readTimeout <= 5000);
+    }
+
+    @Test
+    public void testDeadlineStopsRetryOfErrorResponse() {
+        HttpClientTestingWithQueue hc = new HttpClientTestingWithQueue();
+        hc.add(createResponseInputStream(500, "boo"));
+        hc.add(createResponseInputStream(200, "stuff"));
+        Client client = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .clock(() -> 1622695846902L) //
+                .retryInitialInterval(10, TimeUnit.SECONDS) //
+                .httpClient(hc) //
+                .build();
+        try {
+            client.path("myBucket", "myObject.txt") //
+                    .deadline(5, TimeUnit.SECONDS) //
+                    .responseAsUtf8();
+            Assert.fail();
+        } catch (ServiceException e) {
+            assertEquals(500, e.statusCode());
+        }
+        assertEquals(1, hc.urls().size());
+    }
+
+    @Test
+    public void testDeadlineAllowsRetryWithinBudget() {
+        HttpClientTestingWithQueue hc = new HttpClientTestingWithQueue();
+        hc.add(createResponseInputStream(500, "boo"));
+        hc.add(createResponseInputStream(200, "stuff"));
+        Client client = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .clock(() -> 1622695846902L) //
+                .retryInitialInterval(1, TimeUnit.MILLISECONDS) //
+                .readTimeout(1, TimeUnit.SECONDS) //
+                .httpClient(hc) //
+                .build();
+        assertEquals("stuff", client.path("myBucket", "myObject.txt") //
+                .deadline(1, TimeUnit.MINUTES) //
+                .responseAsUtf8());
+        assertEquals(Arrays.asList(1000, 1000), hc.readTimeouts());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeDeadline() {
+        Client.s3().region("ap-southeast-2").accessKey("123").secretKey("456").defaultDeadline(-1,
+                TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testHedgedGetUsesFasterResponse() {
+        AtomicInteger count = new AtomicInteger();
+        HedgingPolicy hedging = HedgingPolicy.delay(50, TimeUnit.MILLISECONDS);
+        Client client = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .httpClient((url, method, headers, body, connectTimeoutMs, readTimeoutMs) -> {
+                    if (count.incrementAndGet() == 1) {
+                        try {
+                            Thread.sleep(1000);
+                        } catch (InterruptedException e) {
+                            // cancelled
+                        }
+                        return createResponseInputStream(200, "slow");
+                    } else {
+                        return createResponseInputStream(200, "fast");
+                    }
+                }) //
+                .hedging(hedging) //
+                .build();
+        assertEquals("fast", client.path("myBucket", "myObject.txt").responseAsUtf8());
+        assertEquals(2, count.get());
+        assertEquals(1, hedging.hedgesSent());
+        assertEquals(1, hedging.hedgesWon());
+    }
+
+    @Test
+    public void testPutNotHedged() {
+        AtomicInteger count = new AtomicInteger();
+        HedgingPolicy hedging = HedgingPolicy.delay(0, TimeUnit.MILLISECONDS);
+        Client client = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .httpClient((url, method, headers, body, connectTimeoutMs, readTimeoutMs) -> {
+                    count.incrementAndGet();
+                    return createResponseInputStream(200, "");
+                }) //
+                .hedging(hedging) //
+                .build();
+        client.path("myBucket", "myObject.txt").method(HttpMethod.PUT).requestBody("hi").execute();
+        assertEquals(1, count.get());
+        assertEquals(0, hedging.hedgesSent());
+    }
+
+    @Test
+    public void testCancelStopsRetries() {
+        HttpClientTestingWithQueue hc = new HttpClientTestingWithQueue();
+        for (int i = 0; i < 4; i++) {
+            hc.add(new IOException("boo"));
+        }
+        Client client = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .retryInitialInterval(60, TimeUnit.SECONDS) //
+                .httpClient(hc) //
+                .build();
+        Cancellation cancellation = Cancellation.create();
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        executor.schedule(cancellation::cancel, 100, TimeUnit.MILLISECONDS);
+        long start = System.currentTimeMillis();
+        try {
+            client.path("myBucket", "myObject.txt").cancellation(cancellation).responseAsUtf8();
+            Assert.fail();
+        } catch (CancellationException e) {
+            assertTrue(System.currentTimeMillis() - start < 30000);
+            assertEquals(1, hc.urls().size());
+            assertFalse(Thread.currentThread().isInterrupted());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCancelledRequestNotSent() {
+        HttpClientTestingWithQueue hc = new HttpClientTestingWithQueue();
+        Client client = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .httpClient(hc) //
+                .build();
+        Cancellation cancellation = Cancellation.create();
+        cancellation.cancel();
+        try {
+            client.path("myBucket", "myObject.txt").cancellation(cancellation).responseAsUtf8();
+            Assert.fail();
+        } catch (CancellationException e) {
+            assertTrue(hc.urls().isEmpty());
+        }
+    }
+
+    @Test
+    public void testResponseAsync() throws Exception {
+        Client client = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .httpClient((url, method, headers, body, connectTimeoutMs,
+                        readTimeoutMs) -> createResponseInputStream(200, "hello")) //
+                .build();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (ResponseInputStream r = client.path("myBucket", "myObject.txt").responseAsync(executor).get()) {
+            assertEquals(200, r.statusCode());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testResponseAsyncCancelClosesConnection() throws Exception {
+        Client client = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .readTimeout(60, TimeUnit.SECONDS) //
+                .retryMaxAttempts(1) //
+                .build();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch accepted = new CountDownLatch(1);
+        CountDownLatch closed = new CountDownLatch(1);
+        try (ServerSocket ss = new ServerSocket(0)) {
+            // accepts the request but never responds
+            Thread server = new Thread(() -> {
+                try (Socket socket = ss.accept()) {
+                    accepted.countDown();
+                    InputStream in = socket.getInputStream();
+                    while (in.read() != -1) {
+                        // discard the request
+                    }
+                    closed.countDown();
+                } catch (IOException e) {
+                    closed.countDown();
+                }
+            });
+            server.start();
+            CompletableFuture<ResponseInputStream> future = client //
+                    .url("http://localhost:" + ss.getLocalPort()) //
+                    .responseAsync(executor);
+            assertTrue(accepted.await(10, TimeUnit.SECONDS));
+            assertTrue(future.cancel(true));
+            // the in-flight connection was closed
+            assertTrue(closed.await(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     @Test
     public void testRetriesFailTwiceThenSucceedGivenIOExceptions() {
         HttpClientTestingWithQueue hc = new HttpClientTestingWithQueue();
@@ -2,9 +2,11 @@ package com.github.davidmoten.aws.lw.client;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 
@@ -72,4 +74,38 @@ public class CredentialsTest {
         Credentials c = Credentials.of("ak", "sk", "st");
         assertFalse(c.expiration().isPresent());
     }
+
+    @Test
+    public void testSnapshotOfImmutableCredentialsIsSame() {
+        Credentials c = Credentials.of("ak", "sk", "st");
+        assertSame(c, c.snapshot());
+    }
+
+    @Test
+    public void testSnapshotReadsEachValueOnce() {
+        AtomicInteger count = new AtomicInteger();
+        Credentials c = new Credentials() {
+
+            @Override
+            public String accessKey() {
+                return "ak" + count.incrementAndGet();
+            }
+
+            @Override
+            public String secretKey() {
+                return "sk";
+            }
+
+            @Override
+            public Optional<String> sessionToken() {
+                return Optional.of("st");
+            }
+        };
+        Credentials snapshot = c.snapshot();
+        assertEquals("ak1", snapshot.accessKey());
+        assertEquals("ak1", snapshot.accessKey());
+        assertEquals("sk", snapshot.secretKey());
+        assertEquals("st", snapshot.sessionToken().get());
+        assertFalse(snapshot.expiration().isPresent());
+    }
 }
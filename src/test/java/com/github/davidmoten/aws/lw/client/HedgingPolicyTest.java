@@ -0,0 +1,247 @@
+package com.github.davidmoten.aws.lw.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.github.davidmoten.aws.lw.client.internal.util.Util;
+
+public class HedgingPolicyTest {
+
+    @Test
+    public void testFastResponseNotHedged() throws Exception {
+        HedgingPolicy h = HedgingPolicy.delay(1, TimeUnit.MINUTES);
+        assertEquals("a", text(h.call(c -> response("a", null), Cancellation.create())));
+        assertEquals(0, h.hedgesSent());
+        assertEquals(0, h.hedgesWon());
+    }
+
+    @Test
+    public void testSlowResponseHedgedAndLoserClosed() throws Exception {
+        HedgingPolicy h = HedgingPolicy.delay(10, TimeUnit.MILLISECONDS);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch closed = new CountDownLatch(1);
+        AtomicInteger count = new AtomicInteger();
+        ResponseInputStream r = h.call(c -> {
+            if (count.incrementAndGet() == 1) {
+                // like a blocked HttpURLConnection, ignores the interrupt
+                awaitUninterruptibly(release);
+                return response("slow", closed);
+            } else {
+                return response("fast", null);
+            }
+        }, Cancellation.create());
+        assertEquals("fast", text(r));
+        assertEquals(1, h.hedgesSent());
+        assertEquals(1, h.hedgesWon());
+        release.countDown();
+        assertTrue(closed.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testFailureBeforeDelayNotHedged() throws Exception {
+        HedgingPolicy h = HedgingPolicy.delay(1, TimeUnit.MINUTES);
+        try {
+            h.call(c -> {
+                throw new IOException("boo");
+            }, Cancellation.create());
+            fail();
+        } catch (IOException e) {
+            assertEquals("boo", e.getMessage());
+        }
+        assertEquals(0, h.hedgesSent());
+    }
+
+    @Test
+    public void testPrimaryFailsAfterHedgeSent() throws Exception {
+        HedgingPolicy h = HedgingPolicy.delay(10, TimeUnit.MILLISECONDS);
+        CountDownLatch hedged = new CountDownLatch(1);
+        AtomicInteger count = new AtomicInteger();
+        ResponseInputStream r = h.call(c -> {
+            if (count.incrementAndGet() == 1) {
+                hedged.await();
+                throw new IOException("boo");
+            } else {
+                hedged.countDown();
+                return response("hedge", null);
+            }
+        }, Cancellation.create());
+        assertEquals("hedge", text(r));
+        assertEquals(1, h.hedgesWon());
+    }
+
+    @Test
+    public void testBothFail() throws Exception {
+        HedgingPolicy h = HedgingPolicy.delay(10, TimeUnit.MILLISECONDS);
+        CountDownLatch hedged = new CountDownLatch(1);
+        AtomicInteger count = new AtomicInteger();
+        try {
+            h.call(c -> {
+                if (count.incrementAndGet() == 1) {
+                    hedged.await();
+                    Thread.sleep(50);
+                    throw new IOException("first");
+                } else {
+                    hedged.countDown();
+                    throw new IOException("second");
+                }
+            }, Cancellation.create());
+            fail();
+        } catch (IOException e) {
+            assertEquals("first", e.getMessage());
+        }
+        assertEquals(1, h.hedgesSent());
+        assertEquals(0, h.hedgesWon());
+    }
+
+    @Test
+    public void testLoserAborted() throws Exception {
+        HedgingPolicy h = HedgingPolicy.delay(10, TimeUnit.MILLISECONDS);
+        CountDownLatch aborted = new CountDownLatch(1);
+        AtomicInteger count = new AtomicInteger();
+        ResponseInputStream r = h.call(c -> {
+            if (count.incrementAndGet() == 1) {
+                c.addAbort(aborted::countDown);
+                aborted.await();
+                throw new IOException("aborted");
+            } else {
+                return response("fast", null);
+            }
+        }, Cancellation.create());
+        assertEquals("fast", text(r));
+        assertTrue(aborted.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCancelAbortsBothAttempts() throws Exception {
+        HedgingPolicy h = HedgingPolicy.delay(10, TimeUnit.MILLISECONDS);
+        Cancellation cancellation = Cancellation.create();
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch aborted = new CountDownLatch(2);
+        Thread t = new Thread(() -> {
+            try {
+                started.await();
+            } catch (InterruptedException e) {
+                // ignore
+            }
+            cancellation.cancel();
+        });
+        t.start();
+        try {
+            h.call(c -> {
+                CountDownLatch latch = new CountDownLatch(1);
+                c.addAbort(latch::countDown);
+                started.countDown();
+                awaitUninterruptibly(latch);
+                aborted.countDown();
+                throw new IOException("aborted");
+            }, cancellation);
+            fail();
+        } catch (IOException e) {
+            assertEquals("aborted", e.getMessage());
+        }
+        assertTrue(aborted.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testAbortedLoserLatencyRecorded() throws Exception {
+        HedgingPolicy h = HedgingPolicy.percentile(0.95, 10, TimeUnit.MILLISECONDS);
+        CountDownLatch aborted = new CountDownLatch(1);
+        AtomicInteger count = new AtomicInteger();
+        ResponseInputStream r = h.call(c -> {
+            if (count.incrementAndGet() == 1) {
+                c.addAbort(aborted::countDown);
+                aborted.await();
+                throw new IOException("aborted");
+            } else {
+                return response("fast", null);
+            }
+        }, Cancellation.create());
+        assertEquals("fast", text(r));
+        assertTrue(aborted.await(10, TimeUnit.SECONDS));
+        long start = System.currentTimeMillis();
+        while (h.latencyCount() < 2) {
+            if (System.currentTimeMillis() - start > 10000) {
+                fail("loser latency not recorded");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testFailedAttemptLatencyRecorded() throws Exception {
+        HedgingPolicy h = HedgingPolicy.delay(1, TimeUnit.MINUTES);
+        try {
+            h.call(c -> {
+                throw new IOException("boo");
+            }, Cancellation.create());
+            fail();
+        } catch (IOException e) {
+            assertEquals(1, h.latencyCount());
+        }
+    }
+
+    @Test
+    public void testPercentileDelay() {
+        HedgingPolicy h = HedgingPolicy.percentile(0.95, 30, TimeUnit.MILLISECONDS);
+        for (int i = 1; i < 20; i++) {
+            h.recordLatency(i);
+        }
+        assertEquals(30, h.delayMs());
+        for (int i = 20; i <= 100; i++) {
+            h.recordLatency(i);
+        }
+        assertEquals(95, h.delayMs());
+    }
+
+    @Test
+    public void testPercentileDelayUsesRecentLatencies() {
+        HedgingPolicy h = HedgingPolicy.percentile(0.5, 30, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 1000; i++) {
+            h.recordLatency(1000);
+        }
+        for (int i = 0; i < 256; i++) {
+            h.recordLatency(5);
+        }
+        assertEquals(5, h.delayMs());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadPercentile() {
+        HedgingPolicy.percentile(1, 30, TimeUnit.MILLISECONDS);
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        while (true) {
+            try {
+                latch.await();
+                return;
+            } catch (InterruptedException e) {
+                // keep waiting
+            }
+        }
+    }
+
+    private static ResponseInputStream response(String text, CountDownLatch closed) {
+        return new ResponseInputStream(() -> {
+            if (closed != null) {
+                closed.countDown();
+            }
+        }, 200, new HashMap<>(), new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String text(ResponseInputStream r) {
+        return new String(Util.readBytesAndClose(r), StandardCharsets.UTF_8);
+    }
+
+}
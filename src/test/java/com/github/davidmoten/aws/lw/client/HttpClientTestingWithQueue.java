@@ -14,7 +14,9 @@ public class HttpClientTestingWithQueue implements HttpClient {
     // needs to be volatile to work with Multipart async operations
     private final Queue<Object> queue = new LinkedList<>();
     private final List<String> urls = new CopyOnWriteArrayList<>();
+    private final List<Map<String, String>> headers = new CopyOnWriteArrayList<>();
     private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final List<Integer> readTimeouts = new CopyOnWriteArrayList<>();
 
     public void add(ResponseInputStream r) {
         queue.add(r);
@@ -28,6 +30,14 @@ public class HttpClientTestingWithQueue implements HttpClient {
         return urls;
     }
 
+    public List<Map<String, String>> headers() {
+        return headers;
+    }
+
+    public List<Integer> readTimeouts() {
+        return readTimeouts;
+    }
+
     public byte[] bytes() {
         return bytes.toByteArray();
     }
@@ -36,6 +46,8 @@ public class HttpClientTestingWithQueue implements HttpClient {
     public synchronized ResponseInputStream request(URL endpointUrl, String httpMethod, Map<String, String> headers,
             byte[] requestBody, int connectTimeoutMs, int readTimeoutMs) throws IOException {
         urls.add(httpMethod + ":" + endpointUrl.toString());
+        this.headers.add(headers);
+        this.readTimeouts.add(readTimeoutMs);
         Object o = queue.poll();
         if (o instanceof ResponseInputStream) {
             ResponseInputStream r = (ResponseInputStream) o;
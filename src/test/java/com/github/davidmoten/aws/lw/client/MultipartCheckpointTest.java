@@ -0,0 +1,93 @@
+package com.github.davidmoten.aws.lw.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.Test;
+
+public class MultipartCheckpointTest {
+
+    @Test
+    public void testRoundTrip() {
+        File file = new File("target/checkpoint-" + System.nanoTime());
+        MultipartCheckpoint c = new MultipartCheckpoint(file, "my bucket", "a/b&c");
+        c.start("upload 1", 100);
+        c.partCompleted(2, "etag2", Optional.empty());
+        c.partCompleted(1, "etag1", Optional.empty());
+        MultipartCheckpoint.State state = c.read(Optional.empty()).get();
+        assertEquals("upload 1", state.uploadId);
+        assertEquals(100, state.partSize);
+        Map<Integer, String> expected = new HashMap<>();
+        expected.put(1, "etag1");
+        expected.put(2, "etag2");
+        assertEquals(expected, state.etags);
+        c.delete();
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testRoundTripWithChecksums() {
+        File file = new File("target/checkpoint-" + System.nanoTime());
+        MultipartCheckpoint c = new MultipartCheckpoint(file, "b", "k");
+        c.start("abc", 100);
+        c.partCompleted(1, "etag1", Optional.of("a+b/c=="));
+        c.partCompleted(2, "etag2", Optional.empty());
+        MultipartCheckpoint.State state = c.read(Optional.empty()).get();
+        assertEquals(2, state.etags.size());
+        assertEquals(Collections.singletonMap(1, "a+b/c=="), state.checksums);
+        c.delete();
+    }
+
+    @Test
+    public void testDoesNotExist() {
+        assertFalse(new MultipartCheckpoint(new File("target/doesnotexist"), "b", "k").read(Optional.empty()).isPresent());
+    }
+
+    @Test
+    public void testDifferentKeyIgnored() {
+        File file = new File("target/checkpoint-" + System.nanoTime());
+        new MultipartCheckpoint(file, "b", "k").start("abc", 100);
+        assertFalse(new MultipartCheckpoint(file, "b", "k2").read(Optional.empty()).isPresent());
+        assertTrue(new MultipartCheckpoint(file, "b", "k").read(Optional.empty()).isPresent());
+    }
+
+    @Test
+    public void testTornLastLineIgnored() throws IOException {
+        File file = new File("target/checkpoint-" + System.nanoTime());
+        MultipartCheckpoint c = new MultipartCheckpoint(file, "b", "k");
+        c.start("abc", 100);
+        c.partCompleted(1, "etag1", Optional.empty());
+        Files.write(file.toPath(), "part 2".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        assertEquals(1, c.read(Optional.empty()).get().etags.size());
+    }
+
+    @Test
+    public void testTornChecksumIgnored() throws IOException {
+        File file = new File("target/checkpoint-" + System.nanoTime());
+        MultipartCheckpoint c = new MultipartCheckpoint(file, "b", "k");
+        c.start("abc", 100);
+        c.partCompleted(1, "etag1", Optional.of("AAAAAA=="));
+        Files.write(file.toPath(), "part 2 etag2 AAA".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        MultipartCheckpoint.State state = c.read(Optional.of(ChecksumAlgorithm.CRC32C)).get();
+        assertEquals(Collections.singletonMap(1, "etag1"), state.etags);
+        assertEquals(Collections.singletonMap(1, "AAAAAA=="), state.checksums);
+    }
+
+    @Test
+    public void testNotACheckpointFile() throws IOException {
+        File file = new File("target/checkpoint-" + System.nanoTime());
+        Files.write(file.toPath(), "hello".getBytes(StandardCharsets.UTF_8));
+        assertFalse(new MultipartCheckpoint(file, "b", "k").read(Optional.empty()).isPresent());
+    }
+}
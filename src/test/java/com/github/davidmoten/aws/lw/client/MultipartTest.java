@@ -2,7 +2,9 @@ package com.github.davidmoten.aws.lw.client;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -14,15 +16,23 @@ import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.davidmoten.kool.function.Consumer;
 import org.junit.Test;
 
+import com.github.davidmoten.aws.lw.client.MultipartOutputStream.UploadedPart;
 import com.github.davidmoten.aws.lw.client.internal.Retries;
 import com.github.davidmoten.aws.lw.client.xml.builder.Xml;
 import com.github.davidmoten.junit.Asserts;
@@ -250,6 +260,164 @@ public class MultipartTest {
         assertArrayEquals(bytes, h.bytes());
     }
 
+    @Test
+    public void testMultipartUploadByteArrayAdaptive() throws IOException {
+        HttpClientTestingWithQueue h = new HttpClientTestingWithQueue();
+        Client s3 = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .httpClient(h) //
+                .build();
+        h.add(startMultipartUpload());
+        h.add(submitPart1());
+        h.add(submitPart2());
+        h.add(completeMultipartUpload());
+
+        byte[] bytes = createBytes();
+        Multipart.s3(s3) //
+                .bucket("mybucket") //
+                .key("mykey") //
+                .executor(Executors.newFixedThreadPool(2)) //
+                .adaptive(1, 5) //
+                .upload(bytes);
+
+        assertEquals(Arrays.asList( //
+                "POST:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey?uploads",
+                "PUT:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey?partNumber=1&uploadId=abcde",
+                "PUT:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey?partNumber=2&uploadId=abcde",
+                "POST:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey?uploadId=abcde"), //
+                h.urls());
+        assertArrayEquals(bytes, h.bytes());
+    }
+
+    @Test(timeout = 10000)
+    public void testMultipartAdaptiveRejectedPartReleasesCapacity() throws Exception {
+        HttpClientTestingWithQueue h = new HttpClientTestingWithQueue();
+        Client s3 = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .httpClient(h) //
+                .build();
+        h.add(startMultipartUpload());
+        h.add(submitPart2());
+
+        AtomicInteger submissions = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>()) {
+            @Override
+            public void execute(Runnable command) {
+                if (submissions.getAndIncrement() == 0) {
+                    throw new RejectedExecutionException();
+                }
+                super.execute(command);
+            }
+        };
+        MultipartOutputStream out = Multipart.s3(s3) //
+                .bucket("mybucket") //
+                .key("mykey") //
+                .executor(executor) //
+                .adaptive(1, 5) //
+                .outputStream();
+        byte[] part = new byte[5 * 1024 * 1024];
+        try {
+            out.write(part);
+            fail();
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        // would block forever if the rejected part still held the only slot
+        out.write(part);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals("PUT:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey?partNumber=2&uploadId=abcde",
+                h.urls().get(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMultipartAdaptiveCannotResume() throws IOException {
+        File file = File.createTempFile("checkpoint", ".txt");
+        try {
+            Multipart.s3(s3()) //
+                    .bucket("mybucket") //
+                    .key("mykey") //
+                    .adaptive() //
+                    .resume(file) //
+                    .outputStream();
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testMultipartUploadWithChecksum() throws IOException {
+        byte[] bytes = createBytes();
+        ChecksumAlgorithm alg = ChecksumAlgorithm.CRC32C;
+        String c1 = alg.checksum(bytes, 0, 5 * 1024 * 1024);
+        String c2 = alg.checksum(bytes, 5 * 1024 * 1024, bytes.length - 5 * 1024 * 1024);
+        HttpClientTestingWithQueue h = uploadWithChecksum(bytes, alg.composite(Arrays.asList(c1, c2)));
+        assertEquals("CRC32C", h.headers().get(0).get("x-amz-checksum-algorithm"));
+        assertEquals(c1, h.headers().get(1).get("x-amz-checksum-crc32c"));
+        assertEquals(c2, h.headers().get(2).get("x-amz-checksum-crc32c"));
+        assertArrayEquals(bytes, h.bytes());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMultipartUploadWithChecksumCompositeMismatch() throws IOException {
+        uploadWithChecksum(createBytes(), "AAAAAA==-2");
+    }
+
+    private static HttpClientTestingWithQueue uploadWithChecksum(byte[] bytes, String composite) {
+        HttpClientTestingWithQueue h = new HttpClientTestingWithQueue();
+        Client s3 = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .httpClient(h) //
+                .build();
+        h.add(startMultipartUpload());
+        h.add(submitPart1());
+        h.add(submitPart2());
+        h.add(xmlResponse(200, Xml.create("CompleteMultipartUploadResult") //
+                .e("ETag").content("\"etag\"") //
+                .up() //
+                .e("ChecksumCRC32C").content(composite) //
+                .toString()));
+
+        Multipart.s3(s3) //
+                .bucket("mybucket") //
+                .key("mykey") //
+                .executor(Executors.newFixedThreadPool(1)) //
+                .checksumAlgorithm(ChecksumAlgorithm.CRC32C) //
+                .upload(bytes);
+        return h;
+    }
+
+    @Test
+    public void testMultipartSmallUploadWithChecksum() {
+        HttpClientTestingWithQueue h = new HttpClientTestingWithQueue();
+        h.add(putObject());
+        Client s3 = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .httpClient(h) //
+                .build();
+        byte[] bytes = "hello".getBytes(StandardCharsets.UTF_8);
+        Multipart.s3(s3) //
+                .bucket("mybucket") //
+                .key("mykey") //
+                .executor(Executors.newFixedThreadPool(1)) //
+                .checksumAlgorithm(ChecksumAlgorithm.SHA256) //
+                .upload(bytes);
+        assertEquals(ChecksumAlgorithm.SHA256.checksum(bytes), h.headers().get(0).get("x-amz-checksum-sha256"));
+    }
+
     @Test
     public void testMultipartAbort() throws IOException {
         HttpClientTestingWithQueue h = new HttpClientTestingWithQueue();
@@ -292,6 +460,479 @@ public class MultipartTest {
                 h.urls());
     }
 
+    @Test
+    public void testMultipartCheckpointDeletedOnCompletion() throws IOException {
+        HttpClientTestingWithQueue h = new HttpClientTestingWithQueue();
+        Client s3 = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .httpClient(h) //
+                .build();
+        h.add(startMultipartUpload());
+        h.add(submitPart1());
+        h.add(submitPart2());
+        h.add(completeMultipartUpload());
+
+        File checkpoint = new File("target/checkpoint-" + System.nanoTime());
+        Multipart.s3(s3) //
+                .bucket("mybucket") //
+                .key("mykey") //
+                .executor(Executors.newFixedThreadPool(1)) //
+                .checkpoint(checkpoint) //
+                .upload(createBytes());
+        assertFalse(checkpoint.exists());
+    }
+
+    @Test
+    public void testMultipartResume() throws IOException {
+        HttpClientTestingWithQueue h = new HttpClientTestingWithQueue();
+        Client s3 = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .httpClient(h) //
+                .build();
+        File file = new File("target/checkpoint-" + System.nanoTime());
+        MultipartCheckpoint checkpoint = new MultipartCheckpoint(file, "mybucket", "mykey");
+        checkpoint.start("abcde", 5 * 1024 * 1024);
+        checkpoint.partCompleted(1, "etag1", Optional.empty());
+
+        h.add(listParts());
+        h.add(submitPart2());
+        h.add(completeMultipartUpload());
+
+        byte[] bytes = createBytes();
+        Multipart.s3(s3) //
+                .bucket("mybucket") //
+                .key("mykey") //
+                .executor(Executors.newFixedThreadPool(1)) //
+                .resume(file) //
+                .upload(bytes);
+
+        assertEquals(Arrays.asList( //
+                "GET:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey?uploadId=abcde",
+                "PUT:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey?partNumber=2&uploadId=abcde",
+                "POST:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey?uploadId=abcde"), //
+                h.urls());
+        assertArrayEquals(Arrays.copyOfRange(bytes, 5 * 1024 * 1024, bytes.length), h.bytes());
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testMultipartPartFailureKeepsCheckpointForResume() throws IOException {
+        HttpClientTestingWithQueue h = new HttpClientTestingWithQueue();
+        Client s3 = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .httpClient(h) //
+                .retryMaxAttempts(1) //
+                .build();
+        h.add(startMultipartUpload());
+        h.add(submitPart1());
+        h.add(submitPart2Fails());
+
+        File file = new File("target/checkpoint-" + System.nanoTime());
+        byte[] bytes = createBytes();
+        try {
+            Multipart.s3(s3) //
+                    .bucket("mybucket") //
+                    .key("mykey") //
+                    .executor(Executors.newFixedThreadPool(1)) //
+                    .maxAttemptsPerAction(1) //
+                    .checkpoint(file) //
+                    .upload(bytes);
+            fail();
+        } catch (RuntimeException e) {
+            // expected
+        }
+        // upload not aborted
+        assertEquals(Arrays.asList( //
+                "POST:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey?uploads",
+                "PUT:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey?partNumber=1&uploadId=abcde",
+                "PUT:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey?partNumber=2&uploadId=abcde"), //
+                h.urls());
+        assertTrue(file.exists());
+
+        HttpClientTestingWithQueue h2 = new HttpClientTestingWithQueue();
+        h2.add(listParts());
+        h2.add(submitPart2());
+        h2.add(completeMultipartUpload());
+        Client s3Resumed = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .httpClient(h2) //
+                .build();
+        Multipart.s3(s3Resumed) //
+                .bucket("mybucket") //
+                .key("mykey") //
+                .executor(Executors.newFixedThreadPool(1)) //
+                .resume(file) //
+                .upload(bytes);
+        assertEquals(Arrays.asList( //
+                "GET:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey?uploadId=abcde",
+                "PUT:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey?partNumber=2&uploadId=abcde",
+                "POST:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey?uploadId=abcde"), //
+                h2.urls());
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testMultipartResumeWhenUploadNoLongerExists() throws IOException {
+        HttpClientTestingWithQueue h = new HttpClientTestingWithQueue();
+        Client s3 = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .httpClient(h) //
+                .build();
+        File file = new File("target/checkpoint-" + System.nanoTime());
+        MultipartCheckpoint checkpoint = new MultipartCheckpoint(file, "mybucket", "mykey");
+        checkpoint.start("old", 5 * 1024 * 1024);
+        checkpoint.partCompleted(1, "etag1", Optional.empty());
+
+        h.add(noSuchUpload());
+        h.add(startMultipartUpload());
+        h.add(submitPart1());
+        h.add(submitPart2());
+        h.add(completeMultipartUpload());
+
+        byte[] bytes = createBytes();
+        Multipart.s3(s3) //
+                .bucket("mybucket") //
+                .key("mykey") //
+                .executor(Executors.newFixedThreadPool(1)) //
+                .resume(file) //
+                .upload(bytes);
+
+        assertEquals(Arrays.asList( //
+                "GET:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey?uploadId=old",
+                "POST:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey?uploads",
+                "PUT:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey?partNumber=1&uploadId=abcde",
+                "PUT:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey?partNumber=2&uploadId=abcde",
+                "POST:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey?uploadId=abcde"), //
+                h.urls());
+        assertArrayEquals(bytes, h.bytes());
+    }
+
+    @Test
+    public void testReconcileIgnoresPartsWithDifferentEtags() {
+        Map<Integer, String> checkpointed = new HashMap<>();
+        checkpointed.put(1, "a");
+        checkpointed.put(2, "b");
+        checkpointed.put(3, "c");
+        Map<Integer, UploadedPart> uploaded = new HashMap<>();
+        uploaded.put(1, new UploadedPart("a", 100));
+        uploaded.put(2, new UploadedPart("z", 100));
+        assertEquals(Collections.singleton(1), MultipartOutputStream.reconcile(checkpointed, uploaded, 100).keySet());
+    }
+
+    @Test
+    public void testReconcileIgnoresPartsWithDifferentSizes() {
+        Map<Integer, String> checkpointed = new HashMap<>();
+        checkpointed.put(1, "a");
+        checkpointed.put(2, "b");
+        checkpointed.put(3, "c");
+        Map<Integer, UploadedPart> uploaded = new HashMap<>();
+        uploaded.put(1, new UploadedPart("a", 100));
+        uploaded.put(2, new UploadedPart("b", 50));
+        // the last part can be smaller
+        uploaded.put(3, new UploadedPart("c", 50));
+        assertEquals(new HashSet<>(Arrays.asList(1, 3)),
+                MultipartOutputStream.reconcile(checkpointed, uploaded, 100).keySet());
+    }
+
+    @Test
+    public void testMultipartResumeWithDifferentPartSizeFails() throws IOException {
+        HttpClientTestingWithQueue h = new HttpClientTestingWithQueue();
+        Client s3 = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .httpClient(h) //
+                .build();
+        File file = new File("target/checkpoint-" + System.nanoTime());
+        MultipartCheckpoint checkpoint = new MultipartCheckpoint(file, "mybucket", "mykey");
+        checkpoint.start("abcde", 6 * 1024 * 1024);
+        checkpoint.partCompleted(1, "etag1", Optional.empty());
+
+        h.add(listParts());
+
+        try {
+            Multipart.s3(s3) //
+                    .bucket("mybucket") //
+                    .key("mykey") //
+                    .executor(Executors.newFixedThreadPool(1)) //
+                    .resume(file) //
+                    .upload(createBytes());
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("part size"));
+        }
+        // nothing sent after listing the parts
+        assertEquals(Arrays.asList( //
+                "GET:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey?uploadId=abcde"), //
+                h.urls());
+        assertTrue(file.exists());
+        file.delete();
+    }
+
+    @Test
+    public void testMultipartResumeUploadsPartAgainIfChecksumDiffers() throws IOException {
+        HttpClientTestingWithQueue h = new HttpClientTestingWithQueue();
+        Client s3 = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .httpClient(h) //
+                .build();
+        File file = new File("target/checkpoint-" + System.nanoTime());
+        MultipartCheckpoint checkpoint = new MultipartCheckpoint(file, "mybucket", "mykey");
+        checkpoint.start("abcde", 5 * 1024 * 1024);
+        // not the checksum of the first part written below
+        checkpoint.partCompleted(1, "etag1", Optional.of("AAAAAA=="));
+
+        h.add(listParts());
+        h.add(submitPart1());
+        h.add(submitPart2());
+        byte[] bytes = createBytes();
+        ChecksumAlgorithm alg = ChecksumAlgorithm.CRC32C;
+        String c1 = alg.checksum(bytes, 0, 5 * 1024 * 1024);
+        String c2 = alg.checksum(bytes, 5 * 1024 * 1024, bytes.length - 5 * 1024 * 1024);
+        h.add(xmlResponse(200, Xml.create("CompleteMultipartUploadResult") //
+                .e("ETag").content("\"etag\"") //
+                .up() //
+                .e("ChecksumCRC32C").content(alg.composite(Arrays.asList(c1, c2))) //
+                .toString()));
+
+        Multipart.s3(s3) //
+                .bucket("mybucket") //
+                .key("mykey") //
+                .executor(Executors.newFixedThreadPool(1)) //
+                .checksumAlgorithm(alg) //
+                .resume(file) //
+                .upload(bytes);
+
+        assertEquals(Arrays.asList( //
+                "GET:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey?uploadId=abcde",
+                "PUT:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey?partNumber=1&uploadId=abcde",
+                "PUT:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey?partNumber=2&uploadId=abcde",
+                "POST:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey?uploadId=abcde"), //
+                h.urls());
+        assertEquals(c1, h.headers().get(1).get("x-amz-checksum-crc32c"));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testMultipartCopy() {
+        HttpClientTestingWithQueue h = new HttpClientTestingWithQueue();
+        Client s3 = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .httpClient(h) //
+                .build();
+        long size = 12 * 1024 * 1024;
+        Map<String, List<String>> headHeaders = new HashMap<>();
+        headHeaders.put("Content-Length", Arrays.asList("" + size));
+        headHeaders.put("Content-Type", Arrays.asList("text/plain"));
+        headHeaders.put("x-amz-meta-colour", Arrays.asList("red"));
+        h.add(new ResponseInputStream(DO_NOTHING, 200, headHeaders, emptyInputStream()));
+        h.add(startMultipartUpload());
+        h.add(xmlResponse(200, copyPartResult("etag1")));
+        h.add(xmlResponse(200, copyPartResult("etag2")));
+        h.add(xmlResponse(200, copyPartResult("etag3")));
+        h.add(completeMultipartUpload());
+
+        copy(s3, 1);
+
+        assertEquals(Arrays.asList( //
+                "HEAD:https://s3.ap-southeast-2.amazonaws.com/source/a/b%20c",
+                "POST:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey?uploads",
+                "PUT:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey?partNumber=1&uploadId=abcde",
+                "PUT:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey?partNumber=2&uploadId=abcde",
+                "PUT:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey?partNumber=3&uploadId=abcde",
+                "POST:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey?uploadId=abcde"), //
+                h.urls());
+        // metadata of the source carried onto the new upload
+        assertEquals("text/plain", h.headers().get(1).get("Content-Type"));
+        assertEquals("red", h.headers().get(1).get("x-amz-meta-colour"));
+        assertEquals("/source/a/b%20c", h.headers().get(2).get("x-amz-copy-source"));
+        assertEquals("bytes=0-5242879", h.headers().get(2).get("x-amz-copy-source-range"));
+        assertEquals("bytes=5242880-10485759", h.headers().get(3).get("x-amz-copy-source-range"));
+        assertEquals("bytes=10485760-12582911", h.headers().get(4).get("x-amz-copy-source-range"));
+        assertEquals(0, h.bytes().length);
+    }
+
+    @Test
+    public void testMultipartCopyBoundsPartsInFlight() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        AtomicInteger partCount = new AtomicInteger();
+        HttpClient h = (url, method, headers, body, connectTimeoutMs, readTimeoutMs) -> {
+            if (method.equals("HEAD")) {
+                return headObject(30 * 1024 * 1024);
+            } else if (url.getQuery().equals("uploads")) {
+                return startMultipartUpload();
+            } else if (method.equals("POST")) {
+                return completeMultipartUpload();
+            }
+            partCount.incrementAndGet();
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            return xmlResponse(200, copyPartResult("etag"));
+        };
+        Client s3 = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .httpClient(h) //
+                .build();
+        MultipartCopy.copy(s3, "source", "thing", "mybucket", "mykey", x -> x, Executors.newCachedThreadPool(),
+                60000, s3.retries().withValueShouldRetry(x -> false), 5 * 1024 * 1024, Optional.empty(),
+                5 * 1024 * 1024, 2);
+        assertEquals(6, partCount.get());
+        assertTrue(maxInFlight.get() <= 2);
+    }
+
+    @Test
+    public void testMultipartCopyUsesCopyObjectUpTo5GB() {
+        HttpClientTestingWithQueue h = new HttpClientTestingWithQueue();
+        Client s3 = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .httpClient(h) //
+                .build();
+        h.add(headObject(5L * 1024 * 1024 * 1024));
+        h.add(xmlResponse(200, Xml.create("CopyObjectResult").e("ETag").content("\"etag\"").toString()));
+
+        Multipart.s3(s3) //
+                .bucket("mybucket") //
+                .key("mykey") //
+                .copyFrom("source", "thing");
+
+        assertEquals(Arrays.asList( //
+                "HEAD:https://s3.ap-southeast-2.amazonaws.com/source/thing",
+                "PUT:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey"), //
+                h.urls());
+    }
+
+    @Test
+    public void testMultipartCopySmallObjectUsesCopyObject() {
+        HttpClientTestingWithQueue h = new HttpClientTestingWithQueue();
+        Client s3 = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .httpClient(h) //
+                .build();
+        h.add(headObject(100));
+        h.add(xmlResponse(200, Xml.create("CopyObjectResult").e("ETag").content("\"etag\"").toString()));
+
+        Multipart.s3(s3) //
+                .bucket("mybucket") //
+                .key("mykey") //
+                .copyFrom("source", "thing");
+
+        assertEquals(Arrays.asList( //
+                "HEAD:https://s3.ap-southeast-2.amazonaws.com/source/thing",
+                "PUT:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey"), //
+                h.urls());
+        assertEquals("/source/thing", h.headers().get(1).get("x-amz-copy-source"));
+    }
+
+    @Test
+    public void testMultipartCopyErrorWith200StatusCodeAborts() {
+        HttpClientTestingWithQueue h = new HttpClientTestingWithQueue();
+        Client s3 = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .httpClient(h) //
+                .build();
+        h.add(headObject(6 * 1024 * 1024));
+        h.add(startMultipartUpload());
+        h.add(xmlResponse(200, copyPartResult("etag1")));
+        h.add(xmlResponse(200, Xml.create("Error").e("Code").content("InternalError").toString()));
+        h.add(abortMultipartUpload());
+
+        try {
+            MultipartCopy.copy(s3, "source", "thing", "mybucket", "mykey", x -> x, Executors.newFixedThreadPool(1),
+                    60000, s3.retries().<Void>withValueShouldRetry(x -> false).withMaxAttempts(1), 5 * 1024 * 1024,
+                    Optional.empty(), 5 * 1024 * 1024, 8);
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause().getCause() instanceof ServiceException);
+        }
+        assertEquals("DELETE:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey?uploadId=abcde",
+                h.urls().get(4));
+    }
+
+    @Test
+    public void testMultipartCopyErrorWith200StatusCodeRetried() {
+        HttpClientTestingWithQueue h = new HttpClientTestingWithQueue();
+        Client s3 = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .httpClient(h) //
+                .build();
+        h.add(headObject(6 * 1024 * 1024));
+        h.add(startMultipartUpload());
+        h.add(xmlResponse(200, copyPartResult("etag1")));
+        h.add(xmlResponse(200, Xml.create("Error").e("Code").content("InternalError").toString()));
+        h.add(xmlResponse(200, copyPartResult("etag2")));
+        h.add(completeMultipartUpload());
+
+        copy(s3, 1);
+
+        assertEquals(Arrays.asList( //
+                "HEAD:https://s3.ap-southeast-2.amazonaws.com/source/a/b%20c",
+                "POST:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey?uploads",
+                "PUT:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey?partNumber=1&uploadId=abcde",
+                "PUT:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey?partNumber=2&uploadId=abcde",
+                "PUT:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey?partNumber=2&uploadId=abcde",
+                "POST:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey?uploadId=abcde"), //
+                h.urls());
+    }
+
+    // copies with 5MB parts and a 5MB CopyObject limit (instead of 5GB)
+    private static void copy(Client s3, int maxPartsInFlight) {
+        MultipartCopy.copy(s3, "source", "a/b c", "mybucket", "mykey", x -> x, Executors.newFixedThreadPool(1),
+                60000, s3.retries().withValueShouldRetry(x -> false), 5 * 1024 * 1024, Optional.empty(),
+                5 * 1024 * 1024, maxPartsInFlight);
+    }
+
+    @Test
+    public void testMultipartCopyPartSizeRespectsMaxParts() {
+        assertEquals(5 * 1024 * 1024, MultipartCopy.partSize(1000, 5 * 1024 * 1024));
+        long size = 100L * 1024 * 1024 * 1024;
+        long ps = MultipartCopy.partSize(size, 5 * 1024 * 1024);
+        assertTrue((size + ps - 1) / ps <= 10000);
+    }
+
     private static Client s3() {
         return Client //
                 .s3() //
@@ -339,8 +980,55 @@ public class MultipartTest {
                 .key("mykey") //
                 .outputStream();
 
+        // multipart upload is not started until the first part is submitted
+        assertTrue(h.urls().isEmpty());
+    }
+
+    @Test
+    public void testMultipartSmallUploadUsesSinglePut() {
+        HttpClientTestingWithQueue h = new HttpClientTestingWithQueue();
+        Client s3 = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .httpClient(h) //
+                .build();
+        h.add(putObject());
+
+        byte[] bytes = "hello there".getBytes(StandardCharsets.UTF_8);
+        Multipart.s3(s3) //
+                .bucket("mybucket") //
+                .key("mykey") //
+                .executor(Executors.newFixedThreadPool(1)) //
+                .upload(bytes);
+
+        assertEquals(Arrays.asList( //
+                "PUT:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey"), h.urls());
+        assertArrayEquals(bytes, h.bytes());
+    }
+
+    @Test
+    public void testMultipartEmptyUploadUsesSinglePut() throws IOException {
+        HttpClientTestingWithQueue h = new HttpClientTestingWithQueue();
+        Client s3 = Client //
+                .s3() //
+                .region("ap-southeast-2") //
+                .accessKey("123") //
+                .secretKey("456") //
+                .httpClient(h) //
+                .build();
+        h.add(putObject());
+
+        Multipart.s3(s3) //
+                .bucket("mybucket") //
+                .key("mykey") //
+                .executor(Executors.newFixedThreadPool(1)) //
+                .outputStream() //
+                .close();
+
         assertEquals(Arrays.asList( //
-                "POST:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey?uploads"), h.urls());
+                "PUT:https://s3.ap-southeast-2.amazonaws.com/mybucket/mykey"), h.urls());
     }
 
     @Test(expected = IllegalArgumentException.class)
@@ -427,6 +1115,27 @@ public class MultipartTest {
         return new ResponseInputStream(DO_NOTHING, 200, responseHeaders, emptyInputStream());
     }
 
+    private static ResponseInputStream headObject(long size) {
+        Map<String, List<String>> responseHeaders = new HashMap<>();
+        responseHeaders.put("Content-Length", Arrays.asList("" + size));
+        return new ResponseInputStream(DO_NOTHING, 200, responseHeaders, emptyInputStream());
+    }
+
+    private static String copyPartResult(String etag) {
+        return Xml.create("CopyPartResult") //
+                .e("LastModified").content("2011-04-11T20:34:56.000Z") //
+                .up() //
+                .e("ETag").content("\"" + etag + "\"") //
+                .toString();
+    }
+
+    private static ResponseInputStream putObject() {
+        Map<String, List<String>> responseHeaders = new HashMap<>();
+        responseHeaders.put("Content-Length", Arrays.asList("0"));
+        responseHeaders.put("ETag", Arrays.asList("\"etag\""));
+        return new ResponseInputStream(DO_NOTHING, 200, responseHeaders, emptyInputStream());
+    }
+
     private static ResponseInputStream abortMultipartUpload() {
         // response for completion
         // actually includes xml response but we don't read it
@@ -460,6 +1169,41 @@ public class MultipartTest {
         return new ResponseInputStream(DO_NOTHING, 200, responseHeaders, emptyInputStream());
     }
 
+    private static ResponseInputStream listParts() {
+        String responseXml = Xml.create("ListPartsResult") //
+                .a("xmlns", "http://s3.amazonaws.com/doc/2006-03-01/") //
+                .e("Bucket").content("mybucket") //
+                .up() //
+                .e("Key").content("mykey") //
+                .up() //
+                .e("UploadId").content("abcde") //
+                .up() //
+                .e("IsTruncated").content("false") //
+                .up() //
+                .e("Part") //
+                .e("PartNumber").content("1") //
+                .up() //
+                .e("ETag").content("\"etag1\"") //
+                .up() //
+                .e("Size").content("5242880") //
+                .toString();
+        return xmlResponse(200, responseXml);
+    }
+
+    private static ResponseInputStream noSuchUpload() {
+        String responseXml = Xml.create("Error") //
+                .e("Code").content("NoSuchUpload") //
+                .toString();
+        return xmlResponse(404, responseXml);
+    }
+
+    private static ResponseInputStream xmlResponse(int statusCode, String responseXml) {
+        byte[] bytes = responseXml.getBytes(StandardCharsets.UTF_8);
+        Map<String, List<String>> responseHeaders = new HashMap<>();
+        responseHeaders.put("Content-Length", Arrays.asList("" + bytes.length));
+        return new ResponseInputStream(DO_NOTHING, statusCode, responseHeaders, new ByteArrayInputStream(bytes));
+    }
+
     private static ResponseInputStream startMultipartUpload() {
         String responseXml = Xml.create("InitiateMultipartUploadResult") //
                 .a("xmlns", "http://s3.amazonaws.com/doc/2006-03-01/") //
@@ -0,0 +1,117 @@
+package com.github.davidmoten.aws.lw.client;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class MultipartTunerTest {
+
+    private static final int MB = 1024 * 1024;
+
+    @Test
+    public void testInitialPartSize() {
+        MultipartTuner t = new MultipartTuner(5 * MB, 64 * MB, 8, -1);
+        assertEquals(5 * MB, t.nextPartSize(0, 0));
+        assertEquals(2, t.concurrency());
+    }
+
+    @Test
+    public void testPartSizeGrowsWhenPartsAreFast() {
+        MultipartTuner t = new MultipartTuner(5 * MB, 16 * MB, 8, -1);
+        t.partCompleted(5 * MB, 100, 1000);
+        assertEquals(10 * MB, t.nextPartSize(5 * MB, 1));
+        assertEquals(16 * MB, t.nextPartSize(15 * MB, 2));
+        assertEquals(16 * MB, t.nextPartSize(31 * MB, 3));
+    }
+
+    @Test
+    public void testPartSizeShrinksWhenPartsAreSlow() {
+        MultipartTuner t = new MultipartTuner(40 * MB, 64 * MB, 8, -1);
+        t.partCompleted(40 * MB, 60000, 60000);
+        assertEquals(20 * MB, t.nextPartSize(40 * MB, 1));
+        assertEquals(10 * MB, t.nextPartSize(60 * MB, 2));
+        assertEquals(5 * MB, t.nextPartSize(70 * MB, 3));
+        assertEquals(5 * MB, t.nextPartSize(75 * MB, 4));
+    }
+
+    @Test
+    public void testPartSizeUnchangedWhenPartDurationInTargetRange() {
+        MultipartTuner t = new MultipartTuner(8 * MB, 64 * MB, 8, -1);
+        t.partCompleted(8 * MB, 5000, 5000);
+        assertEquals(8 * MB, t.nextPartSize(8 * MB, 1));
+    }
+
+    @Test
+    public void testPartSizeRespectsMaxPartsForSizeHint() {
+        long size = 100_000L * MB;
+        MultipartTuner t = new MultipartTuner(5 * MB, 6 * MB, 8, size);
+        assertEquals(10 * MB, t.nextPartSize(0, 0));
+    }
+
+    @Test
+    public void testMinimumPartSize() {
+        assertEquals(0, MultipartTuner.minimumPartSize(0, 0, -1));
+        assertEquals(1, MultipartTuner.minimumPartSize(0, 0, 1));
+        assertEquals(2, MultipartTuner.minimumPartSize(0, 0, 10001));
+        // unknown size assumes as much again is still to come
+        assertEquals(9000, MultipartTuner.minimumPartSize(1000 * 9000L, 9000, -1));
+        // parts exhausted still returns a bound
+        assertEquals(100, MultipartTuner.minimumPartSize(0, 20000, 100));
+    }
+
+    @Test
+    public void testConcurrencyClimbsWhileThroughputImproves() {
+        MultipartTuner t = new MultipartTuner(5 * MB, 64 * MB, 4, -1);
+        assertEquals(2, t.concurrency());
+        // first window establishes a baseline and moves up
+        t.partCompleted(MB, 1000, 1000);
+        t.partCompleted(MB, 1000, 1000);
+        assertEquals(3, t.concurrency());
+        // better throughput keeps climbing
+        t.partCompleted(MB, 500, 1500);
+        t.partCompleted(MB, 500, 1500);
+        t.partCompleted(MB, 500, 1500);
+        assertEquals(4, t.concurrency());
+        // capped at max
+        t.partCompleted(MB, 100, 1600);
+        t.partCompleted(MB, 100, 1600);
+        t.partCompleted(MB, 100, 1600);
+        t.partCompleted(MB, 100, 1600);
+        assertEquals(4, t.concurrency());
+    }
+
+    @Test
+    public void testConcurrencyReversesWhenThroughputDegrades() {
+        MultipartTuner t = new MultipartTuner(5 * MB, 64 * MB, 8, -1);
+        t.partCompleted(MB, 1000, 1000);
+        t.partCompleted(MB, 1000, 1000);
+        assertEquals(3, t.concurrency());
+        // 3MB in 3s is worse than 2MB in 1s
+        t.partCompleted(MB, 3000, 4000);
+        t.partCompleted(MB, 3000, 4000);
+        t.partCompleted(MB, 3000, 4000);
+        assertEquals(2, t.concurrency());
+    }
+
+    @Test
+    public void testConcurrencyHoldsWhenThroughputSteady() {
+        MultipartTuner t = new MultipartTuner(5 * MB, 64 * MB, 8, -1);
+        t.partCompleted(MB, 1000, 1000);
+        t.partCompleted(MB, 1000, 1000);
+        assertEquals(3, t.concurrency());
+        t.partCompleted(MB, 1000, 2500);
+        t.partCompleted(MB, 1000, 2500);
+        t.partCompleted(MB, 1000, 2500);
+        assertEquals(3, t.concurrency());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadInitialPartSize() {
+        new MultipartTuner(MB, 64 * MB, 8, -1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadMaxConcurrency() {
+        new MultipartTuner(5 * MB, 64 * MB, 0, -1);
+    }
+}
@@ -62,4 +62,13 @@ public class RequestTest {
         assertEquals("abc/",Request.trimAndEnsureHasTrailingSlash("abc/"));
     }
 
+    @Test
+    public void testClipTimeout() {
+        assertEquals(100, Request.clipTimeout(100, 500));
+        assertEquals(500, Request.clipTimeout(1000, 500));
+        // 0 is an infinite timeout
+        assertEquals(500, Request.clipTimeout(0, 500));
+        assertEquals(Integer.MAX_VALUE, Request.clipTimeout(0, Long.MAX_VALUE));
+    }
+
 }
@@ -0,0 +1,155 @@
+package com.github.davidmoten.aws.lw.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.Test;
+
+import com.github.davidmoten.aws.lw.client.internal.RetryAdvice;
+import com.github.davidmoten.aws.lw.client.internal.util.Util;
+
+public class RetryClassifierTest {
+
+    private static final RetryClassifier S3 = RetryClassifier.forService("s3");
+
+    @Test
+    public void testOkNotRetried() {
+        assertSame(RetryAdvice.NO_RETRY, S3.apply(response(200, "<Error><Code>SlowDown</Code></Error>")));
+    }
+
+    @Test
+    public void testPermanentClientErrorsNotRetried() {
+        assertFalse(S3.apply(response(403, "<Error><Code>AccessDenied</Code></Error>")).shouldRetry());
+        assertFalse(S3.apply(response(403, "<Error><Code>SignatureDoesNotMatch</Code></Error>")).shouldRetry());
+        assertFalse(S3.apply(response(400, "<Error><Code>InvalidArgument</Code></Error>")).shouldRetry());
+        assertFalse(S3.apply(response(400, "")).shouldRetry());
+        assertFalse(S3.apply(response(404, "<Error><Code>NoSuchKey</Code></Error>")).shouldRetry());
+    }
+
+    @Test
+    public void testThrottlingClientErrorRetried() {
+        RetryAdvice a = S3.apply(response(400, "<ErrorResponse><Error><Code>Throttling</Code></Error></ErrorResponse>"));
+        assertTrue(a.shouldRetry());
+        assertTrue(a.throttled());
+    }
+
+    @Test
+    public void testTransientClientErrorRetried() {
+        RetryAdvice a = S3.apply(response(400, "<Error><Code>RequestTimeout</Code></Error>"));
+        assertTrue(a.shouldRetry());
+        assertFalse(a.throttled());
+    }
+
+    @Test
+    public void testSlowDownThrottled() {
+        RetryAdvice a = S3.apply(response(503, "<Error><Code>SlowDown</Code></Error>"));
+        assertTrue(a.shouldRetry());
+        assertTrue(a.throttled());
+    }
+
+    @Test
+    public void testServerErrorWithoutCodeRetried() {
+        RetryAdvice a = S3.apply(response(500, "boo"));
+        assertTrue(a.shouldRetry());
+        assertFalse(a.throttled());
+        assertTrue(S3.apply(response(504, "")).shouldRetry());
+        assertTrue(S3.apply(response(408, "")).shouldRetry());
+    }
+
+    @Test
+    public void testTooManyRequestsThrottled() {
+        assertTrue(S3.apply(response(429, "")).throttled());
+        assertTrue(S3.apply(response(509, "")).throttled());
+    }
+
+    @Test
+    public void testErrorTypeHeaderUsedForJsonProtocols() {
+        ResponseInputStream r = response(400, "{}");
+        r.headers().put("x-amzn-ErrorType",
+                Collections.singletonList("ProvisionedThroughputExceededException:http://internal.amazon.com/"));
+        assertTrue(RetryClassifier.forService("dynamodb").apply(r).throttled());
+    }
+
+    @Test
+    public void testJsonBody() {
+        assertTrue(S3.apply(response(400, "{\"__type\":\"com.amazon.coral.availability#ThrottlingException\"}"))
+                .throttled());
+    }
+
+    @Test
+    public void testServiceSpecificCodes() {
+        String body = "<ErrorResponse><Error><Code>IDPCommunicationError</Code></Error></ErrorResponse>";
+        assertTrue(RetryClassifier.forService("sts").apply(response(400, body)).shouldRetry());
+        assertFalse(S3.apply(response(400, body)).shouldRetry());
+        body = "{\"__type\":\"KMSThrottlingException\"}";
+        assertTrue(RetryClassifier.forService("kinesis").apply(response(400, body)).throttled());
+        assertFalse(S3.apply(response(400, body)).shouldRetry());
+    }
+
+    @Test
+    public void testWithErrorCodes() {
+        RetryClassifier c = S3.withErrorCodes(Collections.singletonList("Flaky"),
+                Collections.singletonList("Busy"));
+        assertTrue(c.apply(response(400, "<Error><Code>Flaky</Code></Error>")).shouldRetry());
+        assertFalse(c.apply(response(400, "<Error><Code>Flaky</Code></Error>")).throttled());
+        assertTrue(c.apply(response(403, "<Error><Code>Busy</Code></Error>")).throttled());
+        assertFalse(S3.apply(response(400, "<Error><Code>Flaky</Code></Error>")).shouldRetry());
+    }
+
+    @Test
+    public void testRetryAfter() {
+        ResponseInputStream r = response(503, "<Error><Code>SlowDown</Code></Error>");
+        r.headers().put("Retry-After", Collections.singletonList("3"));
+        assertEquals(3000, S3.apply(r).retryAfterMs());
+        assertEquals(-1, S3.apply(response(503, "")).retryAfterMs());
+    }
+
+    @Test
+    public void testParseRetryAfter() {
+        assertEquals(-1, RetryClassifier.retryAfterMs(Optional.empty()));
+        assertEquals(0, RetryClassifier.retryAfterMs(Optional.of("0")));
+        assertEquals(120000, RetryClassifier.retryAfterMs(Optional.of(" 120 ")));
+        assertEquals(-1, RetryClassifier.retryAfterMs(Optional.of("-1")));
+        assertEquals(-1, RetryClassifier.retryAfterMs(Optional.of("Wed, 21 Oct 2015 07:28:00 GMT")));
+    }
+
+    @Test
+    public void testBodyStillReadableAfterClassification() throws IOException {
+        String body = "<Error><Code>AccessDenied</Code><Message>Access Denied</Message></Error>";
+        ResponseInputStream r = response(403, body);
+        assertFalse(S3.apply(r).shouldRetry());
+        assertEquals(body, new String(Util.readBytesAndClose(r), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testUnreadableBodyClassifiedByStatus() {
+        InputStream failing = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("boo");
+            }
+        };
+        assertFalse(S3.apply(new ResponseInputStream(() -> {
+        }, 400, new HashMap<>(), failing)).shouldRetry());
+        assertTrue(S3.apply(new ResponseInputStream(() -> {
+        }, 503, new HashMap<>(), failing)).shouldRetry());
+    }
+
+    private static ResponseInputStream response(int statusCode, String body) {
+        Map<String, List<String>> headers = new HashMap<>();
+        return new ResponseInputStream(() -> {
+        }, statusCode, headers, new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,137 @@
+package com.github.davidmoten.aws.lw.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.Test;
+
+public class ServiceExceptionTest {
+
+    @Test
+    public void testS3Error() {
+        ServiceException e = new ServiceException(404,
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<Error><Code>NoSuchKey</Code>"
+                        + "<Message>The resource you requested does not exist</Message>"
+                        + "<Resource>/mybucket/myfoto.jpg</Resource><RequestId>4442587FB7D0A2F9</RequestId></Error>");
+        assertEquals(Optional.of("NoSuchKey"), e.errorCode());
+        assertEquals(Optional.of("The resource you requested does not exist"), e.errorMessage());
+        assertEquals(Optional.of("4442587FB7D0A2F9"), e.requestId());
+        assertEquals(404, e.statusCode());
+    }
+
+    @Test
+    public void testQueryProtocolError() {
+        ServiceException e = new ServiceException(400,
+                "<ErrorResponse><Error><Type>Sender</Type><Code>AWS.SimpleQueueService.NonExistentQueue</Code>"
+                        + "<Message>The specified queue does not exist.</Message><Detail/></Error>"
+                        + "<RequestId>42d59b56-7407-4c4a-be0f-4c88daeea257</RequestId></ErrorResponse>");
+        assertEquals(Optional.of("AWS.SimpleQueueService.NonExistentQueue"), e.errorCode());
+        assertEquals(Optional.of("The specified queue does not exist."), e.errorMessage());
+        assertEquals(Optional.of("42d59b56-7407-4c4a-be0f-4c88daeea257"), e.requestId());
+    }
+
+    @Test
+    public void testEc2Error() {
+        ServiceException e = new ServiceException(400,
+                "<Response><Errors><Error><Code>InvalidInstanceID.NotFound</Code>"
+                        + "<Message>The instance ID 'i-1a2b3c4d' does not exist</Message></Error></Errors>"
+                        + "<RequestID>ea966190-f9aa-478e-9ede-example</RequestID></Response>");
+        assertEquals(Optional.of("InvalidInstanceID.NotFound"), e.errorCode());
+        assertEquals(Optional.of("ea966190-f9aa-478e-9ede-example"), e.requestId());
+    }
+
+    @Test
+    public void testJsonError() {
+        ServiceException e = new ServiceException(400,
+                "{\"__type\":\"com.amazonaws.dynamodb.v20120810#ProvisionedThroughputExceededException\","
+                        + "\"details\":{\"a\":[1,2]},\"message\":\"Rate of requests exceeds the allowed throughput.\"}");
+        assertEquals(Optional.of("ProvisionedThroughputExceededException"), e.errorCode());
+        assertEquals(Optional.of("Rate of requests exceeds the allowed throughput."), e.errorMessage());
+        assertFalse(e.requestId().isPresent());
+    }
+
+    @Test
+    public void testJsonErrorCapitalizedFields() {
+        ServiceException e = new ServiceException(400,
+                "{\"Code\":\"ThrottlingException\",\"Message\":\"Rate exceeded\"}");
+        assertEquals(Optional.of("ThrottlingException"), e.errorCode());
+        assertEquals(Optional.of("Rate exceeded"), e.errorMessage());
+    }
+
+    @Test
+    public void testFromResponseUsesHeaders() {
+        Map<String, List<String>> headers = new HashMap<>();
+        headers.put("X-Amzn-RequestId", Collections.singletonList("abc-123"));
+        headers.put("X-Amzn-ErrorType", Collections.singletonList("ThrottlingException:http://internal.amazon.com/"));
+        Response r = new Response(headers, "{\"message\":\"Rate exceeded\"}".getBytes(StandardCharsets.UTF_8), 429);
+        ServiceException e = new ServiceException(r);
+        assertEquals(429, e.statusCode());
+        assertEquals("{\"message\":\"Rate exceeded\"}", e.message());
+        assertEquals(Optional.of("ThrottlingException"), e.errorCode());
+        assertEquals(Optional.of("Rate exceeded"), e.errorMessage());
+        assertEquals(Optional.of("abc-123"), e.requestId());
+    }
+
+    @Test
+    public void testFromResponseS3RequestIdHeader() {
+        Map<String, List<String>> headers = new HashMap<>();
+        headers.put("x-amz-request-id", Collections.singletonList("xyz"));
+        Response r = new Response(headers, "<Error><Code>SlowDown</Code></Error>".getBytes(StandardCharsets.UTF_8),
+                503);
+        ServiceException e = new ServiceException(r);
+        assertEquals(Optional.of("SlowDown"), e.errorCode());
+        assertEquals(Optional.of("xyz"), e.requestId());
+        assertFalse(e.errorMessage().isPresent());
+    }
+
+    @Test
+    public void testNotAnErrorEnvelope() {
+        for (String body : new String[] { "", "   ", "hello", "call failed", "<a><b>", "{\"a\":", "[1,2]" }) {
+            ServiceException e = new ServiceException(500, body);
+            assertFalse(body, e.errorCode().isPresent());
+            assertFalse(body, e.errorMessage().isPresent());
+            assertFalse(body, e.requestId().isPresent());
+        }
+        assertFalse(new ServiceException(500, null).errorCode().isPresent());
+    }
+
+    @Test
+    public void testTruncatedBodyKeepsFieldsFound() {
+        ServiceException e = new ServiceException(500, "<Error><Code>InternalError</Code><Message>We encount");
+        assertEquals(Optional.of("InternalError"), e.errorCode());
+        assertFalse(e.errorMessage().isPresent());
+    }
+
+    @Test
+    public void testLargeBodyOnlyPrefixParsed() {
+        StringBuilder b = new StringBuilder("<Error><Junk>");
+        while (b.length() < ErrorDetails.MAX_PARSE_LENGTH) {
+            b.append("xxxxxxxxxx");
+        }
+        b.append("</Junk><Code>Late</Code></Error>");
+        assertFalse(new ServiceException(500, b.toString()).errorCode().isPresent());
+    }
+
+    @Test
+    public void testNormalizeCode() {
+        assertEquals("A", ErrorDetails.normalizeCode("com.amazon#A"));
+        assertEquals("A", ErrorDetails.normalizeCode("A:http://x"));
+        assertEquals("A", ErrorDetails.normalizeCode("A"));
+        assertNull(ErrorDetails.normalizeCode(" "));
+        assertNull(ErrorDetails.normalizeCode(null));
+    }
+
+    @Test
+    public void testNoDetailsShared() {
+        assertSame(ErrorDetails.NONE, ErrorDetails.parse("boo"));
+    }
+}
@@ -0,0 +1,110 @@
+package com.github.davidmoten.aws.lw.client.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class AdaptiveRateLimiterTest {
+
+    @Test
+    public void testUnrestrictedUntilThrottled() {
+        AtomicLong time = new AtomicLong(100000);
+        AdaptiveRateLimiter r = new AdaptiveRateLimiter(time::get);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, r.reserve());
+            r.update(false);
+        }
+        assertFalse(r.enabled());
+    }
+
+    @Test
+    public void testThrottlingCutsRateAndCallersWait() {
+        AtomicLong time = new AtomicLong(100000);
+        AdaptiveRateLimiter r = new AdaptiveRateLimiter(time::get);
+        // send at 10 per second
+        for (int i = 0; i < 50; i++) {
+            r.reserve();
+            r.update(false);
+            time.addAndGet(100);
+        }
+        r.update(true);
+        assertTrue(r.enabled());
+        double rate = r.fillRate();
+        // cut to 70% of the measured rate
+        assertTrue(String.valueOf(rate), rate > 5 && rate < 8);
+        assertEquals(0, r.reserve());
+        // bucket holds at most one second of tokens so callers queue up
+        long totalWait = 0;
+        for (int i = 0; i < 20; i++) {
+            totalWait += r.reserve();
+        }
+        assertTrue(String.valueOf(totalWait), totalWait > 0);
+        // each queued caller waits one more token interval
+        long a = r.reserve();
+        long b = r.reserve();
+        assertEquals(1000 / rate, b - a, 1.0);
+    }
+
+    @Test
+    public void testRepeatedThrottlingFloorsAtMinimumRate() {
+        AtomicLong time = new AtomicLong(100000);
+        AdaptiveRateLimiter r = new AdaptiveRateLimiter(time::get);
+        for (int i = 0; i < 20; i++) {
+            r.update(true);
+            time.addAndGet(1000);
+        }
+        assertEquals(0.5, r.fillRate(), 0.0001);
+        assertEquals(0, r.reserve());
+        assertEquals(2000, r.reserve());
+    }
+
+    @Test
+    public void testRateRecoversOnSuccess() {
+        AtomicLong time = new AtomicLong(100000);
+        AdaptiveRateLimiter r = new AdaptiveRateLimiter(time::get);
+        for (int i = 0; i < 50; i++) {
+            r.update(false);
+            time.addAndGet(100);
+        }
+        r.update(true);
+        double afterThrottle = r.fillRate();
+        for (int i = 0; i < 100; i++) {
+            time.addAndGet(100);
+            r.update(false);
+        }
+        assertTrue(r.fillRate() > afterThrottle);
+    }
+
+    @Test
+    public void testRetriesUseRateLimiter() {
+        AtomicLong time = new AtomicLong(100000);
+        AdaptiveRateLimiter r = new AdaptiveRateLimiter(time::get);
+        String result = Retries.<String>create(x -> false, x -> false) //
+                .withMaxAttempts(1) //
+                .withValueAdvice(x -> RetryAdvice.THROTTLED) //
+                .withRateLimiter(r) //
+                .copy() //
+                .call(() -> "throttled");
+        assertEquals("throttled", result);
+        assertTrue(r.enabled());
+    }
+
+    @Test
+    public void testOuterRetriesWithoutRateLimiterAcquireOncePerCall() {
+        AtomicLong time = new AtomicLong(100000);
+        AdaptiveRateLimiter r = new AdaptiveRateLimiter(time::get);
+        Retries<String> inner = Retries.<String>create(x -> false, x -> false).withRateLimiter(r);
+        // as for multipart parts, the client's retries wrapped in outer retries
+        Retries<String> outer = inner.<String>withValueShouldRetry(x -> false).withoutRateLimiter();
+        for (int part = 1; part <= 3; part++) {
+            outer.call(() -> inner.call(() -> "etag"));
+            // time is fixed so every update is counted
+            assertEquals(part, r.requestCount());
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.github.davidmoten.aws.lw.client.internal;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+
+    private final AtomicLong time = new AtomicLong(1000);
+
+    @Test
+    public void testOpensAfterConsecutiveFailures() {
+        CircuitBreaker b = new CircuitBreaker(3, 0, 10, 1000, time::get);
+        for (int i = 0; i < 2; i++) {
+            assertTrue(b.tryAcquire());
+            b.onFailure();
+        }
+        assertTrue(b.tryAcquire());
+        b.onSuccess();
+        // success resets the consecutive count
+        for (int i = 0; i < 2; i++) {
+            assertTrue(b.tryAcquire());
+            b.onFailure();
+        }
+        assertFalse(b.isOpen());
+        assertTrue(b.tryAcquire());
+        b.onFailure();
+        assertTrue(b.isOpen());
+        assertFalse(b.tryAcquire());
+    }
+
+    @Test
+    public void testOpensOnFailureRate() {
+        CircuitBreaker b = new CircuitBreaker(0, 0.5, 4, 1000, time::get);
+        b.onFailure();
+        b.onSuccess();
+        b.onFailure();
+        // window not full yet
+        assertFalse(b.isOpen());
+        b.onSuccess();
+        assertFalse(b.isOpen());
+        b.onFailure();
+        // last four calls: success, failure, success, failure
+        assertTrue(b.isOpen());
+    }
+
+    @Test
+    public void testFailureRateOnlyCountsWindow() {
+        CircuitBreaker b = new CircuitBreaker(0, 0.75, 4, 1000, time::get);
+        b.onFailure();
+        b.onFailure();
+        b.onSuccess();
+        b.onSuccess();
+        b.onSuccess();
+        b.onFailure();
+        assertFalse(b.isOpen());
+        b.onFailure();
+        b.onFailure();
+        assertTrue(b.isOpen());
+    }
+
+    @Test
+    public void testHalfOpenProbeSuccessCloses() {
+        CircuitBreaker b = new CircuitBreaker(1, 0, 10, 1000, time::get);
+        b.onFailure();
+        assertFalse(b.tryAcquire());
+        time.addAndGet(1000);
+        assertTrue(b.tryAcquire());
+        // only one probe at a time
+        assertFalse(b.tryAcquire());
+        b.onSuccess();
+        assertFalse(b.isOpen());
+        assertTrue(b.tryAcquire());
+    }
+
+    @Test
+    public void testHalfOpenProbeFailureReopens() {
+        CircuitBreaker b = new CircuitBreaker(1, 0, 10, 1000, time::get);
+        b.onFailure();
+        time.addAndGet(1000);
+        assertTrue(b.tryAcquire());
+        b.onFailure();
+        assertFalse(b.tryAcquire());
+        time.addAndGet(999);
+        assertFalse(b.tryAcquire());
+        time.addAndGet(1);
+        assertTrue(b.tryAcquire());
+    }
+
+    @Test
+    public void testCancelledProbeLetsNextCallProbe() {
+        CircuitBreaker b = new CircuitBreaker(1, 0, 10, 1000, time::get);
+        b.onFailure();
+        time.addAndGet(1000);
+        assertTrue(b.tryAcquire());
+        assertFalse(b.tryAcquire());
+        b.onIgnored();
+        assertTrue(b.tryAcquire());
+        b.onSuccess();
+        assertFalse(b.isOpen());
+    }
+
+    @Test
+    public void testOutcomeOfCallStartedBeforeOpenIgnored() {
+        CircuitBreaker b = new CircuitBreaker(1, 0, 10, 1000, time::get);
+        b.onFailure();
+        b.onSuccess();
+        assertTrue(b.isOpen());
+    }
+
+    @Test
+    public void testBreakersPerHost() {
+        CircuitBreakers breakers = new CircuitBreakers(1, 0, 10, 1000, time::get);
+        assertTrue(breakers.get("a") == breakers.get("a"));
+        breakers.get("a").onFailure();
+        assertFalse(breakers.get("a").tryAcquire());
+        assertTrue(breakers.get("b").tryAcquire());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadFailureRate() {
+        new CircuitBreaker(1, 1.5, 10, 1000, time::get);
+    }
+
+}
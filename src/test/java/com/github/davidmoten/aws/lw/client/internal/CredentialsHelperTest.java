@@ -4,8 +4,14 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
 import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 
 import org.junit.Test;
@@ -13,6 +19,8 @@ import org.junit.Test;
 import com.github.davidmoten.aws.lw.client.Credentials;
 import com.github.davidmoten.aws.lw.client.HttpClient;
 import com.github.davidmoten.aws.lw.client.HttpClientTesting;
+import com.github.davidmoten.aws.lw.client.ResponseInputStream;
+import com.github.davidmoten.aws.lw.client.internal.InstanceProfileCredentialsProviderTest.SettableClock;
 import com.github.davidmoten.guavamini.Maps;
 import com.github.davidmoten.http.test.server.Server;
 import com.github.davidmoten.junit.Asserts;
@@ -41,6 +49,36 @@ public class CredentialsHelperTest {
         }
     }
 
+    @Test
+    public void testFromContainerRefreshedAfterExpiry() {
+        long baseTime = 1700000000000L;
+        SettableClock clock = new SettableClock(baseTime);
+        Map<String, String> map = Maps //
+                .put("AWS_CONTAINER_CREDENTIALS_FULL_URI", "http://localhost/creds") //
+                .put("AWS_CONTAINER_AUTHORIZATION_TOKEN", "abcde") //
+                .buildImmutable();
+        Iterator<String> bodies = Arrays.asList( //
+                containerJson("123", baseTime + 3600_000), //
+                containerJson("456", baseTime + 7200_000)).iterator();
+        HttpClient client = (url, method, headers, body, connectTimeoutMs,
+                readTimeoutMs) -> new ResponseInputStream(() -> {
+                }, 200, Collections.emptyMap(),
+                        new ByteArrayInputStream(bodies.next().getBytes(StandardCharsets.UTF_8)));
+        Environment env = x -> map.get(x);
+        Credentials c = CredentialsHelper.credentialsFromEnvironment(env, client, clock);
+        assertEquals("123", c.accessKey());
+        assertEquals(Instant.ofEpochMilli(baseTime + 3600_000), c.expiration().get());
+        clock.advance(3600_001);
+        assertEquals("456", c.accessKey());
+        assertEquals(Instant.ofEpochMilli(baseTime + 7200_000), c.expiration().get());
+        assertFalse(bodies.hasNext());
+    }
+
+    private static String containerJson(String accessKeyId, long expiresAtMs) {
+        return "{\"AccessKeyId\":\"" + accessKeyId + "\", \"SecretAccessKey\":\"secret\", \"Token\": \"token\", "
+                + "\"Expiration\": \"" + Instant.ofEpochMilli(expiresAtMs) + "\"}";
+    }
+
     @Test(expected = UncheckedIOException.class)
     public void testFromContainerIOException() {
         try (Server server = Server.start()) {
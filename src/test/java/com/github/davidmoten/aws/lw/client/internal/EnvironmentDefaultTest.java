@@ -1,9 +1,13 @@
 package com.github.davidmoten.aws.lw.client.internal;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 
 import org.junit.Test;
 
+import com.github.davidmoten.aws.lw.client.Credentials;
+
 public class EnvironmentDefaultTest {
     
     @Test
@@ -12,4 +16,24 @@ public class EnvironmentDefaultTest {
         assertNotNull(EnvironmentDefault.INSTANCE.get(key));
     }
 
+    @Test
+    public void testCredentialsResolvedOnceAndShared() {
+        EnvironmentDefault env = (EnvironmentDefault) EnvironmentDefault.INSTANCE;
+        System.setProperty("aws.accessKeyId", "ak1");
+        System.setProperty("aws.secretAccessKey", "sk1");
+        try {
+            env.reset();
+            Credentials c = env.credentials();
+            assertEquals("ak1", c.accessKey());
+            System.setProperty("aws.accessKeyId", "ak2");
+            assertSame(c, env.credentials());
+            env.reset();
+            assertEquals("ak2", env.credentials().accessKey());
+        } finally {
+            System.clearProperty("aws.accessKeyId");
+            System.clearProperty("aws.secretAccessKey");
+            env.reset();
+        }
+    }
+
 }
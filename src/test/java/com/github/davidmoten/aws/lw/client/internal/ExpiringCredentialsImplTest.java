@@ -0,0 +1,182 @@
+package com.github.davidmoten.aws.lw.client.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import com.github.davidmoten.aws.lw.client.Credentials;
+
+public class ExpiringCredentialsImplTest {
+
+    private static final long BASE = 1700000000000L;
+
+    private final AtomicLong time = new AtomicLong(BASE);
+    private final List<Runnable> tasks = new ArrayList<>();
+
+    @Test
+    public void testNoRefreshOutsideWindow() {
+        AtomicInteger count = new AtomicInteger();
+        Credentials c = create(credentials("KEY1", BASE + 3600_000), () -> {
+            count.incrementAndGet();
+            return credentials("KEY2", BASE + 7200_000);
+        });
+        time.addAndGet(3600_000 - 360_000);
+        assertEquals("KEY1", c.accessKey());
+        assertTrue(tasks.isEmpty());
+        assertEquals(0, count.get());
+    }
+
+    @Test
+    public void testRefreshInBackgroundInsideWindow() {
+        AtomicInteger count = new AtomicInteger();
+        Credentials c = create(credentials("KEY1", BASE + 3600_000), () -> {
+            count.incrementAndGet();
+            return credentials("KEY2", BASE + 7200_000);
+        });
+        time.addAndGet(3600_000 - 200_000);
+        // reads don't wait for the refresh
+        assertEquals("KEY1", c.accessKey());
+        assertEquals("KEY1", c.accessKey());
+        // only one refresh in flight
+        assertEquals(1, tasks.size());
+        assertEquals(0, count.get());
+        runTasks();
+        assertEquals("KEY2", c.accessKey());
+        assertEquals(1, count.get());
+        assertTrue(tasks.isEmpty());
+    }
+
+    @Test
+    public void testJitterBringsRefreshForward() {
+        Credentials c = create(credentials("KEY1", BASE + 3600_000), () -> credentials("KEY2", BASE + 7200_000),
+                0.999);
+        // just under 6 minutes before expiry is inside the jittered window
+        time.addAndGet(3600_000 - 359_000);
+        assertEquals("KEY1", c.accessKey());
+        assertEquals(1, tasks.size());
+    }
+
+    @Test
+    public void testBackgroundRefreshFailureKeepsCurrentAndTriesLater() {
+        AtomicInteger count = new AtomicInteger();
+        Credentials c = create(credentials("KEY1", BASE + 3600_000), () -> {
+            count.incrementAndGet();
+            throw new RuntimeException("boo");
+        });
+        time.addAndGet(3600_000 - 200_000);
+        assertEquals("KEY1", c.accessKey());
+        runTasks();
+        assertEquals(1, count.get());
+        assertEquals("KEY1", c.accessKey());
+        // no new refresh until the retry interval has passed
+        assertTrue(tasks.isEmpty());
+        time.addAndGet(10_000);
+        assertEquals("KEY1", c.accessKey());
+        assertEquals(1, tasks.size());
+    }
+
+    @Test
+    public void testBlockingRefreshWhenExpired() {
+        Credentials c = create(credentials("KEY1", BASE + 3600_000), () -> credentials("KEY2", BASE + 7200_000));
+        time.addAndGet(3600_001);
+        assertEquals("KEY2", c.accessKey());
+        assertTrue(tasks.isEmpty());
+    }
+
+    @Test
+    public void testBlockingRefreshFailureThrowsWhenExpired() {
+        Credentials c = create(credentials("KEY1", BASE + 3600_000), () -> {
+            throw new RuntimeException("boo");
+        });
+        time.addAndGet(3600_001);
+        try {
+            c.accessKey();
+            fail();
+        } catch (RuntimeException e) {
+            assertEquals("boo", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testShortLivedCredentialsNotRefreshedOnEveryRead() {
+        AtomicInteger count = new AtomicInteger();
+        Credentials c = create(credentials("KEY1", BASE + 60_000), () -> {
+            count.incrementAndGet();
+            return credentials("KEY" + (count.get() + 1), BASE + 120_000);
+        });
+        assertEquals("KEY1", c.accessKey());
+        assertTrue(tasks.isEmpty());
+        time.addAndGet(10_000);
+        assertEquals("KEY1", c.accessKey());
+        runTasks();
+        assertEquals("KEY2", c.accessKey());
+        assertTrue(tasks.isEmpty());
+    }
+
+    @Test
+    public void testRejectedRefreshTriedAgain() {
+        AtomicInteger rejected = new AtomicInteger();
+        Credentials c = new ExpiringCredentialsImpl(credentials("KEY1", BASE + 3600_000),
+                () -> credentials("KEY2", BASE + 7200_000), time::get, task -> {
+                    rejected.incrementAndGet();
+                    throw new RejectedExecutionException();
+                }, new Random());
+        time.addAndGet(3600_000 - 200_000);
+        assertEquals("KEY1", c.accessKey());
+        assertEquals("KEY1", c.accessKey());
+        assertEquals(2, rejected.get());
+    }
+
+    @Test
+    public void testSnapshotIsConsistentAcrossRefresh() {
+        Credentials c = create(credentials("KEY1", BASE + 3600_000), () -> credentials("KEY2", BASE + 7200_000));
+        time.addAndGet(3600_000 - 200_000);
+        Credentials snapshot = c.snapshot();
+        runTasks();
+        assertEquals("KEY2", c.accessKey());
+        // the snapshot still holds the values it was taken with
+        assertEquals("KEY1", snapshot.accessKey());
+        assertEquals(Instant.ofEpochMilli(BASE + 3600_000), snapshot.expiration().get());
+        assertSame(snapshot, snapshot.snapshot());
+    }
+
+    private Credentials create(Credentials initial, Supplier<Credentials> refresher) {
+        return create(initial, refresher, 0);
+    }
+
+    private Credentials create(Credentials initial, Supplier<Credentials> refresher, double random) {
+        return new ExpiringCredentialsImpl(initial, refresher, time::get, tasks::add, new Random() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public double nextDouble() {
+                return random;
+            }
+        });
+    }
+
+    private void runTasks() {
+        List<Runnable> list = new ArrayList<>(tasks);
+        tasks.clear();
+        list.forEach(Runnable::run);
+    }
+
+    private static Credentials credentials(String accessKey, long expiresAtMs) {
+        return new CredentialsImpl(accessKey, "secret", Optional.of("token"),
+                Optional.of(Instant.ofEpochMilli(expiresAtMs)));
+    }
+
+}
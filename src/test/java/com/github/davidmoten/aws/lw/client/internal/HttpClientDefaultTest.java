@@ -4,15 +4,18 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.HttpURLConnection;
+import java.util.concurrent.CancellationException;
 
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import com.github.davidmoten.aws.lw.client.Cancellation;
 import com.github.davidmoten.aws.lw.client.ResponseInputStream;
 
 public class HttpClientDefaultTest {
@@ -87,4 +90,48 @@ public class HttpClientDefaultTest {
         }
     }
 
+    @Test
+    public void testCancelledWhileConnecting() throws IOException {
+        HttpURLConnection connection = Mockito.mock(HttpURLConnection.class);
+        Cancellation cancellation = Cancellation.create();
+        Mockito.doAnswer(invocation -> {
+            cancellation.cancel();
+            return null;
+        }).when(connection).connect();
+        try {
+            HttpClientDefault.request(connection, null, cancellation);
+            Assert.fail();
+        } catch (CancellationException e) {
+            // expected
+        }
+        Mockito.verify(connection, Mockito.times(1)).disconnect();
+        Mockito.verify(connection, Mockito.never()).getResponseCode();
+    }
+
+    @Test
+    public void testCancelWhileReadingBodyDisconnects() throws IOException {
+        HttpURLConnection connection = Mockito.mock(HttpURLConnection.class);
+        when(connection.getInputStream()).thenReturn(new ByteArrayInputStream(new byte[] { 1, 2 }));
+        when(connection.getResponseCode()).thenReturn(200);
+        Cancellation cancellation = Cancellation.create();
+        ResponseInputStream response = HttpClientDefault.request(connection, null, cancellation);
+        assertEquals(1, response.read());
+        cancellation.cancel();
+        Mockito.verify(connection, Mockito.times(1)).disconnect();
+        response.close();
+    }
+
+    @Test
+    public void testAbortRemovedWhenResponseClosed() throws IOException {
+        HttpURLConnection connection = Mockito.mock(HttpURLConnection.class);
+        when(connection.getInputStream()).thenReturn(new ByteArrayInputStream(new byte[0]));
+        when(connection.getResponseCode()).thenReturn(200);
+        Cancellation cancellation = Cancellation.create();
+        HttpClientDefault.request(connection, null, cancellation).close();
+        Mockito.verify(connection, Mockito.times(1)).disconnect();
+        cancellation.cancel();
+        // not disconnected again
+        Mockito.verify(connection, Mockito.times(1)).disconnect();
+    }
+
 }
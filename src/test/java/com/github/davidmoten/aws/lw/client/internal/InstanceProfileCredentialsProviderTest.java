@@ -183,8 +183,7 @@ public class InstanceProfileCredentialsProviderTest {
         httpClient.enqueue(200, "token1");
         httpClient.enqueue(200, "my-role");
         httpClient.enqueue(200, imdsResponseJson("KEY1", "secret1", "token1", expiration1));
-        // Second credential fetch (refresh): token + role + creds
-        httpClient.enqueue(200, "token2");
+        // Second credential fetch (refresh): role + creds, the token is reused
         httpClient.enqueue(200, "my-role");
         httpClient.enqueue(200, imdsResponseJson("KEY2", "secret2", "token2", expiration2));
 
@@ -198,6 +197,63 @@ public class InstanceProfileCredentialsProviderTest {
         assertEquals("KEY1", creds.accessKey());
 
         clock.advance(200_000); // past threshold (exp-300k = base+60k)
+        // refreshed in the background, current credentials returned meanwhile
+        assertEquals("KEY1", creds.accessKey());
+        awaitAccessKey(creds, "KEY2");
+    }
+
+    @Test
+    public void testNewTokenFetchedWhenCachedTokenExpires() {
+        long baseTime = 1700000000000L;
+        SettableClock clock = new SettableClock(baseTime);
+        String expiration1 = Instant.ofEpochMilli(baseTime + 7 * 3600_000).toString(); // 7 hours
+        String expiration2 = Instant.ofEpochMilli(baseTime + 14 * 3600_000).toString();
+
+        QueueHttpClient httpClient = new QueueHttpClient();
+        httpClient.enqueue(200, "token1");
+        httpClient.enqueue(200, "my-role");
+        httpClient.enqueue(200, imdsResponseJson("KEY1", "secret1", "token1", expiration1));
+        // the 6 hour token has expired by the refresh
+        httpClient.enqueue(200, "token2");
+        httpClient.enqueue(200, "my-role");
+        httpClient.enqueue(200, imdsResponseJson("KEY2", "secret2", "token2", expiration2));
+
+        Map<String, String> map = Maps //
+                .put("AWS_EC2_METADATA_SERVICE_ENDPOINT", "http://169.254.169.254") //
+                .buildImmutable();
+        Environment env = map::get;
+        Credentials creds = InstanceProfileCredentialsProvider.credentials(env, httpClient, clock).get();
+        assertEquals("KEY1", creds.accessKey());
+
+        clock.advance(7 * 3600_000 + 1); // expired so refreshed synchronously
+        assertEquals("KEY2", creds.accessKey());
+    }
+
+    @Test
+    public void testNewTokenFetchedWhenCachedTokenRejected() {
+        long baseTime = 1700000000000L;
+        SettableClock clock = new SettableClock(baseTime);
+        String expiration1 = Instant.ofEpochMilli(baseTime + 360_000).toString(); // 6 min
+        String expiration2 = Instant.ofEpochMilli(baseTime + 3600_000).toString();
+
+        QueueHttpClient httpClient = new QueueHttpClient();
+        httpClient.enqueue(200, "token1");
+        httpClient.enqueue(200, "my-role");
+        httpClient.enqueue(200, imdsResponseJson("KEY1", "secret1", "token1", expiration1));
+        // cached token rejected
+        httpClient.enqueue(401, "");
+        httpClient.enqueue(200, "token2");
+        httpClient.enqueue(200, "my-role");
+        httpClient.enqueue(200, imdsResponseJson("KEY2", "secret2", "token2", expiration2));
+
+        Map<String, String> map = Maps //
+                .put("AWS_EC2_METADATA_SERVICE_ENDPOINT", "http://169.254.169.254") //
+                .buildImmutable();
+        Environment env = map::get;
+        Credentials creds = InstanceProfileCredentialsProvider.credentials(env, httpClient, clock).get();
+        assertEquals("KEY1", creds.accessKey());
+
+        clock.advance(360_001); // expired so refreshed synchronously
         assertEquals("KEY2", creds.accessKey());
     }
 
@@ -391,4 +447,18 @@ public class InstanceProfileCredentialsProviderTest {
             }
         }
     }
+    static void awaitAccessKey(Credentials creds, String accessKey) {
+        long start = System.currentTimeMillis();
+        while (!accessKey.equals(creds.accessKey())) {
+            if (System.currentTimeMillis() - start > 10000) {
+                fail("timed out waiting for refresh");
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
 }
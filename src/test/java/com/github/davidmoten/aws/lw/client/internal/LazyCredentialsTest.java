@@ -0,0 +1,111 @@
+package com.github.davidmoten.aws.lw.client.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.github.davidmoten.aws.lw.client.Credentials;
+
+public class LazyCredentialsTest {
+
+    @Test
+    public void testResolvedOnFirstUseOnly() {
+        AtomicInteger count = new AtomicInteger();
+        LazyCredentials c = new LazyCredentials(() -> {
+            count.incrementAndGet();
+            return Credentials.of("ak", "sk", "st");
+        });
+        assertEquals(0, count.get());
+        assertFalse(c.isResolved());
+        assertEquals("ak", c.accessKey());
+        assertEquals("sk", c.secretKey());
+        assertEquals("st", c.sessionToken().get());
+        assertFalse(c.expiration().isPresent());
+        assertEquals("ak", c.snapshot().accessKey());
+        assertEquals(1, count.get());
+        assertTrue(c.isResolved());
+    }
+
+    @Test
+    public void testFailureNotCached() {
+        AtomicInteger count = new AtomicInteger();
+        LazyCredentials c = new LazyCredentials(() -> {
+            if (count.incrementAndGet() == 1) {
+                throw new RuntimeException("boo");
+            }
+            return Credentials.of("ak", "sk");
+        });
+        try {
+            c.accessKey();
+            fail();
+        } catch (RuntimeException e) {
+            assertEquals("boo", e.getMessage());
+        }
+        assertEquals("ak", c.accessKey());
+        assertEquals(2, count.get());
+    }
+
+    @Test
+    public void testPrewarmResolvesInBackground() throws InterruptedException {
+        CountDownLatch resolved = new CountDownLatch(1);
+        LazyCredentials c = new LazyCredentials(() -> {
+            assertTrue(Thread.currentThread().isDaemon());
+            resolved.countDown();
+            return Credentials.of("ak", "sk");
+        });
+        c.prewarm();
+        assertTrue(resolved.await(10, TimeUnit.SECONDS));
+        assertEquals("ak", c.accessKey());
+        // already resolved, no-op
+        c.prewarm();
+    }
+
+    @Test
+    public void testPrewarmFailureSurfacesOnUse() throws InterruptedException {
+        CountDownLatch attempted = new CountDownLatch(1);
+        LazyCredentials c = new LazyCredentials(() -> {
+            attempted.countDown();
+            throw new RuntimeException("boo");
+        });
+        c.prewarm();
+        assertTrue(attempted.await(10, TimeUnit.SECONDS));
+        try {
+            c.accessKey();
+            fail();
+        } catch (RuntimeException e) {
+            assertEquals("boo", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testPrewarmResolvesOnceWhenCalledAgainDuringResolution() throws InterruptedException {
+        AtomicInteger count = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        LazyCredentials c = new LazyCredentials(() -> {
+            count.incrementAndGet();
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return Credentials.of("ak", "sk");
+        });
+        c.prewarm();
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        c.prewarm();
+        c.prewarm();
+        release.countDown();
+        assertEquals("ak", c.accessKey());
+        assertEquals(1, count.get());
+    }
+
+}
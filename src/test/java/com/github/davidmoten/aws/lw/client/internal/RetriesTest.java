@@ -1,11 +1,19 @@
 package com.github.davidmoten.aws.lw.client.internal;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.junit.Assert;
 import org.junit.Test;
 
 public class RetriesTest {
@@ -61,5 +69,101 @@ public class RetriesTest {
     public void testUnlimitedAtempts() {
         assertFalse(Retries.reachedMaxAttempts(3, 0));
     }
-    
+
+    @Test
+    public void testNextInterval() {
+        assertEquals(200, Retries.nextIntervalMs(100, 2.0, 0, 0));
+        assertEquals(150, Retries.nextIntervalMs(100, 2.0, 150, 0));
+    }
+
+    @Test
+    public void testSleepHonoursRetryAfter() {
+        assertEquals(100, Retries.sleepMs(100, -1, 20000));
+        assertEquals(100, Retries.sleepMs(100, 50, 20000));
+        assertEquals(3000, Retries.sleepMs(100, 3000, 20000));
+        assertEquals(3000, Retries.sleepMs(100, 3000, 0));
+    }
+
+    @Test
+    public void testSleepRetryAfterCappedByMaxInterval() {
+        assertEquals(20000, Retries.sleepMs(100, 60000, 20000));
+        assertEquals(30000, Retries.sleepMs(30000, 60000, 20000));
+    }
+
+    @Test
+    public void testValueAdviceStopsOnNoRetry() {
+        Iterator<String> values = Arrays.asList("permanent", "ok").iterator();
+        List<String> seen = new ArrayList<>();
+        String result = Retries.<String>create(x -> true, x -> false) //
+                .withInitialIntervalMs(0) //
+                .withValueAdvice(x -> {
+                    seen.add(x);
+                    return x.equals("permanent") ? RetryAdvice.NO_RETRY : RetryAdvice.RETRY;
+                }) //
+                .call(values::next);
+        assertEquals("permanent", result);
+        assertEquals(Arrays.asList("permanent"), seen);
+    }
+
+    @Test
+    public void testValueAdviceRetriesThrottled() {
+        Iterator<String> values = Arrays.asList("throttled", "busy", "ok").iterator();
+        String result = Retries.<String>create(x -> false, x -> false) //
+                .withInitialIntervalMs(0) //
+                .withThrottledInitialIntervalMs(0) //
+                .withValueAdvice(x -> x.equals("throttled") ? RetryAdvice.THROTTLED
+                        : x.equals("busy") ? RetryAdvice.RETRY : RetryAdvice.NO_RETRY) //
+                .call(values::next);
+        assertEquals("ok", result);
+    }
+
+    @Test
+    public void testValueShouldRetryReplacesValueAdvice() {
+        Iterator<String> values = Arrays.asList("a", "b").iterator();
+        String result = Retries.<String>create(x -> false, x -> false) //
+                .withInitialIntervalMs(0) //
+                .withValueAdvice(x -> RetryAdvice.NO_RETRY) //
+                .<String>withValueShouldRetry(x -> x.equals("a")) //
+                .call(values::next);
+        assertEquals("b", result);
+    }
+
+    @Test
+    public void testRetryAdviceWithRetryAfter() {
+        assertEquals(-1, RetryAdvice.RETRY.retryAfterMs());
+        assertEquals(5, RetryAdvice.THROTTLED.withRetryAfterMs(5).retryAfterMs());
+        assertTrue(RetryAdvice.THROTTLED.withRetryAfterMs(5).throttled());
+        assertEquals(-1, RetryAdvice.NO_RETRY.withRetryAfterMs(5).retryAfterMs());
+        assertEquals(-1, RetryAdvice.RETRY.withRetryAfterMs(-3).retryAfterMs());
+    }
+
+    @Test
+    public void testInterruptDuringBackoffCancels() {
+        Retries<String> r = Retries.<String>create(x -> true, x -> false) //
+                .withInitialIntervalMs(60000);
+        Thread.currentThread().interrupt();
+        try {
+            r.call(() -> "a");
+            Assert.fail();
+        } catch (CancellationException e) {
+            // interrupt is preserved
+            assertTrue(Thread.interrupted());
+        }
+    }
+
+    @Test
+    public void testCancellationExceptionNotRetried() {
+        AtomicInteger count = new AtomicInteger();
+        Retries<String> r = Retries.<String>create(x -> false, x -> true);
+        try {
+            r.call(() -> {
+                count.incrementAndGet();
+                throw new CancellationException();
+            });
+            Assert.fail();
+        } catch (CancellationException e) {
+            assertEquals(1, count.get());
+        }
+    }
+
 }
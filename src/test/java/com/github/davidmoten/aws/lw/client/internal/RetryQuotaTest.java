@@ -0,0 +1,110 @@
+package com.github.davidmoten.aws.lw.client.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class RetryQuotaTest {
+
+    @Test
+    public void testAcquireAndRelease() {
+        RetryQuota q = new RetryQuota(12);
+        assertTrue(q.tryAcquire(5));
+        assertTrue(q.tryAcquire(5));
+        assertFalse(q.tryAcquire(5));
+        assertEquals(2, q.available());
+        q.release(5);
+        assertEquals(7, q.available());
+        q.release(100);
+        assertEquals(12, q.available());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCapacityMustBePositive() {
+        new RetryQuota(0);
+    }
+
+    @Test
+    public void testDefault() {
+        assertEquals(RetryQuota.DEFAULT_CAPACITY, RetryQuota.create().available());
+    }
+
+    @Test
+    public void testRetriesFailFastWhenQuotaEmpty() {
+        RetryQuota q = new RetryQuota(RetryQuota.RETRY_COST);
+        AtomicInteger count = new AtomicInteger();
+        Retries<String> retries = Retries.<String>create(x -> true, x -> false) //
+                .withInitialIntervalMs(0) //
+                .withMaxAttempts(10) //
+                .withRetryQuota(q);
+        assertEquals("error", retries.copy().call(() -> {
+            count.incrementAndGet();
+            return "error";
+        }));
+        // one retry paid for, the second is refused
+        assertEquals(2, count.get());
+        assertEquals(0, q.available());
+    }
+
+    @Test
+    public void testRetrySuccessRefundsCost() {
+        RetryQuota q = new RetryQuota(100);
+        Iterator<String> values = Arrays.asList("error", "ok").iterator();
+        String result = Retries.<String>create(x -> x.equals("error"), x -> false) //
+                .withInitialIntervalMs(0) //
+                .withRetryQuota(q) //
+                .call(values::next);
+        assertEquals("ok", result);
+        assertEquals(100, q.available());
+    }
+
+    @Test
+    public void testFirstAttemptSuccessRefills() {
+        RetryQuota q = new RetryQuota(100);
+        q.tryAcquire(10);
+        Retries.<String>create(x -> false, x -> false).withRetryQuota(q).call(() -> "ok");
+        assertEquals(91, q.available());
+    }
+
+    @Test
+    public void testExceptionRetryCostsMore() {
+        RetryQuota q = new RetryQuota(RetryQuota.EXCEPTION_RETRY_COST + 1);
+        AtomicInteger count = new AtomicInteger();
+        try {
+            Retries.<String>create(x -> false, x -> true) //
+                    .withInitialIntervalMs(0) //
+                    .withMaxAttempts(10) //
+                    .withRetryQuota(q) //
+                    .call(() -> {
+                        count.incrementAndGet();
+                        throw new IOException("boo");
+                    });
+            fail();
+        } catch (UncheckedIOException e) {
+            assertEquals("boo", e.getCause().getMessage());
+        }
+        assertEquals(2, count.get());
+        assertEquals(1, q.available());
+    }
+
+    @Test
+    public void testOuterRetriesWithoutRetryQuotaRefillOncePerCall() {
+        RetryQuota q = new RetryQuota(100);
+        q.tryAcquire(10);
+        Retries<String> inner = Retries.<String>create(x -> false, x -> false).withRetryQuota(q);
+        // as for multipart parts, the client's retries wrapped in outer retries
+        Retries<String> outer = inner.<String>withValueShouldRetry(x -> false).withoutRetryQuota();
+        outer.call(() -> inner.call(() -> "etag"));
+        assertEquals(90 + RetryQuota.NO_RETRY_INCREMENT, q.available());
+    }
+
+}
@@ -190,7 +190,9 @@ public class STSCredentialsProviderTest {
         assertEquals("KEY1", creds.accessKey());
 
         clock.advance(200_000); // advance past threshold (exp-300k = base+60k, clock = base+200k)
-        assertEquals("KEY2", creds.accessKey());
+        // refreshed in the background, current credentials returned meanwhile
+        assertEquals("KEY1", creds.accessKey());
+        awaitAccessKey(creds, "KEY2");
     }
 
     @Test
@@ -494,4 +496,18 @@ public class STSCredentialsProviderTest {
             }
         }
     }
+    static void awaitAccessKey(Credentials creds, String accessKey) {
+        long start = System.currentTimeMillis();
+        while (!accessKey.equals(creds.accessKey())) {
+            if (System.currentTimeMillis() - start > 10000) {
+                fail("timed out waiting for refresh");
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,33 @@
+package com.github.davidmoten.aws.lw.client.internal.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class Crc32cTest {
+
+    @Test
+    public void testCheckValue() {
+        Crc32c c = new Crc32c();
+        c.update("123456789".getBytes(StandardCharsets.UTF_8), 0, 9);
+        assertEquals(0xE3069283L, c.getValue());
+    }
+
+    @Test
+    public void testSingleByteUpdatesAndReset() {
+        Crc32c c = new Crc32c();
+        c.update(1);
+        c.reset();
+        for (byte b : "123456789".getBytes(StandardCharsets.UTF_8)) {
+            c.update(b);
+        }
+        assertEquals(0xE3069283L, c.getValue());
+    }
+
+    @Test
+    public void testEmpty() {
+        assertEquals(0L, new Crc32c().getValue());
+    }
+}
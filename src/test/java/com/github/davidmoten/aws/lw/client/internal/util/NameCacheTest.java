@@ -0,0 +1,40 @@
+package com.github.davidmoten.aws.lw.client.internal.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class NameCacheTest {
+
+    @Test
+    public void testSameInstanceForSameName() {
+        NameCache c = new NameCache();
+        String a = c.get(new StringBuilder("Key"));
+        assertEquals("Key", a);
+        assertSame(a, c.get(new StringBuilder("Key")));
+        assertEquals("Size", c.get(new StringBuilder("Size")));
+    }
+
+    @Test
+    public void testGrowsAndStopsCachingWhenFull() {
+        NameCache c = new NameCache();
+        for (int i = 0; i < 2000; i++) {
+            assertEquals("n" + i, c.get(new StringBuilder("n" + i)));
+        }
+        assertSame(c.get(new StringBuilder("n5")), c.get(new StringBuilder("n5")));
+        assertNotSame(c.get(new StringBuilder("n1999")), c.get(new StringBuilder("n1999")));
+    }
+
+    @Test
+    public void testCollidingHashCodes() {
+        NameCache c = new NameCache();
+        // "Aa" and "BB" have the same hashCode
+        String a = c.get(new StringBuilder("Aa"));
+        String b = c.get(new StringBuilder("BB"));
+        assertEquals("Aa", a);
+        assertEquals("BB", b);
+        assertSame(b, c.get(new StringBuilder("BB")));
+    }
+}
@@ -16,4 +16,9 @@ public class PreconditionsTest {
         Preconditions.checkNotNull(null, "hey!");
     }
 
+    @Test(expected = IllegalStateException.class)
+    public void checkStateThrowsIllegalStateException() {
+        Preconditions.checkState(false, "hey!");
+    }
+
 }
@@ -0,0 +1,251 @@
+package com.github.davidmoten.aws.lw.client.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.davidmoten.aws.lw.client.json.JsonReader.Token;
+
+public class JsonReaderTest {
+
+    @Test
+    public void testTokens() {
+        JsonReader r = JsonReader
+                .create(" {\"a\": [1, -2.5e3, \"x\", true, false, null, {}, []], \"b\" : {\"c\":\"d\"}} ");
+        assertEquals(Token.BEGIN_OBJECT, r.next());
+        assertEquals(1, r.depth());
+        assertEquals(Token.NAME, r.next());
+        assertEquals("a", r.name());
+        assertEquals(Token.BEGIN_ARRAY, r.next());
+        assertEquals(2, r.depth());
+        assertEquals(Token.NUMBER, r.next());
+        assertEquals(1, r.longValue());
+        assertEquals(Token.NUMBER, r.next());
+        assertEquals("-2.5e3", r.text());
+        assertEquals(-2500, r.doubleValue(), 0.0001);
+        assertEquals(Token.STRING, r.next());
+        assertEquals("x", r.text());
+        assertEquals(Token.BOOLEAN, r.next());
+        assertTrue(r.booleanValue());
+        assertEquals(Token.BOOLEAN, r.next());
+        assertFalse(r.booleanValue());
+        assertEquals(Token.NULL, r.next());
+        assertEquals(Token.BEGIN_OBJECT, r.next());
+        assertEquals(Token.END_OBJECT, r.next());
+        assertEquals(Token.BEGIN_ARRAY, r.next());
+        assertEquals(Token.END_ARRAY, r.next());
+        assertEquals(Token.END_ARRAY, r.next());
+        assertEquals(1, r.depth());
+        assertEquals(Token.NAME, r.next());
+        assertEquals("b", r.name());
+        assertEquals(Token.BEGIN_OBJECT, r.next());
+        assertEquals(Token.NAME, r.next());
+        assertEquals(Token.STRING, r.next());
+        assertEquals("d", r.text());
+        assertEquals(Token.END_OBJECT, r.next());
+        assertEquals(Token.END_OBJECT, r.next());
+        assertEquals(0, r.depth());
+        assertEquals(Token.END_DOCUMENT, r.next());
+        assertEquals(Token.END_DOCUMENT, r.next());
+        assertEquals(Token.END_DOCUMENT, r.token());
+    }
+
+    @Test
+    public void testScalarDocument() {
+        JsonReader r = JsonReader.create("\"hello\"");
+        assertEquals(Token.STRING, r.next());
+        assertEquals("hello", r.text());
+        assertEquals(Token.END_DOCUMENT, r.next());
+    }
+
+    @Test
+    public void testEscapes() {
+        JsonReader r = JsonReader.create("[\"a\\\"b\\\\c\\/d\\b\\f\\n\\r\\t\\u00e9\\uD83D\\uDE00\"]");
+        r.next();
+        r.next();
+        assertEquals("a\"b\\c/d\b\f\n\r\t\u00e9\uD83D\uDE00", r.text());
+    }
+
+    @Test
+    public void testNumericStringAsLong() {
+        // DynamoDB number attribute
+        JsonReader r = JsonReader.create("{\"N\":\"123\"}");
+        r.next();
+        r.next();
+        r.next();
+        assertEquals(123, r.longValue());
+    }
+
+    @Test
+    public void testSkipValue() {
+        JsonReader r = JsonReader.create(
+                "{\"Items\":[{\"a\":{\"S\":\"x\"}},[1,[2]]],\"Count\":2,\"Next\":{\"k\":\"v\"},\"Last\":\"z\"}");
+        assertEquals(Token.BEGIN_OBJECT, r.next());
+        assertEquals(Token.NAME, r.next());
+        r.skipValue();
+        assertEquals(Token.END_ARRAY, r.token());
+        assertEquals(Token.NAME, r.next());
+        assertEquals("Count", r.name());
+        r.skipValue();
+        assertEquals(Token.NUMBER, r.token());
+        assertEquals(Token.NAME, r.next());
+        assertEquals(Token.BEGIN_OBJECT, r.next());
+        r.skipValue();
+        assertEquals(Token.END_OBJECT, r.token());
+        assertEquals(Token.NAME, r.next());
+        assertEquals("Last", r.name());
+        assertEquals(Token.STRING, r.next());
+        assertEquals("z", r.text());
+        assertEquals(Token.END_OBJECT, r.next());
+        assertEquals(Token.END_DOCUMENT, r.next());
+    }
+
+    @Test
+    public void testNamesAreShared() {
+        JsonReader r = JsonReader.create("[{\"Key\":1},{\"Key\":2}]");
+        r.next();
+        r.next();
+        r.next();
+        String a = r.name();
+        r.next();
+        r.next();
+        r.next();
+        r.next();
+        assertSame(a, r.name());
+    }
+
+    @Test
+    public void testLongStringAcrossBuffers() {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            b.append((char) ('a' + i % 26));
+        }
+        JsonReader r = JsonReader.create(new ByteArrayInputStream(
+                ("{\"k\":\"" + b + "\\n\"}").getBytes(StandardCharsets.UTF_8)));
+        r.next();
+        r.next();
+        r.next();
+        assertEquals(b + "\n", r.text());
+    }
+
+    @Test
+    public void testStreamOfRecords() {
+        StringBuilder b = new StringBuilder("{\"Records\":[");
+        for (int i = 0; i < 1000; i++) {
+            if (i > 0) {
+                b.append(",\n");
+            }
+            b.append("{\"Data\":\"d").append(i).append("\",\"SequenceNumber\":").append(i).append("}");
+        }
+        b.append("]}");
+        List<String> data = new ArrayList<>();
+        try (JsonReader r = JsonReader.create(new StringReader(b.toString()))) {
+            while (r.next() != Token.END_DOCUMENT) {
+                if (r.token() == Token.NAME && r.name().equals("Data")) {
+                    r.next();
+                    data.add(r.text());
+                }
+            }
+            assertEquals(1000, r.lineNumber());
+        }
+        assertEquals(1000, data.size());
+        assertEquals("d999", data.get(999));
+    }
+
+    @Test
+    public void testValidNumbers() {
+        for (String s : Arrays.asList("0", "-0", "12", "1.5", "-1.5e10", "1E+2", "1e-2")) {
+            assertTrue(s, JsonReader.isValidNumber(s));
+        }
+        for (String s : Arrays.asList("-", "01", "1.", ".5", "1e", "1e+", "--1", "1-")) {
+            assertFalse(s, JsonReader.isValidNumber(s));
+        }
+    }
+
+    @Test
+    public void testMalformed() {
+        for (String json : Arrays.asList("", "{", "{\"a\"}", "{\"a\":}", "{a:1}", "[1 2]", "[1,]", "{\"a\":1,}",
+                "tru", "nul", "\"abc", "\"a\nb\"", "\"\\x\"", "\"\\u12G4\"", "01", "{} x", "[1}")) {
+            JsonReader r = JsonReader.create(json);
+            try {
+                while (r.next() != Token.END_DOCUMENT) {
+                }
+                Assert.fail(json);
+            } catch (JsonParseException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testLineNumberOfError() {
+        try {
+            JsonReader r = JsonReader.create("{\n\"a\":\n1 2}");
+            while (r.next() != Token.END_DOCUMENT) {
+            }
+            Assert.fail();
+        } catch (JsonParseException e) {
+            assertEquals(3, e.lineNumber());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNameNotAvailable() {
+        JsonReader r = JsonReader.create("[1]");
+        r.next();
+        r.name();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testTextNotAvailable() {
+        JsonReader r = JsonReader.create("[1]");
+        r.next();
+        r.text();
+    }
+
+    @Test(expected = UncheckedIOException.class)
+    public void testReaderThrows() {
+        JsonReader.create(new Reader() {
+
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                throw new IOException("boo");
+            }
+
+            @Override
+            public void close() throws IOException {
+                // do nothing
+            }
+        }).next();
+    }
+
+    @Test(expected = UncheckedIOException.class)
+    public void testCloseThrows() {
+        JsonReader.create(new Reader() {
+
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                return -1;
+            }
+
+            @Override
+            public void close() throws IOException {
+                throw new IOException("boo");
+            }
+        }).close();
+    }
+}
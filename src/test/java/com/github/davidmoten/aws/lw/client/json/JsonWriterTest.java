@@ -0,0 +1,86 @@
+package com.github.davidmoten.aws.lw.client.json;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import com.github.davidmoten.aws.lw.client.json.JsonReader.Token;
+
+public class JsonWriterTest {
+
+    @Test
+    public void testWrite() {
+        StringWriter s = new StringWriter();
+        JsonWriter.create(s) //
+                .beginObject() //
+                .name("TableName").value("orders") //
+                .name("Limit").value(100) //
+                .name("Ratio").value(0.5) //
+                .name("Consistent").value(true) //
+                .name("Missing").value((String) null) //
+                .name("Keys").beginArray() //
+                .beginObject().name("id").beginObject().name("S").value("a").endObject().endObject() //
+                .value(1).nullValue() //
+                .endArray() //
+                .name("Empty").beginArray().endArray() //
+                .endObject() //
+                .flush();
+        assertEquals("{\"TableName\":\"orders\",\"Limit\":100,\"Ratio\":0.5,\"Consistent\":true,\"Missing\":null,"
+                + "\"Keys\":[{\"id\":{\"S\":\"a\"}},1,null],\"Empty\":[]}", s.toString());
+    }
+
+    @Test
+    public void testEscapes() {
+        StringWriter s = new StringWriter();
+        JsonWriter.create(s).value("a\"b\\c\n\r\t\b\f\u0001\u2028é");
+        assertEquals("\"a\\\"b\\\\c\\n\\r\\t\\b\\f\\u0001\\u2028é\"", s.toString());
+    }
+
+    @Test
+    public void testRoundTripThroughReader() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (JsonWriter w = JsonWriter.create(bytes)) {
+            w.beginArray().value("é\u0000\uD83D\uDE00").value(-12).endArray();
+        }
+        JsonReader r = JsonReader.create(new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(Token.BEGIN_ARRAY, r.next());
+        assertEquals(Token.STRING, r.next());
+        assertEquals("é\u0000\uD83D\uDE00", r.text());
+        assertEquals(Token.NUMBER, r.next());
+        assertEquals(-12, r.longValue());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testValueWithoutName() {
+        JsonWriter.create(new StringWriter()).beginObject().value(1);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNameInArray() {
+        JsonWriter.create(new StringWriter()).beginArray().name("a");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMismatchedEnd() {
+        JsonWriter.create(new StringWriter()).beginArray().endObject();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMismatchedEndArray() {
+        JsonWriter.create(new StringWriter()).beginObject().endArray();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testTwoTopLevelValues() {
+        JsonWriter.create(new StringWriter()).value(1).value(2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNaN() {
+        JsonWriter.create(new StringWriter()).value(Double.NaN);
+    }
+}
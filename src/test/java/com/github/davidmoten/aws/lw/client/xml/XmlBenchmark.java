@@ -0,0 +1,157 @@
+package com.github.davidmoten.aws.lw.client.xml;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Parsing benchmarks over representative AWS responses. Run with
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *   -Dexec.mainClass=com.github.davidmoten.aws.lw.client.xml.XmlBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XmlBenchmark {
+
+    static final String S3_LIST_OBJECTS = s3ListObjectsV2(1000);
+    static final String SQS_RECEIVE_MESSAGE = sqsReceiveMessage(10);
+    static final String EC2_DESCRIBE_INSTANCES = ec2DescribeInstances(100);
+    static final byte[] S3_LIST_OBJECTS_BYTES = S3_LIST_OBJECTS.getBytes(StandardCharsets.UTF_8);
+    static final XmlProjection S3_KEYS_AND_SIZES = XmlProjection.compile("Contents/Key", "Contents/Size");
+
+    @Benchmark
+    public XmlElement parseS3ListObjects() {
+        return XmlElement.parse(S3_LIST_OBJECTS);
+    }
+
+    @Benchmark
+    public XmlElement parseS3ListObjectsBytes() {
+        return XmlElement.parse(S3_LIST_OBJECTS_BYTES);
+    }
+
+    @Benchmark
+    public XmlElement parseS3ListObjectsBytesViaString() {
+        // what Request.responseAsXml() used to do
+        return XmlElement.parse(new String(S3_LIST_OBJECTS_BYTES, StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public Object selectS3ListObjectsKeysAndSizes() {
+        return S3_KEYS_AND_SIZES.apply(S3_LIST_OBJECTS);
+    }
+
+    @Benchmark
+    public XmlElement parseSqsReceiveMessage() {
+        return XmlElement.parse(SQS_RECEIVE_MESSAGE);
+    }
+
+    @Benchmark
+    public XmlElement parseEc2DescribeInstances() {
+        return XmlElement.parse(EC2_DESCRIBE_INSTANCES);
+    }
+
+    static String s3ListObjectsV2(int keys) {
+        StringBuilder b = new StringBuilder();
+        b.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        b.append("<ListBucketResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">\n");
+        b.append("  <Name>my-bucket</Name>\n  <Prefix></Prefix>\n  <KeyCount>").append(keys)
+                .append("</KeyCount>\n  <MaxKeys>1000</MaxKeys>\n  <IsTruncated>false</IsTruncated>\n");
+        for (int i = 0; i < keys; i++) {
+            b.append("  <Contents>\n") //
+                    .append("    <Key>data/2021/06/01/part-").append(i).append(".json</Key>\n") //
+                    .append("    <LastModified>2021-06-01T10:11:12.000Z</LastModified>\n") //
+                    .append("    <ETag>&quot;3858f62230ac3c915f300c664312c11f&quot;</ETag>\n") //
+                    .append("    <Size>").append(1000 + i * 37).append("</Size>\n") //
+                    .append("    <StorageClass>STANDARD</StorageClass>\n") //
+                    .append("  </Contents>\n");
+        }
+        b.append("</ListBucketResult>");
+        return b.toString();
+    }
+
+    static String sqsReceiveMessage(int messages) {
+        StringBuilder b = new StringBuilder();
+        b.append("<ReceiveMessageResponse>\n  <ReceiveMessageResult>\n");
+        for (int i = 0; i < messages; i++) {
+            b.append("    <Message>\n") //
+                    .append("      <MessageId>5fea7756-0ea4-451a-a703-a558b933e27").append(i)
+                    .append("</MessageId>\n") //
+                    .append("      <ReceiptHandle>MbZj6wDWli+JvwwJaBV+3dcjk2YW2vA3+STFFljTM8tJJg6HRG6PYSasuWXPJB+Cw"
+                            + "Lj1FjgXUv1uSj1gUPAWV66FU/WeR4mq2OKpEGYWbnLmpRCJVAyeMjeU5ZBdtcQ+QEauMZc8ZRv37sIW2iJKq3M9"
+                            + "MFx1YvV11A2x/KSbkJ0=</ReceiptHandle>\n") //
+                    .append("      <MD5OfBody>fafb00f5732ab283681e124bf8747ed1</MD5OfBody>\n") //
+                    .append("      <Body>{&quot;orderId&quot;:").append(i)
+                    .append(",&quot;status&quot;:&quot;CREATED&quot;}</Body>\n") //
+                    .append("      <Attribute>\n        <Name>SenderId</Name>\n")
+                    .append("        <Value>195004372649</Value>\n      </Attribute>\n") //
+                    .append("      <Attribute>\n        <Name>SentTimestamp</Name>\n")
+                    .append("        <Value>1238099229000</Value>\n      </Attribute>\n") //
+                    .append("    </Message>\n");
+        }
+        b.append("  </ReceiveMessageResult>\n  <ResponseMetadata>\n")
+                .append("    <RequestId>b6633655-283d-45b4-aee4-4e84e0ae6afa</RequestId>\n")
+                .append("  </ResponseMetadata>\n</ReceiveMessageResponse>");
+        return b.toString();
+    }
+
+    static String ec2DescribeInstances(int instances) {
+        StringBuilder b = new StringBuilder();
+        b.append("<DescribeInstancesResponse xmlns=\"http://ec2.amazonaws.com/doc/2016-11-15/\">\n")
+                .append("  <requestId>8f7724cf-496f-496e-8fe3-example</requestId>\n  <reservationSet>\n");
+        for (int i = 0; i < instances; i++) {
+            b.append("    <item>\n      <reservationId>r-1234567890abcdef").append(i)
+                    .append("</reservationId>\n      <ownerId>123456789012</ownerId>\n") //
+                    .append("      <groupSet/>\n      <instancesSet>\n        <item>\n") //
+                    .append("          <instanceId>i-1234567890abcdef").append(i).append("</instanceId>\n") //
+                    .append("          <imageId>ami-0abcdef1234567890</imageId>\n") //
+                    .append("          <instanceState>\n            <code>16</code>\n")
+                    .append("            <name>running</name>\n          </instanceState>\n") //
+                    .append("          <privateDnsName>ip-10-0-0-").append(i % 255)
+                    .append(".ec2.internal</privateDnsName>\n") //
+                    .append("          <dnsName/>\n          <reason/>\n") //
+                    .append("          <keyName>my_keypair</keyName>\n") //
+                    .append("          <amiLaunchIndex>0</amiLaunchIndex>\n") //
+                    .append("          <productCodes/>\n          <instanceType>t2.micro</instanceType>\n") //
+                    .append("          <launchTime>2021-06-01T10:11:12.000Z</launchTime>\n") //
+                    .append("          <placement>\n            <availabilityZone>us-east-1b</availabilityZone>\n")
+                    .append("            <groupName/>\n            <tenancy>default</tenancy>\n")
+                    .append("          </placement>\n") //
+                    .append("          <monitoring>\n            <state>disabled</state>\n          </monitoring>\n") //
+                    .append("          <subnetId>subnet-0abcdef1234567890</subnetId>\n") //
+                    .append("          <vpcId>vpc-0abcdef1234567890</vpcId>\n") //
+                    .append("          <privateIpAddress>10.0.0.").append(i % 255).append("</privateIpAddress>\n") //
+                    .append("          <tagSet>\n            <item>\n              <key>Name</key>\n")
+                    .append("              <value>server-").append(i).append("</value>\n")
+                    .append("            </item>\n          </tagSet>\n") //
+                    .append("        </item>\n      </instancesSet>\n    </item>\n");
+        }
+        b.append("  </reservationSet>\n</DescribeInstancesResponse>");
+        return b.toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder() //
+                .include(XmlBenchmark.class.getSimpleName()) //
+                .build()) //
+                        .run();
+    }
+}
@@ -4,11 +4,15 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.UncheckedIOException;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.NoSuchElementException;
 
 import org.junit.Assert;
@@ -443,9 +447,19 @@ public class XmlElementTest {
         assertTrue(s.contains("as I want (along with <, &, '"));
     }
 
-    @Test(expected = XmlParseException.class)
-    public void testCDataTooManyBracketLevels() {
-        XmlElement.parse("<a><![CDATA[[hi there]]]></a>");
+    @Test
+    public void testCDataEndingInBracket() {
+        assertEquals("[hi there]", XmlElement.parse("<a><![CDATA[[hi there]]]></a>").content());
+    }
+
+    @Test
+    public void testCDataEndingInBrackets() {
+        assertEquals("x<y]]", XmlElement.parse("<a><![CDATA[x<y]]]]></a>").content());
+    }
+
+    @Test
+    public void testCDataEndingInBracketThenEntities() {
+        assertEquals("x<y]AB", XmlElement.parse("<a><![CDATA[x<y]]]>&#65;&#x42;</a>").content());
     }
 
     @Test(expected = XmlParseException.class)
@@ -490,4 +504,154 @@ public class XmlElementTest {
         assertFalse(XmlElement.isValidIdentifierCharacter('\u007E'));
         assertTrue(XmlElement.isValidIdentifierCharacter('\u007F'));
     }
+
+    @Test
+    public void testParseReaderAcrossBufferBoundaries() throws IOException {
+        String xml = XmlBenchmark.s3ListObjectsV2(1000);
+        XmlElement x = XmlElement.parse(new StringReader(xml));
+        assertEquals(1000, x.childrenWithName("Contents").size());
+        assertEquals("data/2021/06/01/part-999.json", x.childrenWithName("Contents").get(999).content("Key"));
+    }
+
+    @Test
+    public void testParseReaderReturningOneCharAtATime() throws IOException {
+        Reader r = new StringReader("<a>\n  <b>hello</b>\n</a>") {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                return super.read(cbuf, off, Math.min(1, len));
+            }
+        };
+        assertEquals("hello", XmlElement.parse(r).content("b"));
+    }
+
+    @Test
+    public void testLineNumberOfErrorAfterBufferRefill() throws IOException {
+        StringBuilder b = new StringBuilder("<a>\n");
+        for (int i = 0; i < 2000; i++) {
+            b.append("<b>value</b>\n");
+        }
+        b.append("<c></d></a>");
+        try {
+            XmlElement.parse(new StringReader(b.toString()));
+            Assert.fail();
+        } catch (XmlParseException e) {
+            assertEquals(2002, e.lineNumber());
+        }
+    }
+
+    @Test
+    public void testParseBytes() {
+        String xml = "\uFEFF<a><b x=\"é\">中 &amp; \uD83D\uDE00</b><b>two</b></a>";
+        XmlElement x = XmlElement.parse(xml.getBytes(StandardCharsets.UTF_8));
+        assertEquals("中 & \uD83D\uDE00", x.child(0).content());
+        assertEquals("é", x.child(0).attribute("x"));
+        // repeated names share one instance
+        assertTrue(x.child(0).name() == x.child(1).name());
+    }
+
+    @Test
+    public void testParseBytesMatchesParseString() {
+        String xml = XmlBenchmark.ec2DescribeInstances(10);
+        assertEquals(XmlElement.parse(xml).toString(),
+                XmlElement.parse(xml.getBytes(StandardCharsets.UTF_8)).toString());
+    }
+
+    @Test
+    public void testParseInputStreamAcrossBufferBoundaries() throws IOException {
+        String xml = XmlBenchmark.s3ListObjectsV2(1000).replace("part-", "partè-");
+        XmlElement x = XmlElement.parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+        assertEquals("data/2021/06/01/partè-999.json", x.childrenWithName("Contents").get(999).content("Key"));
+    }
+
+    @Test
+    public void testParseBytesLineNumberOfError() {
+        try {
+            XmlElement.parse("<a>\né\n<b></c></a>".getBytes(StandardCharsets.UTF_8));
+            Assert.fail();
+        } catch (XmlParseException e) {
+            assertEquals(3, e.lineNumber());
+        }
+    }
+
+    @Test(expected = XmlParseException.class)
+    public void testParseBytesInvalidUtf8() {
+        XmlElement.parse(new byte[] { '<', 'a', '>', (byte) 0xC3, 'x', '<', '/', 'a', '>' });
+    }
+
+    @Test(expected = XmlParseException.class)
+    public void testParseBytesInvalidUtf8LeadingByte() {
+        XmlElement.parse(new byte[] { '<', 'a', '>', (byte) 0xFF, '<', '/', 'a', '>' });
+    }
+
+    @Test(expected = XmlParseException.class)
+    public void testParseBytesTruncated() {
+        XmlElement.parse("<a>hello".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testAttributesWrittenInDocumentOrder() {
+        XmlElement x = XmlElement.parse("<a z=\"1\" b=\"2\" m=\"3\"/>");
+        assertEquals(Arrays.asList("z", "b", "m"), new ArrayList<>(x.attributeNames()));
+        assertEquals("2", x.attribute("b"));
+        assertEquals("none", x.attribute("c", "none"));
+        assertEquals("<a z=\"1\" b=\"2\" m=\"3\"/>", x.toString());
+    }
+
+    @Test
+    public void testLeafChildrenCanBeAdded() {
+        XmlElement x = XmlElement.parse("<a><b>1</b><c/></a>");
+        assertTrue(x.child(0).children().isEmpty());
+        x.child(1).children().add(XmlElement.parse("<d/>"));
+        assertEquals("d", x.child(1).firstChild().name());
+        assertTrue(x.child(0).children().isEmpty());
+    }
+
+    @Test
+    public void testChildrenChangesDiscardNameIndex() {
+        StringBuilder b = new StringBuilder("<a>");
+        for (int i = 0; i < 20; i++) {
+            b.append("<b>").append(i).append("</b>");
+        }
+        b.append("</a>");
+        XmlElement x = XmlElement.parse(b.toString());
+        assertEquals(20, x.childrenWithName("b").size());
+        x.children().add(XmlElement.parse("<c>new</c>"));
+        x.children().remove(0);
+        assertEquals("new", x.content("c"));
+        assertEquals(19, x.childrenWithName("b").size());
+        x.children().set(0, XmlElement.parse("<c>newer</c>"));
+        assertEquals(18, x.childrenWithName("b").size());
+        assertEquals(2, x.childrenWithName("c").size());
+    }
+
+    @Test
+    public void testChildLookupUsesNameIndexForManyChildren() {
+        StringBuilder b = new StringBuilder("<a>");
+        for (int i = 0; i < 20; i++) {
+            b.append("<b>").append(i).append("</b><c>").append(i).append("</c>");
+        }
+        b.append("</a>");
+        XmlElement x = XmlElement.parse(b.toString());
+        assertEquals(20, x.childrenWithName("b").size());
+        assertEquals("0", x.childrenWithName("b").get(0).content());
+        // last child with the name is used
+        assertEquals("19", x.content("c"));
+        assertTrue(x.childrenWithName("d").isEmpty());
+        try {
+            x.child("d");
+            Assert.fail();
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+        // index is rebuilt after adding a child
+        x.addChild(XmlElement.parse("<d>hello</d>"));
+        assertEquals("hello", x.content("d"));
+        assertEquals(1, x.childrenWithName("d").size());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testChildPathMissingAtSecondLevel() {
+        XmlElement x = XmlElement.parse("<a><b><c/></b></a>");
+        x.child("b", "b");
+    }
 }
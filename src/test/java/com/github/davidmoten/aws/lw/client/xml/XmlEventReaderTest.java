@@ -0,0 +1,191 @@
+package com.github.davidmoten.aws.lw.client.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.davidmoten.aws.lw.client.xml.XmlEventReader.Event;
+
+public class XmlEventReaderTest {
+
+    @Test
+    public void testEvents() {
+        XmlEventReader r = XmlEventReader.create(
+                "<?xml version=\"1.0\"?>\n<!-- comment -->\n<a x=\"1\" y='&lt;2'>\n  <b>hi &amp; bye</b>\n  <c/>\n</a>");
+        assertEquals(Event.START_ELEMENT, r.next());
+        assertEquals("a", r.name());
+        assertEquals(2, r.attributeCount());
+        assertEquals("x", r.attributeName(0));
+        assertEquals("1", r.attributeValue(0));
+        assertEquals("<2", r.attribute("y"));
+        assertNull(r.attribute("z"));
+        assertEquals(1, r.depth());
+        assertEquals(Event.START_ELEMENT, r.next());
+        assertEquals("b", r.name());
+        assertEquals(2, r.depth());
+        assertEquals(Event.TEXT, r.next());
+        assertEquals("hi & bye", r.text());
+        assertEquals(Event.END_ELEMENT, r.next());
+        assertEquals("b", r.name());
+        assertEquals(Event.START_ELEMENT, r.next());
+        assertEquals("c", r.name());
+        assertEquals(Event.END_ELEMENT, r.next());
+        assertEquals("c", r.name());
+        assertEquals(Event.END_ELEMENT, r.next());
+        assertEquals("a", r.name());
+        assertEquals(0, r.depth());
+        assertEquals(Event.END_DOCUMENT, r.next());
+        assertEquals(Event.END_DOCUMENT, r.next());
+    }
+
+    @Test
+    public void testCDataAndEntities() {
+        XmlEventReader r = XmlEventReader.create("<a><![CDATA[x<y]]]>&#65;&#x42;</a>");
+        r.next();
+        assertEquals("x<y]AB", r.elementText());
+        assertEquals(Event.END_ELEMENT, r.event());
+    }
+
+    @Test
+    public void testMixedContent() {
+        XmlEventReader r = XmlEventReader.create("<a>one<b/>two</a>");
+        List<String> list = new ArrayList<>();
+        while (r.next() != Event.END_DOCUMENT) {
+            list.add(r.event() == Event.TEXT ? r.text() : r.event() + ":" + r.name());
+        }
+        assertEquals("[START_ELEMENT:a, one, START_ELEMENT:b, END_ELEMENT:b, two, END_ELEMENT:a]",
+                list.toString());
+    }
+
+    @Test
+    public void testSkipElement() {
+        XmlEventReader r = XmlEventReader.create("<a><b><c>1</c><c>2</c></b><d>3</d></a>");
+        r.next();
+        r.next();
+        r.skipElement();
+        assertEquals(Event.END_ELEMENT, r.event());
+        assertEquals("b", r.name());
+        r.next();
+        assertEquals("3", r.elementText());
+    }
+
+    @Test
+    public void testElementTextEmpty() {
+        XmlEventReader r = XmlEventReader.create("<a><b/><c></c></a>");
+        r.next();
+        r.next();
+        assertEquals("", r.elementText());
+        r.next();
+        assertEquals("", r.elementText());
+    }
+
+    @Test(expected = XmlParseException.class)
+    public void testElementTextWithChildThrows() {
+        XmlEventReader r = XmlEventReader.create("<a><b/></a>");
+        r.next();
+        r.elementText();
+    }
+
+    @Test
+    public void testLargeDocumentCrossesBufferBoundaries() {
+        StringBuilder b = new StringBuilder("<ListBucketResult>");
+        for (int i = 0; i < 10000; i++) {
+            b.append("\n  <Contents><Key>key").append(i).append("</Key><Size>").append(i).append("</Size></Contents>");
+        }
+        b.append("\n</ListBucketResult>");
+        XmlEventReader r = XmlEventReader
+                .create(new ByteArrayInputStream(b.toString().getBytes(StandardCharsets.UTF_8)));
+        int count = 0;
+        while (r.next() != Event.END_DOCUMENT) {
+            if (r.event() == Event.START_ELEMENT && r.name().equals("Key")) {
+                assertEquals("key" + count, r.elementText());
+                count++;
+            }
+        }
+        assertEquals(10000, count);
+        assertEquals(10002, r.lineNumber());
+        r.close();
+    }
+
+    @Test
+    public void testUtf8() {
+        XmlEventReader r = XmlEventReader
+                .create(new ByteArrayInputStream("<a>é中</a>".getBytes(StandardCharsets.UTF_8)));
+        r.next();
+        assertEquals("é中", r.elementText());
+    }
+
+    @Test
+    public void testMismatchedEndTag() {
+        XmlEventReader r = XmlEventReader.create("<a>\n<b></c></a>");
+        r.next();
+        r.next();
+        try {
+            r.next();
+            fail();
+        } catch (XmlParseException e) {
+            assertEquals(2, e.lineNumber());
+        }
+    }
+
+    @Test(expected = XmlParseException.class)
+    public void testUnexpectedEnd() {
+        XmlEventReader r = XmlEventReader.create("<a><b>");
+        while (r.next() != Event.END_DOCUMENT) {
+        }
+    }
+
+    @Test(expected = XmlParseException.class)
+    public void testNoStartTag() {
+        XmlEventReader.create("a").next();
+    }
+
+    @Test(expected = XmlParseException.class)
+    public void testUnknownEntity() {
+        XmlEventReader r = XmlEventReader.create("<a>&boo;</a>");
+        r.next();
+        r.next();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNameNotAvailableForText() {
+        XmlEventReader r = XmlEventReader.create("<a>hi</a>");
+        r.next();
+        r.next();
+        r.name();
+    }
+
+    @Test(expected = UncheckedIOException.class)
+    public void testReaderThrows() {
+        XmlEventReader.create(new Reader() {
+
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                throw new IOException("boo");
+            }
+
+            @Override
+            public void close() throws IOException {
+                // do nothing
+            }
+        }).next();
+    }
+
+    @Test
+    public void testDoctypeSkipped() {
+        XmlEventReader r = XmlEventReader.create(new StringReader("<!DOCTYPE a [<!ELEMENT a ANY>]><a/>"));
+        assertEquals(Event.START_ELEMENT, r.next());
+        assertEquals("a", r.name());
+    }
+}
@@ -0,0 +1,90 @@
+package com.github.davidmoten.aws.lw.client.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class XmlProjectionTest {
+
+    @Test
+    public void testS3ListObjects() {
+        String xml = XmlBenchmark.s3ListObjectsV2(1000);
+        Map<String, List<String>> m = XmlElement.select(new StringReader(xml), "Contents/Key", "Contents/Size",
+                "IsTruncated");
+        assertEquals(Arrays.asList("Contents/Key", "Contents/Size", "IsTruncated"),
+                Arrays.asList(m.keySet().toArray()));
+        assertEquals(1000, m.get("Contents/Key").size());
+        assertEquals("data/2021/06/01/part-999.json", m.get("Contents/Key").get(999));
+        assertEquals(String.valueOf(1000 + 999 * 37), m.get("Contents/Size").get(999));
+        assertEquals(Arrays.asList("false"), m.get("IsTruncated"));
+    }
+
+    @Test
+    public void testSqsReceiveMessage() {
+        XmlProjection p = XmlProjection.compile("ReceiveMessageResult/Message/Body");
+        String xml = XmlBenchmark.sqsReceiveMessage(3);
+        List<String> bodies = p.apply(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)))
+                .get("ReceiveMessageResult/Message/Body");
+        assertEquals(Arrays.asList( //
+                "{\"orderId\":0,\"status\":\"CREATED\"}", //
+                "{\"orderId\":1,\"status\":\"CREATED\"}", //
+                "{\"orderId\":2,\"status\":\"CREATED\"}"), bodies);
+        // reusable
+        assertEquals(3, p.apply(xml).get("ReceiveMessageResult/Message/Body").size());
+    }
+
+    @Test
+    public void testMissingPathGivesEmptyList() {
+        assertTrue(XmlProjection.compile("a/b").apply("<r><a><c>1</c></a></r>").get("a/b").isEmpty());
+    }
+
+    @Test
+    public void testSelfClosingRoot() {
+        assertTrue(XmlProjection.compile("a").apply("<r/>").get("a").isEmpty());
+    }
+
+    @Test
+    public void testSelfClosingSelectedElement() {
+        assertEquals(Arrays.asList("", "x"), XmlProjection.compile("a").apply("<r><a/><a>x</a></r>").get("a"));
+    }
+
+    @Test
+    public void testNestedSkippedElementsWithSameName() {
+        // the a under b must not match path a
+        assertEquals(Arrays.asList("2"),
+                XmlProjection.compile("a").apply("<r><b><a>1</a></b><a>2</a></r>").get("a"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPathPrefixOfAnotherPath() {
+        XmlProjection.compile("a", "a/b");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptySegment() {
+        XmlProjection.compile("a//b");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoPaths() {
+        XmlProjection.compile();
+    }
+
+    @Test(expected = XmlParseException.class)
+    public void testSelectedElementWithChildren() {
+        XmlProjection.compile("a").apply("<r><a><b/></a></r>");
+    }
+
+    @Test
+    public void testPaths() {
+        assertEquals(Arrays.asList("a", "b/c"), XmlProjection.compile("a", "b/c").paths());
+    }
+}
@@ -2,6 +2,11 @@ package com.github.davidmoten.aws.lw.client.xml.builder;
 
 import static org.junit.Assert.assertEquals;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
 import org.junit.Test;
 
 public class XmlTest {
@@ -87,5 +92,25 @@ public class XmlTest {
                 "<root>&#x103ff;&#xfffd;&#xfffd;&#xefff;&#xd7ff;</root>", Xml.create("root").excludePrelude().content("" + (char) 0xd800  + (char) 0xdfff  + (char)0xfffe + (char) 0xffff + (char) 0xefff + (char) 0xd7ff).toString());
     }
 
+    @Test
+    public void testCompact() {
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?><root><a><b>1&amp;</b></a><c></c></root>",
+                Xml.create("root").e("a").e("b").content("1&").up().up().e("c").content("").compact().toString());
+    }
+
+    @Test
+    public void testWriteToWriterMatchesToString() throws IOException {
+        Xml xml = Xml.create("root").a("x", "'").e("a").content("b").up().e("c").e("d").content("é");
+        StringWriter w = new StringWriter();
+        xml.writeTo(w);
+        assertEquals(xml.toString(), w.toString());
+    }
 
+    @Test
+    public void testWriteToOutputStreamIsUtf8() throws IOException {
+        Xml xml = Xml.create("root").excludePrelude().compact().e("a").content("\u4e2d");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        xml.writeTo(out);
+        assertEquals("<root><a>&#x4e2d;</a></root>", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
 }